@@ -0,0 +1,56 @@
+package com.github.dev.tool;
+
+import com.github.dev.tool.plugins.counter.CodeCounterCore;
+
+import javax.swing.*;
+import java.awt.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Training run for the application class-data-sharing (AppCDS) archive shipped next to the jar.
+ *
+ * The build starts this class once with {@code -XX:ArchiveClassesAtExit=...}. It opens and paints
+ * the main window, counts the lines below the given directory and exits, so everything a normal
+ * launch loads and verifies (FlatLaf, the icon packs, the plugins, the scan pipeline) is
+ * stored in the archive. Without a display only the scan is run.
+ */
+public final class AppCdsTraining {
+
+    // Roughly the default template, so the scan loads the classifiers of the common file types
+    private static final List<String> EXTENSIONS = List.of(
+        ".java", ".xml", ".properties", ".html", ".css", ".js", ".yml", ".md");
+
+    private AppCdsTraining() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path root = Paths.get(args.length > 0 ? args[0] : ".").toAbsolutePath().normalize();
+        PluginHostApplication[] app = new PluginHostApplication[1];
+
+        if (GraphicsEnvironment.isHeadless()) {
+            System.err.println("AppCDS training: no display, archiving the scan classes only");
+        } else {
+            SwingUtilities.invokeAndWait(() -> {
+                app[0] = new PluginHostApplication();
+                app[0].setVisible(true);
+            });
+            // Paint the whole window once so the look and feel's painters are loaded as well
+            SwingUtilities.invokeAndWait(() -> {
+                JRootPane pane = app[0].getRootPane();
+                pane.paintImmediately(0, 0, pane.getWidth(), pane.getHeight());
+            });
+        }
+
+        List<CodeCounterCore.FileStat> stats = new CodeCounterCore().countLinesWithDetail(
+            List.of(root), EXTENSIONS, false, true, List.of(".git", "target", "node_modules"));
+        System.err.println("AppCDS training: counted " + stats.size() + " files below " + root);
+
+        if (app[0] != null) {
+            SwingUtilities.invokeAndWait(app[0]::dispose);
+        }
+        // The archive is written while the JVM exits
+        System.exit(0);
+    }
+}
@@ -24,7 +24,6 @@ public class PluginHostApplication extends JFrame {
     private PluginManager pluginManager;
     private ThemeManager themeManager;
     private LocalizationManager localizationManager;
-    private ResourceBundle bundle;
 
     private JTabbedPane pluginTabs;
     private Map<String, PluginPanel> pluginPanels = new LinkedHashMap<>();
@@ -51,6 +50,13 @@ public class PluginHostApplication extends JFrame {
     private static final String PREF_DARK = "app.theme.dark";
     private static final String PREF_LOCALE = "app.locale";
 
+    /** Set to {@code true} to also print the startup time to stderr */
+    private static final String STARTUP_TIMING_PROPERTY = "codecounter.startupTiming";
+
+    // Startup timing: when main() was entered, and whether the window has been painted yet
+    private static final long MAIN_ENTERED_NANOS = System.nanoTime();
+    private boolean firstPaintDone;
+
     public PluginHostApplication() {
         // Initialize preferences
         appPreferences = Preferences.userNodeForPackage(this.getClass());
@@ -98,9 +104,6 @@ public class PluginHostApplication extends JFrame {
     }
 
     private void setupUI() {
-        // Load resource bundle for application
-        bundle = loadApplicationResourceBundle();
-
         setTitle(getString("app.title"));
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(1200, 800);
@@ -156,36 +159,8 @@ public class PluginHostApplication extends JFrame {
         getContentPane().add(statusBar, BorderLayout.SOUTH);
     }
 
-    private ResourceBundle loadApplicationResourceBundle() {
-        try {
-            Locale currentLocale = localizationManager.getCurrentLocale();
-            // Clear cache to ensure locale switch takes effect
-            ResourceBundle.clearCache();
-            return ResourceBundle.getBundle("i18n.strings", currentLocale,
-                new DefaultPluginManager.UTF8Control());
-        } catch (Exception e) {
-            System.err.println("Failed to load resource bundle: " + e.getMessage());
-            // Return fallback bundle
-            return new ResourceBundle() {
-                @Override
-                protected Object handleGetObject(String key) {
-                    return key;
-                }
-
-                @Override
-                public Enumeration<String> getKeys() {
-                    return Collections.emptyEnumeration();
-                }
-            };
-        }
-    }
-
     private String getString(String key) {
-        try {
-            return bundle.getString(key);
-        } catch (Exception e) {
-            return key;
-        }
+        return localizationManager.getString(key);
     }
 
     private void updateMenuTexts() {
@@ -290,9 +265,6 @@ public class PluginHostApplication extends JFrame {
         // Notify localization manager first so getString() uses new locale
         localizationManager.setLocale(locale);
 
-        // Reload resource bundle with new locale
-        bundle = loadApplicationResourceBundle();
-
         // Update menu texts immediately
         updateMenuTexts();
 
@@ -351,6 +323,8 @@ public class PluginHostApplication extends JFrame {
 
         statusLabel = new JLabel(getString("status.ready"));
         statusBar.add(statusLabel, BorderLayout.WEST);
+        pluginManager.setStatusHandler(message -> SwingUtilities.invokeLater(() ->
+            statusLabel.setText(message != null ? message : getString("status.ready"))));
 
         pluginCountLabel = new JLabel(MessageFormat.format(getString("status.plugins"), pluginPanels.size()));
         statusBar.add(pluginCountLabel, BorderLayout.EAST);
@@ -418,6 +392,32 @@ public class PluginHostApplication extends JFrame {
         }
     }
 
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        if (!firstPaintDone) {
+            firstPaintDone = true;
+            reportStartupTime(System.nanoTime());
+        }
+    }
+
+    /**
+     * Show how long it took from process launch (or, if the OS does not tell, from entering
+     * main) to the first paint of the window.
+     */
+    private void reportStartupTime(long firstPaintNanos) {
+        long sinceMain = (firstPaintNanos - MAIN_ENTERED_NANOS) / 1_000_000;
+        long sinceLaunch = ProcessHandle.current().info().startInstant()
+            .map(start -> System.currentTimeMillis() - start.toEpochMilli()
+                - (System.nanoTime() - firstPaintNanos) / 1_000_000)
+            .orElse(sinceMain);
+        statusLabel.setText(MessageFormat.format(getString("status.startup"), sinceLaunch));
+        if (Boolean.getBoolean(STARTUP_TIMING_PROPERTY)) {
+            System.err.println("Startup: first paint " + sinceLaunch + " ms after launch, "
+                + sinceMain + " ms after main()");
+        }
+    }
+
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
             PluginHostApplication app = new PluginHostApplication();
@@ -24,6 +24,17 @@ public interface LocalizationManager {
      */
     Locale[] getSupportedLocales();
 
+    /**
+     * Get the localized string for a key in the current locale.
+     * @return the message, or the key itself if the current locale has none
+     */
+    String getString(String key);
+
+    /**
+     * Check whether the current locale has a message for a key.
+     */
+    boolean hasKey(String key);
+
     /**
      * Register a listener to be notified when locale changes.
      */
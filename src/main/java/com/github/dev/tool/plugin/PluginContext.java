@@ -1,7 +1,5 @@
 package com.github.dev.tool.plugin;
 
-import com.github.dev.tool.plugin.impl.DefaultPluginManager;
-
 import java.util.ResourceBundle;
 import java.util.prefs.Preferences;
 
@@ -74,52 +72,25 @@ public class PluginContext {
     }
 
     /**
-     * Convenience method to get a localized string.
-     * Dynamically loads the resource bundle based on current locale.
+     * Show a message in the host's status bar, e.g. the progress of a long task.
+     * May be called from any thread; null restores the host's default text.
      */
-    public String getString(String key) {
-        try {
-            // Reload resource bundle every time to ensure current locale is used
-            ResourceBundle currentBundle = loadResourceBundle();
-            return currentBundle.getString(key);
-        } catch (Exception e) {
-            return key;  // Fallback to key name if translation not found
-        }
+    public void showStatus(String message) {
+        pluginManager.showStatus(message);
     }
 
-    private ResourceBundle loadResourceBundle() {
-        try {
-            java.util.Locale currentLocale = localizationManager.getCurrentLocale();
-            // Clear cache to ensure locale switch takes effect
-            ResourceBundle.clearCache();
-            return ResourceBundle.getBundle("i18n.strings", currentLocale,
-                new DefaultPluginManager.UTF8Control());
-        } catch (Exception e) {
-            // Return fallback bundle
-            return new ResourceBundle() {
-                @Override
-                protected Object handleGetObject(String key) {
-                    return key;
-                }
-
-                @Override
-                public java.util.Enumeration<String> getKeys() {
-                    return java.util.Collections.emptyEnumeration();
-                }
-            };
-        }
+    /**
+     * Convenience method to get a localized string in the current locale.
+     * Falls back to the key name if there is no translation.
+     */
+    public String getString(String key) {
+        return localizationManager.getString(key);
     }
 
     /**
      * Convenience method to check if a resource key exists.
      */
     public boolean hasKey(String key) {
-        try {
-            ResourceBundle currentBundle = loadResourceBundle();
-            return currentBundle.containsKey(key);
-        } catch (Exception e) {
-            return false;
-        }
+        return localizationManager.hasKey(key);
     }
 }
-
@@ -1,6 +1,7 @@
 package com.github.dev.tool.plugin;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Manages plugins: discovery, loading, initialization, and lifecycle.
@@ -56,6 +57,17 @@ public interface PluginManager {
      */
     void removePluginLifecycleListener(PluginLifecycleListener listener);
 
+    /**
+     * Set the host's receiver of plugin status messages (e.g. the main window's status bar).
+     * It is called on the thread that reports the status.
+     */
+    void setStatusHandler(Consumer<String> handler);
+
+    /**
+     * Report a status message from a plugin; null restores the host's default text.
+     */
+    void showStatus(String message);
+
     /**
      * Plugin lifecycle event listener.
      */
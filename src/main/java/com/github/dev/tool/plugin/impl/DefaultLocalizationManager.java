@@ -3,16 +3,28 @@ package com.github.dev.tool.plugin.impl;
 import com.github.dev.tool.plugin.LocalizationManager;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Default implementation of LocalizationManager.
  * Manages application-wide locale switching.
+ *
+ * The messages of each locale are read once into an immutable table (the locale's bundle merged
+ * with its parents) and kept. A locale change swaps the current table in a single volatile write
+ * before the listeners are notified, so lookups are plain map reads and never touch the
+ * properties files again.
  */
 public class DefaultLocalizationManager implements LocalizationManager {
 
-    private Locale currentLocale = Locale.getDefault();
+    private static final String BUNDLE_BASE_NAME = "i18n.strings";
+
+    private volatile Locale currentLocale = Locale.getDefault();
     private Locale[] supportedLocales = {
         Locale.ENGLISH,
         Locale.SIMPLIFIED_CHINESE,
@@ -25,11 +37,17 @@ public class DefaultLocalizationManager implements LocalizationManager {
     };
     private List<LocaleChangeListener> listeners = new ArrayList<>();
 
+    // Message tables by requested locale, and the one of the current locale
+    private final Map<Locale, Map<String, String>> messageTables = new ConcurrentHashMap<>();
+    private volatile Map<String, String> messages = messagesFor(currentLocale);
+
     @Override
     public void setLocale(Locale locale) {
         if (!currentLocale.equals(locale)) {
             this.currentLocale = locale;
             Locale.setDefault(locale);
+            // Switch the table before anyone is told, so listeners already read the new language
+            messages = messagesFor(locale);
             notifyListeners(locale);
         }
     }
@@ -44,6 +62,17 @@ public class DefaultLocalizationManager implements LocalizationManager {
         return supportedLocales;
     }
 
+    @Override
+    public String getString(String key) {
+        String value = messages.get(key);
+        return value != null ? value : key;
+    }
+
+    @Override
+    public boolean hasKey(String key) {
+        return messages.containsKey(key);
+    }
+
     @Override
     public void addLocaleChangeListener(LocaleChangeListener listener) {
         listeners.add(listener);
@@ -63,5 +92,26 @@ public class DefaultLocalizationManager implements LocalizationManager {
             }
         }
     }
-}
 
+    private Map<String, String> messagesFor(Locale locale) {
+        return messageTables.computeIfAbsent(locale, DefaultLocalizationManager::loadMessages);
+    }
+
+    /**
+     * Reads the bundle of a locale, including the keys it inherits from its parent bundles.
+     */
+    private static Map<String, String> loadMessages(Locale locale) {
+        try {
+            ResourceBundle bundle = ResourceBundle.getBundle(BUNDLE_BASE_NAME, locale,
+                new DefaultPluginManager.UTF8Control());
+            Map<String, String> table = new HashMap<>();
+            for (String key : bundle.keySet()) {
+                table.put(key, bundle.getString(key));
+            }
+            return Map.copyOf(table);
+        } catch (MissingResourceException e) {
+            System.err.println("Could not load i18n resources for " + locale + ": " + e.getMessage());
+            return Map.of(); // keys are shown as they are
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.github.dev.tool.plugin.*;
 
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.prefs.Preferences;
 
 /**
@@ -15,6 +16,7 @@ public class DefaultPluginManager implements PluginManager {
     private List<Plugin> loadedPlugins = new ArrayList<>();
     private Map<String, Boolean> pluginEnabledMap = new HashMap<>();
     private List<PluginLifecycleListener> lifecycleListeners = new CopyOnWriteArrayList<>();
+    private volatile Consumer<String> statusHandler;
 
     private ThemeManager themeManager;
     private LocalizationManager localizationManager;
@@ -123,6 +125,19 @@ public class DefaultPluginManager implements PluginManager {
         lifecycleListeners.remove(listener);
     }
 
+    @Override
+    public void setStatusHandler(Consumer<String> handler) {
+        this.statusHandler = handler;
+    }
+
+    @Override
+    public void showStatus(String message) {
+        Consumer<String> handler = statusHandler;
+        if (handler != null) {
+            handler.accept(message);
+        }
+    }
+
     // Helper methods
 
     private ResourceBundle loadPluginResources(Plugin plugin) {
@@ -0,0 +1,321 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Streams the entries of zip-based archives (zip, jar, war, ear) and tar archives (plain or
+ * gzip-compressed) without extracting them.
+ *
+ * Each archive is read in a single forward pass. A nested archive is opened on the stream of its
+ * entry, so it never touches the disk. Only one entry at a time is held, and only as much of it
+ * as the entry analyzer buffers, so memory does not grow with the size of the archive; what
+ * all analyzers buffer together is capped by {@link CodeCounterCore#ENTRY_BUFFER_BUDGET}.
+ * Entries are reported as {@code archive!/entry}, nested ones as {@code outer!/inner!/entry}.
+ */
+final class ArchiveReader {
+
+    /**
+     * Classifies one matching entry.
+     */
+    interface EntryAnalyzer {
+        /**
+         * @param path the reported location, {@code archive!/entry}
+         * @param in the entry's content; ends with the entry and must not be closed
+         */
+        CodeCounterCore.FileStat analyze(String path, InputStream in) throws IOException;
+    }
+
+    private enum Kind { ZIP, TAR, TAR_GZ }
+
+    private static final int TAR_BLOCK = 512;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /** Archives nested deeper than this are not opened (guards against crafted input) */
+    private static final int MAX_DEPTH = 8;
+
+    /** Largest pax extended header that is parsed; bigger ones are skipped */
+    private static final int MAX_PAX_HEADER = 1024 * 1024;
+
+    private final NameMatcher excluded;
+    private final NameMatcher included;
+    private final EntryAnalyzer analyzer;
+
+    /**
+     * @param excluded names of entries and entry directories to leave out
+     * @param included entry file names to analyze
+     */
+    ArchiveReader(NameMatcher excluded, NameMatcher included, EntryAnalyzer analyzer) {
+        this.excluded = excluded;
+        this.included = included;
+        this.analyzer = analyzer;
+    }
+
+    /**
+     * @return true if the file name has an archive extension this reader understands
+     */
+    static boolean isArchive(String name) {
+        return kindOf(name) != null;
+    }
+
+    private static Kind kindOf(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".zip") || lower.endsWith(".jar") || lower.endsWith(".war") || lower.endsWith(".ear")) {
+            return Kind.ZIP;
+        }
+        if (lower.endsWith(".tar")) return Kind.TAR;
+        if (lower.endsWith(".tar.gz") || lower.endsWith(".tgz")) return Kind.TAR_GZ;
+        return null;
+    }
+
+    /**
+     * Reads an archive file and hands the statistics of every matching entry to the sink.
+     *
+     * @param sink receives each entry's statistics; returns false to stop reading
+     * @return false if the sink stopped the read
+     * @throws IOException if the archive cannot be read; entries already reported stay valid
+     */
+    boolean read(Path archive, Predicate<CodeCounterCore.FileStat> sink) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(archive), STREAM_BUFFER_SIZE)) {
+            return read(archive.toString(), kindOf(archive.getFileName().toString()), in, sink, 0);
+        }
+    }
+
+    private boolean read(String location, Kind kind, InputStream in, Predicate<CodeCounterCore.FileStat> sink,
+                         int depth) throws IOException {
+        switch (kind) {
+            case ZIP:
+                try (ZipInputStream zip = new ZipInputStream(new EntryStream(in, Long.MAX_VALUE))) {
+                    return readZip(location, zip, sink, depth);
+                }
+            case TAR_GZ:
+                try (InputStream gzip = new GZIPInputStream(new EntryStream(in, Long.MAX_VALUE), STREAM_BUFFER_SIZE)) {
+                    return readTar(location, gzip, sink, depth);
+                }
+            default:
+                return readTar(location, in, sink, depth);
+        }
+    }
+
+    private boolean readZip(String location, ZipInputStream zip, Predicate<CodeCounterCore.FileStat> sink,
+                            int depth) throws IOException {
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            if (entry.isDirectory()) continue;
+            // The zip stream itself ends at the end of the entry
+            if (!entry(location, entry.getName(), new EntryStream(zip, Long.MAX_VALUE), sink, depth)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reads ustar, GNU and pax tar streams: 512-byte headers, each followed by the entry's data
+     * padded to a block boundary. Long names come from GNU {@code L} records or pax {@code path}
+     * records preceding the entry.
+     */
+    private boolean readTar(String location, InputStream in, Predicate<CodeCounterCore.FileStat> sink,
+                            int depth) throws IOException {
+        byte[] header = new byte[TAR_BLOCK];
+        String longName = null;
+        while (true) {
+            int n = in.readNBytes(header, 0, TAR_BLOCK);
+            if (n == 0) break;
+            if (n < TAR_BLOCK) throw new EOFException("Truncated tar header in " + location);
+            if (isZeroBlock(header)) break; // end-of-archive marker
+            if (parseNumber(header, 148, 8) != checksum(header)) throw new IOException("Not a tar archive: " + location);
+
+            long size = parseNumber(header, 124, 12);
+            byte type = header[156];
+            EntryStream data = new EntryStream(in, size);
+            if (type == 'L') {
+                longName = cString(data.readNBytes((int) Math.min(size, MAX_PAX_HEADER)), 0, Integer.MAX_VALUE);
+            } else if (type == 'x') {
+                String path = size <= MAX_PAX_HEADER ? paxPath(data.readAllBytes()) : null;
+                if (path != null) longName = path;
+            } else if (type == '0' || type == 0 || type == '7') {
+                String name = longName != null ? longName : headerName(header);
+                longName = null;
+                if (name.startsWith("./")) name = name.substring(2);
+                if (!entry(location, name, data, sink, depth)) return false;
+            } else if (type != 'g') {
+                longName = null; // directories, links and devices have no content to count
+            }
+            data.skipRemaining();
+            long padding = (TAR_BLOCK - size % TAR_BLOCK) % TAR_BLOCK;
+            in.skipNBytes(padding);
+        }
+        return true;
+    }
+
+    /**
+     * Filters one file entry and either opens it as a nested archive or analyzes it.
+     */
+    private boolean entry(String location, String name, InputStream in, Predicate<CodeCounterCore.FileStat> sink,
+                          int depth) throws IOException {
+        // Like the walker, an excluded directory name anywhere on the path drops the entry
+        String[] segments = name.split("/");
+        for (String segment : segments) {
+            if (!segment.isEmpty() && excluded.matches(segment)) return true;
+        }
+        String fileName = segments[segments.length - 1];
+        String path = location + "!/" + name;
+
+        Kind nested = kindOf(fileName);
+        if (nested != null && depth < MAX_DEPTH) {
+            try {
+                return read(path, nested, in, sink, depth + 1);
+            } catch (IOException e) {
+                // A damaged nested archive is skipped; the outer stream is still positioned by its entry
+                return true;
+            }
+        }
+        if (!included.matches(fileName)) return true;
+        return sink.test(analyzer.analyze(path, in));
+    }
+
+    private static String headerName(byte[] header) {
+        String name = cString(header, 0, 100);
+        boolean ustar = header[257] == 'u' && header[258] == 's' && header[259] == 't'
+                && header[260] == 'a' && header[261] == 'r';
+        if (ustar && header[345] != 0) {
+            name = cString(header, 345, 155) + "/" + name;
+        }
+        return name;
+    }
+
+    /**
+     * @return the {@code path} record of a pax extended header ({@code "<len> <key>=<value>\n"}
+     *         records), or null if it has none
+     */
+    static String paxPath(byte[] data) {
+        int pos = 0;
+        while (pos < data.length) {
+            int space = pos;
+            int length = 0;
+            while (space < data.length && data[space] != ' ') {
+                int digit = data[space++] - '0';
+                if (digit < 0 || digit > 9) return null;
+                length = length * 10 + digit;
+            }
+            int end = pos + length;
+            if (length == 0 || end > data.length) return null;
+            String record = new String(data, space + 1, end - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith("path=")) return record.substring(5);
+            pos = end;
+        }
+        return null;
+    }
+
+    /**
+     * Parses a numeric header field: octal digits (space or NUL terminated), or a big-endian
+     * binary number when the high bit of the first byte is set (GNU extension for large sizes).
+     */
+    static long parseNumber(byte[] header, int offset, int length) {
+        if ((header[offset] & 0x80) != 0) {
+            long value = header[offset] & 0x7F;
+            for (int i = offset + 1; i < offset + length; i++) {
+                value = (value << 8) | (header[i] & 0xFF);
+            }
+            return value;
+        }
+        long value = 0;
+        int i = offset;
+        int end = offset + length;
+        while (i < end && (header[i] == ' ' || header[i] == 0)) i++;
+        for (; i < end && header[i] >= '0' && header[i] <= '7'; i++) {
+            value = (value << 3) | (header[i] - '0');
+        }
+        return value;
+    }
+
+    /** Sum of the header bytes, with the checksum field counted as spaces */
+    private static long checksum(byte[] header) {
+        long sum = 0;
+        for (int i = 0; i < TAR_BLOCK; i++) {
+            sum += i >= 148 && i < 156 ? ' ' : header[i] & 0xFF;
+        }
+        return sum;
+    }
+
+    private static boolean isZeroBlock(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) return false;
+        }
+        return true;
+    }
+
+    private static String cString(byte[] data, int offset, int maxLength) {
+        int end = offset;
+        int limit = (int) Math.min(data.length, (long) offset + maxLength);
+        while (end < limit && data[end] != 0) end++;
+        return new String(data, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * View of the next {@code limit} bytes of a stream that leaves the stream open on close,
+     * so entry readers and nested archive readers cannot close the archive underneath.
+     */
+    private static final class EntryStream extends FilterInputStream {
+        private long remaining;
+
+        EntryStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) return -1;
+            int b = in.read();
+            if (b >= 0) remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) return -1;
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) remaining -= n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /** Skips to the end of the entry */
+        void skipRemaining() throws IOException {
+            in.skipNBytes(remaining);
+            remaining = 0;
+        }
+
+        @Override
+        public void close() {
+            // The underlying archive stream belongs to the caller
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of reusable direct read buffers shared by all analyzer threads.
+ *
+ * A pool (rather than a ThreadLocal) keeps reuse working when files are analyzed on short-lived
+ * or virtual threads. Buffers beyond {@link #MAX_POOLED} are simply dropped and left to the GC.
+ */
+final class BufferPool {
+
+    /** Size of each pooled read buffer */
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Upper bound on idle buffers kept around between files */
+    private static final int MAX_POOLED = Math.max(16, Runtime.getRuntime().availableProcessors() * 4);
+
+    private static final ConcurrentLinkedDeque<ByteBuffer> POOL = new ConcurrentLinkedDeque<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private BufferPool() {
+    }
+
+    /**
+     * @return a cleared direct buffer of {@link #BUFFER_SIZE} bytes
+     */
+    static ByteBuffer acquire() {
+        ByteBuffer buf = POOL.pollFirst();
+        if (buf == null) return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        POOLED.decrementAndGet();
+        buf.clear();
+        return buf;
+    }
+
+    /**
+     * Returns a buffer obtained from {@link #acquire()}.
+     */
+    static void release(ByteBuffer buf) {
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offerFirst(buf);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+}
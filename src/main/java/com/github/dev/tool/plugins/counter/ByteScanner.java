@@ -0,0 +1,46 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Bulk byte-search primitives used by {@link LineClassifier} to skip over long runs of bytes
+ * that cannot change a line's classification. All ranges are absolute buffer indexes
+ * {@code [from, to)}; the buffer position and limit are never modified.
+ *
+ * The only implementation is the SIMD {@code VectorByteScanner} in {@code src/main/vector}, built
+ * by the {@code vector} profile; without it the classifier uses
+ * its plain byte-at-a-time loop, which is faster than running these searches with scalar code.
+ */
+interface ByteScanner {
+
+    /**
+     * @return index of the first {@code '\n'} or {@code '\r'}, or {@code to} if there is none
+     */
+    int findLineEnd(ByteBuffer buf, int from, int to);
+
+    /**
+     * @return number of {@code '\n'} and {@code '\r'} bytes in the range
+     */
+    int countLineEnds(ByteBuffer buf, int from, int to);
+
+    /**
+     * @return index of the first byte that is not whitespace ({@code > 0x20}) or is a line
+     *         terminator, or {@code to} if there is none
+     */
+    int skipBlanks(ByteBuffer buf, int from, int to);
+
+    /**
+     * @return index of the last byte {@code > 0x20}, or -1 if the range is all whitespace
+     */
+    int lastNonBlank(ByteBuffer buf, int from, int to);
+
+    /**
+     * @return true if a case-insensitive "todo" lies completely inside the range
+     */
+    boolean containsTodo(ByteBuffer buf, int from, int to);
+
+    /**
+     * @return number of remaining bytes below which the bulk path is not worth entering
+     */
+    int minRun();
+}
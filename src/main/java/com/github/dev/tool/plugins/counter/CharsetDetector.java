@@ -0,0 +1,141 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cheap encoding checks run while a file is classified on raw bytes.
+ *
+ * Byte classification is exact for ASCII, UTF-8 and single-byte charsets such as Latin-1: in all
+ * of them every byte below 0x80 is the ASCII character it looks like. Double-byte legacy charsets
+ * (GBK, Big5, Shift-JIS) and UTF-16 break that rule and have to be decoded. A file is therefore
+ * classified on bytes while being validated as UTF-8; only when validation fails (or a UTF-16 BOM
+ * is found) is it re-read through a decoder.
+ */
+final class CharsetDetector {
+
+    /** Fallback list used until the user configures one */
+    static final String DEFAULT_FALLBACK_CHARSETS = "GBK, Shift_JIS";
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    private CharsetDetector() {
+    }
+
+    /**
+     * @return the charset announced by a byte order mark at the buffer position, or null if there is none
+     */
+    static Charset detectBom(ByteBuffer buf) {
+        int p = buf.position();
+        int n = buf.remaining();
+        if (n >= 3 && (buf.get(p) & 0xFF) == 0xEF && (buf.get(p + 1) & 0xFF) == 0xBB && (buf.get(p + 2) & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (n >= 2 && (buf.get(p) & 0xFF) == 0xFF && (buf.get(p + 1) & 0xFF) == 0xFE) {
+            return StandardCharsets.UTF_16LE;
+        }
+        if (n >= 2 && (buf.get(p) & 0xFF) == 0xFE && (buf.get(p + 1) & 0xFF) == 0xFF) {
+            return StandardCharsets.UTF_16BE;
+        }
+        return null;
+    }
+
+    /**
+     * @return length in bytes of the byte order mark of a charset returned by {@link #detectBom}
+     */
+    static int bomLength(Charset bom) {
+        return StandardCharsets.UTF_8.equals(bom) ? 3 : 2;
+    }
+
+    /**
+     * Parses a comma or whitespace separated list of charset names. Names this JVM does not
+     * support are skipped.
+     */
+    static List<Charset> parseCharsets(String names) {
+        List<Charset> charsets = new ArrayList<>();
+        if (names == null) return charsets;
+        for (String name : names.split("[,;\\s]+")) {
+            if (name.isEmpty()) continue;
+            try {
+                Charset charset = Charset.forName(name);
+                if (!charsets.contains(charset)) charsets.add(charset);
+            } catch (IllegalArgumentException ignored) {}
+        }
+        return charsets;
+    }
+
+    /**
+     * Streaming UTF-8 validator with the same strictness as the JDK decoder (no overlong forms,
+     * surrogates or code points above U+10FFFF). Runs of ASCII are skipped eight bytes at a time,
+     * so pure-ASCII input costs one masked word test per eight bytes.
+     */
+    static final class Utf8Validator {
+        private int pending;                // continuation bytes still expected
+        private int lower = 0x80;           // allowed range of the next continuation byte
+        private int upper = 0xBF;
+        private boolean valid = true;
+        private boolean ascii = true;
+
+        /**
+         * Validates {@code buf} from its position to its limit. The position is not modified.
+         */
+        void update(ByteBuffer buf) {
+            int i = buf.position();
+            int limit = buf.limit();
+            while (valid && i < limit) {
+                if (pending == 0) {
+                    while (i + 8 <= limit && (buf.getLong(i) & HIGH_BITS) == 0) {
+                        i += 8;
+                    }
+                    if (i == limit) break;
+                }
+                int b = buf.get(i++) & 0xFF;
+                if (pending > 0) {
+                    if (b < lower || b > upper) valid = false;
+                    lower = 0x80;
+                    upper = 0xBF;
+                    pending--;
+                } else if (b >= 0x80) {
+                    ascii = false;
+                    if (b >= 0xC2 && b <= 0xDF) {
+                        pending = 1;
+                    } else if (b >= 0xE0 && b <= 0xEF) {
+                        pending = 2;
+                        if (b == 0xE0) lower = 0xA0;
+                        if (b == 0xED) upper = 0x9F;
+                    } else if (b >= 0xF0 && b <= 0xF4) {
+                        pending = 3;
+                        if (b == 0xF0) lower = 0x90;
+                        if (b == 0xF4) upper = 0x8F;
+                    } else {
+                        valid = false;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return false once an invalid sequence has been seen
+         */
+        boolean isValid() {
+            return valid;
+        }
+
+        /**
+         * @return true if the input so far, including a complete last sequence, is valid UTF-8
+         */
+        boolean isValidAtEnd() {
+            return valid && pending == 0;
+        }
+
+        /**
+         * @return true if no byte above 0x7F has been seen
+         */
+        boolean isAscii() {
+            return ascii;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.github.dev.tool.plugins.counter;
+
+import javax.swing.JPanel;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the chart panels of the result window. Obtain it from {@link ReportServices#charts()},
+ * which loads the implementation (and with it XChart) on first use only. Series are given in
+ * display order, as name to values.
+ */
+interface ChartService {
+
+    /**
+     * @param rotateLabels whether the category labels are drawn at an angle (for long names)
+     */
+    JPanel barChart(String title, String xAxisTitle, String yAxisTitle, boolean rotateLabels,
+                    List<String> categories, Map<String, List<Number>> series);
+
+    JPanel pieChart(String title, Map<String, Number> slices);
+
+    JPanel timeChart(String title, String xAxisTitle, String yAxisTitle,
+                     List<Date> times, Map<String, List<Number>> series);
+
+    /**
+     * Loads and initializes the chart library by building a chart without showing it.
+     */
+    void warmUp();
+}
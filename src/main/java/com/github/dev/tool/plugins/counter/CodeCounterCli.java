@@ -0,0 +1,416 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Headless entry point: counts lines with {@link CodeCounterCore} and writes the result to stdout
+ * as a table, CSV or JSON.
+ *
+ * Only the core and its collaborators are loaded; nothing here may reference Swing, AWT, XChart,
+ * POI or PDFBox, so the JVM starts without a display and without the GUI's class loading cost.
+ * Extensions and build directories come from the same {@link FileTypeTemplate}s as the GUI, and
+ * the VCS and IDE directories are excluded by default, as they are checked by default in the GUI.
+ *
+ * Run with {@code java -cp CodeCounter.jar com.github.dev.tool.plugins.counter.CodeCounterCli --help}.
+ */
+public final class CodeCounterCli {
+
+    /** Exit codes */
+    static final int EXIT_OK = 0, EXIT_ERROR = 1, EXIT_USAGE = 2;
+
+    private static final String DEFAULT_TEMPLATE = "Java Web";
+
+    enum Format { TABLE, CSV, JSON }
+
+    /** Parsed command line */
+    static final class Options {
+        final List<Path> roots = new ArrayList<>();
+        String template = DEFAULT_TEMPLATE;
+        List<String> extensions;
+        final List<String> excludes = new ArrayList<>();
+        boolean defaultExcludes = true;
+        boolean includeBlank = false;
+        boolean includeHeader = true;
+        boolean archives, gitIndex, ignoreFiles;
+        Format format = Format.TABLE;
+        boolean help, listTemplates;
+
+        /**
+         * @return the normalized extensions given with --ext, or else those of the template
+         * @throws IllegalArgumentException if the template is unknown or no extension remains
+         */
+        List<String> extensions() {
+            List<String> extensions = new ArrayList<>();
+            for (String ext : this.extensions != null ? this.extensions : template().extensions) {
+                String normalized = NameMatcher.normalizeExtension(ext);
+                if (normalized != null) extensions.add(normalized);
+            }
+            if (extensions.isEmpty()) {
+                throw new IllegalArgumentException("no file extensions selected; use --ext or another --template");
+            }
+            return extensions;
+        }
+
+        /**
+         * @return the VCS, IDE and template build directories unless turned off, plus --exclude
+         * @throws IllegalArgumentException if the template is unknown
+         */
+        List<String> excludes() {
+            List<String> all = new ArrayList<>();
+            if (defaultExcludes) {
+                all.addAll(FileTypeTemplate.COMMON_VCS_DIRS);
+                all.addAll(FileTypeTemplate.COMMON_IDE_DIRS);
+                all.addAll(template().buildExcludeDirs);
+            }
+            all.addAll(excludes);
+            return all;
+        }
+
+        private FileTypeTemplate template() {
+            for (FileTypeTemplate t : FileTypeTemplate.TEMPLATES.values()) {
+                if (t.name.equalsIgnoreCase(template)) return t;
+            }
+            throw new IllegalArgumentException("unknown template '" + template + "' (see --list-templates)");
+        }
+    }
+
+    private CodeCounterCli() {
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs one count.
+     *
+     * @param out receives the result, UTF-8 encoded
+     * @param err receives usage and error messages
+     * @return the process exit code
+     */
+    static int run(String[] args, OutputStream out, PrintStream err) {
+        Options options;
+        try {
+            options = parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println("codecounter: " + e.getMessage());
+            err.println("Try --help for usage.");
+            return EXIT_USAGE;
+        }
+
+        PrintWriter pw = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+        if (options.help) {
+            printUsage(pw);
+            pw.flush();
+            return EXIT_OK;
+        }
+        if (options.listTemplates) {
+            for (FileTypeTemplate t : FileTypeTemplate.TEMPLATES.values()) {
+                pw.println(t.name + ": " + String.join(" ", t.extensions).trim());
+            }
+            pw.flush();
+            return EXIT_OK;
+        }
+
+        List<String> extensions, excludes;
+        try {
+            extensions = options.extensions();
+            excludes = options.excludes();
+        } catch (IllegalArgumentException e) {
+            err.println("codecounter: " + e.getMessage());
+            return EXIT_USAGE;
+        }
+
+        if (options.roots.isEmpty()) options.roots.add(Paths.get("."));
+        List<Path> roots = new ArrayList<>();
+        for (Path root : options.roots) {
+            if (!Files.exists(root)) {
+                err.println("codecounter: no such file or directory: " + root);
+                return EXIT_ERROR;
+            }
+            roots.add(root);
+        }
+        roots = CodeCounterCore.distinctRoots(roots);
+
+        CodeCounterCore core = new CodeCounterCore();
+        core.setScanArchives(options.archives);
+        core.setUseGitIndex(options.gitIndex);
+        core.setUseIgnoreFiles(options.ignoreFiles);
+        List<CodeCounterCore.FileStat> stats = core.countLinesWithDetail(roots, extensions,
+                options.includeBlank, options.includeHeader, excludes);
+        // Results arrive in completion order; sort so that repeated runs produce identical output
+        stats.sort(Comparator.comparing((CodeCounterCore.FileStat s) -> s.path));
+
+        write(pw, options.format, stats, roots.size() > 1);
+        pw.flush();
+        return pw.checkError() ? EXIT_ERROR : EXIT_OK;
+    }
+
+    /**
+     * Writes file statistics sorted by path.
+     *
+     * @param byRoot whether to add a total per scan root
+     */
+    static void write(PrintWriter pw, Format format, List<CodeCounterCore.FileStat> stats, boolean byRoot) {
+        switch (format) {
+            case CSV:
+                writeCsv(pw, stats);
+                break;
+            case JSON:
+                writeJson(pw, stats, byRoot);
+                break;
+            default:
+                writeTable(pw, stats, byRoot);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException on an unknown option or a missing or invalid value
+     */
+    static Options parse(String[] args) {
+        Options o = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            String value = null;
+            int eq = arg.indexOf('=');
+            if (arg.startsWith("--") && eq > 0) {
+                value = arg.substring(eq + 1);
+                arg = arg.substring(0, eq);
+            }
+            switch (arg) {
+                case "-h": case "--help": o.help = flag(arg, value); break;
+                case "--list-templates": o.listTemplates = flag(arg, value); break;
+                case "-t": case "--template":
+                    o.template = value != null ? value : next(args, ++i, arg);
+                    break;
+                case "-e": case "--ext":
+                    if (o.extensions == null) o.extensions = new ArrayList<>();
+                    o.extensions.addAll(split(value != null ? value : next(args, ++i, arg)));
+                    break;
+                case "-x": case "--exclude":
+                    o.excludes.addAll(split(value != null ? value : next(args, ++i, arg)));
+                    break;
+                case "--no-default-excludes": o.defaultExcludes = !flag(arg, value); break;
+                case "--include-blank": o.includeBlank = flag(arg, value); break;
+                case "--no-include-blank": o.includeBlank = !flag(arg, value); break;
+                case "--include-header": o.includeHeader = flag(arg, value); break;
+                case "--no-include-header": o.includeHeader = !flag(arg, value); break;
+                case "--archives": o.archives = flag(arg, value); break;
+                case "--git-index": o.gitIndex = flag(arg, value); break;
+                case "--ignore-files": o.ignoreFiles = flag(arg, value); break;
+                case "-f": case "--format":
+                    String name = value != null ? value : next(args, ++i, arg);
+                    try {
+                        o.format = Format.valueOf(name.toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("unknown format '" + name + "' (table, csv or json)");
+                    }
+                    break;
+                case "--":
+                    while (++i < args.length) o.roots.add(Paths.get(args[i]));
+                    break;
+                default:
+                    if (arg.startsWith("-") && arg.length() > 1) {
+                        throw new IllegalArgumentException("unknown option '" + arg + "'");
+                    }
+                    o.roots.add(Paths.get(args[i]));
+            }
+        }
+        return o;
+    }
+
+    /**
+     * @return true, for an option that is a flag
+     * @throws IllegalArgumentException if the flag was given a value, which would otherwise be
+     *         dropped silently ({@code --include-blank=false} turning blank lines on)
+     */
+    private static boolean flag(String option, String value) {
+        if (value != null) throw new IllegalArgumentException("option '" + option + "' takes no value");
+        return true;
+    }
+
+    private static String next(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException("option '" + option + "' needs a value");
+        return args[i];
+    }
+
+    /** Splits a list given like the GUI's custom extension field: comma, semicolon or space separated */
+    private static List<String> split(String list) {
+        List<String> items = new ArrayList<>();
+        for (String item : list.split("[,;\\s]+")) {
+            if (!item.isEmpty()) items.add(item);
+        }
+        return items;
+    }
+
+    private static void printUsage(PrintWriter pw) {
+        pw.println("Usage: codecounter [options] [root...]");
+        pw.println();
+        pw.println("Counts code, comment, blank and TODO lines of the files under each root");
+        pw.println("(default: the current directory) and writes them to stdout.");
+        pw.println();
+        pw.println("  -t, --template NAME      file type template (default \"" + DEFAULT_TEMPLATE + "\")");
+        pw.println("      --list-templates     list the templates and their extensions");
+        pw.println("  -e, --ext LIST           extensions to count instead of the template's (.java,.xml)");
+        pw.println("  -x, --exclude LIST       more file or directory names to exclude (globs allowed)");
+        pw.println("      --no-default-excludes  do not exclude VCS, IDE and the template's build directories");
+        pw.println("      --include-blank      count blank lines in the line total (default off)");
+        pw.println("      --no-include-header  leave comment lines out of the line total (default on)");
+        pw.println("      --archives           count the entries of zip, jar, war and tar(.gz) files");
+        pw.println("      --git-index          only count files tracked in .git/index");
+        pw.println("      --ignore-files       honour .gitignore and .ignore files");
+        pw.println("  -f, --format FORMAT      table (default), csv or json");
+        pw.println("  -h, --help               show this help");
+    }
+
+    private static void writeTable(PrintWriter pw, List<CodeCounterCore.FileStat> stats, boolean byRoot) {
+        String[] header = {"Code", "Comment", "Blank", "TODO", "Lines", "Type", "Path"};
+        List<String[]> rows = new ArrayList<>();
+        for (CodeCounterCore.FileStat s : stats) {
+            rows.add(tableRow(s, s.type, s.path));
+        }
+        List<String[]> footer = new ArrayList<>();
+        if (byRoot) {
+            for (CodeCounterCore.FileStat t : CodeCounterCore.totalsByRoot(stats).values()) {
+                footer.add(tableRow(t, "", "Total " + t.root));
+            }
+        }
+        footer.add(tableRow(total(stats), "", "Total (" + stats.size() + " files)"));
+
+        int[] widths = new int[header.length];
+        for (int c = 0; c < header.length; c++) {
+            widths[c] = header[c].length();
+        }
+        for (List<String[]> part : List.of(rows, footer)) {
+            for (String[] row : part) {
+                for (int c = 0; c < row.length - 1; c++) {
+                    widths[c] = Math.max(widths[c], row[c].length());
+                }
+            }
+        }
+        printTableRow(pw, header, widths);
+        for (String[] row : rows) {
+            printTableRow(pw, row, widths);
+        }
+        pw.println();
+        for (String[] row : footer) {
+            printTableRow(pw, row, widths);
+        }
+    }
+
+    private static String[] tableRow(CodeCounterCore.FileStat s, String type, String path) {
+        return new String[] {
+                String.valueOf(s.codeLines), String.valueOf(s.commentLines), String.valueOf(s.blankLines),
+                String.valueOf(s.todoLines), String.valueOf(s.lines), type == null ? "" : type, path};
+    }
+
+    /** Numbers right-aligned, type left-aligned, path last and unpadded */
+    private static void printTableRow(PrintWriter pw, String[] row, int[] widths) {
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < row.length; c++) {
+            if (c > 0) sb.append("  ");
+            int pad = widths[c] - row[c].length();
+            boolean number = c < 5;
+            if (number) sb.append(" ".repeat(Math.max(0, pad)));
+            sb.append(row[c]);
+            if (!number && c < row.length - 1) sb.append(" ".repeat(Math.max(0, pad)));
+        }
+        pw.println(sb);
+    }
+
+    private static void writeCsv(PrintWriter pw, List<CodeCounterCore.FileStat> stats) {
+        pw.println("path,type,root,lines,code,comment,blank,todo,charset");
+        for (CodeCounterCore.FileStat s : stats) {
+            pw.println(String.join(",",
+                    csvQuote(s.path), csvQuote(s.type), csvQuote(s.root),
+                    String.valueOf(s.lines), String.valueOf(s.codeLines), String.valueOf(s.commentLines),
+                    String.valueOf(s.blankLines), String.valueOf(s.todoLines), csvQuote(s.charset)));
+        }
+    }
+
+    /**
+     * Quote a CSV field: wrap in double-quotes and escape any internal double-quotes.
+     */
+    private static String csvQuote(String value) {
+        if (value == null) return "\"\"";
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static void writeJson(PrintWriter pw, List<CodeCounterCore.FileStat> stats, boolean byRoot) {
+        pw.println("{");
+        pw.println("  \"files\": [");
+        for (int i = 0; i < stats.size(); i++) {
+            CodeCounterCore.FileStat s = stats.get(i);
+            pw.print("    {\"path\": " + jsonString(s.path)
+                    + ", \"type\": " + jsonString(s.type)
+                    + ", \"root\": " + jsonString(s.root)
+                    + ", \"charset\": " + jsonString(s.charset)
+                    + ", " + jsonCounts(s) + "}");
+            pw.println(i < stats.size() - 1 ? "," : "");
+        }
+        pw.println("  ],");
+        if (byRoot) {
+            pw.println("  \"roots\": [");
+            List<CodeCounterCore.FileStat> totals = new ArrayList<>(CodeCounterCore.totalsByRoot(stats).values());
+            for (int i = 0; i < totals.size(); i++) {
+                CodeCounterCore.FileStat t = totals.get(i);
+                pw.print("    {\"root\": " + jsonString(t.root) + ", " + jsonCounts(t) + "}");
+                pw.println(i < totals.size() - 1 ? "," : "");
+            }
+            pw.println("  ],");
+        }
+        pw.println("  \"total\": {\"files\": " + stats.size() + ", " + jsonCounts(total(stats)) + "}");
+        pw.println("}");
+    }
+
+    private static String jsonCounts(CodeCounterCore.FileStat s) {
+        return "\"lines\": " + s.lines + ", \"code\": " + s.codeLines + ", \"comment\": " + s.commentLines
+                + ", \"blank\": " + s.blankLines + ", \"todo\": " + s.todoLines;
+    }
+
+    static String jsonString(String value) {
+        if (value == null) return "null";
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static CodeCounterCore.FileStat total(List<CodeCounterCore.FileStat> stats) {
+        CodeCounterCore.FileStat total = new CodeCounterCore.FileStat("", null, 0, 0, 0, 0);
+        for (CodeCounterCore.FileStat t : CodeCounterCore.totalsByRoot(stats).values()) {
+            total.codeLines += t.codeLines;
+            total.commentLines += t.commentLines;
+            total.blankLines += t.blankLines;
+            total.todoLines += t.todoLines;
+            total.lines += t.lines;
+        }
+        return total;
+    }
+}
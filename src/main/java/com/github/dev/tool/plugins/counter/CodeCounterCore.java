@@ -1,11 +1,36 @@
 package com.github.dev.tool.plugins.counter;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Core logic for counting lines of code in files.
@@ -13,9 +38,88 @@ import java.util.List;
  * New features added:
  * - Per-file breakdown: code lines, comment lines, blank lines, import lines, TODO lines
  * - Ability to exclude directories (e.g. target, build, .git) when walking the tree
+ * - Parallel fork-join directory walk that prunes excluded directories before listing them
+ * - Streaming scan: results are published through a Flow.Publisher while the walk is still running
+ * - Selectable execution mode: fork-join for local disks, virtual threads for high-latency mounts
+ * - Byte-level line classification on pooled or memory-mapped buffers (no per-line objects)
+ * - Extension and exclude lists compiled once per scan into matchers (with glob support)
+ * - Charset detection: BOM sniffing, UTF-8 validation with an ASCII fast path, configurable fallbacks
+ * - Optional persistent index: files whose size, mtime and file key are unchanged are not re-read
+ * - Optional content cache: byte-identical files (same size and 64-bit hash) are classified once
+ * - Live watch mode: a WatchService re-analyzes changed files after a scan
+ * - Optional git index enumeration: tracked files are read from .git/index instead of walking the tree
+ * - Optional .gitignore/.ignore support: ignored subtrees are pruned during the walk
+ * - Commit-range deltas: per-file line changes between two commits, read from the git object store
+ * - History trend: per-commit totals with each blob classified and each tree summed once
+ * - Archive scanning: entries of zip/jar/war/tar(.gz) files are streamed and reported as archive!/entry
+ * - Multi-root scans: several roots share one bounded analyzer pool, served round-robin, with totals per root
  */
 public class CodeCounterCore {
 
+    /**
+     * How file analysis is scheduled.
+     */
+    public enum ExecutionMode {
+        /** One analyzer per CPU core on a fork-join pool; best when files are local and cached. */
+        FORK_JOIN,
+        /**
+         * One virtual thread per file, capped by the max-open-files limit; best when reads are
+         * latency-bound (NFS, SMB). On JVMs without virtual threads a platform thread is used per
+         * open file instead.
+         */
+        VIRTUAL_THREADS
+    }
+
+    /** Files at least this large are memory-mapped instead of read through pooled buffers */
+    static final long MAP_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Whether large files are memory-mapped at all. Not on Windows: a mapping is only released
+     * when its buffer is garbage collected, and until then the file cannot be deleted, renamed or
+     * overwritten, which breaks editors and builds working on the scanned tree. There every file
+     * is read through the pooled buffers. {@code -Dcodecounter.mmap=false} does the same elsewhere.
+     */
+    static final boolean MAP_LARGE_FILES = Boolean.parseBoolean(System.getProperty("codecounter.mmap",
+            String.valueOf(!System.getProperty("os.name", "").startsWith("Windows"))));
+
+    /** Largest single mapping; bigger files are mapped and classified in consecutive segments */
+    private static final long MAX_MAP_SIZE = 1L << 30;
+
+    /**
+     * Archive entries up to this size are read into memory and classified like files; larger
+     * ones are classified in one streaming pass
+     */
+    static final int MAX_BUFFERED_ENTRY = 16 * 1024 * 1024;
+
+    /** Archive entries up to this size are buffered without drawing on {@link #ENTRY_BUFFER_BUDGET} */
+    static final int SMALL_ENTRY = 256 * 1024;
+
+    /**
+     * Bytes that all scans of the JVM together may hold in buffered archive entries larger than
+     * {@link #SMALL_ENTRY}. Each analyzer also holds at most one small entry, so the memory
+     * buffered entries take is bounded by this plus one small entry per analyzer.
+     */
+    static final int ENTRY_BUFFER_BUDGET = 4 * MAX_BUFFERED_ENTRY;
+
+    static final Semaphore ENTRY_BUFFERS = new Semaphore(ENTRY_BUFFER_BUDGET);
+
+    /** Default cap on files read concurrently in {@link ExecutionMode#VIRTUAL_THREADS} mode */
+    public static final int DEFAULT_MAX_OPEN_FILES = 256;
+
+    private volatile ExecutionMode executionMode = ExecutionMode.FORK_JOIN;
+    private volatile int maxOpenFiles = DEFAULT_MAX_OPEN_FILES;
+    private volatile ScanMetrics lastScanMetrics = new ScanMetrics();
+    private volatile ScanIndex scanIndex;
+    private volatile ContentCache contentCache;
+    private volatile boolean useGitIndex;
+    private volatile boolean useIgnoreFiles;
+    private volatile boolean scanArchives;
+    private volatile List<Charset> fallbackCharsets =
+            CharsetDetector.parseCharsets(CharsetDetector.DEFAULT_FALLBACK_CHARSETS);
+
+    /** Chars decoded per step for files that are not UTF-8 */
+    private static final int DECODE_BUFFER_SIZE = 8 * 1024;
+
     /**
      * Represents file statistics including path, type, and detailed line counts.
      * Supported line types: Code (including imports), Comment, Blank, TODO
@@ -31,6 +135,9 @@ public class CodeCounterCore {
         public long blankLines;     // Blank lines
         public long todoLines;      // Lines containing TODO
 
+        public String charset;      // Encoding the file was read with, null if it could not be read
+        public String root;         // Scan root the file was found under, null outside a scan
+
         /**
          * Constructs a FileStat with detailed counts.
          *
@@ -64,28 +171,177 @@ public class CodeCounterCore {
     }
 
     /**
-     * Checks if a file matches the selected extensions.
-     *
-     * @param path the file path
-     * @param extensions the list of extensions to match (e.g. ".java", "*.java", "java")
-     * @return true if the file matches one of the extensions, false otherwise
-     */
-    private boolean matchExtension(Path path, List<String> extensions) {
-        String name = path.getFileName().toString().toLowerCase();
-        for (String ext : extensions) {
-            String normalized = ext.trim().toLowerCase();
-            // Normalize: *.java → .java, *java → java → .java
-            if (normalized.startsWith("*.")) {
-                normalized = normalized.substring(1);
-            } else if (normalized.startsWith("*")) {
-                normalized = normalized.substring(1);
-            }
-            if (!normalized.startsWith(".")) {
-                normalized = "." + normalized;
-            }
-            if (name.endsWith(normalized)) return true;
+     * Line count changes of one file between two commits. The inherited counts are signed
+     * differences (new minus old); {@code path} is relative to the repository root.
+     */
+    public static class FileDelta extends FileStat {
+        public enum Status { ADDED, MODIFIED, DELETED }
+
+        public final Status status;
+
+        public FileDelta(String path, String type, Status status, FileStat before, FileStat after) {
+            super(path, type,
+                    count(after, true) - count(before, true),
+                    count(after, false) - count(before, false),
+                    (after == null ? 0 : after.blankLines) - (before == null ? 0 : before.blankLines),
+                    (after == null ? 0 : after.todoLines) - (before == null ? 0 : before.todoLines));
+            this.status = status;
+            this.charset = after != null ? after.charset : before != null ? before.charset : null;
+        }
+
+        private static long count(FileStat stat, boolean code) {
+            return stat == null ? 0 : code ? stat.codeLines : stat.commentLines;
         }
-        return false;
+    }
+
+    /**
+     * Line totals of one commit in a history.
+     */
+    public static class HistoryPoint {
+        public final String commitId;   // Full hex id
+        public final String label;      // Tag name, or abbreviated id
+        public final long time;         // Committer time, milliseconds since the epoch
+        public final long codeLines, commentLines, blankLines, todoLines;
+        public final long files;
+
+        public HistoryPoint(String commitId, String label, long time,
+                            long codeLines, long commentLines, long blankLines, long todoLines, long files) {
+            this.commitId = commitId;
+            this.label = label;
+            this.time = time;
+            this.codeLines = codeLines;
+            this.commentLines = commentLines;
+            this.blankLines = blankLines;
+            this.todoLines = todoLines;
+            this.files = files;
+        }
+    }
+
+    public ExecutionMode getExecutionMode() {
+        return executionMode;
+    }
+
+    /**
+     * Selects how subsequent scans schedule file analysis.
+     */
+    public void setExecutionMode(ExecutionMode executionMode) {
+        this.executionMode = executionMode == null ? ExecutionMode.FORK_JOIN : executionMode;
+    }
+
+    public int getMaxOpenFiles() {
+        return maxOpenFiles;
+    }
+
+    /**
+     * Caps how many files are open at once in {@link ExecutionMode#VIRTUAL_THREADS} mode.
+     */
+    public void setMaxOpenFiles(int maxOpenFiles) {
+        this.maxOpenFiles = Math.max(1, maxOpenFiles);
+    }
+
+    public ScanIndex getScanIndex() {
+        return scanIndex;
+    }
+
+    /**
+     * Sets the persistent index used to skip unchanged files, or null to read every file.
+     */
+    public void setScanIndex(ScanIndex scanIndex) {
+        this.scanIndex = scanIndex;
+    }
+
+    public ContentCache getContentCache() {
+        return contentCache;
+    }
+
+    /**
+     * Sets the cache used to classify byte-identical files only once, or null to disable it.
+     * Keep the same instance across scans to reuse results between them.
+     */
+    public void setContentCache(ContentCache contentCache) {
+        this.contentCache = contentCache;
+    }
+
+    public boolean isUseGitIndex() {
+        return useGitIndex;
+    }
+
+    /**
+     * When enabled, scans of a git work tree enumerate the files tracked in {@code .git/index}
+     * instead of walking the directories, so untracked files (build output, scratch files) are
+     * not counted. Roots outside a git work tree are still walked.
+     */
+    public void setUseGitIndex(boolean useGitIndex) {
+        this.useGitIndex = useGitIndex;
+    }
+
+    public boolean isUseIgnoreFiles() {
+        return useIgnoreFiles;
+    }
+
+    /**
+     * When enabled, walks skip files and directories ignored by {@code .gitignore} and
+     * {@code .ignore} files (including those of the enclosing work tree above the scan root and
+     * {@code .git/info/exclude}); ignored directories are never listed.
+     */
+    public void setUseIgnoreFiles(boolean useIgnoreFiles) {
+        this.useIgnoreFiles = useIgnoreFiles;
+    }
+
+    public boolean isScanArchives() {
+        return scanArchives;
+    }
+
+    /**
+     * When enabled, zip, jar, war, ear, tar and tar.gz files found in the tree are read without
+     * extracting them and their matching entries are reported as {@code archive!/entry}.
+     * An archive given as the scan root is always read this way.
+     */
+    public void setScanArchives(boolean scanArchives) {
+        this.scanArchives = scanArchives;
+    }
+
+    public List<Charset> getFallbackCharsets() {
+        return fallbackCharsets;
+    }
+
+    /**
+     * Sets the charsets tried, in order, for files that are not valid UTF-8 and have no byte order
+     * mark. Files none of them can decode are read as ISO-8859-1.
+     */
+    public void setFallbackCharsets(List<Charset> charsets) {
+        List<Charset> list = charsets == null ? Collections.emptyList() : List.copyOf(charsets);
+        ContentCache cache = contentCache;
+        if (cache != null && !list.equals(fallbackCharsets)) cache.clear(); // cached counts depend on it
+        this.fallbackCharsets = list;
+    }
+
+    /**
+     * Parses a user-entered list of charset names (comma or space separated), skipping unknown names.
+     */
+    public static List<Charset> parseCharsets(String names) {
+        return CharsetDetector.parseCharsets(names);
+    }
+
+    /**
+     * @return the fallback charset list used when none is configured
+     */
+    public static String getDefaultFallbackCharsets() {
+        return CharsetDetector.DEFAULT_FALLBACK_CHARSETS;
+    }
+
+    /**
+     * @return true if {@link ExecutionMode#VIRTUAL_THREADS} runs on real virtual threads in this JVM
+     */
+    public static boolean isVirtualThreadsSupported() {
+        return ScanPipeline.virtualThreadsAvailable();
+    }
+
+    /**
+     * Throughput counters of the most recently started scan (live while it runs).
+     */
+    public ScanMetrics getLastScanMetrics() {
+        return lastScanMetrics;
     }
 
     /**
@@ -95,24 +351,60 @@ public class CodeCounterCore {
      * @return the file extension, or an empty string if none exists
      */
     private String getExtension(Path path) {
-        String name = path.toString();
+        Path fileName = path.getFileName();
+        return fileName == null ? "" : getExtension(fileName.toString());
+    }
+
+    /**
+     * Retrieves the file extension of a path that is not a file system path, such as an
+     * {@code archive!/entry} or a git tree path, without parsing it as a {@link Path}: their names
+     * may hold characters the file system rejects.
+     *
+     * @param path a path whose last name follows the last {@code '/'}
+     * @return the file extension, or an empty string if none exists
+     */
+    static String getExtension(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
         int idx = name.lastIndexOf('.');
         return idx >= 0 ? name.substring(idx) : "";
     }
 
-    // Helper to determine whether a path should be excluded based on directory names
-    private boolean isExcluded(Path path, List<String> excludeDirs) {
-        // Always exclude Subversion metadata directories
-        if (path == null) return false;
-        List<String> excludes = excludeDirs == null ? Collections.emptyList() : excludeDirs;
-        for (Path part : path) {
-            String seg = part.toString();
-            if (seg.equalsIgnoreCase(".svn")) return true; // always ignore .svn
-            for (String ex : excludes) {
-                if (seg.equalsIgnoreCase(ex)) return true;
+    /**
+     * Compiles the exclude list of a scan; {@code .svn} is always excluded.
+     *
+     * @param excludeDirs file or directory names and name globs such as {@code *.iml}
+     */
+    static NameMatcher compileExcludes(List<String> excludeDirs) {
+        List<String> names = new ArrayList<>(excludeDirs == null ? Collections.emptyList() : excludeDirs);
+        names.add(".svn"); // always ignore .svn
+        return NameMatcher.forNames(names);
+    }
+
+    /**
+     * Makes the roots of a scan absolute and normalized, and drops repeated roots and roots that
+     * lie inside another root: the outer root's walk already finds their files, which would
+     * otherwise be counted twice. The files of a dropped root are reported under the outer root.
+     *
+     * @return the remaining roots, in their original order
+     */
+    public static List<Path> distinctRoots(Collection<Path> roots) {
+        List<Path> normalized = new ArrayList<>();
+        for (Path root : roots) {
+            Path path = root.toAbsolutePath().normalize();
+            if (!normalized.contains(path)) normalized.add(path);
+        }
+        List<Path> distinct = new ArrayList<>(normalized.size());
+        for (Path root : normalized) {
+            boolean nested = false;
+            for (Path other : normalized) {
+                if (other != root && root.startsWith(other)) {
+                    nested = true;
+                    break;
+                }
             }
+            if (!nested) distinct.add(root);
         }
-        return false;
+        return distinct;
     }
 
     /**
@@ -120,53 +412,721 @@ public class CodeCounterCore {
      * Import statements are counted as code lines, not separately.
      * This method does not apply the includeBlank/includeHeader filters; it only gathers raw counts.
      *
+     * Lines are classified on raw bytes by {@link LineClassifier}, without creating a String per
+     * line. Small files are read through pooled direct buffers, large files are memory-mapped.
+     * The bytes are validated as UTF-8 on the way; files that turn out to be in another encoding
+     * are re-read with a decoder (see {@link #classifyLegacy}).
+     *
      * @param path the file path to read
      * @return a FileStat containing detailed counts for the file
      */
-    private FileStat analyzeFile(Path path) {
-        long code = 0, comment = 0, blank = 0, todo = 0;
-        boolean inBlockComment = false;
-        try (BufferedReader br = Files.newBufferedReader(path)) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String trimmed = line.trim();
-                if (trimmed.isEmpty()) {
-                    blank++;
-                    continue;
-                }
+    FileStat analyzeFile(Path path) {
+        return analyzeFile(path, null, null, null);
+    }
+
+    /**
+     * Classifies content held in memory (a git blob) exactly like a file with the same bytes.
+     *
+     * @param path the reported path; its extension becomes the type
+     */
+    FileStat analyzeBytes(String path, byte[] data) {
+        LineClassifier classifier = new LineClassifier();
+        Charset charset = null;
+        try {
+            charset = classify(arrayContent(data), classifier);
+        } catch (IOException ignored) {} // not thrown for in-memory content
+        classifier.finish();
+        FileStat stat = new FileStat(path, getExtension(path), classifier.getCodeLines(),
+                classifier.getCommentLines(), classifier.getBlankLines(), classifier.getTodoLines());
+        stat.charset = charset == null ? null : charset.name();
+        return stat;
+    }
+
+    /**
+     * Classifies an archive entry read from a stream. Entries up to {@link #MAX_BUFFERED_ENTRY}
+     * bytes are handled exactly like files (charset detection, content cache); larger ones are
+     * classified in one byte-level pass as ISO-8859-1, so memory stays bounded. An entry above
+     * {@link #SMALL_ENTRY} is only buffered once {@link #ENTRY_BUFFER_BUDGET} has room for a
+     * whole {@link #MAX_BUFFERED_ENTRY}; the analyzer waits for that, so the result does not
+     * depend on how many entries other analyzers hold.
+     *
+     * @param path the reported path, {@code archive!/entry}
+     * @param cache content cache to consult before classifying, or null
+     * @param metrics receives the cache lookups, or null
+     */
+    FileStat analyzeEntry(String path, InputStream in, ContentCache cache, ScanMetrics metrics) throws IOException {
+        byte[] head = in.readNBytes(SMALL_ENTRY + 1);
+        if (head.length <= SMALL_ENTRY) return analyzeBufferedEntry(path, head, cache, metrics);
+
+        try {
+            ENTRY_BUFFERS.acquire(MAX_BUFFERED_ENTRY);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted waiting for archive entry buffer space");
+        }
+        int held = MAX_BUFFERED_ENTRY;
+        try {
+            byte[] tail = in.readNBytes(MAX_BUFFERED_ENTRY + 1 - head.length);
+            if (head.length + tail.length > MAX_BUFFERED_ENTRY) {
+                LineClassifier classifier = new LineClassifier();
+                InputStream rest = new SequenceInputStream(new ByteArrayInputStream(head),
+                        new SequenceInputStream(new ByteArrayInputStream(tail), in));
+                Charset charset = classifyBytes(streamContent(rest), classifier, false);
+                classifier.finish();
+                FileStat stat = new FileStat(path, getExtension(path), classifier.getCodeLines(),
+                        classifier.getCommentLines(), classifier.getBlankLines(), classifier.getTodoLines());
+                stat.charset = charset.name();
+                return stat;
+            }
+            byte[] data = Arrays.copyOf(head, head.length + tail.length);
+            System.arraycopy(tail, 0, data, head.length, tail.length);
+            // Hand back what this entry does not use while it is being classified
+            ENTRY_BUFFERS.release(held - data.length);
+            held = data.length;
+            return analyzeBufferedEntry(path, data, cache, metrics);
+        } finally {
+            ENTRY_BUFFERS.release(held);
+        }
+    }
+
+    /**
+     * Classifies a whole archive entry held in memory like a file, consulting the content cache.
+     */
+    private FileStat analyzeBufferedEntry(String path, byte[] data, ContentCache cache, ScanMetrics metrics) {
+        ContentCache.Key key = null;
+        if (cache != null) {
+            ContentCache.Hasher hasher = new ContentCache.Hasher();
+            hasher.update(ByteBuffer.wrap(data));
+            key = hasher.finish();
+            FileStat known = cache.get(key);
+            if (metrics != null) metrics.contentLookup(known != null);
+            if (known != null) {
+                FileStat stat = new FileStat(path, getExtension(path), known.codeLines,
+                        known.commentLines, known.blankLines, known.todoLines);
+                stat.charset = known.charset;
+                return stat;
+            }
+        }
+        FileStat stat = analyzeBytes(path, data);
+        if (key != null && stat.charset != null) cache.put(key, stat);
+        return stat;
+    }
 
-                // TODO detection (case-insensitive)
-                if (trimmed.toLowerCase().contains("todo")) todo++;
+    /**
+     * Runs the byte-level pass and, if the content is not UTF-8, the legacy charset passes.
+     *
+     * @return the charset the counts were produced with
+     */
+    private Charset classify(Content content, LineClassifier classifier) throws IOException {
+        Charset charset = classifyBytes(content, classifier, true);
+        if (charset == null) {
+            classifier.reset();
+            charset = classifyLegacy(content, classifier);
+        }
+        return charset;
+    }
 
-                // block comments (/* ... */) or XML/HTML comments (<!-- ... -->)
-                if (inBlockComment) {
-                    comment++;
-                    if (trimmed.endsWith("*/") || trimmed.endsWith("-->")) {
-                        inBlockComment = false;
-                    }
-                    continue;
+    /**
+     * @param cache content cache to consult before classifying, or null
+     * @param metrics receives the cache lookups, or null
+     * @param knownKey content key already known to miss the cache (a git blob id); the file is
+     *                 not hashed and its counts are cached under this key
+     */
+    private FileStat analyzeFile(Path path, ContentCache cache, ScanMetrics metrics, ContentCache.Key knownKey) {
+        LineClassifier classifier = new LineClassifier();
+        Charset charset = null;
+        ContentCache.Key key = cache == null ? null : knownKey;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Content content = fileContent(channel);
+            if (cache != null && key == null) {
+                // Hashing is much cheaper than classifying; the second read comes from the page cache
+                ContentCache.Hasher hasher = new ContentCache.Hasher();
+                readChunks(content, (chunk, offset) -> {
+                    hasher.update(chunk);
+                    return true;
+                });
+                key = hasher.finish();
+                FileStat known = cache.get(key);
+                if (metrics != null) metrics.contentLookup(known != null);
+                if (known != null) {
+                    FileStat stat = new FileStat(path.toString(), getExtension(path), known.codeLines,
+                            known.commentLines, known.blankLines, known.todoLines);
+                    stat.charset = known.charset;
+                    return stat;
                 }
+            }
+            charset = classify(content, classifier);
+        } catch (IOException ignored) {}
+        classifier.finish();
+
+        FileStat stat = new FileStat(path.toString(), getExtension(path), classifier.getCodeLines(),
+                classifier.getCommentLines(), classifier.getBlankLines(), classifier.getTodoLines());
+        stat.charset = charset == null ? null : charset.name();
+        if (key != null && charset != null) cache.put(key, stat);
+        return stat;
+    }
 
-                if (trimmed.startsWith("/*") || trimmed.startsWith("/**") || trimmed.startsWith("<!--")) {
-                    comment++;
-                    if (!(trimmed.endsWith("*/") || trimmed.endsWith("-->"))) {
-                        inBlockComment = true;
-                    }
-                    continue;
+    /**
+     * Receives consecutive chunks of a file from {@link #readChunks}.
+     */
+    private interface ChunkConsumer {
+        /**
+         * @param chunk the bytes from its position to its limit; only valid during the call
+         * @param offset file offset of the chunk's first byte
+         * @return false to stop reading
+         */
+        boolean accept(ByteBuffer chunk, long offset) throws IOException;
+    }
+
+    /**
+     * Random-access view of the bytes being classified: an open file or an in-memory blob.
+     */
+    private interface Content {
+        long size() throws IOException;
+
+        /**
+         * Reads into {@code dst} starting at {@code position}.
+         *
+         * @return the number of bytes read, or -1 at the end
+         */
+        int read(ByteBuffer dst, long position) throws IOException;
+
+        /**
+         * @return the region as one buffer (memory-mapped for large files where
+         *         {@link #MAP_LARGE_FILES} allows it), or null if it should be read through pooled
+         *         buffers instead
+         */
+        ByteBuffer slice(long position, long length) throws IOException;
+    }
+
+    private static Content fileContent(FileChannel channel) {
+        return new Content() {
+            @Override
+            public long size() throws IOException {
+                return channel.size();
+            }
+
+            @Override
+            public int read(ByteBuffer dst, long position) throws IOException {
+                return channel.read(dst, position);
+            }
+
+            @Override
+            public ByteBuffer slice(long position, long length) throws IOException {
+                if (!MAP_LARGE_FILES || channel.size() < MAP_THRESHOLD) return null;
+                return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            }
+        };
+    }
+
+    private static Content arrayContent(byte[] data) {
+        return new Content() {
+            @Override
+            public long size() {
+                return data.length;
+            }
+
+            @Override
+            public int read(ByteBuffer dst, long position) {
+                if (position >= data.length) return -1;
+                int n = (int) Math.min(dst.remaining(), data.length - position);
+                dst.put(data, (int) position, n);
+                return n;
+            }
+
+            @Override
+            public ByteBuffer slice(long position, long length) {
+                return ByteBuffer.wrap(data, (int) position, (int) length).slice();
+            }
+        };
+    }
+
+    /**
+     * Sequential view of a stream; it can be read once, from the start, and has no known size.
+     */
+    private static Content streamContent(InputStream in) {
+        byte[] transfer = new byte[DECODE_BUFFER_SIZE];
+        return new Content() {
+            @Override
+            public long size() {
+                return -1;
+            }
+
+            @Override
+            public int read(ByteBuffer dst, long position) throws IOException {
+                int n = in.read(transfer, 0, Math.min(transfer.length, dst.remaining()));
+                if (n > 0) dst.put(transfer, 0, n);
+                return n;
+            }
+
+            @Override
+            public ByteBuffer slice(long position, long length) {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Hands the whole content to the consumer: as slices (memory-mapped segments of large files,
+     * or the array of a blob) where available, else through a pooled buffer.
+     *
+     * @return false if the consumer stopped early
+     */
+    private static boolean readChunks(Content content, ChunkConsumer consumer) throws IOException {
+        long size = content.size();
+        ByteBuffer segment = size <= 0 ? null : content.slice(0, Math.min(MAX_MAP_SIZE, size));
+        if (segment != null) {
+            for (long pos = 0; pos < size; pos += MAX_MAP_SIZE) {
+                if (pos > 0) segment = content.slice(pos, Math.min(MAX_MAP_SIZE, size - pos));
+                if (!consumer.accept(segment, pos)) return false;
+            }
+            return true;
+        }
+        ByteBuffer buf = BufferPool.acquire();
+        try {
+            long pos = 0;
+            int n;
+            while ((n = content.read(buf, pos)) > 0) {
+                buf.flip();
+                if (!consumer.accept(buf, pos)) return false;
+                buf.clear();
+                pos += n;
+            }
+            return true;
+        } finally {
+            BufferPool.release(buf);
+        }
+    }
+
+    /**
+     * Feeds the whole file to the classifier as raw bytes. A UTF-8 byte order mark is skipped.
+     *
+     * @param validate whether to check that the file is UTF-8 and give up as soon as it is not
+     * @return US-ASCII or UTF-8 if the counts are final (ISO-8859-1 without validation),
+     *         or null if the file has to be decoded instead
+     */
+    private Charset classifyBytes(Content content, LineClassifier classifier, boolean validate) throws IOException {
+        CharsetDetector.Utf8Validator utf8 = validate ? new CharsetDetector.Utf8Validator() : null;
+        if (!readChunks(content, (chunk, offset) -> feedBytes(chunk, offset == 0, utf8, classifier))) return null;
+        if (utf8 == null) return StandardCharsets.ISO_8859_1;
+        if (!utf8.isValidAtEnd()) return null;
+        return utf8.isAscii() ? StandardCharsets.US_ASCII : StandardCharsets.UTF_8;
+    }
+
+    private static boolean feedBytes(ByteBuffer chunk, boolean first, CharsetDetector.Utf8Validator utf8,
+                                     LineClassifier classifier) {
+        if (first && utf8 != null) {
+            Charset bom = CharsetDetector.detectBom(chunk);
+            if (bom != null && !StandardCharsets.UTF_8.equals(bom)) return false;
+            if (bom != null) chunk.position(chunk.position() + CharsetDetector.bomLength(bom));
+        }
+        if (utf8 != null) {
+            utf8.update(chunk);
+            if (!utf8.isValid()) return false;
+        }
+        classifier.feed(chunk);
+        return true;
+    }
+
+    /**
+     * Classifies a file that is not UTF-8: a UTF-16 file with a byte order mark is decoded
+     * leniently; otherwise the fallback charsets are tried in order and the first one that decodes
+     * the whole file without errors wins. If none does, the bytes are classified as ISO-8859-1,
+     * which accepts any input.
+     *
+     * @return the charset the counts were produced with
+     */
+    private Charset classifyLegacy(Content content, LineClassifier classifier) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(4);
+        content.read(head, 0);
+        head.flip();
+        Charset bom = CharsetDetector.detectBom(head);
+        if (bom != null) {
+            classifyDecoded(content, bom, CharsetDetector.bomLength(bom), false, classifier);
+            return bom;
+        }
+        for (Charset charset : fallbackCharsets) {
+            if (classifyDecoded(content, charset, 0, true, classifier)) return charset;
+            classifier.reset();
+        }
+        return classifyBytes(content, classifier, false);
+    }
+
+    /**
+     * Decodes the file from {@code offset} and feeds the characters to the classifier.
+     *
+     * @param strict whether malformed or unmappable input aborts the pass (else it is replaced)
+     * @return false if a strict pass hit undecodable input
+     */
+    private static boolean classifyDecoded(Content content, Charset charset, long offset, boolean strict,
+                                           LineClassifier classifier) throws IOException {
+        CodingErrorAction onError = strict ? CodingErrorAction.REPORT : CodingErrorAction.REPLACE;
+        CharsetDecoder decoder = charset.newDecoder().onMalformedInput(onError).onUnmappableCharacter(onError);
+        CharBuffer chars = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+        ByteBuffer buf = BufferPool.acquire();
+        try {
+            long pos = offset;
+            boolean eof = false;
+            while (!eof) {
+                int n = content.read(buf, pos);
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    pos += n;
                 }
+                buf.flip();
+                CoderResult result;
+                do {
+                    result = decoder.decode(buf, chars, eof);
+                    if (result.isError()) return false;
+                    feedChars(chars, classifier);
+                } while (result.isOverflow());
+                buf.compact();
+            }
+            CoderResult result;
+            do {
+                result = decoder.flush(chars);
+                feedChars(chars, classifier);
+            } while (result.isOverflow());
+            return true;
+        } finally {
+            BufferPool.release(buf);
+        }
+    }
+
+    private static void feedChars(CharBuffer chars, LineClassifier classifier) {
+        chars.flip();
+        while (chars.hasRemaining()) {
+            classifier.acceptChar(chars.get());
+        }
+        chars.clear();
+    }
+
+    /**
+     * Starts a streaming scan of a directory. The walker feeds analyzer workers through a bounded
+     * queue, and each FileStat is published as soon as its file has been read; nothing waits for
+     * the whole tree. Every subscription runs its own scan, and cancelling the subscription stops it.
+     * Analysis is scheduled according to the current {@link ExecutionMode}; with a
+     * {@link #setScanIndex scan index}, unchanged files are published from the index unread.
+     * With {@link #setUseGitIndex git index enumeration} on, only tracked files are scanned;
+     * with {@link #setUseIgnoreFiles ignore files} on, ignored files and directories are skipped.
+     * With {@link #setScanArchives archive scanning} on, or when {@code root} is an archive,
+     * archive entries are reported instead of the archive files.
+     *
+     * @param root the root directory
+     * @param extensions the list of file extensions to include ({@code .java}, {@code *.java}, {@code java})
+     * @param includeBlank whether to include blank lines in the effective total
+     * @param includeHeader whether to include comment lines in the effective total
+     * @param excludeDirs file or directory names to exclude (case-insensitive; {@code *} and {@code ?} globs allowed)
+     * @return a cold publisher of per-file statistics (their .lines value respects the include flags)
+     */
+    public Flow.Publisher<FileStat> scan(Path root,
+                                         List<String> extensions,
+                                         boolean includeBlank,
+                                         boolean includeHeader,
+                                         List<String> excludeDirs) {
+        return scan(List.of(root), extensions, includeBlank, includeHeader, excludeDirs);
+    }
+
+    /**
+     * Starts one streaming scan over several roots, like {@link #scan(Path, List, boolean, boolean, List)}
+     * for each of them but with one set of analyzer threads (or open-file permits) and one walker
+     * pool for all roots together. The roots take turns for the analyzers, so a large root does not
+     * hold up the small ones. Each result's {@code root} tells where it was found. The roots are
+     * first reduced by {@link #distinctRoots}, so a root inside another one is not counted twice.
+     *
+     * @param roots the root directories (or archives)
+     * @return a cold publisher of per-file statistics of all roots, interleaved
+     */
+    public Flow.Publisher<FileStat> scan(List<Path> roots,
+                                         List<String> extensions,
+                                         boolean includeBlank,
+                                         boolean includeHeader,
+                                         List<String> excludeDirs) {
+        List<Path> scanRoots = distinctRoots(roots);
+        NameMatcher excluded = compileExcludes(excludeDirs);
+        NameMatcher included = NameMatcher.forExtensions(extensions);
+        ScanMetrics metrics = new ScanMetrics();
+        lastScanMetrics = metrics;
+        boolean gitIndex = useGitIndex;
+        boolean ignoreFiles = useIgnoreFiles;
+        CachingAnalyzer analyzer = new CachingAnalyzer(scanIndex, contentCache, metrics, includeBlank, includeHeader,
+                new HashSet<>(scanRoots), scanArchives, excluded, included);
+        return new ScanPipeline(scanRoots, (root, walkerPool) -> {
+                    FileSource source = gitIndex
+                            ? GitIndexSource.forRoot(root, excluded::matches, ignoreFiles, walkerPool) : null;
+                    return source != null ? source : ParallelFileWalker.forTree(root, excluded::matches, ignoreFiles, walkerPool);
+                },
+                file -> included.matches(file.getFileName().toString()) || analyzer.isContainer(file),
+                analyzer, executionMode, maxOpenFiles, metrics);
+    }
+
+    /**
+     * Analyzes files, taking the counts of unchanged files from the scan index and of duplicated
+     * contents from the content cache when those are set. Clean files from the git index are
+     * looked up in the content cache by blob id, without being read. Archives are expanded into
+     * their entries; those bypass the scan index, which keeps one result per file.
+     */
+    private final class CachingAnalyzer implements ScanPipeline.FileAnalyzer {
+        private final ScanIndex index;
+        private final ContentCache cache;
+        private final ScanMetrics metrics;
+        private final boolean includeBlank;
+        private final boolean includeHeader;
+        private final Set<Path> roots;
+        private final boolean archives;
+        private final ArchiveReader archiveReader;
+
+        /**
+         * @param archives whether archives found below the roots are expanded (a root archive always is)
+         */
+        CachingAnalyzer(ScanIndex index, ContentCache cache, ScanMetrics metrics,
+                        boolean includeBlank, boolean includeHeader,
+                        Set<Path> roots, boolean archives, NameMatcher excluded, NameMatcher included) {
+            this.index = index;
+            this.cache = cache;
+            this.metrics = metrics;
+            this.includeBlank = includeBlank;
+            this.includeHeader = includeHeader;
+            this.roots = roots;
+            this.archives = archives;
+            this.archiveReader = new ArchiveReader(excluded, included, (path, in) -> {
+                FileStat stat = analyzeEntry(path, in, cache, metrics);
+                stat.setEffectiveLines(includeBlank, includeHeader);
+                return stat;
+            });
+            // Stored counts of legacy-encoded files depend on the fallback charsets
+            if (index != null) index.setConfigKey("fallback=" + fallbackCharsets);
+        }
+
+        @Override
+        public FileStat analyze(Path file, BasicFileAttributes attrs) {
+            FileStat stat = analyzeFile(file, cache, metrics, blobKey(attrs));
+            if (index != null && stat.charset != null) index.store(file, attrs, stat);
+            stat.setEffectiveLines(includeBlank, includeHeader);
+            return stat;
+        }
+
+        @Override
+        public boolean isContainer(Path file) {
+            return (archives || roots.contains(file)) && ArchiveReader.isArchive(file.getFileName().toString());
+        }
+
+        @Override
+        public void analyzeEntries(Path file, BasicFileAttributes attrs, Predicate<FileStat> sink) {
+            try {
+                archiveReader.read(file, sink);
+            } catch (IOException ignored) {
+                // Damaged or truncated archive: the entries read before the damage are kept
+            }
+        }
+
+        @Override
+        public FileStat lookup(Path file, BasicFileAttributes attrs) {
+            ScanIndex.Entry entry = index == null ? null : index.lookup(file, attrs);
+            FileStat stat;
+            if (entry != null) {
+                stat = new FileStat(file.toString(), getExtension(file), entry.codeLines,
+                        entry.commentLines, entry.blankLines, entry.todoLines);
+                stat.charset = entry.charset;
+            } else {
+                ContentCache.Key key = blobKey(attrs);
+                FileStat known = key == null ? null : cache.get(key);
+                if (key != null) metrics.contentLookup(known != null);
+                if (known == null) return null;
+                stat = new FileStat(file.toString(), getExtension(file), known.codeLines,
+                        known.commentLines, known.blankLines, known.todoLines);
+                stat.charset = known.charset;
+            }
+            stat.setEffectiveLines(includeBlank, includeHeader);
+            return stat;
+        }
+
+        /**
+         * @return the content key of a clean tracked file, or null if there is none to use
+         */
+        private ContentCache.Key blobKey(BasicFileAttributes attrs) {
+            if (cache == null || !(attrs instanceof GitIndexSource.TrackedFileAttributes)) return null;
+            GitIndexSource.TrackedFileAttributes tracked = (GitIndexSource.TrackedFileAttributes) attrs;
+            return tracked.isClean() ? ContentCache.Key.forObjectId(attrs.size(), tracked.getObjectId()) : null;
+        }
+
+        @Override
+        public void finished() {
+            if (index == null) return;
+            try {
+                index.save();
+            } catch (IOException ignored) {
+                // The index is only a cache; the next scan simply reads more files
+            }
+        }
+    }
+
+    /**
+     * Starts watching a scanned tree and reports changed files until the returned watcher is
+     * closed. Pass the same settings as the scan whose results should be kept current.
+     * Archives are expanded when {@link #setScanArchives archive scanning} is on, as in the scan.
+     * The watcher follows the directory tree, so it cannot keep a {@link #setUseGitIndex
+     * tracked-files-only} count current and refuses to start in that mode.
+     *
+     * @param knownPaths paths of the files the scan reported (used to detect deletions)
+     * @param listener receives each debounced batch of changes, on the watcher thread
+     * @throws IOException if the file system cannot be watched
+     * @throws IllegalStateException if the git index is used
+     */
+    public TreeWatcher watch(Path root,
+                             List<String> extensions,
+                             boolean includeBlank,
+                             boolean includeHeader,
+                             List<String> excludeDirs,
+                             Collection<String> knownPaths,
+                             Consumer<TreeWatcher.Change> listener) throws IOException {
+        if (useGitIndex) throw new IllegalStateException("Watching cannot follow a count of the git index");
+        return new TreeWatcher(this, root, compileExcludes(excludeDirs), NameMatcher.forExtensions(extensions),
+                includeBlank, includeHeader, useIgnoreFiles, scanArchives, knownPaths, listener,
+                TreeWatcher.DEFAULT_DEBOUNCE_MILLIS);
+    }
 
-                // single-line comment (// ...)
-                if (trimmed.startsWith("//")) {
-                    comment++;
-                    continue;
+    /**
+     * Counts how code, comment, blank and TODO lines changed between two commits of a local git
+     * repository, reading loose and packed objects directly from its {@code .git} directory.
+     * Only the trees along changed paths are read and only the changed blobs are classified,
+     * so the cost follows the size of the change rather than the size of the repository.
+     *
+     * @param repository the work tree (or any directory inside it), or the git directory itself
+     * @param fromRevision the old side: a commit id (full or abbreviated), branch, tag or
+     *                     {@code HEAD}, optionally with {@code ~n} / {@code ^n} suffixes
+     * @param toRevision the new side, in the same forms
+     * @param excludeDirs file or directory names to leave out, as for {@link #scan}
+     * @return one delta per added, modified or deleted file, in path order (their .lines value
+     *         respects the include flags)
+     * @throws IOException if the repository or a revision cannot be read
+     */
+    public List<FileDelta> countDelta(Path repository,
+                                      String fromRevision,
+                                      String toRevision,
+                                      List<String> extensions,
+                                      boolean includeBlank,
+                                      boolean includeHeader,
+                                      List<String> excludeDirs) throws IOException {
+        List<FileDelta> deltas = new ArrayList<>();
+        try (GitObjectStore store = GitObjectStore.open(repository)) {
+            byte[] oldTree = store.treeOf(store.resolveCommit(fromRevision));
+            byte[] newTree = store.treeOf(store.resolveCommit(toRevision));
+            GitTreeDiff diff = new GitTreeDiff(store, compileExcludes(excludeDirs), NameMatcher.forExtensions(extensions));
+            for (GitTreeDiff.Change change : diff.diff(oldTree, newTree)) {
+                FileStat before = change.oldId == null ? null : analyzeBytes(change.path, store.read(change.oldId).data);
+                FileStat after = change.newId == null ? null : analyzeBytes(change.path, store.read(change.newId).data);
+                FileDelta.Status status = before == null ? FileDelta.Status.ADDED
+                        : after == null ? FileDelta.Status.DELETED : FileDelta.Status.MODIFIED;
+                FileDelta delta = new FileDelta(change.path, getExtension(change.path), status, before, after);
+                delta.setEffectiveLines(includeBlank, includeHeader);
+                deltas.add(delta);
+            }
+        }
+        deltas.sort(Comparator.comparing(d -> d.path));
+        return deltas;
+    }
+
+    /**
+     * Computes line totals for a series of commits of a local git repository without checking
+     * any of them out. Every distinct blob is classified once and every distinct tree summed once,
+     * so subtrees a commit shares with an earlier one cost nothing.
+     *
+     * @param repository the work tree (or any directory inside it), or the git directory itself
+     * @param revision the newest commit, in the forms accepted by {@link #countDelta}
+     * @param maxPoints how many commits to include
+     * @param tagsOnly if true, the points are the tagged commits (newest {@code maxPoints} by
+     *                 commit time) and {@code revision} is ignored; else the first-parent chain
+     *                 ending at {@code revision}
+     * @param excludeDirs file or directory names to leave out, as for {@link #scan}
+     * @return the points, oldest first
+     * @throws IOException if the repository or the revision cannot be read
+     */
+    public List<HistoryPoint> countHistory(Path repository,
+                                           String revision,
+                                           int maxPoints,
+                                           boolean tagsOnly,
+                                           List<String> extensions,
+                                           List<String> excludeDirs) throws IOException {
+        List<HistoryPoint> points = new ArrayList<>();
+        try (GitObjectStore store = GitObjectStore.open(repository)) {
+            // Pick the commits first (newest first), then count them
+            List<String> labels = new ArrayList<>();
+            List<byte[]> commits = new ArrayList<>();
+            List<GitObjectStore.Commit> headers = new ArrayList<>();
+            if (tagsOnly) {
+                Map<String, byte[]> tags = store.listTags();
+                Map<String, GitObjectStore.Commit> tagCommits = new HashMap<>();
+                for (Map.Entry<String, byte[]> tag : tags.entrySet()) {
+                    tagCommits.put(tag.getKey(), store.readCommit(tag.getValue()));
                 }
+                List<String> names = new ArrayList<>(tags.keySet());
+                names.sort(Comparator.comparingLong((String name) -> tagCommits.get(name).time).reversed());
+                for (String name : names.subList(0, Math.min(maxPoints, names.size()))) {
+                    labels.add(name);
+                    commits.add(tags.get(name));
+                    headers.add(tagCommits.get(name));
+                }
+            } else {
+                byte[] id = store.resolveCommit(revision);
+                while (id != null && commits.size() < maxPoints) {
+                    GitObjectStore.Commit commit = store.readCommit(id);
+                    labels.add(GitObjectStore.toHex(id).substring(0, 7));
+                    commits.add(id);
+                    headers.add(commit);
+                    id = commit.parents.isEmpty() ? null : commit.parents.get(0);
+                }
+            }
 
-                // Otherwise consider it code (including import statements)
-                code++;
+            GitHistory history = new GitHistory(store, compileExcludes(excludeDirs), NameMatcher.forExtensions(extensions),
+                    data -> analyzeBytes("", data));
+            for (int i = commits.size() - 1; i >= 0; i--) {
+                long[] t = history.totalsOf(commits.get(i));
+                points.add(new HistoryPoint(GitObjectStore.toHex(commits.get(i)), labels.get(i), headers.get(i).time,
+                        t[GitHistory.CODE], t[GitHistory.COMMENT], t[GitHistory.BLANK], t[GitHistory.TODO],
+                        t[GitHistory.FILES]));
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Subscribes to a scan and blocks until it finishes, handing every FileStat to the consumer.
+     * A failed scan (e.g. unreadable root) ends the collection with whatever was received.
+     * The consumer is called from one thread at a time.
+     */
+    private void drain(Flow.Publisher<FileStat> publisher, Consumer<FileStat> consumer) {
+        CountDownLatch done = new CountDownLatch(1);
+        Flow.Subscription[] subscription = new Flow.Subscription[1];
+        publisher.subscribe(new Flow.Subscriber<FileStat>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+                s.request(Long.MAX_VALUE);
             }
-        } catch (IOException ignored) {}
 
-        return new FileStat(path.toString(), getExtension(path), code, comment, blank, todo);
+            @Override
+            public void onNext(FileStat item) {
+                consumer.accept(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                done.countDown();
+            }
+        });
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (subscription[0] != null) subscription[0].cancel();
+        }
     }
 
     /**
@@ -191,24 +1151,9 @@ public class CodeCounterCore {
     public long countLines(Path root, List<String> extensions,
                            boolean includeBlank, boolean includeHeader,
                            List<String> excludeDirs) {
-        long total = 0;
-        try {
-            // It's fine to collect into a list; Files.walk may be large but we filter/exclude early.
-            List<Path> paths = new ArrayList<>();
-            try (java.util.stream.Stream<Path> stream = Files.walk(root)) {
-                stream.filter(Files::isRegularFile)
-                        .filter(p -> !isExcluded(p, excludeDirs))
-                        .filter(p -> matchExtension(p, extensions))
-                        .forEach(paths::add);
-            }
-
-            for (Path p : paths) {
-                FileStat stat = analyzeFile(p);
-                stat.setEffectiveLines(includeBlank, includeHeader);
-                total += stat.lines;
-            }
-        } catch (IOException ignored) {}
-        return total;
+        long[] total = new long[1];
+        drain(scan(root, extensions, includeBlank, includeHeader, excludeDirs), stat -> total[0] += stat.lines);
+        return total[0];
     }
 
     /**
@@ -223,7 +1168,7 @@ public class CodeCounterCore {
 
     /**
      * Counts the number of lines in files under a directory and returns detailed statistics.
-     * Supports excluding specific directory names.
+     * Supports excluding specific directory names. This is a collector over {@link #scan}.
      *
      * @param root the root directory
      * @param extensions the list of file extensions to include
@@ -238,25 +1183,46 @@ public class CodeCounterCore {
                                                boolean includeHeader,
                                                List<String> excludeDirs) {
         List<FileStat> list = new ArrayList<>();
-        try {
-            List<Path> paths = new ArrayList<>();
-            try (java.util.stream.Stream<Path> stream = Files.walk(root)) {
-                stream.filter(Files::isRegularFile)
-                        .filter(path -> !isExcluded(path, excludeDirs))
-                        .filter(path -> matchExtension(path, extensions))
-                        .forEach(paths::add);
-            }
+        drain(scan(root, extensions, includeBlank, includeHeader, excludeDirs), list::add);
+        return list;
+    }
 
-            // Process files in parallel for performance
-            paths.parallelStream().forEach(p -> {
-                FileStat stat = analyzeFile(p);
-                stat.setEffectiveLines(includeBlank, includeHeader);
-                synchronized (list) {
-                    list.add(stat);
-                }
-            });
-        } catch (IOException ignored) {}
+    /**
+     * Counts the lines of several roots in one scan; see {@link #scan(List, List, boolean, boolean, List)}.
+     *
+     * @return the FileStats of all roots, each with its {@code root} set
+     */
+    public List<FileStat> countLinesWithDetail(List<Path> roots,
+                                               List<String> extensions,
+                                               boolean includeBlank,
+                                               boolean includeHeader,
+                                               List<String> excludeDirs) {
+        List<FileStat> list = new ArrayList<>();
+        drain(scan(roots, extensions, includeBlank, includeHeader, excludeDirs), list::add);
         return list;
     }
-}
 
+    /**
+     * Sums file statistics per scan root.
+     *
+     * @return one FileStat per root, in order of first appearance, whose {@code path} and
+     *         {@code root} are the root and whose counts (including {@code lines}) are totals
+     */
+    public static Map<String, FileStat> totalsByRoot(Collection<? extends FileStat> stats) {
+        Map<String, FileStat> totals = new LinkedHashMap<>();
+        for (FileStat stat : stats) {
+            String root = stat.root == null ? "" : stat.root;
+            FileStat total = totals.computeIfAbsent(root, r -> {
+                FileStat t = new FileStat(r, null, 0, 0, 0, 0);
+                t.root = r;
+                return t;
+            });
+            total.codeLines += stat.codeLines;
+            total.commentLines += stat.commentLines;
+            total.blankLines += stat.blankLines;
+            total.todoLines += stat.todoLines;
+            total.lines += stat.lines;
+        }
+        return totals;
+    }
+}
@@ -2,70 +2,15 @@ package com.github.dev.tool.plugins.counter;
 
 import com.github.dev.tool.plugin.PluginContext;
 import com.github.dev.tool.plugin.PluginPanel;
-import org.knowm.xchart.*;
-import org.knowm.xchart.style.Styler.LegendPosition;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.List;
-
-/**
- * Predefined file type templates for quick selection
- */
-class FileTypeTemplate {
-    public String name;
-    public List<String> extensions;
-    /** Build/project-specific directories to exclude (VCS and IDE dirs are handled separately) */
-    public List<String> buildExcludeDirs;
-
-    /** Common VCS dirs, shared across all templates */
-    static final List<String> COMMON_VCS_DIRS = Arrays.asList(".git", ".svn", ".hg", ".bzr", ".cvs");
-
-    /** Common IDE/editor dirs and files, shared across all templates */
-    static final List<String> COMMON_IDE_DIRS = Arrays.asList(
-            ".idea", ".settings", ".classpath", ".project",".metadata",
-            ".vscode", "*.iml",  "nbproject", ".vs");
-
-    public FileTypeTemplate(String name, List<String> buildExcludeDirs, String... exts) {
-        this.name = name;
-        this.extensions = Arrays.asList(exts);
-        this.buildExcludeDirs = buildExcludeDirs;
-    }
-
-    // Predefined templates
-    static final Map<String, FileTypeTemplate> TEMPLATES = new LinkedHashMap<>();
-
-    static {
-        TEMPLATES.put("Java Web", new FileTypeTemplate("Java Web",
-                Arrays.asList("target", "build", ".gradle", "bin", "node_modules"),
-                ".java", ".jsp", ".jspx", ".ftl", ".vm", ".html", ".htm", ".css", ".js", ".xml", ".properties", ".yml", ".yaml"));
-        TEMPLATES.put("Java Swing/JavaFX", new FileTypeTemplate("Java Swing/JavaFX",
-                Arrays.asList("target", "build", ".gradle", "bin", "dist","native-lib"),
-                ".java", ".fxml",  ".css",  ".xml", ".properties", ".yml", ".yaml" ));
-        TEMPLATES.put("Java Backend", new FileTypeTemplate("Java Backend",
-                Arrays.asList("target", "build", ".gradle", "bin"),
-                ".java", ".xml", ".properties", ".yml", ".yaml", ".sql"));
-        TEMPLATES.put("Frontend", new FileTypeTemplate("Frontend",
-                Arrays.asList("node_modules", "dist", "build", ".next", ".nuxt", "coverage", "bower_components"),
-                ".html", ".htm", ".css", ".js", ".jsx", ".ts", ".tsx", ".vue", ".scss", ".less"));
-        TEMPLATES.put("C++", new FileTypeTemplate("C++",
-                Arrays.asList("build", "cmake-build-debug", "cmake-build-release", "out", "Debug", "Release", "x64", "x86"),
-                ".cpp", ".cc", ".cxx", ".c", ".h", ".hpp", ".hxx"));
-        TEMPLATES.put("PHP", new FileTypeTemplate("PHP",
-                Arrays.asList("vendor", "node_modules", "cache", "storage"),
-                ".php", ".php3", ".html", ".htm", ".css", ".js", ".json", ".lock", ".env", ".xml", ".twig", ".phtml", ".latte"));
-        TEMPLATES.put("Python", new FileTypeTemplate("Python",
-                Arrays.asList("__pycache__", ".venv", "venv", "env", ".tox", "dist", "build", ".eggs", "*.egg-info"),
-                ".py", ".txt", ".cfg", ".toml", ".ini", ".json", ".yaml", ".yml"));
-        TEMPLATES.put("Custom", new FileTypeTemplate("Custom",
-                Collections.emptyList(),
-                ""));
-    }
-}
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
 
 /**
  * UI Panel for the Code Counter Plugin.
@@ -82,6 +27,30 @@ public class CodeCounterPluginPanel extends PluginPanel {
     private static final String PREF_RECENT_FOLDERS = "recent.folders";
     private static final int MAX_RECENT_FOLDERS = 10;
     private static final String HISTORY_SEPARATOR = "\n";
+
+    // Scan execution settings
+    private static final String PREF_EXECUTION_MODE = "scan.executionMode";
+    private static final String PREF_MAX_OPEN_FILES = "scan.maxOpenFiles";
+    private static final String PREF_FALLBACK_CHARSETS = "scan.fallbackCharsets";
+    private static final String PREF_USE_INDEX = "scan.useIndex";
+    private static final String PREF_INDEX_FILE = "scan.indexFile";
+    private static final String PREF_INDEX_MAX_ENTRIES = "scan.indexMaxEntries";
+    private static final String PREF_CONTENT_CACHE = "scan.contentCache";
+    private static final String PREF_GIT_INDEX = "scan.gitIndex";
+    private static final String PREF_IGNORE_FILES = "scan.ignoreFiles";
+    private static final String PREF_SCAN_ARCHIVES = "scan.archives";
+    private static final String PREF_PAGINATE = "table.paginate";
+    private static final String PREF_COMPARE_FROM = "compare.from";
+    private static final String PREF_COMPARE_TO = "compare.to";
+    private static final String PREF_HISTORY_POINTS = "history.points";
+    private static final String PREF_HISTORY_TAGS_ONLY = "history.tagsOnly";
+
+    // Background scan: table batches at about 60 per second, progress text a few times per second
+    private static final int SCAN_REFRESH_MILLIS = 16;
+    private static final int PROGRESS_REFRESH_MILLIS = 250;
+    /** Delay after the panel is first shown before the chart/export libraries are preloaded */
+    private static final int REPORT_WARM_UP_DELAY_MILLIS = 2000;
+
     private JComboBox<String> templateCombo;
     private JLabel templateLabel;
     private JPanel typePanel, optionPanel;
@@ -91,6 +60,18 @@ public class CodeCounterPluginPanel extends PluginPanel {
     private JButton addExtBtn, removeExtBtn;
     private List<JCheckBox> fileTypeCBs;
     private JCheckBox includeBlankCB, includeHeaderCB;
+    private JLabel executionModeLabel, maxOpenFilesLabel, fallbackCharsetsLabel;
+    private JComboBox<String> executionModeCombo;
+    private JSpinner maxOpenFilesSpinner;
+    private JTextField fallbackCharsetsField;
+    private JCheckBox useIndexCB;
+    private ScanIndex scanIndex;
+    private JCheckBox contentCacheCB;
+    private JCheckBox gitIndexCB;
+    private JCheckBox ignoreFilesCB;
+    private JCheckBox scanArchivesCB;
+    private JCheckBox paginateCB;
+    private final ContentCache contentCache = new ContentCache(); // kept across scans
     private JPanel excludeDirPanel;
     private JLabel vcsDirLabel, ideDirLabel, buildDirLabel;
     private JPanel vcsDirListPanel;
@@ -99,13 +80,19 @@ public class CodeCounterPluginPanel extends PluginPanel {
     private List<JCheckBox> vcsDirCBs;
     private List<JCheckBox> ideDirCBs;
     private List<JCheckBox> buildDirCBs;
-    private JButton countBtn, exportBtn, chartBtn;
+    private JButton countBtn, cancelBtn, exportBtn, chartBtn, compareBtn;
+    private JToggleButton watchBtn;
     private JTable fileTable;
-    private DefaultTableModel tableModel;
+    private ResultTableModel tableModel;
+    // The rows behind the table; the exporters and charts read them directly
+    private final ScanResult results = new ScanResult();
+    private JTree directoryTree;
+    private DirectoryTreeModel directoryModel;
+    // Set while the tree is rebuilt, so the selection it drops does not reach the table
+    private boolean reloadingTree;
     private JTextArea resultArea;
 
-    // Pagination
-    private List<Object[]> allTableRows = new ArrayList<>();
+    // Pagination (optional: without it the table scrolls through all results)
     private int currentPage = 0;
     private int pageSize = 50;
     private JPanel paginationPanel;
@@ -119,8 +106,26 @@ public class CodeCounterPluginPanel extends PluginPanel {
 
     // Cached result totals for locale refresh
     private long cachedTotalCode = 0, cachedTotalComment = 0, cachedTotalBlank = 0, cachedTotalTodo = 0;
+    private Map<String, CodeCounterCore.FileStat> rootTotals = new LinkedHashMap<>();
     private boolean hasResults = false;
 
+    // Running scan (null when idle), and whether the last scan was stopped before the end
+    private ScanSession scanSession;
+    private boolean lastScanCancelled;
+
+    // Live watch mode: settings of the last scan and the watchers (one per root) keeping its
+    // results current; changes are only applied while their watch session is the current one
+    private List<Path> lastRoots = Collections.emptyList();
+    private List<String> lastExtensions, lastExcludeDirs;
+    private boolean lastIncludeBlank, lastIncludeHeader;
+    private final List<TreeWatcher> watchers = new ArrayList<>();
+    private Object watchSession;
+    private Date lastWatchUpdate;
+    private int lastWatchChanged, lastWatchRemoved;
+
+    // Commit comparison shown instead of a scan: revisions and added/modified/deleted file counts
+    private Object[] lastDelta;
+
     public CodeCounterPluginPanel(PluginContext context) {
         super(context);
         this.core = new CodeCounterCore();
@@ -158,6 +163,19 @@ public class CodeCounterPluginPanel extends PluginPanel {
         splitPane.setDividerSize(5);
         splitPane.setContinuousLayout(true);
         add(splitPane, BorderLayout.CENTER);
+
+        // Load the chart and export libraries once the window is up, not while it opens
+        addHierarchyListener(new java.awt.event.HierarchyListener() {
+            @Override
+            public void hierarchyChanged(java.awt.event.HierarchyEvent e) {
+                if ((e.getChangeFlags() & java.awt.event.HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()) {
+                    removeHierarchyListener(this);
+                    javax.swing.Timer timer = new javax.swing.Timer(REPORT_WARM_UP_DELAY_MILLIS, ev -> ReportServices.warmUpInBackground());
+                    timer.setRepeats(false);
+                    timer.start();
+                }
+            }
+        });
     }
 
     private JPanel createTopPanel() {
@@ -165,6 +183,7 @@ public class CodeCounterPluginPanel extends PluginPanel {
 
         folderCombo = new JComboBox<>();
         folderCombo.setEditable(true);
+        folderCombo.setToolTipText(String.format(getString("folder.tooltip"), java.io.File.pathSeparator));
         loadRecentFolders();
 
         browseBtn = new JButton(getString("button.browse"));
@@ -307,6 +326,63 @@ public class CodeCounterPluginPanel extends PluginPanel {
 
         optionList.add(includeBlankCB);
         optionList.add(includeHeaderCB);
+
+        // Execution mode: fork-join for local disks, virtual threads for network mounts
+        java.util.prefs.Preferences prefs = context.getPreferences();
+        JPanel modeRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 2));
+        executionModeLabel = new JLabel(getString("option.executionMode") + ":");
+        executionModeCombo = new JComboBox<>(new String[] {
+            getString("option.executionMode.forkJoin"),
+            getString("option.executionMode.virtual")
+        });
+        executionModeCombo.setSelectedIndex(
+            CodeCounterCore.ExecutionMode.VIRTUAL_THREADS.name().equals(prefs.get(PREF_EXECUTION_MODE, "")) ? 1 : 0);
+        modeRow.add(executionModeLabel);
+        modeRow.add(executionModeCombo);
+        modeRow.setAlignmentX(Component.LEFT_ALIGNMENT);
+        modeRow.setMaximumSize(modeRow.getPreferredSize());
+        optionList.add(modeRow);
+
+        JPanel openFilesRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 2));
+        maxOpenFilesLabel = new JLabel(getString("option.maxOpenFiles") + ":");
+        maxOpenFilesSpinner = new JSpinner(new SpinnerNumberModel(
+            prefs.getInt(PREF_MAX_OPEN_FILES, CodeCounterCore.DEFAULT_MAX_OPEN_FILES), 1, 4096, 16));
+        openFilesRow.add(maxOpenFilesLabel);
+        openFilesRow.add(maxOpenFilesSpinner);
+        openFilesRow.setAlignmentX(Component.LEFT_ALIGNMENT);
+        openFilesRow.setMaximumSize(openFilesRow.getPreferredSize());
+        optionList.add(openFilesRow);
+
+        // Charsets tried for files that are not UTF-8 (legacy GBK / Shift-JIS code bases)
+        JPanel charsetRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 2));
+        fallbackCharsetsLabel = new JLabel(getString("option.fallbackCharsets") + ":");
+        fallbackCharsetsField = new JTextField(
+            prefs.get(PREF_FALLBACK_CHARSETS, CodeCounterCore.getDefaultFallbackCharsets()), 12);
+        fallbackCharsetsField.setToolTipText(getString("option.fallbackCharsets.tooltip"));
+        charsetRow.add(fallbackCharsetsLabel);
+        charsetRow.add(fallbackCharsetsField);
+        charsetRow.setAlignmentX(Component.LEFT_ALIGNMENT);
+        charsetRow.setMaximumSize(charsetRow.getPreferredSize());
+        optionList.add(charsetRow);
+
+        useIndexCB = new JCheckBox(getString("option.useIndex"), prefs.getBoolean(PREF_USE_INDEX, true));
+        optionList.add(useIndexCB);
+        contentCacheCB = new JCheckBox(getString("option.contentCache"), prefs.getBoolean(PREF_CONTENT_CACHE, true));
+        optionList.add(contentCacheCB);
+        gitIndexCB = new JCheckBox(getString("option.gitIndex"), prefs.getBoolean(PREF_GIT_INDEX, false));
+        optionList.add(gitIndexCB);
+        ignoreFilesCB = new JCheckBox(getString("option.ignoreFiles"), prefs.getBoolean(PREF_IGNORE_FILES, false));
+        optionList.add(ignoreFilesCB);
+        scanArchivesCB = new JCheckBox(getString("option.scanArchives"), prefs.getBoolean(PREF_SCAN_ARCHIVES, false));
+        optionList.add(scanArchivesCB);
+        paginateCB = new JCheckBox(getString("option.paginate"), prefs.getBoolean(PREF_PAGINATE, false));
+        paginateCB.addActionListener(e -> {
+            context.getPreferences().putBoolean(PREF_PAGINATE, paginateCB.isSelected());
+            currentPage = 0;
+            showCurrentPage();
+        });
+        optionList.add(paginateCB);
+
         optionList.add(Box.createVerticalGlue());
 
         JScrollPane optionScroll = new JScrollPane(optionList);
@@ -331,6 +407,10 @@ public class CodeCounterPluginPanel extends PluginPanel {
         countBtn = new JButton(getString("button.count"));
         countBtn.addActionListener(e -> doCount());
 
+        cancelBtn = new JButton(getString("button.cancel"));
+        cancelBtn.setEnabled(false);
+        cancelBtn.addActionListener(e -> cancelScan());
+
         // Single export button with dropdown menu for format selection
         exportBtn = new JButton(getString("button.exportAs") + " \u25BE");
         exportBtn.addActionListener(e -> {
@@ -353,22 +433,45 @@ public class CodeCounterPluginPanel extends PluginPanel {
         chartBtn = new JButton(getString("button.charts"));
         chartBtn.addActionListener(e -> showCharts());
 
+        watchBtn = new JToggleButton(getString("button.watch"));
+        watchBtn.addActionListener(e -> {
+            if (watchBtn.isSelected()) {
+                startWatcher();
+            } else {
+                stopWatcher();
+            }
+        });
+        gitIndexCB.addActionListener(e -> updateWatchAvailability());
+        updateWatchAvailability();
+
+        compareBtn = new JButton(getString("button.compare"));
+        compareBtn.setToolTipText(getString("button.compare.tooltip"));
+        compareBtn.addActionListener(e -> doCompare());
+
         buttonPanel.add(countBtn);
+        buttonPanel.add(cancelBtn);
         buttonPanel.add(exportBtn);
         buttonPanel.add(chartBtn);
+        buttonPanel.add(watchBtn);
+        buttonPanel.add(compareBtn);
 
         // Result table
-        tableModel = new DefaultTableModel(new String[] {
-            getString("table.header.index"),
-            getString("table.header.path"),
-            getString("table.header.type"),
-            getString("table.header.code"),
-            getString("table.header.comment"),
-            getString("table.header.blank"),
-            getString("table.header.todo")
-        }, 0);
+        tableModel = new ResultTableModel(results);
         fileTable = new JTable(tableModel);
-        applyTableColumnWidths();
+        setTableColumnNames();
+        // Sorting permutes the model's row numbers; a RowSorter would keep an object per row
+        fileTable.getTableHeader().setToolTipText(getString("table.sort.tooltip"));
+        fileTable.getTableHeader().addMouseListener(new java.awt.event.MouseAdapter() {
+            @Override
+            public void mouseClicked(java.awt.event.MouseEvent e) {
+                int column = fileTable.columnAtPoint(e.getPoint());
+                if (column < 0 || !SwingUtilities.isLeftMouseButton(e)) return;
+                tableModel.toggleSort(fileTable.convertColumnIndexToModel(column));
+                currentPage = 0;
+                showCurrentPage();
+                updateSortIndicator();
+            }
+        });
         JScrollPane tableScroll = new JScrollPane(fileTable);
         tableScroll.setPreferredSize(new Dimension(800, 200));
 
@@ -414,13 +517,32 @@ public class CodeCounterPluginPanel extends PluginPanel {
         paginationPanel.add(pageSizeLabel);
         paginationPanel.add(pageSizeCombo);
 
-        updatePaginationButtons();
+        showCurrentPage();
 
         // Table + pagination wrapper
         JPanel tableWithPagination = new JPanel(new BorderLayout());
         tableWithPagination.add(tableScroll, BorderLayout.CENTER);
         tableWithPagination.add(paginationPanel, BorderLayout.SOUTH);
 
+        // Directory tree: selecting a directory limits the table to the files below it
+        directoryModel = new DirectoryTreeModel(results, getString("tree.allFiles"), getString("tree.node"));
+        directoryTree = new JTree(directoryModel);
+        directoryTree.getSelectionModel().setSelectionMode(javax.swing.tree.TreeSelectionModel.SINGLE_TREE_SELECTION);
+        directoryTree.setToolTipText(getString("tree.tooltip"));
+        directoryTree.addTreeSelectionListener(e -> {
+            if (reloadingTree) return;
+            javax.swing.tree.TreePath path = directoryTree.getSelectionPath();
+            int dir = path == null ? -1 : ((DirectoryTreeModel.Dir) path.getLastPathComponent()).node;
+            if (dir == tableModel.getDirectory()) return;
+            tableModel.setDirectory(dir);
+            currentPage = 0;
+            showCurrentPage();
+        });
+        JScrollPane treeScroll = new JScrollPane(directoryTree);
+        treeScroll.setPreferredSize(new Dimension(220, 200));
+        JSplitPane resultSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, treeScroll, tableWithPagination);
+        resultSplit.setResizeWeight(0.2);
+
         // Result text
         resultArea = new JTextArea();
         resultArea.setEditable(false);
@@ -428,7 +550,7 @@ public class CodeCounterPluginPanel extends PluginPanel {
         textScroll.setPreferredSize(new Dimension(800, 120));
 
         panel.add(buttonPanel, BorderLayout.NORTH);
-        panel.add(tableWithPagination, BorderLayout.CENTER);
+        panel.add(resultSplit, BorderLayout.CENTER);
         panel.add(textScroll, BorderLayout.SOUTH);
 
         return panel;
@@ -488,18 +610,9 @@ public class CodeCounterPluginPanel extends PluginPanel {
         // Split by comma, space, or semicolon
         String[] parts = raw.split("[,;\\s]+");
         for (String part : parts) {
-            String ext = part.trim();
-            if (ext.isEmpty()) continue;
-            // Strip leading wildcard: *.java → .java, * .java → .java
-            if (ext.startsWith("*.")) {
-                ext = ext.substring(1); // "*.java" → ".java"
-            } else if (ext.startsWith("*")) {
-                ext = ext.substring(1); // "*java" → "java"
-            }
-            // Auto-prepend dot if missing
-            if (!ext.startsWith(".")) {
-                ext = "." + ext;
-            }
+            // Strip leading wildcard and auto-prepend dot: *.java → .java, java → .java
+            String ext = NameMatcher.normalizeExtension(part);
+            if (ext == null) continue;
             // Skip if already exists
             boolean exists = false;
             for (JCheckBox cb : fileTypeCBs) {
@@ -560,6 +673,37 @@ public class CodeCounterPluginPanel extends PluginPanel {
         return item != null ? item.toString().trim() : "";
     }
 
+    /**
+     * @return the roots entered in the combo box, without repeated or nested ones; several are
+     *         separated by the platform's path separator (e.g. {@code a;b} on Windows, {@code a:b}
+     *         elsewhere)
+     */
+    private List<Path> getSelectedRoots() {
+        List<Path> roots = new ArrayList<>();
+        for (String part : getSelectedFolder().split(java.util.regex.Pattern.quote(java.io.File.pathSeparator))) {
+            if (!part.trim().isEmpty()) roots.add(Paths.get(part.trim()));
+        }
+        return CodeCounterCore.distinctRoots(roots);
+    }
+
+    /**
+     * Returns the persistent scan index, creating it on first use. Its location is recorded in
+     * the plugin preferences so it stays with them and can be changed there.
+     */
+    private ScanIndex getScanIndex() {
+        if (scanIndex == null) {
+            java.util.prefs.Preferences prefs = context.getPreferences();
+            String file = prefs.get(PREF_INDEX_FILE, null);
+            if (file == null) {
+                file = ScanIndex.defaultFile().toString();
+                prefs.put(PREF_INDEX_FILE, file);
+            }
+            scanIndex = new ScanIndex(Paths.get(file),
+                prefs.getInt(PREF_INDEX_MAX_ENTRIES, ScanIndex.DEFAULT_MAX_ENTRIES));
+        }
+        return scanIndex;
+    }
+
     /**
      * Load recent folder history from Preferences into the combo box.
      */
@@ -622,67 +766,204 @@ public class CodeCounterPluginPanel extends PluginPanel {
         // Save to recent history
         addToRecentFolders(rootPath);
 
-        // Collect selected file types
-        List<String> extensions = new ArrayList<>();
-        for (JCheckBox cb : fileTypeCBs) {
-            if (cb.isSelected()) {
-                String ext = cb.getText().trim();
-                if (!ext.isEmpty()) {
-                    // Normalize: strip leading wildcard (*.java → .java)
-                    if (ext.startsWith("*.")) {
-                        ext = ext.substring(1);
-                    } else if (ext.startsWith("*")) {
-                        ext = ext.substring(1);
-                    }
-                    if (!ext.startsWith(".")) {
-                        ext = "." + ext;
-                    }
-                    extensions.add(ext);
-                }
+        List<String> extensions = getSelectedExtensions();
+        List<String> excludeDirs = getSelectedExcludeDirs();
+
+        // Apply and remember execution settings
+        CodeCounterCore.ExecutionMode mode = executionModeCombo.getSelectedIndex() == 1
+            ? CodeCounterCore.ExecutionMode.VIRTUAL_THREADS : CodeCounterCore.ExecutionMode.FORK_JOIN;
+        int maxOpenFiles = ((Number) maxOpenFilesSpinner.getValue()).intValue();
+        core.setExecutionMode(mode);
+        core.setMaxOpenFiles(maxOpenFiles);
+        context.getPreferences().put(PREF_EXECUTION_MODE, mode.name());
+        context.getPreferences().putInt(PREF_MAX_OPEN_FILES, maxOpenFiles);
+        String fallbackCharsets = fallbackCharsetsField.getText().trim();
+        core.setFallbackCharsets(CodeCounterCore.parseCharsets(fallbackCharsets));
+        context.getPreferences().put(PREF_FALLBACK_CHARSETS, fallbackCharsets);
+        core.setScanIndex(useIndexCB.isSelected() ? getScanIndex() : null);
+        context.getPreferences().putBoolean(PREF_USE_INDEX, useIndexCB.isSelected());
+        core.setContentCache(contentCacheCB.isSelected() ? contentCache : null);
+        context.getPreferences().putBoolean(PREF_CONTENT_CACHE, contentCacheCB.isSelected());
+        core.setUseGitIndex(gitIndexCB.isSelected());
+        context.getPreferences().putBoolean(PREF_GIT_INDEX, gitIndexCB.isSelected());
+        core.setUseIgnoreFiles(ignoreFilesCB.isSelected());
+        context.getPreferences().putBoolean(PREF_IGNORE_FILES, ignoreFilesCB.isSelected());
+        core.setScanArchives(scanArchivesCB.isSelected());
+        context.getPreferences().putBoolean(PREF_SCAN_ARCHIVES, scanArchivesCB.isSelected());
+
+        // Run the counting logic in the background; several roots share one scan
+        stopWatcher();
+        cancelScan();
+        List<Path> roots = getSelectedRoots();
+        lastRoots = roots;
+        lastExtensions = extensions;
+        lastExcludeDirs = excludeDirs;
+        lastIncludeBlank = includeBlankCB.isSelected();
+        lastIncludeHeader = includeHeaderCB.isSelected();
+        lastWatchUpdate = null;
+        lastDelta = null;
+
+        showResults(Collections.emptyList());
+        scanSession = new ScanSession();
+        core.scan(roots, extensions, lastIncludeBlank, lastIncludeHeader, excludeDirs).subscribe(scanSession);
+        scanSession.start();
+    }
+
+    /**
+     * Stops the running scan, if any. Results received so far stay in the table.
+     */
+    private void cancelScan() {
+        if (scanSession != null) scanSession.cancel();
+    }
+
+    private void setScanning(boolean scanning) {
+        countBtn.setEnabled(!scanning);
+        cancelBtn.setEnabled(scanning);
+        compareBtn.setEnabled(!scanning);
+    }
+
+    /**
+     * Receives the results of a running scan on the pipeline's threads and moves them into the
+     * table on the EDT in batches: a timer drains everything that arrived since its last tick,
+     * so the table is refreshed at a fixed rate however fast files are counted. Only the visible
+     * page is rebuilt, and only while new rows still land on it.
+     */
+    private final class ScanSession implements Flow.Subscriber<CodeCounterCore.FileStat> {
+        private final Queue<CodeCounterCore.FileStat> pending = new ConcurrentLinkedQueue<>();
+        private final javax.swing.Timer timer = new javax.swing.Timer(SCAN_REFRESH_MILLIS, e -> flush());
+        private volatile Flow.Subscription subscription;
+        private volatile boolean done;
+        private volatile Throwable failure;
+        private long lastProgress;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(CodeCounterCore.FileStat item) {
+            pending.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failure = throwable;
+            done = true;
+        }
+
+        @Override
+        public void onComplete() {
+            done = true;
+        }
+
+        void start() {
+            setScanning(true);
+            timer.start();
+        }
+
+        void cancel() {
+            Flow.Subscription s = subscription;
+            if (s != null) s.cancel(); // stops the walker and the analyzers
+            drain();
+            finish(true);
+        }
+
+        private void flush() {
+            boolean finished = done; // read first: everything published before completion is queued by now
+            drain();
+            if (finished) {
+                finish(false);
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastProgress >= PROGRESS_REFRESH_MILLIS) {
+                lastProgress = now;
+                ScanMetrics metrics = core.getLastScanMetrics();
+                context.showStatus(String.format(getString("status.scanning"), tableModel.size(),
+                        metrics.getFilesPerSecond(), metrics.getBytesPerSecond() / 1048576.0));
+                refreshResultAreaText();
             }
         }
 
-        // Build exclude list from selected VCS + IDE + build dir checkboxes
-        List<String> excludeDirs = new ArrayList<>();
-        for (JCheckBox cb : vcsDirCBs) {
-            if (cb.isSelected()) {
-                String dir = cb.getText().trim();
-                if (!dir.isEmpty()) {
-                    excludeDirs.add(dir);
-                }
+        private void drain() {
+            List<CodeCounterCore.FileStat> batch = new ArrayList<>(pending.size());
+            CodeCounterCore.FileStat fs;
+            while ((fs = pending.poll()) != null) {
+                batch.add(fs);
+                addToTotals(fs, 1);
             }
+            if (batch.isEmpty()) return;
+            // Only the rows in view are painted, so appending is cheap however many there are
+            tableModel.addAll(batch);
+            updatePaginationButtons();
         }
-        for (JCheckBox cb : ideDirCBs) {
-            if (cb.isSelected()) {
-                String dir = cb.getText().trim();
-                if (!dir.isEmpty()) {
-                    excludeDirs.add(dir);
-                }
+
+        private void finish(boolean cancelled) {
+            timer.stop();
+            if (scanSession != this) return;
+            scanSession = null;
+            lastScanCancelled = cancelled;
+            setScanning(false);
+            refreshDirectoryTree();
+            refreshResultAreaText();
+            Throwable error = failure;
+            if (cancelled) {
+                context.showStatus(String.format(getString("status.scanCancelled"), tableModel.size()));
+            } else if (error != null) {
+                context.showStatus(String.format(getString("status.scanFailed"), error.getMessage()));
+            } else {
+                context.showStatus(null);
+                if (watchBtn.isSelected()) startWatcher();
             }
         }
-        for (JCheckBox cb : buildDirCBs) {
+    }
+
+    /**
+     * @return the normalized extensions of the checked file types
+     */
+    private List<String> getSelectedExtensions() {
+        List<String> extensions = new ArrayList<>();
+        for (JCheckBox cb : fileTypeCBs) {
             if (cb.isSelected()) {
-                String dir = cb.getText().trim();
-                if (!dir.isEmpty()) {
-                    excludeDirs.add(dir);
+                // Normalize: strip leading wildcard (*.java → .java)
+                String ext = NameMatcher.normalizeExtension(cb.getText());
+                if (ext != null) {
+                    extensions.add(ext);
                 }
             }
         }
+        return extensions;
+    }
 
-        // Run the counting logic
-        Path root = Paths.get(rootPath);
-        List<CodeCounterCore.FileStat> fileStats = core.countLinesWithDetail(root, extensions,
-            includeBlankCB.isSelected(), includeHeaderCB.isSelected(), excludeDirs);
+    /**
+     * @return the checked VCS, IDE and build directory names
+     */
+    private List<String> getSelectedExcludeDirs() {
+        List<String> excludeDirs = new ArrayList<>();
+        for (List<JCheckBox> group : Arrays.asList(vcsDirCBs, ideDirCBs, buildDirCBs)) {
+            for (JCheckBox cb : group) {
+                if (cb.isSelected()) {
+                    String dir = cb.getText().trim();
+                    if (!dir.isEmpty()) {
+                        excludeDirs.add(dir);
+                    }
+                }
+            }
+        }
+        return excludeDirs;
+    }
 
-        // Update table
-        allTableRows.clear();
-        tableModel.setRowCount(0);
+    /**
+     * Replaces the table rows and the cached totals with the given results.
+     */
+    private void showResults(List<? extends CodeCounterCore.FileStat> fileStats) {
+        tableModel.clear();
+        tableModel.addAll(fileStats);
+        refreshDirectoryTree();
         long totalCode = 0, totalComment = 0, totalBlank = 0, totalTodo = 0;
-        int idx = 1;
         for (CodeCounterCore.FileStat fs : fileStats) {
-            allTableRows.add(new Object[] {
-                idx++, fs.path, fs.type, fs.codeLines, fs.commentLines, fs.blankLines, fs.todoLines
-            });
             totalCode += fs.codeLines;
             totalComment += fs.commentLines;
             totalBlank += fs.blankLines;
@@ -698,10 +979,302 @@ public class CodeCounterPluginPanel extends PluginPanel {
         cachedTotalComment = totalComment;
         cachedTotalBlank = totalBlank;
         cachedTotalTodo = totalTodo;
+        rootTotals = CodeCounterCore.totalsByRoot(fileStats);
+        lastScanCancelled = false;
         hasResults = true;
         refreshResultAreaText();
     }
 
+    // ==================== Commit comparison ====================
+
+    /**
+     * Asks for two revisions of the repository containing the selected folder and shows the
+     * per-file line changes between them.
+     */
+    private void doCompare() {
+        String rootPath = getSelectedFolder();
+        if (rootPath.isEmpty()) {
+            JOptionPane.showMessageDialog(this, getString("message.selectFolder"));
+            return;
+        }
+        JTextField fromField = new JTextField(context.getPreferences().get(PREF_COMPARE_FROM, "HEAD~1"), 20);
+        JTextField toField = new JTextField(context.getPreferences().get(PREF_COMPARE_TO, "HEAD"), 20);
+        JPanel form = new JPanel(new GridLayout(2, 2, 6, 6));
+        form.add(new JLabel(getString("dialog.compare.from")));
+        form.add(fromField);
+        form.add(new JLabel(getString("dialog.compare.to")));
+        form.add(toField);
+        if (JOptionPane.showConfirmDialog(this, form, getString("dialog.compare.title"),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+        String from = fromField.getText().trim();
+        String to = toField.getText().trim();
+        context.getPreferences().put(PREF_COMPARE_FROM, from);
+        context.getPreferences().put(PREF_COMPARE_TO, to);
+
+        // Reading the packs and classifying the changed files can take a while: keep the EDT free
+        Path repository = getSelectedRoots().get(0);
+        List<String> extensions = getSelectedExtensions();
+        boolean includeBlank = includeBlankCB.isSelected(), includeHeader = includeHeaderCB.isSelected();
+        List<String> excludeDirs = getSelectedExcludeDirs();
+        // A count finishing in the meantime would be replaced by the deltas: hold it back too
+        countBtn.setEnabled(false);
+        compareBtn.setEnabled(false);
+        context.showStatus(getString("status.comparing"));
+        new SwingWorker<List<CodeCounterCore.FileDelta>, Void>() {
+            @Override
+            protected List<CodeCounterCore.FileDelta> doInBackground() throws Exception {
+                return core.countDelta(repository, from, to, extensions, includeBlank, includeHeader, excludeDirs);
+            }
+
+            @Override
+            protected void done() {
+                setScanning(false);
+                context.showStatus(null);
+                try {
+                    showDeltas(from, to, get());
+                } catch (Exception ex) {
+                    Throwable cause = ex instanceof java.util.concurrent.ExecutionException ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(CodeCounterPluginPanel.this,
+                        String.format(getString("message.compareFailed"), cause.getMessage()));
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Replaces the results with the line changes between two revisions.
+     */
+    private void showDeltas(String from, String to, List<CodeCounterCore.FileDelta> deltas) {
+        // Delta rows are not files on disk: they cannot be watched
+        cancelScan();
+        stopWatcher();
+        watchBtn.setSelected(false);
+        lastRoots = Collections.emptyList();
+        lastWatchUpdate = null;
+        int[] byStatus = new int[CodeCounterCore.FileDelta.Status.values().length];
+        for (CodeCounterCore.FileDelta delta : deltas) {
+            byStatus[delta.status.ordinal()]++;
+        }
+        lastDelta = new Object[] {from, to,
+            byStatus[CodeCounterCore.FileDelta.Status.ADDED.ordinal()],
+            byStatus[CodeCounterCore.FileDelta.Status.MODIFIED.ordinal()],
+            byStatus[CodeCounterCore.FileDelta.Status.DELETED.ordinal()]};
+        showResults(deltas);
+    }
+
+    // ==================== Live watch mode ====================
+
+    /**
+     * Watching walks the directory trees, so it would add untracked files to a count of the
+     * tracked files only: the button is disabled (and a running watch stopped) while the git
+     * index option is on.
+     */
+    private void updateWatchAvailability() {
+        boolean available = !gitIndexCB.isSelected();
+        if (!available && watchBtn.isSelected()) {
+            stopWatcher();
+            watchBtn.setSelected(false);
+        }
+        watchBtn.setEnabled(available);
+        watchBtn.setToolTipText(getString(available ? "button.watch.tooltip" : "button.watch.gitIndexTooltip"));
+    }
+
+    /**
+     * Starts keeping the current results up to date with file changes under the last scanned
+     * roots. Registering the directories walks every tree, so the watchers are built in the
+     * background; changes they report in the meantime are already applied.
+     */
+    private void startWatcher() {
+        stopWatcher();
+        if (!hasResults || lastRoots.isEmpty()) return; // started by the next count
+        Object session = new Object();
+        watchSession = session;
+        Map<String, List<String>> known = new LinkedHashMap<>();
+        for (Path root : lastRoots) known.put(root.toString(), new ArrayList<>());
+        for (int i = 0; i < tableModel.size(); i++) {
+            List<String> paths = known.get(results.getRoot(i));
+            if (paths != null) paths.add(results.getPath(i));
+        }
+        List<Path> roots = lastRoots;
+        List<String> extensions = lastExtensions, excludeDirs = lastExcludeDirs;
+        boolean includeBlank = lastIncludeBlank, includeHeader = lastIncludeHeader;
+        context.showStatus(getString("status.watchStarting"));
+        new SwingWorker<List<TreeWatcher>, Void>() {
+            @Override
+            protected List<TreeWatcher> doInBackground() throws Exception {
+                List<TreeWatcher> started = new ArrayList<>();
+                try {
+                    for (Path root : roots) {
+                        started.add(core.watch(root, extensions, includeBlank, includeHeader, excludeDirs,
+                            known.get(root.toString()), change -> SwingUtilities.invokeLater(() -> {
+                                if (watchSession == session) applyWatchChange(root, change);
+                            })));
+                    }
+                } catch (Exception e) {
+                    for (TreeWatcher w : started) w.close();
+                    throw e;
+                }
+                return started;
+            }
+
+            @Override
+            protected void done() {
+                List<TreeWatcher> started;
+                try {
+                    started = get();
+                } catch (Exception ex) {
+                    if (watchSession != session) return;
+                    watchSession = null;
+                    context.showStatus(null);
+                    watchBtn.setSelected(false);
+                    Throwable cause = ex instanceof java.util.concurrent.ExecutionException ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(CodeCounterPluginPanel.this,
+                        String.format(getString("message.watchFailed"), cause.getMessage()));
+                    return;
+                }
+                if (watchSession != session) {
+                    for (TreeWatcher w : started) w.close(); // stopped while the trees were registered
+                    return;
+                }
+                context.showStatus(null);
+                watchers.addAll(started);
+            }
+        }.execute();
+    }
+
+    private void stopWatcher() {
+        watchSession = null;
+        for (TreeWatcher w : watchers) w.close();
+        watchers.clear();
+    }
+
+    /**
+     * Merges a batch of watched changes below one root into the table rows and the cached totals.
+     */
+    private void applyWatchChange(Path rootPath, TreeWatcher.Change change) {
+        String root = rootPath.toString();
+        List<String> paths = new ArrayList<>(change.removed.size() + change.updated.size());
+        paths.addAll(change.removed);
+        for (CodeCounterCore.FileStat fs : change.updated) paths.add(fs.path);
+        // Looked up through the directory trie, so the stored paths are not built
+        int[] rows = results.indexOf(paths, root);
+
+        int next = 0;
+        boolean[] removedRows = new boolean[tableModel.size()];
+        for (int k = 0; k < change.removed.size(); k++) {
+            int i = rows[next++];
+            if (i < 0) continue;
+            addRowToTotals(i, -1);
+            removedRows[i] = true;
+        }
+        for (CodeCounterCore.FileStat fs : change.updated) {
+            fs.root = root;
+            int i = rows[next++];
+            if (i >= 0 && !removedRows[i]) {
+                addRowToTotals(i, -1);
+                tableModel.set(i, fs);
+            } else {
+                tableModel.add(fs);
+            }
+            addToTotals(fs, 1);
+        }
+        tableModel.removeRows(removedRows);
+        tableModel.rowsChanged();
+        refreshDirectoryTree();
+
+        lastWatchUpdate = new Date();
+        lastWatchChanged = change.updated.size();
+        lastWatchRemoved = change.removed.size();
+        goToPage(currentPage);
+        refreshResultAreaText();
+    }
+
+    /**
+     * Rebuilds the directory tree from the results, keeping the expanded directories and the
+     * selected one if they still have files.
+     */
+    private void refreshDirectoryTree() {
+        List<Integer> expanded = new ArrayList<>();
+        Enumeration<javax.swing.tree.TreePath> paths =
+            directoryTree.getExpandedDescendants(new javax.swing.tree.TreePath(directoryModel.getRoot()));
+        while (paths != null && paths.hasMoreElements()) {
+            expanded.add(((DirectoryTreeModel.Dir) paths.nextElement().getLastPathComponent()).node);
+        }
+        int selected = tableModel.getDirectory();
+        reloadingTree = true;
+        try {
+            directoryModel.reload();
+            directoryTree.expandRow(0);
+            for (int dir : expanded) {
+                javax.swing.tree.TreePath path = directoryModel.pathTo(dir);
+                if (path != null) directoryTree.expandPath(path);
+            }
+        } finally {
+            reloadingTree = false;
+        }
+        selectDirectory(selected);
+    }
+
+    /**
+     * Selects a directory node in the tree, or the root if it is no longer shown, and limits the
+     * table to it.
+     */
+    private void selectDirectory(int dir) {
+        javax.swing.tree.TreePath path = directoryModel.pathTo(dir);
+        if (path == null) path = directoryModel.pathTo(-1);
+        reloadingTree = true;
+        try {
+            directoryTree.setSelectionPath(path);
+        } finally {
+            reloadingTree = false;
+        }
+        int shown = ((DirectoryTreeModel.Dir) path.getLastPathComponent()).node;
+        if (shown != tableModel.getDirectory()) {
+            tableModel.setDirectory(shown);
+            goToPage(currentPage);
+        }
+    }
+
+    /**
+     * Adds ({@code sign} 1) or subtracts (-1) the counts of a file to the totals and to those of
+     * its root.
+     */
+    private void addToTotals(CodeCounterCore.FileStat fs, int sign) {
+        addToTotals(fs.root, fs.codeLines, fs.commentLines, fs.blankLines, fs.todoLines, sign);
+    }
+
+    private void addRowToTotals(int row, int sign) {
+        addToTotals(results.getRoot(row), results.getCode(row), results.getComment(row),
+                results.getBlank(row), results.getTodo(row), sign);
+    }
+
+    private void addToTotals(String fileRoot, long code, long comment, long blank, long todo, int sign) {
+        cachedTotalCode += sign * code;
+        cachedTotalComment += sign * comment;
+        cachedTotalBlank += sign * blank;
+        cachedTotalTodo += sign * todo;
+        String root = fileRoot == null ? "" : fileRoot;
+        CodeCounterCore.FileStat total = rootTotals.get(root);
+        if (total == null) {
+            total = new CodeCounterCore.FileStat(root, null, 0, 0, 0, 0);
+            total.root = root;
+            rootTotals.put(root, total);
+        }
+        total.codeLines += sign * code;
+        total.commentLines += sign * comment;
+        total.blankLines += sign * blank;
+        total.todoLines += sign * todo;
+    }
+
+    @Override
+    public void dispose() {
+        cancelScan();
+        stopWatcher();
+        super.dispose();
+    }
+
     /**
      * Refresh the result area text using cached totals and current locale strings.
      */
@@ -714,14 +1287,42 @@ public class CodeCounterPluginPanel extends PluginPanel {
         sb.append(getString("result.commentLines")).append(": ").append(cachedTotalComment).append("\n");
         sb.append(getString("result.blankLines")).append(": ").append(cachedTotalBlank).append("\n");
         sb.append(getString("result.todoLines")).append(": ").append(cachedTotalTodo).append("\n");
+        if (rootTotals.size() > 1) {
+            sb.append(getString("result.byRoot")).append(":\n");
+            for (CodeCounterCore.FileStat total : rootTotals.values()) {
+                sb.append("  ").append(String.format(getString("result.rootTotal"), total.root,
+                        total.codeLines + total.commentLines + total.blankLines,
+                        total.codeLines, total.commentLines, total.blankLines)).append("\n");
+            }
+        }
+        ScanMetrics metrics = core.getLastScanMetrics();
+        if (lastDelta != null) {
+            sb.append(String.format(getString("result.delta"), lastDelta)).append("\n");
+        } else if (lastScanCancelled) {
+            sb.append(String.format(getString("result.cancelled"), tableModel.size())).append("\n");
+        } else if (metrics.isFinished() && scanSession == null) {
+            sb.append(String.format(getString("result.throughput"), metrics.getFilesPerSecond(),
+                    metrics.getBytesPerSecond() / 1048576.0, metrics.getElapsedMillis())).append("\n");
+            if (metrics.getIndexHits() > 0) {
+                sb.append(String.format(getString("result.indexHits"), metrics.getIndexHits())).append("\n");
+            }
+            if (metrics.getContentCacheLookups() > 0) {
+                sb.append(String.format(getString("result.contentCache"), metrics.getContentCacheHits(),
+                        metrics.getContentCacheLookups(), metrics.getContentCacheHitRate() * 100)).append("\n");
+            }
+        }
+        if (lastWatchUpdate != null) {
+            sb.append(String.format(getString("result.watchUpdate"), lastWatchUpdate,
+                    lastWatchChanged, lastWatchRemoved)).append("\n");
+        }
         resultArea.setText(sb.toString());
     }
 
     // ==================== Pagination ====================
 
     private int getTotalPages() {
-        if (allTableRows.isEmpty()) return 1;
-        return (int) Math.ceil((double) allTableRows.size() / pageSize);
+        if (tableModel.viewSize() == 0) return 1;
+        return (int) Math.ceil((double) tableModel.viewSize() / pageSize);
     }
 
     private void goToPage(int page) {
@@ -732,17 +1333,18 @@ public class CodeCounterPluginPanel extends PluginPanel {
         showCurrentPage();
     }
 
+    /**
+     * Shows the current page, or all results when pagination is off.
+     */
     private void showCurrentPage() {
-        tableModel.setRowCount(0);
-        int start = currentPage * pageSize;
-        int end = Math.min(start + pageSize, allTableRows.size());
-        for (int i = start; i < end; i++) {
-            tableModel.addRow(allTableRows.get(i));
-        }
+        boolean paginate = paginateCB.isSelected();
+        tableModel.setWindow(currentPage * pageSize, paginate ? pageSize : 0);
+        paginationPanel.setVisible(paginate);
         updatePaginationButtons();
     }
 
     private void updatePaginationButtons() {
+        if (!paginateCB.isSelected()) return;
         int totalPages = getTotalPages();
         boolean hasPrev = currentPage > 0;
         boolean hasNext = currentPage < totalPages - 1;
@@ -751,19 +1353,52 @@ public class CodeCounterPluginPanel extends PluginPanel {
         nextPageBtn.setEnabled(hasNext);
         lastPageBtn.setEnabled(hasNext);
 
-        if (allTableRows.isEmpty()) {
+        if (tableModel.viewSize() == 0) {
             pageInfoLabel.setText(getString("pagination.info.empty"));
         } else {
             int start = currentPage * pageSize + 1;
-            int end = Math.min((currentPage + 1) * pageSize, allTableRows.size());
+            int end = Math.min((currentPage + 1) * pageSize, tableModel.viewSize());
             String info = String.format(getString("pagination.info"),
-                    start, end, allTableRows.size(), currentPage + 1, totalPages);
+                    start, end, tableModel.viewSize(), currentPage + 1, totalPages);
             pageInfoLabel.setText(info);
         }
     }
 
+    /**
+     * Marks the sort column's header with the sort direction.
+     */
+    private void updateSortIndicator() {
+        javax.swing.table.TableColumnModel cm = fileTable.getColumnModel();
+        for (int i = 0; i < cm.getColumnCount(); i++) {
+            int column = cm.getColumn(i).getModelIndex();
+            String name = tableModel.getColumnName(column);
+            if (column == tableModel.getSortColumn()) {
+                name += tableModel.isAscending() ? " \u25B2" : " \u25BC";
+            }
+            cm.getColumn(i).setHeaderValue(name);
+        }
+        fileTable.getTableHeader().repaint();
+    }
+
+    /**
+     * Sets the localized column labels, which rebuilds the table columns.
+     */
+    private void setTableColumnNames() {
+        tableModel.setColumnNames(
+            getString("table.header.index"),
+            getString("table.header.path"),
+            getString("table.header.type"),
+            getString("table.header.code"),
+            getString("table.header.comment"),
+            getString("table.header.blank"),
+            getString("table.header.todo"),
+            getString("table.header.root"));
+        applyTableColumnWidths();
+        updateSortIndicator();
+    }
+
     private void exportCSV() {
-        if (allTableRows.isEmpty()) {
+        if (tableModel.size() == 0) {
             JOptionPane.showMessageDialog(this, getString("message.noData"));
             return;
         }
@@ -802,20 +1437,20 @@ public class CodeCounterPluginPanel extends PluginPanel {
 
             // Write data rows
             long totalCode = 0, totalComment = 0, totalBlank = 0, totalTodo = 0;
-            for (Object[] row : allTableRows) {
-                long code = ((Number) row[3]).longValue();
-                long comment = ((Number) row[4]).longValue();
-                long blank = ((Number) row[5]).longValue();
-                long todo = ((Number) row[6]).longValue();
+            for (int i = 0; i < results.size(); i++) {
+                long code = results.getCode(i);
+                long comment = results.getComment(i);
+                long blank = results.getBlank(i);
+                long todo = results.getTodo(i);
                 totalCode += code;
                 totalComment += comment;
                 totalBlank += blank;
                 totalTodo += todo;
 
                 pw.println(String.join(",",
-                        csvQuote(row[0].toString()),
-                        csvQuote(row[1].toString()),
-                        csvQuote(row[2].toString()),
+                        csvQuote(String.valueOf(i + 1)),
+                        csvQuote(results.getPath(i)),
+                        csvQuote(results.getType(i)),
                         String.valueOf(code),
                         String.valueOf(comment),
                         String.valueOf(blank),
@@ -852,7 +1487,7 @@ public class CodeCounterPluginPanel extends PluginPanel {
     }
 
     private void exportXLSX() {
-        if (allTableRows.isEmpty()) {
+        if (tableModel.size() == 0) {
             JOptionPane.showMessageDialog(this, getString("message.noData"));
             return;
         }
@@ -871,131 +1506,10 @@ public class CodeCounterPluginPanel extends PluginPanel {
             file = new java.io.File(file.getAbsolutePath() + ".xlsx");
         }
 
-        try (org.apache.poi.xssf.usermodel.XSSFWorkbook workbook =
-                     new org.apache.poi.xssf.usermodel.XSSFWorkbook()) {
-
-            org.apache.poi.xssf.usermodel.XSSFSheet sheet =
-                    workbook.createSheet(getString("result.title"));
-
-            // --- Header style ---
-            org.apache.poi.xssf.usermodel.XSSFCellStyle headerStyle = workbook.createCellStyle();
-            org.apache.poi.xssf.usermodel.XSSFFont headerFont = workbook.createFont();
-            headerFont.setBold(true);
-            headerFont.setFontHeightInPoints((short) 11);
-            headerStyle.setFont(headerFont);
-            headerStyle.setFillForegroundColor(
-                    new org.apache.poi.xssf.usermodel.XSSFColor(
-                            new byte[]{(byte) 68, (byte) 114, (byte) 196}, null));
-            headerStyle.setFillPattern(org.apache.poi.ss.usermodel.FillPatternType.SOLID_FOREGROUND);
-            headerFont.setColor(org.apache.poi.ss.usermodel.IndexedColors.WHITE.getIndex());
-
-            // --- Summary style ---
-            org.apache.poi.xssf.usermodel.XSSFCellStyle summaryStyle = workbook.createCellStyle();
-            org.apache.poi.xssf.usermodel.XSSFFont summaryFont = workbook.createFont();
-            summaryFont.setBold(true);
-            summaryStyle.setFont(summaryFont);
-
-            // --- Number style ---
-            org.apache.poi.xssf.usermodel.XSSFCellStyle numberStyle = workbook.createCellStyle();
-            numberStyle.setDataFormat(workbook.createDataFormat().getFormat("#,##0"));
-
-            // Write header row
-            String[] headers = {
-                    getString("table.header.index"),
-                    getString("table.header.path"),
-                    getString("table.header.type"),
-                    getString("table.header.code"),
-                    getString("table.header.comment"),
-                    getString("table.header.blank"),
-                    getString("table.header.todo")
-            };
-            org.apache.poi.ss.usermodel.Row headerRow = sheet.createRow(0);
-            for (int col = 0; col < headers.length; col++) {
-                org.apache.poi.ss.usermodel.Cell cell = headerRow.createCell(col);
-                cell.setCellValue(headers[col]);
-                cell.setCellStyle(headerStyle);
-            }
-
-            // Write data rows
-            long totalCode = 0, totalComment = 0, totalBlank = 0, totalTodo = 0;
-            for (int i = 0; i < allTableRows.size(); i++) {
-                Object[] rowData = allTableRows.get(i);
-                org.apache.poi.ss.usermodel.Row row = sheet.createRow(i + 1);
-
-                // Index
-                row.createCell(0).setCellValue(((Number) rowData[0]).intValue());
-                // Path
-                row.createCell(1).setCellValue(rowData[1].toString());
-                // Type
-                row.createCell(2).setCellValue(rowData[2].toString());
-
-                // Numeric columns with number style
-                long code = ((Number) rowData[3]).longValue();
-                long comment = ((Number) rowData[4]).longValue();
-                long blank = ((Number) rowData[5]).longValue();
-                long todo = ((Number) rowData[6]).longValue();
-                totalCode += code;
-                totalComment += comment;
-                totalBlank += blank;
-                totalTodo += todo;
-
-                org.apache.poi.ss.usermodel.Cell c3 = row.createCell(3);
-                c3.setCellValue(code);
-                c3.setCellStyle(numberStyle);
-                org.apache.poi.ss.usermodel.Cell c4 = row.createCell(4);
-                c4.setCellValue(comment);
-                c4.setCellStyle(numberStyle);
-                org.apache.poi.ss.usermodel.Cell c5 = row.createCell(5);
-                c5.setCellValue(blank);
-                c5.setCellStyle(numberStyle);
-                org.apache.poi.ss.usermodel.Cell c6 = row.createCell(6);
-                c6.setCellValue(todo);
-                c6.setCellStyle(numberStyle);
-            }
-
-            // Write summary row
-            int summaryRowIdx = allTableRows.size() + 1;
-            org.apache.poi.ss.usermodel.Row sumRow = sheet.createRow(summaryRowIdx);
-            org.apache.poi.ss.usermodel.Cell sumLabel = sumRow.createCell(1);
-            sumLabel.setCellValue(getString("result.totalLines"));
-            sumLabel.setCellStyle(summaryStyle);
-
-            org.apache.poi.ss.usermodel.Cell sc3 = sumRow.createCell(3);
-            sc3.setCellValue(totalCode);
-            sc3.setCellStyle(summaryStyle);
-            org.apache.poi.ss.usermodel.Cell sc4 = sumRow.createCell(4);
-            sc4.setCellValue(totalComment);
-            sc4.setCellStyle(summaryStyle);
-            org.apache.poi.ss.usermodel.Cell sc5 = sumRow.createCell(5);
-            sc5.setCellValue(totalBlank);
-            sc5.setCellStyle(summaryStyle);
-            org.apache.poi.ss.usermodel.Cell sc6 = sumRow.createCell(6);
-            sc6.setCellValue(totalTodo);
-            sc6.setCellStyle(summaryStyle);
-
-            // Auto-size columns
-            for (int col = 0; col < headers.length; col++) {
-                sheet.autoSizeColumn(col);
-            }
-            // Give path column extra width
-            int pathWidth = sheet.getColumnWidth(1);
-            if (pathWidth < 10000) sheet.setColumnWidth(1, 10000);
-
-            // Freeze header row
-            sheet.createFreezePane(0, 1);
-
-            // Auto-filter
-            sheet.setAutoFilter(new org.apache.poi.ss.util.CellRangeAddress(
-                    0, summaryRowIdx - 1, 0, headers.length - 1));
-
-            // Write file
-            try (java.io.FileOutputStream fos = new java.io.FileOutputStream(file)) {
-                workbook.write(fos);
-            }
-
+        try {
+            ReportServices.exports().writeXlsx(createExportReport(), file);
             JOptionPane.showMessageDialog(this,
                     getString("message.export.xlsx.success") + "\n" + file.getAbsolutePath());
-
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this,
                     getString("message.export.fail") + " " + ex.getMessage(),
@@ -1006,7 +1520,7 @@ public class CodeCounterPluginPanel extends PluginPanel {
 
     // ==================== PDF Export (Apache PDFBox) ====================
     private void exportPDF() {
-        if (allTableRows.isEmpty()) {
+        if (tableModel.size() == 0) {
             JOptionPane.showMessageDialog(this, getString("message.noData"));
             return;
         }
@@ -1023,305 +1537,10 @@ public class CodeCounterPluginPanel extends PluginPanel {
             file = new java.io.File(file.getAbsolutePath() + ".pdf");
         }
 
-        try (org.apache.pdfbox.pdmodel.PDDocument doc = new org.apache.pdfbox.pdmodel.PDDocument()) {
-
-            // Load a CJK-capable font
-            org.apache.pdfbox.pdmodel.font.PDFont cjkFont = null;
-            try {
-                String windir = System.getenv("windir");
-                if (windir != null) {
-                    // Try Microsoft YaHei TTF first
-                    java.io.File msyhTtf = new java.io.File(windir + "\\Fonts\\msyh.ttf");
-                    if (msyhTtf.exists()) {
-                        try {
-                            cjkFont = org.apache.pdfbox.pdmodel.font.PDType0Font.load(doc, msyhTtf);
-                        } catch (Exception e) { /* try next */ }
-                    }
-                    // Try TTC variant (extract first font from collection)
-                    if (cjkFont == null) {
-                        java.io.File msyhTtc = new java.io.File(windir + "\\Fonts\\msyh.ttc");
-                        if (msyhTtc.exists()) {
-                            try {
-                                org.apache.fontbox.ttf.TrueTypeCollection ttc =
-                                        new org.apache.fontbox.ttf.TrueTypeCollection(msyhTtc);
-                                // Try known font names in the collection
-                                String[] fontNames = {"SourceHanSansSC", "Source Han Sans SC", "Noto Sans CJK SC"};
-                                for (String name : fontNames) {
-                                    try {
-                                        org.apache.fontbox.ttf.TrueTypeFont ttf = ttc.getFontByName(name);
-                                        if (ttf != null) {
-                                            cjkFont = org.apache.pdfbox.pdmodel.font.PDType0Font.load(doc, ttf, true);
-                                            break;
-                                        }
-                                    } catch (Exception ignored) { }
-                                }
-                                // If none matched by name, load the first font from the collection
-                                if (cjkFont == null) {
-                                    final org.apache.fontbox.ttf.TrueTypeFont[] firstFont = {null};
-                                    ttc.processAllFonts(f -> {
-                                        if (firstFont[0] == null) firstFont[0] = f;
-                                    });
-                                    if (firstFont[0] != null) {
-                                        cjkFont = org.apache.pdfbox.pdmodel.font.PDType0Font.load(doc, firstFont[0], true);
-                                    }
-                                }
-                            } catch (Exception e) { /* try next */ }
-                        }
-                    }
-                    // Try SimSun TTF
-                    if (cjkFont == null) {
-                        java.io.File simsun = new java.io.File(windir + "\\Fonts\\simsun.ttf");
-                        if (simsun.exists()) {
-                            try {
-                                cjkFont = org.apache.pdfbox.pdmodel.font.PDType0Font.load(doc, simsun);
-                            } catch (Exception e) { /* try next */ }
-                        }
-                    }
-                    // Try SimSun TTC
-                    if (cjkFont == null) {
-                        java.io.File simsunTtc = new java.io.File(windir + "\\Fonts\\simsun.ttc");
-                        if (simsunTtc.exists()) {
-                            try {
-                                org.apache.fontbox.ttf.TrueTypeCollection ttc =
-                                        new org.apache.fontbox.ttf.TrueTypeCollection(simsunTtc);
-                                final org.apache.fontbox.ttf.TrueTypeFont[] firstFont = {null};
-                                ttc.processAllFonts(f -> {
-                                    if (firstFont[0] == null) firstFont[0] = f;
-                                });
-                                if (firstFont[0] != null) {
-                                    cjkFont = org.apache.pdfbox.pdmodel.font.PDType0Font.load(doc, firstFont[0], true);
-                                }
-                            } catch (Exception e) { /* try next */ }
-                        }
-                    }
-                    // Try NSimSun
-                    if (cjkFont == null) {
-                        java.io.File nsimsun = new java.io.File(windir + "\\Fonts\\nsimsun.ttf");
-                        if (nsimsun.exists()) {
-                            try {
-                                cjkFont = org.apache.pdfbox.pdmodel.font.PDType0Font.load(doc, nsimsun);
-                            } catch (Exception e) { /* try next */ }
-                        }
-                    }
-                }
-                // Also try on macOS / Linux
-                if (cjkFont == null) {
-                    String[] fallbackPaths = {
-                            "/System/Library/Fonts/STHeiti Light.ttc",       // macOS
-                            "/System/Library/Fonts/PingFang.ttc",            // macOS
-                            "/usr/share/fonts/truetype/droid/DroidSansFallbackFull.ttf", // Linux
-                            "/usr/share/fonts/opentype/noto/NotoSansCJK-Regular.ttc"     // Linux
-                    };
-                    for (String path : fallbackPaths) {
-                        java.io.File f = new java.io.File(path);
-                        if (f.exists()) {
-                            try {
-                                if (path.endsWith(".ttc")) {
-                                    org.apache.fontbox.ttf.TrueTypeCollection ttc =
-                                            new org.apache.fontbox.ttf.TrueTypeCollection(f);
-                                    final org.apache.fontbox.ttf.TrueTypeFont[] firstFont = {null};
-                                    ttc.processAllFonts(ff -> {
-                                        if (firstFont[0] == null) firstFont[0] = ff;
-                                    });
-                                    if (firstFont[0] != null) {
-                                        cjkFont = org.apache.pdfbox.pdmodel.font.PDType0Font.load(doc, firstFont[0], true);
-                                    }
-                                } else {
-                                    cjkFont = org.apache.pdfbox.pdmodel.font.PDType0Font.load(doc, f);
-                                }
-                                if (cjkFont != null) break;
-                            } catch (Exception ignored) { }
-                        }
-                    }
-                }
-            } catch (Exception fontEx) {
-                // ignore font loading errors, fallback below
-            }
-
-            // Fallback to Helvetica if no CJK font found
-            final boolean hasCjkFont = (cjkFont != null);
-            org.apache.pdfbox.pdmodel.font.PDFont baseFont =
-                    hasCjkFont ? cjkFont : org.apache.pdfbox.pdmodel.font.PDType1Font.HELVETICA;
-            org.apache.pdfbox.pdmodel.font.PDFont boldFont =
-                    hasCjkFont ? cjkFont : org.apache.pdfbox.pdmodel.font.PDType1Font.HELVETICA_BOLD;
-
-            // Table column config
-            String[] headers = {
-                    getString("table.header.index"),
-                    getString("table.header.path"),
-                    getString("table.header.type"),
-                    getString("table.header.code"),
-                    getString("table.header.comment"),
-                    getString("table.header.blank"),
-                    getString("table.header.todo")
-            };
-            // Column widths (landscape A4 = 842 x 595, usable ~802 with margins)
-            float pageWidth = 842f;
-            float pageHeight = 595f;
-            float marginLeft = 20f;
-            float marginRight = 20f;
-            float marginTop = 30f;
-            float marginBottom = 30f;
-            float tableWidth = pageWidth - marginLeft - marginRight;
-            float[] colRatios = {0.05f, 0.42f, 0.09f, 0.11f, 0.11f, 0.11f, 0.11f};
-            float[] colWidths = new float[colRatios.length];
-            for (int i = 0; i < colRatios.length; i++) {
-                colWidths[i] = tableWidth * colRatios[i];
-            }
-
-            float rowHeight = 16f;
-            float headerRowHeight = 20f;
-            float titleHeight = 30f;
-            float fontSize = 7f;
-            float headerFontSize = 8f;
-            float titleFontSize = 14f;
-
-            // Calculate totals
-            long totalCode = 0, totalComment = 0, totalBlank = 0, totalTodo = 0;
-            for (Object[] rowData : allTableRows) {
-                totalCode += ((Number) rowData[3]).longValue();
-                totalComment += ((Number) rowData[4]).longValue();
-                totalBlank += ((Number) rowData[5]).longValue();
-                totalTodo += ((Number) rowData[6]).longValue();
-            }
-
-            // Determine how many data rows fit per page
-            float usableHeight = pageHeight - marginTop - marginBottom - titleHeight - headerRowHeight;
-            int rowsPerPage = (int) (usableHeight / rowHeight);
-            int totalDataRows = allTableRows.size() + 1; // +1 for summary row
-            int totalPages = (int) Math.ceil((double) totalDataRows / rowsPerPage);
-            if (totalPages < 1) totalPages = 1;
-
-            int dataIdx = 0;
-            for (int page = 0; page < totalPages; page++) {
-                org.apache.pdfbox.pdmodel.PDPage pdPage = new org.apache.pdfbox.pdmodel.PDPage(
-                        new org.apache.pdfbox.pdmodel.common.PDRectangle(pageWidth, pageHeight));
-                doc.addPage(pdPage);
-
-                org.apache.pdfbox.pdmodel.PDPageContentStream cs =
-                        new org.apache.pdfbox.pdmodel.PDPageContentStream(doc, pdPage);
-
-                float yPos = pageHeight - marginTop;
-
-                // Title (first page only)
-                if (page == 0) {
-                    cs.beginText();
-                    cs.setFont(boldFont, titleFontSize);
-                    String titleText = getString("result.title");
-                    if (!hasCjkFont) titleText = sanitizeForPdf(titleText, boldFont);
-                    float titleWidth = boldFont.getStringWidth(titleText) / 1000f * titleFontSize;
-                    cs.newLineAtOffset((pageWidth - titleWidth) / 2f, yPos - titleFontSize);
-                    cs.showText(titleText);
-                    cs.endText();
-                    yPos -= titleHeight;
-                }
-
-                // Draw header row
-                float xPos = marginLeft;
-                // Header background
-                cs.setNonStrokingColor(68, 114, 196);
-                cs.addRect(xPos, yPos - headerRowHeight, tableWidth, headerRowHeight);
-                cs.fill();
-                // Header text
-                cs.setNonStrokingColor(255, 255, 255);
-                cs.beginText();
-                cs.setFont(boldFont, headerFontSize);
-                for (int c = 0; c < headers.length; c++) {
-                    float cellX = marginLeft;
-                    for (int k = 0; k < c; k++) cellX += colWidths[k];
-                    cs.newLineAtOffset(c == 0 ? cellX + 2f : 0, c == 0 ? yPos - headerRowHeight + 5f : 0);
-                    if (c > 0) cs.newLineAtOffset(colWidths[c - 1], 0);
-                    String text = truncateText(headers[c], boldFont, headerFontSize, colWidths[c] - 4f);
-                    cs.showText(text);
-                }
-                cs.endText();
-                yPos -= headerRowHeight;
-
-                // Draw data rows
-                int rowsOnThisPage = Math.min(rowsPerPage, totalDataRows - page * rowsPerPage);
-                for (int r = 0; r < rowsOnThisPage; r++) {
-                    boolean isSummaryRow = (dataIdx >= allTableRows.size());
-                    Object[] rowData;
-                    if (isSummaryRow) {
-                        rowData = new Object[]{"", getString("result.totalLines"), "",
-                                totalCode, totalComment, totalBlank, totalTodo};
-                    } else {
-                        rowData = allTableRows.get(dataIdx);
-                    }
-
-                    // Row background
-                    if (isSummaryRow) {
-                        cs.setNonStrokingColor(220, 220, 220);
-                    } else if (dataIdx % 2 == 1) {
-                        cs.setNonStrokingColor(230, 237, 247);
-                    } else {
-                        cs.setNonStrokingColor(255, 255, 255);
-                    }
-                    cs.addRect(marginLeft, yPos - rowHeight, tableWidth, rowHeight);
-                    cs.fill();
-
-                    // Row text
-                    cs.setNonStrokingColor(0, 0, 0);
-                    cs.beginText();
-                    org.apache.pdfbox.pdmodel.font.PDFont rowFont = isSummaryRow ? boldFont : baseFont;
-                    cs.setFont(rowFont, fontSize);
-                    for (int c = 0; c < rowData.length; c++) {
-                        float cellX = marginLeft;
-                        for (int k = 0; k < c; k++) cellX += colWidths[k];
-                        cs.newLineAtOffset(c == 0 ? cellX + 2f : 0, c == 0 ? yPos - rowHeight + 4f : 0);
-                        if (c > 0) cs.newLineAtOffset(colWidths[c - 1], 0);
-                        String cellText = String.valueOf(rowData[c]);
-                        cellText = truncateText(cellText, rowFont, fontSize, colWidths[c] - 4f);
-                        cs.showText(cellText);
-                    }
-                    cs.endText();
-
-                    yPos -= rowHeight;
-                    dataIdx++;
-                    if (isSummaryRow) break; // summary is always last
-                }
-
-                // Draw table grid lines
-                cs.setStrokingColor(180, 180, 180);
-                cs.setLineWidth(0.5f);
-                float gridTop = (page == 0)
-                        ? pageHeight - marginTop - titleHeight
-                        : pageHeight - marginTop;
-                float gridBottom = yPos;
-                // Horizontal lines
-                float lineY = gridTop;
-                cs.moveTo(marginLeft, lineY);
-                cs.lineTo(marginLeft + tableWidth, lineY);
-                cs.stroke();
-                lineY -= headerRowHeight;
-                cs.moveTo(marginLeft, lineY);
-                cs.lineTo(marginLeft + tableWidth, lineY);
-                cs.stroke();
-                int drawnRows = rowsOnThisPage;
-                float tempY = lineY;
-                for (int rr = 0; rr < drawnRows; rr++) {
-                    tempY -= rowHeight;
-                    cs.moveTo(marginLeft, tempY);
-                    cs.lineTo(marginLeft + tableWidth, tempY);
-                    cs.stroke();
-                }
-                // Vertical lines
-                float vx = marginLeft;
-                for (int c = 0; c <= colWidths.length; c++) {
-                    cs.moveTo(vx, gridTop);
-                    cs.lineTo(vx, gridBottom);
-                    cs.stroke();
-                    if (c < colWidths.length) vx += colWidths[c];
-                }
-
-                cs.close();
-            }
-
-            doc.save(file);
-
+        try {
+            ReportServices.exports().writePdf(createExportReport(), file);
             JOptionPane.showMessageDialog(this,
                     getString("message.export.pdf.success") + "\n" + file.getAbsolutePath());
-
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this,
                     getString("message.export.fail") + " " + ex.getMessage(),
@@ -1330,50 +1549,9 @@ public class CodeCounterPluginPanel extends PluginPanel {
         }
     }
 
-    /**
-     * Truncate text to fit within maxWidth using the given font/size.
-     * Appends "..." if truncated. Sanitizes non-encodable characters first.
-     */
-    private static String truncateText(String text, org.apache.pdfbox.pdmodel.font.PDFont font,
-                                       float fontSize, float maxWidth) {
-        try {
-            if (text == null || text.isEmpty()) return "";
-            // Pre-sanitize: replace characters that the font cannot encode
-            String safe = sanitizeForPdf(text, font);
-            float width = font.getStringWidth(safe) / 1000f * fontSize;
-            if (width <= maxWidth) return safe;
-            // Binary search for fitting length
-            for (int len = safe.length() - 1; len > 0; len--) {
-                String truncated = safe.substring(0, len) + "...";
-                float tw = font.getStringWidth(truncated) / 1000f * fontSize;
-                if (tw <= maxWidth) return truncated;
-            }
-            return "...";
-        } catch (Exception e) {
-            return "?";
-        }
-    }
-
-    /**
-     * Remove characters that the PDF font cannot encode.
-     */
-    private static String sanitizeForPdf(String text, org.apache.pdfbox.pdmodel.font.PDFont font) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < text.length(); i++) {
-            char ch = text.charAt(i);
-            try {
-                font.encode(String.valueOf(ch));
-                sb.append(ch);
-            } catch (Exception e) {
-                sb.append('?');
-            }
-        }
-        return sb.toString();
-    }
-
     // ==================== Word (DOCX) Export ====================
     private void exportWord() {
-        if (allTableRows.isEmpty()) {
+        if (tableModel.size() == 0) {
             JOptionPane.showMessageDialog(this, getString("message.noData"));
             return;
         }
@@ -1390,110 +1568,10 @@ public class CodeCounterPluginPanel extends PluginPanel {
             file = new java.io.File(file.getAbsolutePath() + ".docx");
         }
 
-        try (org.apache.poi.xwpf.usermodel.XWPFDocument document = new org.apache.poi.xwpf.usermodel.XWPFDocument()) {
-
-            // Title
-            org.apache.poi.xwpf.usermodel.XWPFParagraph titlePara = document.createParagraph();
-            titlePara.setAlignment(org.apache.poi.xwpf.usermodel.ParagraphAlignment.CENTER);
-            org.apache.poi.xwpf.usermodel.XWPFRun titleRun = titlePara.createRun();
-            titleRun.setText(getString("result.title"));
-            titleRun.setBold(true);
-            titleRun.setFontSize(18);
-            titleRun.addBreak();
-
-            // Table headers
-            String[] headers = {
-                    getString("table.header.index"),
-                    getString("table.header.path"),
-                    getString("table.header.type"),
-                    getString("table.header.code"),
-                    getString("table.header.comment"),
-                    getString("table.header.blank"),
-                    getString("table.header.todo")
-            };
-
-            int rows = allTableRows.size() + 2; // header + data + summary
-            org.apache.poi.xwpf.usermodel.XWPFTable table =
-                    document.createTable(rows, headers.length);
-            table.setWidth("100%");
-
-            // Style header row
-            org.apache.poi.xwpf.usermodel.XWPFTableRow headerRow = table.getRow(0);
-            for (int c = 0; c < headers.length; c++) {
-                org.apache.poi.xwpf.usermodel.XWPFTableCell cell = headerRow.getCell(c);
-                cell.setColor("4472C4");
-                org.apache.poi.xwpf.usermodel.XWPFParagraph p = cell.getParagraphArray(0);
-                p.setAlignment(org.apache.poi.xwpf.usermodel.ParagraphAlignment.CENTER);
-                org.apache.poi.xwpf.usermodel.XWPFRun run = p.createRun();
-                run.setText(headers[c]);
-                run.setBold(true);
-                run.setFontSize(9);
-                run.setColor("FFFFFF");
-            }
-
-            // Data rows
-            long totalCode = 0, totalComment = 0, totalBlank = 0, totalTodo = 0;
-            for (int i = 0; i < allTableRows.size(); i++) {
-                Object[] rowData = allTableRows.get(i);
-                long code = ((Number) rowData[3]).longValue();
-                long comment = ((Number) rowData[4]).longValue();
-                long blank = ((Number) rowData[5]).longValue();
-                long todo = ((Number) rowData[6]).longValue();
-                totalCode += code; totalComment += comment; totalBlank += blank; totalTodo += todo;
-
-                org.apache.poi.xwpf.usermodel.XWPFTableRow row = table.getRow(i + 1);
-                // Alternating row colors
-                String rowColor = (i % 2 == 1) ? "E6EDF7" : "FFFFFF";
-                String[] vals = {
-                        String.valueOf(rowData[0]),
-                        String.valueOf(rowData[1]),
-                        String.valueOf(rowData[2]),
-                        String.valueOf(code), String.valueOf(comment),
-                        String.valueOf(blank), String.valueOf(todo)
-                };
-                for (int c = 0; c < vals.length; c++) {
-                    org.apache.poi.xwpf.usermodel.XWPFTableCell cell = row.getCell(c);
-                    cell.setColor(rowColor);
-                    org.apache.poi.xwpf.usermodel.XWPFParagraph p = cell.getParagraphArray(0);
-                    if (c >= 3) p.setAlignment(org.apache.poi.xwpf.usermodel.ParagraphAlignment.RIGHT);
-                    org.apache.poi.xwpf.usermodel.XWPFRun run = p.createRun();
-                    run.setText(vals[c]);
-                    run.setFontSize(8);
-                }
-            }
-
-            // Summary row
-            int sumIdx = allTableRows.size() + 1;
-            org.apache.poi.xwpf.usermodel.XWPFTableRow sumRow = table.getRow(sumIdx);
-            for (int c = 0; c < headers.length; c++) {
-                org.apache.poi.xwpf.usermodel.XWPFTableCell cell = sumRow.getCell(c);
-                cell.setColor("DCDCDC");
-                org.apache.poi.xwpf.usermodel.XWPFParagraph p = cell.getParagraphArray(0);
-                org.apache.poi.xwpf.usermodel.XWPFRun run = p.createRun();
-                run.setBold(true);
-                run.setFontSize(9);
-                switch (c) {
-                    case 1: run.setText(getString("result.totalLines")); break;
-                    case 3: run.setText(String.valueOf(totalCode));
-                            p.setAlignment(org.apache.poi.xwpf.usermodel.ParagraphAlignment.RIGHT); break;
-                    case 4: run.setText(String.valueOf(totalComment));
-                            p.setAlignment(org.apache.poi.xwpf.usermodel.ParagraphAlignment.RIGHT); break;
-                    case 5: run.setText(String.valueOf(totalBlank));
-                            p.setAlignment(org.apache.poi.xwpf.usermodel.ParagraphAlignment.RIGHT); break;
-                    case 6: run.setText(String.valueOf(totalTodo));
-                            p.setAlignment(org.apache.poi.xwpf.usermodel.ParagraphAlignment.RIGHT); break;
-                    default: run.setText(""); break;
-                }
-            }
-
-            // Write file
-            try (java.io.FileOutputStream fos = new java.io.FileOutputStream(file)) {
-                document.write(fos);
-            }
-
+        try {
+            ReportServices.exports().writeDocx(createExportReport(), file);
             JOptionPane.showMessageDialog(this,
                     getString("message.export.word.success") + "\n" + file.getAbsolutePath());
-
         } catch (Exception ex) {
             JOptionPane.showMessageDialog(this,
                     getString("message.export.fail") + " " + ex.getMessage(),
@@ -1502,82 +1580,69 @@ public class CodeCounterPluginPanel extends PluginPanel {
         }
     }
 
+    /**
+     * Collect the localized labels for the document exporters, which read the rows from the results.
+     */
+    private ExportReport createExportReport() {
+        String[] headers = {
+                getString("table.header.index"),
+                getString("table.header.path"),
+                getString("table.header.type"),
+                getString("table.header.code"),
+                getString("table.header.comment"),
+                getString("table.header.blank"),
+                getString("table.header.todo")
+        };
+        return new ExportReport(getString("result.title"), headers, results, getString("result.totalLines"));
+    }
+
     private void showCharts() {
-        if (allTableRows.isEmpty()) {
+        if (tableModel.size() == 0) {
             JOptionPane.showMessageDialog(this, getString("message.noData"));
             return;
         }
 
-        // Collect data from all rows (not just current page)
-        List<String> filePaths = new ArrayList<>();
-        List<Number> codeList = new ArrayList<>();
-        List<Number> commentList = new ArrayList<>();
-        List<Number> blankList = new ArrayList<>();
-        List<Number> todoList = new ArrayList<>();
+        // Totals over all rows (not just current page), read straight from the columns
         long totalCode = 0, totalComment = 0, totalBlank = 0, totalTodo = 0;
+        for (int i = 0; i < results.size(); i++) {
+            totalCode += results.getCode(i);
+            totalComment += results.getComment(i);
+            totalBlank += results.getBlank(i);
+            totalTodo += results.getTodo(i);
+        }
+
+        ChartService charts = ReportServices.charts();
 
-        for (Object[] rowData : allTableRows) {
+        // --- Bar Chart: per-file comparison ---
+        // Limit to the first 20 files to keep chart readable
+        int maxFiles = Math.min(results.size(), 20);
+        List<String> filePaths = new ArrayList<>(maxFiles);
+        List<Number> codeList = new ArrayList<>(maxFiles);
+        List<Number> commentList = new ArrayList<>(maxFiles);
+        List<Number> blankList = new ArrayList<>(maxFiles);
+        List<Number> todoList = new ArrayList<>(maxFiles);
+        for (int i = 0; i < maxFiles; i++) {
             // Use short file name for readability
-            String fullPath = rowData[1].toString();
-            String shortName = fullPath;
+            String fullPath = results.getPath(i);
             int sep = Math.max(fullPath.lastIndexOf('/'), fullPath.lastIndexOf('\\'));
-            if (sep >= 0) shortName = fullPath.substring(sep + 1);
-            filePaths.add(shortName);
-
-            long code = ((Number) rowData[3]).longValue();
-            long comment = ((Number) rowData[4]).longValue();
-            long blank = ((Number) rowData[5]).longValue();
-            long todo = ((Number) rowData[6]).longValue();
-            codeList.add(code);
-            commentList.add(comment);
-            blankList.add(blank);
-            todoList.add(todo);
-            totalCode += code;
-            totalComment += comment;
-            totalBlank += blank;
-            totalTodo += todo;
+            filePaths.add(sep >= 0 ? fullPath.substring(sep + 1) : fullPath);
+            codeList.add(results.getCode(i));
+            commentList.add(results.getComment(i));
+            blankList.add(results.getBlank(i));
+            todoList.add(results.getTodo(i));
         }
-
-        // --- Bar Chart: per-file comparison ---
-        CategoryChart barChart = new CategoryChartBuilder()
-                .width(800).height(500)
-                .title(getString("chart.title"))
-                .xAxisTitle(getString("chart.xAxisTitle"))
-                .yAxisTitle(getString("chart.yAxisTitle"))
-                .build();
-
-        barChart.getStyler().setLegendPosition(LegendPosition.InsideNE);
-        barChart.getStyler().setXAxisLabelRotation(45);
-        barChart.getStyler().setPlotGridLinesVisible(true);
-        barChart.getStyler().setToolTipsEnabled(true);
-
-        // Limit to top 20 files by total lines to keep chart readable
-        int maxFiles = Math.min(filePaths.size(), 20);
-        List<String> displayPaths = filePaths.subList(0, maxFiles);
-        List<Number> displayCode = codeList.subList(0, maxFiles);
-        List<Number> displayComment = commentList.subList(0, maxFiles);
-        List<Number> displayBlank = blankList.subList(0, maxFiles);
-        List<Number> displayTodo = todoList.subList(0, maxFiles);
-
-        barChart.addSeries(getString("chart.series.code"), displayPaths, displayCode);
-        barChart.addSeries(getString("chart.series.comment"), displayPaths, displayComment);
-        barChart.addSeries(getString("chart.series.blank"), displayPaths, displayBlank);
-        barChart.addSeries(getString("chart.series.todo"), displayPaths, displayTodo);
+        Map<String, List<Number>> fileSeries = new LinkedHashMap<>();
+        fileSeries.put(getString("chart.series.code"), codeList);
+        fileSeries.put(getString("chart.series.comment"), commentList);
+        fileSeries.put(getString("chart.series.blank"), blankList);
+        fileSeries.put(getString("chart.series.todo"), todoList);
 
         // --- Pie Chart: overall summary ---
-        PieChart pieChart = new PieChartBuilder()
-                .width(500).height(400)
-                .title(getString("chart.pie.title"))
-                .build();
-
-        pieChart.getStyler().setLegendPosition(LegendPosition.OutsideS);
-        pieChart.getStyler().setToolTipsEnabled(true);
-        pieChart.getStyler().setPlotContentSize(0.8);
-
-        pieChart.addSeries(getString("chart.series.code"), totalCode);
-        pieChart.addSeries(getString("chart.series.comment"), totalComment);
-        pieChart.addSeries(getString("chart.series.blank"), totalBlank);
-        pieChart.addSeries(getString("chart.series.todo"), totalTodo);
+        Map<String, Number> slices = new LinkedHashMap<>();
+        slices.put(getString("chart.series.code"), totalCode);
+        slices.put(getString("chart.series.comment"), totalComment);
+        slices.put(getString("chart.series.blank"), totalBlank);
+        slices.put(getString("chart.series.todo"), totalTodo);
 
         // --- Show in dialog with tabs ---
         JFrame chartFrame = new JFrame(getString("chart.window.title"));
@@ -1588,11 +1653,12 @@ public class CodeCounterPluginPanel extends PluginPanel {
         JTabbedPane tabs = new JTabbedPane();
 
         // Bar chart tab
-        JPanel barPanel = new XChartPanel<>(barChart);
+        JPanel barPanel = charts.barChart(getString("chart.title"), getString("chart.xAxisTitle"),
+                getString("chart.yAxisTitle"), true, filePaths, fileSeries);
         tabs.addTab(getString("chart.title"), barPanel);
 
         // Pie chart tab
-        JPanel piePanel = new XChartPanel<>(pieChart);
+        JPanel piePanel = charts.pieChart(getString("chart.pie.title"), slices);
         tabs.addTab(getString("chart.pie.title"), piePanel);
 
         // By-type bar chart tab
@@ -1601,75 +1667,147 @@ public class CodeCounterPluginPanel extends PluginPanel {
             tabs.addTab(getString("chart.tab.byType"), byTypePanel);
         }
 
+        // History tab: filled on demand from the repository of the selected folder
+        tabs.addTab(getString("chart.tab.history"), createHistoryPanel());
+
         chartFrame.getContentPane().add(tabs);
         chartFrame.setVisible(true);
     }
 
     /**
-     * Create a bar chart grouped by file type (extension).
+     * Create the history tab: commit count and tags-only controls, and a time-series chart of
+     * code and comment lines read from the git objects of the selected folder's repository.
      */
-    private JPanel createByTypeBarChart() {
-        // Aggregate data by file type from all rows
-        Map<String, long[]> typeMap = new LinkedHashMap<>();
-        for (Object[] rowData : allTableRows) {
-            String type = rowData[2].toString();
-            long code = ((Number) rowData[3]).longValue();
-            long comment = ((Number) rowData[4]).longValue();
-            long blank = ((Number) rowData[5]).longValue();
-            long todo = ((Number) rowData[6]).longValue();
+    private JPanel createHistoryPanel() {
+        JPanel panel = new JPanel(new BorderLayout(5, 5));
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 2));
+        JSpinner countSpinner = new JSpinner(new SpinnerNumberModel(
+            context.getPreferences().getInt(PREF_HISTORY_POINTS, 30), 2, 10000, 10));
+        JCheckBox tagsOnlyCB = new JCheckBox(getString("chart.history.tagsOnly"),
+            context.getPreferences().getBoolean(PREF_HISTORY_TAGS_ONLY, false));
+        JButton loadBtn = new JButton(getString("chart.history.load"));
+        controls.add(new JLabel(getString("chart.history.points")));
+        controls.add(countSpinner);
+        controls.add(tagsOnlyCB);
+        controls.add(loadBtn);
+        panel.add(controls, BorderLayout.NORTH);
+
+        JLabel status = new JLabel("", SwingConstants.CENTER);
+        panel.add(status, BorderLayout.CENTER);
+
+        Path repository = getSelectedRoots().isEmpty() ? Paths.get("") : getSelectedRoots().get(0);
+        List<String> extensions = getSelectedExtensions();
+        List<String> excludeDirs = getSelectedExcludeDirs();
+        loadBtn.addActionListener(e -> {
+            int points = ((Number) countSpinner.getValue()).intValue();
+            boolean tagsOnly = tagsOnlyCB.isSelected();
+            context.getPreferences().putInt(PREF_HISTORY_POINTS, points);
+            context.getPreferences().putBoolean(PREF_HISTORY_TAGS_ONLY, tagsOnly);
+            loadBtn.setEnabled(false);
+            status.setText(getString("chart.history.loading"));
+            new SwingWorker<List<CodeCounterCore.HistoryPoint>, Void>() {
+                @Override
+                protected List<CodeCounterCore.HistoryPoint> doInBackground() throws Exception {
+                    return core.countHistory(repository, "HEAD", points, tagsOnly, extensions, excludeDirs);
+                }
+
+                @Override
+                protected void done() {
+                    loadBtn.setEnabled(true);
+                    BorderLayout layout = (BorderLayout) panel.getLayout();
+                    panel.remove(layout.getLayoutComponent(BorderLayout.CENTER));
+                    try {
+                        panel.add(createHistoryChart(get()), BorderLayout.CENTER);
+                    } catch (Exception ex) {
+                        Throwable cause = ex instanceof java.util.concurrent.ExecutionException ? ex.getCause() : ex;
+                        status.setText(String.format(getString("message.historyFailed"), cause.getMessage()));
+                        panel.add(status, BorderLayout.CENTER);
+                    }
+                    panel.revalidate();
+                    panel.repaint();
+                }
+            }.execute();
+        });
+        return panel;
+    }
 
-            long[] counts = typeMap.computeIfAbsent(type, k -> new long[4]);
-            counts[0] += code;
-            counts[1] += comment;
-            counts[2] += blank;
-            counts[3] += todo;
+    private JPanel createHistoryChart(List<CodeCounterCore.HistoryPoint> points) {
+        List<Date> times = new ArrayList<>();
+        List<Number> code = new ArrayList<>();
+        List<Number> comment = new ArrayList<>();
+        for (CodeCounterCore.HistoryPoint point : points) {
+            times.add(new Date(point.time));
+            code.add(point.codeLines);
+            comment.add(point.commentLines);
+        }
+        if (times.isEmpty()) {
+            times.add(new Date());
+            code.add(0);
+            comment.add(0);
         }
+        Map<String, List<Number>> series = new LinkedHashMap<>();
+        series.put(getString("chart.series.code"), code);
+        series.put(getString("chart.series.comment"), comment);
+        return ReportServices.charts().timeChart(getString("chart.history.title"),
+                getString("chart.history.xAxisTitle"), getString("chart.yAxisTitle"), times, series);
+    }
 
-        if (typeMap.isEmpty()) return null;
+    /**
+     * Create a bar chart grouped by file type (extension).
+     */
+    private JPanel createByTypeBarChart() {
+        // Aggregate data by file type from all rows, indexed by the interned type code
+        long[][] typeCounts = new long[results.typeCount()][4];
+        boolean[] seen = new boolean[typeCounts.length];
+        for (int i = 0; i < results.size(); i++) {
+            int type = results.getTypeCode(i);
+            long[] counts = typeCounts[type];
+            seen[type] = true;
+            counts[0] += results.getCode(i);
+            counts[1] += results.getComment(i);
+            counts[2] += results.getBlank(i);
+            counts[3] += results.getTodo(i);
+        }
 
-        List<String> types = new ArrayList<>(typeMap.keySet());
+        List<String> types = new ArrayList<>();
         List<Number> codeSums = new ArrayList<>();
         List<Number> commentSums = new ArrayList<>();
         List<Number> blankSums = new ArrayList<>();
         List<Number> todoSums = new ArrayList<>();
 
-        for (String type : types) {
-            long[] c = typeMap.get(type);
+        // Codes are handed out in order of first appearance; a type may have lost all its rows
+        for (int type = 0; type < typeCounts.length; type++) {
+            if (!seen[type]) continue;
+            long[] c = typeCounts[type];
+            types.add(results.typeName(type));
             codeSums.add(c[0]);
             commentSums.add(c[1]);
             blankSums.add(c[2]);
             todoSums.add(c[3]);
         }
 
-        CategoryChart chart = new CategoryChartBuilder()
-                .width(800).height(500)
-                .title(getString("chart.tab.byType"))
-                .xAxisTitle(getString("table.header.type"))
-                .yAxisTitle(getString("chart.yAxisTitle"))
-                .build();
-
-        chart.getStyler().setLegendPosition(LegendPosition.InsideNE);
-        chart.getStyler().setPlotGridLinesVisible(true);
-        chart.getStyler().setToolTipsEnabled(true);
+        if (types.isEmpty()) return null;
 
-        chart.addSeries(getString("chart.series.code"), types, codeSums);
-        chart.addSeries(getString("chart.series.comment"), types, commentSums);
-        chart.addSeries(getString("chart.series.blank"), types, blankSums);
-        chart.addSeries(getString("chart.series.todo"), types, todoSums);
+        Map<String, List<Number>> series = new LinkedHashMap<>();
+        series.put(getString("chart.series.code"), codeSums);
+        series.put(getString("chart.series.comment"), commentSums);
+        series.put(getString("chart.series.blank"), blankSums);
+        series.put(getString("chart.series.todo"), todoSums);
 
-        return new XChartPanel<>(chart);
+        return ReportServices.charts().barChart(getString("chart.tab.byType"), getString("table.header.type"),
+                getString("chart.yAxisTitle"), false, types, series);
     }
 
     /**
      * Apply preferred/max column widths to the result table.
-     * No(40), Path(flex), Type(60), Code/Comment/Blank/TODO(70 each).
+     * No(50), Path(flex), Type(60), Code/Comment/Blank/TODO(70 each).
      */
     private void applyTableColumnWidths() {
         fileTable.setAutoResizeMode(JTable.AUTO_RESIZE_NEXT_COLUMN);
         javax.swing.table.TableColumnModel cm = fileTable.getColumnModel();
-        // Col 0: No
-        cm.getColumn(0).setPreferredWidth(40);
-        cm.getColumn(0).setMaxWidth(50);
+        // Col 0: No (up to seven digits without pagination)
+        cm.getColumn(0).setPreferredWidth(50);
+        cm.getColumn(0).setMaxWidth(70);
         // Col 1: File Path (gets remaining space)
         cm.getColumn(1).setPreferredWidth(400);
         // Col 2: Type
@@ -1685,6 +1823,8 @@ public class CodeCounterPluginPanel extends PluginPanel {
         cm.getColumn(4).setMaxWidth(125);
         cm.getColumn(5).setPreferredWidth(90);
         cm.getColumn(5).setMaxWidth(110);
+        // Col 7: Root
+        cm.getColumn(7).setPreferredWidth(160);
     }
 
     @Override
@@ -1692,8 +1832,14 @@ public class CodeCounterPluginPanel extends PluginPanel {
         // Update button texts
         browseBtn.setText(getString("button.browse"));
         countBtn.setText(getString("button.count"));
+        cancelBtn.setText(getString("button.cancel"));
+        folderCombo.setToolTipText(String.format(getString("folder.tooltip"), java.io.File.pathSeparator));
         exportBtn.setText(getString("button.exportAs") + " \u25BE");
         chartBtn.setText(getString("button.charts"));
+        watchBtn.setText(getString("button.watch"));
+        updateWatchAvailability();
+        compareBtn.setText(getString("button.compare"));
+        compareBtn.setToolTipText(getString("button.compare.tooltip"));
 
         // Update template label
         templateLabel.setText(getString("dialog.template.label") + ":");
@@ -1714,18 +1860,30 @@ public class CodeCounterPluginPanel extends PluginPanel {
         // Update checkbox texts
         includeBlankCB.setText(getString("option.includeBlank"));
         includeHeaderCB.setText(getString("option.includeHeader"));
+        executionModeLabel.setText(getString("option.executionMode") + ":");
+        maxOpenFilesLabel.setText(getString("option.maxOpenFiles") + ":");
+        fallbackCharsetsLabel.setText(getString("option.fallbackCharsets") + ":");
+        fallbackCharsetsField.setToolTipText(getString("option.fallbackCharsets.tooltip"));
+        useIndexCB.setText(getString("option.useIndex"));
+        contentCacheCB.setText(getString("option.contentCache"));
+        gitIndexCB.setText(getString("option.gitIndex"));
+        ignoreFilesCB.setText(getString("option.ignoreFiles"));
+        scanArchivesCB.setText(getString("option.scanArchives"));
+        paginateCB.setText(getString("option.paginate"));
+        int selectedMode = executionModeCombo.getSelectedIndex();
+        executionModeCombo.setModel(new DefaultComboBoxModel<>(new String[] {
+            getString("option.executionMode.forkJoin"),
+            getString("option.executionMode.virtual")
+        }));
+        executionModeCombo.setSelectedIndex(selectedMode);
 
         // Update table headers
-        tableModel.setColumnIdentifiers(new Object[] {
-            getString("table.header.index"),
-            getString("table.header.path"),
-            getString("table.header.type"),
-            getString("table.header.code"),
-            getString("table.header.comment"),
-            getString("table.header.blank"),
-            getString("table.header.todo")
-        });
-        applyTableColumnWidths();
+        setTableColumnNames();
+        fileTable.getTableHeader().setToolTipText(getString("table.sort.tooltip"));
+        directoryTree.setToolTipText(getString("tree.tooltip"));
+        int selectedDir = tableModel.getDirectory();
+        directoryModel.setLabels(getString("tree.allFiles"), getString("tree.node"));
+        selectDirectory(selectedDir);
 
         // Update pagination labels
         firstPageBtn.setToolTipText(getString("pagination.first"));
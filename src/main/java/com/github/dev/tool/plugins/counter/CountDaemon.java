@@ -0,0 +1,590 @@
+package com.github.dev.tool.plugins.counter;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running counter that answers count requests over HTTP on the loopback interface.
+ *
+ * One warm process keeps its JIT-compiled code, a {@link ScanIndex} and a {@link ContentCache}
+ * across requests, so once a tree has been scanned, later counts of it only read the files that
+ * changed. Concurrent requests are coalesced: a root that is already being scanned with the same
+ * settings, or that lies inside such a root, is answered from that scan instead of a second one.
+ *
+ * Endpoints:
+ * <ul>
+ *   <li>{@code GET /count?root=DIR&template=...&format=json} - the query parameters are the
+ *       {@link CodeCounterCli} options without their dashes ({@code ext}, {@code exclude},
+ *       {@code include-blank}, {@code no-include-header}, ...); {@code root} may repeat</li>
+ *   <li>{@code GET /metrics} - request latency percentiles, coalescing and cache counters</li>
+ *   <li>{@code POST /shutdown} - saves the index and stops the daemon</li>
+ * </ul>
+ * The server binds to the loopback address only and rejects requests whose Host header names
+ * another host (DNS rebinding). Loopback is open to every local user and to any web page the user
+ * visits, so each start also generates a random token. It is written to a file only the user can
+ * read, and every request must send it in the {@value #TOKEN_HEADER} header.
+ */
+public final class CountDaemon {
+
+    /** Default port; {@code --port 0} picks a free one */
+    public static final int DEFAULT_PORT = 7391;
+
+    /** Request header carrying the token of the running daemon */
+    public static final String TOKEN_HEADER = "X-CodeCounter-Token";
+
+    /** Default token file, next to the daemon's index */
+    public static final String DEFAULT_TOKEN_FILE_NAME = "daemon.token";
+
+    /** Number of recent request latencies the percentiles are computed over */
+    private static final int LATENCY_WINDOW = 1024;
+
+    /**
+     * Everything besides the roots that a scan's result depends on. Two requests whose settings
+     * are equal can share a scan.
+     */
+    private static final class Settings {
+        final List<String> extensions;
+        final List<String> excludes;
+        final boolean includeBlank, includeHeader, archives, gitIndex, ignoreFiles;
+
+        Settings(CodeCounterCli.Options options) {
+            this.extensions = options.extensions();
+            this.excludes = options.excludes();
+            this.includeBlank = options.includeBlank;
+            this.includeHeader = options.includeHeader;
+            this.archives = options.archives;
+            this.gitIndex = options.gitIndex;
+            this.ignoreFiles = options.ignoreFiles;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Settings)) return false;
+            Settings s = (Settings) o;
+            return extensions.equals(s.extensions) && excludes.equals(s.excludes)
+                    && includeBlank == s.includeBlank && includeHeader == s.includeHeader
+                    && archives == s.archives && gitIndex == s.gitIndex && ignoreFiles == s.ignoreFiles;
+        }
+
+        @Override
+        public int hashCode() {
+            return extensions.hashCode() * 31 + excludes.hashCode()
+                    + Arrays.hashCode(new boolean[] {includeBlank, includeHeader, archives, gitIndex, ignoreFiles});
+        }
+    }
+
+    /** A root being scanned with given settings */
+    private static final class Scan {
+        final Settings settings;
+        final Path root;
+        final CompletableFuture<List<CodeCounterCore.FileStat>> result;
+
+        Scan(Settings settings, Path root, CompletableFuture<List<CodeCounterCore.FileStat>> result) {
+            this.settings = settings;
+            this.root = root;
+            this.result = result;
+        }
+    }
+
+    private final ScanIndex scanIndex;
+    private final ContentCache contentCache = new ContentCache();
+    private final List<Scan> inFlight = new ArrayList<>();
+    private final HttpServer server;
+    private final String token;
+    private volatile Path tokenFile;
+    private final ExecutorService handlers;
+    private final CompletableFuture<Void> stopped = new CompletableFuture<>();
+    private final AtomicBoolean stopping = new AtomicBoolean();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private final AtomicLong scansStarted = new AtomicLong();
+    private final AtomicLong coalescedRoots = new AtomicLong();
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private long latencyCount;
+    private final long startMillis = System.currentTimeMillis();
+    private volatile ScanMetrics lastScanMetrics;
+
+    /**
+     * Binds the server; call {@link #start()} to begin serving.
+     *
+     * @param port the loopback port, 0 for any free one
+     * @param scanIndex the index kept warm across requests, or null to always read every file
+     */
+    CountDaemon(int port, ScanIndex scanIndex) throws IOException {
+        this.scanIndex = scanIndex;
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.token = Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.handlers = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "count-daemon-http-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        server.setExecutor(handlers);
+        server.createContext("/count", exchange -> handle(exchange, "GET", this::count));
+        server.createContext("/metrics", exchange -> handle(exchange, "GET", this::metrics));
+        server.createContext("/shutdown", exchange -> handle(exchange, "POST", this::shutdown));
+    }
+
+    void start() {
+        server.start();
+    }
+
+    /**
+     * @return the port the daemon listens on
+     */
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the token requests must send in the {@value #TOKEN_HEADER} header
+     */
+    String getToken() {
+        return token;
+    }
+
+    /**
+     * Writes the token to {@code file}, readable and writable by the current user only where the
+     * file system has POSIX permissions; elsewhere the file inherits the access rights of its
+     * directory, which below the user's home is the user alone. The file is deleted on stop.
+     */
+    void writeToken(Path file) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.deleteIfExists(file);
+        if (file.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(file);
+        }
+        Files.writeString(file, token + System.lineSeparator(), StandardCharsets.US_ASCII,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        tokenFile = file;
+    }
+
+    /**
+     * Stops serving and saves the scan index.
+     */
+    void stop() {
+        if (!stopping.compareAndSet(false, true)) return;
+        server.stop(0);
+        handlers.shutdownNow();
+        Path file = tokenFile;
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("count daemon: could not delete the token file: " + e.getMessage());
+            }
+        }
+        if (scanIndex != null) {
+            try {
+                scanIndex.save();
+            } catch (IOException e) {
+                System.err.println("count daemon: could not save the scan index: " + e.getMessage());
+            }
+        }
+        stopped.complete(null);
+    }
+
+    /**
+     * Blocks until the daemon has been stopped.
+     */
+    void awaitStop() throws InterruptedException {
+        try {
+            stopped.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        Path indexFile = ScanIndex.defaultFile().resolveSibling("daemon-" + ScanIndex.DEFAULT_FILE_NAME);
+        Path tokenFile = ScanIndex.defaultFile().resolveSibling(DEFAULT_TOKEN_FILE_NAME);
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--index":
+                    indexFile = Paths.get(args[++i]);
+                    break;
+                case "--no-index":
+                    indexFile = null;
+                    break;
+                case "--token-file":
+                    tokenFile = Paths.get(args[++i]);
+                    break;
+                default:
+                    System.err.println("Usage: CountDaemon [--port N] [--index FILE | --no-index] [--token-file FILE]");
+                    System.exit(CodeCounterCli.EXIT_USAGE);
+            }
+        }
+        CountDaemon daemon = new CountDaemon(port,
+                indexFile == null ? null : new ScanIndex(indexFile, ScanIndex.DEFAULT_MAX_ENTRIES));
+        daemon.writeToken(tokenFile);
+        Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop, "count-daemon-shutdown"));
+        daemon.start();
+        System.out.println("Count daemon listening on http://" + InetAddress.getLoopbackAddress().getHostAddress()
+                + ":" + daemon.getPort() + "/count");
+        System.out.println("Send the token in " + tokenFile.toAbsolutePath() + " as the " + TOKEN_HEADER + " header");
+        daemon.awaitStop();
+    }
+
+    /** Produces a response body; returns the content type and fills {@code body} */
+    private interface Endpoint {
+        String serve(HttpExchange exchange, PrintWriter body) throws Exception;
+    }
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            if (!isLoopbackHost(exchange.getRequestHeaders().getFirst("Host"))) {
+                respond(exchange, 403, "text/plain", "Forbidden host\n");
+                return;
+            }
+            if (!hasToken(exchange.getRequestHeaders().getFirst(TOKEN_HEADER))) {
+                failedRequests.incrementAndGet();
+                respond(exchange, 401, "text/plain", "Missing or wrong " + TOKEN_HEADER + " header\n");
+                return;
+            }
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", method);
+                respond(exchange, 405, "text/plain", "Use " + method + "\n");
+                return;
+            }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            PrintWriter body = new PrintWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8));
+            String contentType;
+            int status = 200;
+            try {
+                contentType = endpoint.serve(exchange, body);
+            } catch (IllegalArgumentException e) {
+                status = 400;
+                contentType = "text/plain";
+                body.println(e.getMessage());
+            } catch (Exception e) {
+                status = 500;
+                contentType = "text/plain";
+                body.println(e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e);
+            }
+            body.flush();
+            if (status != 200) failedRequests.incrementAndGet();
+            respond(exchange, status, contentType, buffer.toByteArray());
+        } finally {
+            if (exchange.getHttpContext().getPath().equals("/count")) recordLatency(System.nanoTime() - start);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        respond(exchange, status, contentType, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /** Compares in constant time, so the response time does not reveal how much of a guess matched */
+    boolean hasToken(String sent) {
+        return sent != null && MessageDigest.isEqual(token.getBytes(StandardCharsets.US_ASCII),
+                sent.trim().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** Accepts the loopback names with or without a port; HTTP/1.0 clients may omit the header */
+    static boolean isLoopbackHost(String host) {
+        if (host == null) return true;
+        String name = host.startsWith("[") ? host.substring(0, host.indexOf(']') + 1)
+                : host.contains(":") ? host.substring(0, host.indexOf(':')) : host;
+        name = name.toLowerCase(Locale.ROOT);
+        return name.equals("localhost") || name.equals("[::1]") || name.startsWith("127.");
+    }
+
+    private String count(HttpExchange exchange, PrintWriter body) throws Exception {
+        requests.incrementAndGet();
+        CodeCounterCli.Options options = CodeCounterCli.parse(toArgs(exchange.getRequestURI().getRawQuery()));
+        if (options.roots.isEmpty()) throw new IllegalArgumentException("missing root parameter");
+        Settings settings = new Settings(options);
+        for (Path root : options.roots) {
+            if (!root.isAbsolute()) throw new IllegalArgumentException("root must be an absolute path: " + root);
+            if (!Files.exists(root)) throw new IllegalArgumentException("no such file or directory: " + root);
+        }
+        // Nested roots are answered once, under the outer root, as the scan itself reports them
+        Set<Path> roots = new LinkedHashSet<>(CodeCounterCore.distinctRoots(options.roots));
+
+        List<CompletableFuture<List<CodeCounterCore.FileStat>>> parts = new ArrayList<>();
+        for (Path root : roots) {
+            parts.add(resultOf(settings, root, roots));
+        }
+        List<CodeCounterCore.FileStat> stats = new ArrayList<>();
+        for (CompletableFuture<List<CodeCounterCore.FileStat>> part : parts) {
+            stats.addAll(part.get());
+        }
+        stats.sort(Comparator.comparing((CodeCounterCore.FileStat s) -> s.path));
+        CodeCounterCli.write(body, options.format, stats, roots.size() > 1);
+        switch (options.format) {
+            case JSON: return "application/json";
+            case CSV: return "text/csv";
+            default: return "text/plain";
+        }
+    }
+
+    /**
+     * Joins a scan in flight that covers the root, or starts one for all of the request's roots
+     * that no scan covers yet.
+     */
+    private CompletableFuture<List<CodeCounterCore.FileStat>> resultOf(Settings settings, Path root, Set<Path> requestRoots) {
+        List<Path> missing = new ArrayList<>();
+        synchronized (inFlight) {
+            Scan covering = findCovering(settings, root);
+            if (covering != null) {
+                coalescedRoots.incrementAndGet();
+                return covering.result.thenApply(stats -> rebase(stats, covering.root, root));
+            }
+            for (Path r : requestRoots) {
+                if (findCovering(settings, r) == null) missing.add(r);
+            }
+            startScan(settings, missing);
+            Scan scan = findCovering(settings, root);
+            return scan.result;
+        }
+    }
+
+    /**
+     * @return a scan in flight of the same root, or of a directory above it whose result contains
+     *         exactly what a scan of the root would find; null if there is none
+     */
+    private Scan findCovering(Settings settings, Path root) {
+        Scan best = null;
+        for (Scan scan : inFlight) {
+            if (!scan.settings.equals(settings)) continue;
+            if (scan.root.equals(root)) return scan;
+            if (best == null && root.startsWith(scan.root) && coversBelow(settings, scan.root, root)) best = scan;
+        }
+        return best;
+    }
+
+    /**
+     * Excludes, ignore files and the git index all depend on where the walk started, so only a
+     * plain walk of a directory with no excluded name between it and the root contains the root's
+     * files unchanged.
+     */
+    private static boolean coversBelow(Settings settings, Path ancestor, Path root) {
+        if (settings.gitIndex || settings.ignoreFiles || !Files.isDirectory(root)) return false;
+        NameMatcher excluded = CodeCounterCore.compileExcludes(settings.excludes);
+        for (Path segment : ancestor.relativize(root)) {
+            if (excluded.matches(segment.toString())) return false;
+        }
+        return true;
+    }
+
+    /** Starts one multi-root scan and registers a per-root result for each root; caller holds the lock */
+    private void startScan(Settings settings, List<Path> roots) {
+        CodeCounterCore core = new CodeCounterCore();
+        core.setScanIndex(scanIndex);
+        core.setContentCache(contentCache);
+        core.setScanArchives(settings.archives);
+        core.setUseGitIndex(settings.gitIndex);
+        core.setUseIgnoreFiles(settings.ignoreFiles);
+        CompletableFuture<List<CodeCounterCore.FileStat>> all = new CompletableFuture<>();
+        List<Scan> scans = new ArrayList<>();
+        for (Path root : roots) {
+            String rootName = root.toString();
+            scans.add(new Scan(settings, root, all.thenApply(stats -> {
+                List<CodeCounterCore.FileStat> own = new ArrayList<>();
+                for (CodeCounterCore.FileStat stat : stats) {
+                    if (rootName.equals(stat.root)) own.add(stat);
+                }
+                return own;
+            })));
+        }
+        inFlight.addAll(scans);
+        all.whenComplete((stats, error) -> {
+            synchronized (inFlight) {
+                inFlight.removeAll(scans);
+            }
+        });
+        scansStarted.incrementAndGet();
+        Flow.Publisher<CodeCounterCore.FileStat> publisher = core.scan(roots, settings.extensions,
+                settings.includeBlank, settings.includeHeader, settings.excludes);
+        lastScanMetrics = core.getLastScanMetrics();
+        publisher.subscribe(new Flow.Subscriber<>() {
+            private final List<CodeCounterCore.FileStat> stats = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(CodeCounterCore.FileStat item) {
+                stats.add(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                all.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                all.complete(stats);
+            }
+        });
+    }
+
+    /**
+     * @return the statistics of the files below {@code root}, as a scan of {@code root} reports them
+     */
+    private static List<CodeCounterCore.FileStat> rebase(List<CodeCounterCore.FileStat> stats, Path scanRoot, Path root) {
+        if (scanRoot.equals(root)) return stats;
+        String prefix = root.toString() + root.getFileSystem().getSeparator();
+        String rootName = root.toString();
+        List<CodeCounterCore.FileStat> own = new ArrayList<>();
+        for (CodeCounterCore.FileStat stat : stats) {
+            if (!stat.path.startsWith(prefix)) continue;
+            CodeCounterCore.FileStat copy = new CodeCounterCore.FileStat(stat.path, stat.type,
+                    stat.codeLines, stat.commentLines, stat.blankLines, stat.todoLines);
+            copy.lines = stat.lines;
+            copy.charset = stat.charset;
+            copy.root = rootName;
+            own.add(copy);
+        }
+        return own;
+    }
+
+    /**
+     * Turns {@code a=1&b&root=/x} into {@code --a=1 --b -- /x}, so that requests take exactly the
+     * command line options.
+     */
+    static String[] toArgs(String rawQuery) {
+        List<String> args = new ArrayList<>();
+        List<String> roots = new ArrayList<>();
+        if (rawQuery != null) {
+            for (String param : rawQuery.split("&")) {
+                if (param.isEmpty()) continue;
+                int eq = param.indexOf('=');
+                String name = URLDecoder.decode(eq < 0 ? param : param.substring(0, eq), StandardCharsets.UTF_8);
+                String value = eq < 0 ? "" : URLDecoder.decode(param.substring(eq + 1), StandardCharsets.UTF_8);
+                if (name.equals("root")) {
+                    roots.add(value);
+                } else if (name.equals("help") || name.equals("list-templates")) {
+                    throw new IllegalArgumentException("unsupported parameter '" + name + "'");
+                } else {
+                    args.add(value.isEmpty() ? "--" + name : "--" + name + "=" + value);
+                }
+            }
+        }
+        args.add("--");
+        args.addAll(roots);
+        return args.toArray(new String[0]);
+    }
+
+    private void recordLatency(long nanos) {
+        synchronized (latencies) {
+            latencies[(int) (latencyCount++ % LATENCY_WINDOW)] = nanos;
+        }
+    }
+
+    private String metrics(HttpExchange exchange, PrintWriter body) {
+        long[] window;
+        long count;
+        synchronized (latencies) {
+            count = latencyCount;
+            window = Arrays.copyOf(latencies, (int) Math.min(count, LATENCY_WINDOW));
+        }
+        Arrays.sort(window);
+        int inFlightScans;
+        synchronized (inFlight) {
+            inFlightScans = inFlight.size();
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("uptimeMillis", System.currentTimeMillis() - startMillis);
+        values.put("requests", requests.get());
+        values.put("failedRequests", failedRequests.get());
+        values.put("scansStarted", scansStarted.get());
+        values.put("coalescedRoots", coalescedRoots.get());
+        values.put("rootsInFlight", inFlightScans);
+        values.put("latencySamples", window.length);
+        values.put("latencyP50Millis", percentileMillis(window, 0.50));
+        values.put("latencyP90Millis", percentileMillis(window, 0.90));
+        values.put("latencyP99Millis", percentileMillis(window, 0.99));
+        values.put("latencyMaxMillis", window.length == 0 ? 0 : window[window.length - 1] / 1e6);
+        values.put("indexedFiles", scanIndex == null ? 0 : scanIndex.size());
+        values.put("contentCacheEntries", contentCache.size());
+        values.put("contentCacheHitRate", contentCache.getHitRate());
+        ScanMetrics last = lastScanMetrics;
+        if (last != null) {
+            values.put("lastScanFiles", last.getFiles());
+            values.put("lastScanIndexHits", last.getIndexHits());
+            values.put("lastScanMillis", last.getElapsedMillis());
+        }
+        body.println("{");
+        int i = 0;
+        for (Map.Entry<String, Object> e : values.entrySet()) {
+            Object v = e.getValue();
+            String text = v instanceof Double ? String.format(Locale.ROOT, "%.3f", (Double) v) : String.valueOf(v);
+            body.println("  " + CodeCounterCli.jsonString(e.getKey()) + ": " + text + (++i < values.size() ? "," : ""));
+        }
+        body.println("}");
+        return "application/json";
+    }
+
+    private static double percentileMillis(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private String shutdown(HttpExchange exchange, PrintWriter body) {
+        body.println("Stopping");
+        // Stop after this response has been sent
+        CompletableFuture.runAsync(this::stop, CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS));
+        return "text/plain";
+    }
+}
@@ -0,0 +1,202 @@
+package com.github.dev.tool.plugins.counter;
+
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Tree model over the directory trie of a {@link ScanResult}, for navigating the results by
+ * directory. Each node is labelled with the number of files and code lines below it; directories
+ * whose files have all been removed are left out. A tree node is only created when the tree
+ * asks for it, and the model is rebuilt by {@link #reload()} after the results change.
+ */
+final class DirectoryTreeModel implements TreeModel {
+
+    /** A directory node of the results as the tree shows it; the root has the node -1 */
+    static final class Dir {
+        final int node;
+        final String label;
+        Dir[] children;
+
+        Dir(int node, String label) {
+            this.node = node;
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final ScanResult results;
+    private String rootLabel;
+    /** Label of a node: its name, the number of files and of code lines */
+    private String labelFormat;
+    private final EventListenerList listeners = new EventListenerList();
+
+    private Dir root;
+    private Dir[] dirs = new Dir[0];
+    private int[] files = new int[0];
+    private long[] code = new long[0];
+
+    DirectoryTreeModel(ScanResult results, String rootLabel, String labelFormat) {
+        this.results = results;
+        setLabels(rootLabel, labelFormat);
+    }
+
+    /**
+     * Sets the localized label of the root and the format of the node labels, and reloads.
+     */
+    void setLabels(String rootLabel, String labelFormat) {
+        this.rootLabel = rootLabel;
+        this.labelFormat = labelFormat;
+        reload();
+    }
+
+    /**
+     * Recounts the files per directory and tells the tree to rebuild itself.
+     */
+    void reload() {
+        int count = results.dirCount();
+        files = new int[count];
+        code = new long[count];
+        for (int row = 0; row < results.size(); row++) {
+            int dir = results.getDir(row);
+            files[dir]++;
+            code[dir] += results.getCode(row);
+        }
+        // Children have higher numbers than their parents, so one pass from the end adds them up
+        for (int dir = count - 1; dir >= 0; dir--) {
+            int parent = results.dirParent(dir);
+            if (parent >= 0) {
+                files[parent] += files[dir];
+                code[parent] += code[dir];
+            }
+        }
+        long totalCode = 0;
+        for (int row = 0; row < results.size(); row++) totalCode += results.getCode(row);
+        dirs = new Dir[count];
+        root = new Dir(-1, String.format(labelFormat, rootLabel, results.size(), totalCode));
+
+        TreeModelEvent event = new TreeModelEvent(this, new Object[] {root});
+        for (TreeModelListener l : listeners.getListeners(TreeModelListener.class)) {
+            l.treeStructureChanged(event);
+        }
+    }
+
+    /**
+     * @return the path from the root to a directory node (the root for -1), or null if it is
+     *         not shown
+     */
+    TreePath pathTo(int node) {
+        if (node < 0) return new TreePath(root);
+        if (node >= dirs.length || files[node] == 0) return null;
+        List<Integer> nodes = new ArrayList<>();
+        for (int dir = node; dir >= 0; dir = results.dirParent(dir)) {
+            // The unnamed top node is not shown; its children are listed below the root
+            if (results.dirParent(dir) >= 0 || !results.dirName(dir).isEmpty()) nodes.add(0, dir);
+        }
+        Object[] path = new Object[nodes.size() + 1];
+        path[0] = root;
+        Dir parent = root;
+        for (int i = 0; i < nodes.size(); i++) {
+            Dir dir = find(children(parent), nodes.get(i));
+            if (dir == null) return null;
+            path[i + 1] = parent = dir;
+        }
+        return new TreePath(path);
+    }
+
+    private static Dir find(Dir[] children, int node) {
+        for (Dir dir : children) {
+            if (dir.node == node) return dir;
+        }
+        return null;
+    }
+
+    private Dir[] children(Dir parent) {
+        if (parent.children != null) return parent.children;
+        List<Integer> nodes = new ArrayList<>();
+        if (parent.node < 0) {
+            for (int top : results.topDirs()) {
+                if (results.dirName(top).isEmpty()) {
+                    for (int child : results.childDirs(top)) nodes.add(child);
+                } else {
+                    nodes.add(top);
+                }
+            }
+        } else {
+            for (int child : results.childDirs(parent.node)) nodes.add(child);
+        }
+        List<Dir> shown = new ArrayList<>(nodes.size());
+        for (int node : nodes) {
+            if (files[node] > 0) shown.add(dir(node));
+        }
+        Dir[] children = shown.toArray(new Dir[0]);
+        Arrays.sort(children, Comparator.comparing((Dir d) -> results.dirName(d.node)));
+        parent.children = children;
+        return children;
+    }
+
+    private Dir dir(int node) {
+        Dir dir = dirs[node];
+        if (dir == null) {
+            String name = results.dirName(node);
+            // Drop the trailing separator, but keep a file system root such as "/" whole
+            if (name.length() > 1) name = name.substring(0, name.length() - 1);
+            dir = new Dir(node, String.format(labelFormat, name, files[node], code[node]));
+            dirs[node] = dir;
+        }
+        return dir;
+    }
+
+    // ==================== TreeModel ====================
+
+    @Override
+    public Object getRoot() {
+        return root;
+    }
+
+    @Override
+    public Object getChild(Object parent, int index) {
+        return children((Dir) parent)[index];
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        return children((Dir) parent).length;
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        return getChildCount(node) == 0;
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        // Not editable
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (parent == null || child == null) return -1;
+        return Arrays.asList(children((Dir) parent)).indexOf(child);
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener l) {
+        listeners.add(TreeModelListener.class, l);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener l) {
+        listeners.remove(TreeModelListener.class, l);
+    }
+}
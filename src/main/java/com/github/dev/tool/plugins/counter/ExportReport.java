@@ -0,0 +1,74 @@
+package com.github.dev.tool.plugins.counter;
+
+/**
+ * The result table as the exporters write it: already localized labels, the results in arrival
+ * order and the totals of the count columns. Holds no library types, so building one loads
+ * nothing. The cells are read from the {@link ScanResult} while writing, so exporting does not
+ * build an object per row.
+ */
+final class ExportReport {
+
+    /** Indexes of the count columns in a row and in {@link #totals} */
+    static final int CODE = 3, COMMENT = 4, BLANK = 5, TODO = 6;
+
+    final String title;
+    /** Labels of the exported columns: {@code No, Path, Type, Code, Comment, Blank, TODO} */
+    final String[] headers;
+    final String totalLabel;
+    /** Sum of each count column, indexed like the row cells (the first three are unused) */
+    final long[] totals = new long[TODO + 1];
+
+    private final ScanResult results;
+
+    ExportReport(String title, String[] headers, ScanResult results, String totalLabel) {
+        this.title = title;
+        this.headers = headers;
+        this.results = results;
+        this.totalLabel = totalLabel;
+        for (int row = 0; row < results.size(); row++) {
+            for (int c = CODE; c <= TODO; c++) {
+                totals[c] += count(row, c);
+            }
+        }
+    }
+
+    /**
+     * @return the number of data rows, without the summary row
+     */
+    int size() {
+        return results.size();
+    }
+
+    /**
+     * @return a count column ({@link #CODE} to {@link #TODO}) of a data row
+     */
+    long count(int row, int column) {
+        switch (column) {
+            case CODE: return results.getCode(row);
+            case COMMENT: return results.getComment(row);
+            case BLANK: return results.getBlank(row);
+            case TODO: return results.getTodo(row);
+            default: throw new IllegalArgumentException("Not a count column: " + column);
+        }
+    }
+
+    /**
+     * @return the text of a cell of a data row
+     */
+    String cell(int row, int column) {
+        switch (column) {
+            case 0: return String.valueOf(row + 1);
+            case 1: return results.getPath(row);
+            case 2: return results.getType(row);
+            default: return String.valueOf(count(row, column));
+        }
+    }
+
+    /**
+     * @return the text of a cell of the summary row
+     */
+    String summaryCell(int column) {
+        if (column == 1) return totalLabel;
+        return column >= CODE ? String.valueOf(totals[column]) : "";
+    }
+}
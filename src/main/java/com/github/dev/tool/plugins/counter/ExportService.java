@@ -0,0 +1,21 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.File;
+
+/**
+ * Writes the result table to office and PDF documents. Obtain it from {@link ReportServices#exports()},
+ * which loads the implementation (and with it POI and PDFBox) on first use only.
+ */
+interface ExportService {
+
+    void writeXlsx(ExportReport report, File file) throws Exception;
+
+    void writePdf(ExportReport report, File file) throws Exception;
+
+    void writeDocx(ExportReport report, File file) throws Exception;
+
+    /**
+     * Loads and initializes the document libraries by building small documents in memory.
+     */
+    void warmUp() throws Exception;
+}
@@ -0,0 +1,32 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Enumerates the candidate files of one scan run: the {@link ParallelFileWalker} for plain
+ * directory trees, or {@link GitIndexSource} for the tracked files of a git work tree.
+ * An instance is used for a single run.
+ */
+interface FileSource {
+
+    /**
+     * Receives every regular file found. May be called concurrently from several threads.
+     */
+    interface FileVisitor {
+        void visitFile(Path file, BasicFileAttributes attrs);
+    }
+
+    /**
+     * Enumerates all files and blocks until done or cancelled.
+     *
+     * @throws IOException if the scan root itself cannot be read
+     */
+    void enumerate(FileVisitor visitor) throws IOException;
+
+    /**
+     * Stops a running enumeration as soon as possible; may be called from any thread.
+     */
+    void cancel();
+}
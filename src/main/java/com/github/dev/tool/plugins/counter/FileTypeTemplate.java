@@ -0,0 +1,61 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Predefined file type templates for quick selection
+ */
+class FileTypeTemplate {
+    public String name;
+    public List<String> extensions;
+    /** Build/project-specific directories to exclude (VCS and IDE dirs are handled separately) */
+    public List<String> buildExcludeDirs;
+
+    /** Common VCS dirs, shared across all templates */
+    static final List<String> COMMON_VCS_DIRS = Arrays.asList(".git", ".svn", ".hg", ".bzr", ".cvs");
+
+    /** Common IDE/editor dirs and files, shared across all templates */
+    static final List<String> COMMON_IDE_DIRS = Arrays.asList(
+            ".idea", ".settings", ".classpath", ".project",".metadata",
+            ".vscode", "*.iml",  "nbproject", ".vs");
+
+    public FileTypeTemplate(String name, List<String> buildExcludeDirs, String... exts) {
+        this.name = name;
+        this.extensions = Arrays.asList(exts);
+        this.buildExcludeDirs = buildExcludeDirs;
+    }
+
+    // Predefined templates
+    static final Map<String, FileTypeTemplate> TEMPLATES = new LinkedHashMap<>();
+
+    static {
+        TEMPLATES.put("Java Web", new FileTypeTemplate("Java Web",
+                Arrays.asList("target", "build", ".gradle", "bin", "node_modules"),
+                ".java", ".jsp", ".jspx", ".ftl", ".vm", ".html", ".htm", ".css", ".js", ".xml", ".properties", ".yml", ".yaml"));
+        TEMPLATES.put("Java Swing/JavaFX", new FileTypeTemplate("Java Swing/JavaFX",
+                Arrays.asList("target", "build", ".gradle", "bin", "dist","native-lib"),
+                ".java", ".fxml",  ".css",  ".xml", ".properties", ".yml", ".yaml" ));
+        TEMPLATES.put("Java Backend", new FileTypeTemplate("Java Backend",
+                Arrays.asList("target", "build", ".gradle", "bin"),
+                ".java", ".xml", ".properties", ".yml", ".yaml", ".sql"));
+        TEMPLATES.put("Frontend", new FileTypeTemplate("Frontend",
+                Arrays.asList("node_modules", "dist", "build", ".next", ".nuxt", "coverage", "bower_components"),
+                ".html", ".htm", ".css", ".js", ".jsx", ".ts", ".tsx", ".vue", ".scss", ".less"));
+        TEMPLATES.put("C++", new FileTypeTemplate("C++",
+                Arrays.asList("build", "cmake-build-debug", "cmake-build-release", "out", "Debug", "Release", "x64", "x86"),
+                ".cpp", ".cc", ".cxx", ".c", ".h", ".hpp", ".hxx"));
+        TEMPLATES.put("PHP", new FileTypeTemplate("PHP",
+                Arrays.asList("vendor", "node_modules", "cache", "storage"),
+                ".php", ".php3", ".html", ".htm", ".css", ".js", ".json", ".lock", ".env", ".xml", ".twig", ".phtml", ".latte"));
+        TEMPLATES.put("Python", new FileTypeTemplate("Python",
+                Arrays.asList("__pycache__", ".venv", "venv", "env", ".tox", "dist", "build", ".eggs", "*.egg-info"),
+                ".py", ".txt", ".cfg", ".toml", ".ini", ".json", ".yaml", ".yml"));
+        TEMPLATES.put("Custom", new FileTypeTemplate("Custom",
+                Collections.emptyList(),
+                ""));
+    }
+}
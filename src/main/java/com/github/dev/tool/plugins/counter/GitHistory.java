@@ -0,0 +1,90 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Line totals of whole commits, computed from the object store with memoization at two levels:
+ * every distinct blob is classified once, and every distinct tree is summed once. Consecutive
+ * commits share most of their trees, so after the first commit only the trees along changed
+ * paths and the changed blobs cost anything.
+ *
+ * The memo tables belong to one set of filters; use a new instance for other extensions or
+ * excludes. Instances are not thread-safe.
+ */
+final class GitHistory {
+
+    /** Indexes into a totals array */
+    static final int CODE = 0, COMMENT = 1, BLANK = 2, TODO = 3, FILES = 4;
+
+    private final GitObjectStore store;
+    private final NameMatcher excluded;
+    private final NameMatcher included;
+    private final Function<byte[], CodeCounterCore.FileStat> classifier;
+    private final Map<ByteBuffer, long[]> blobCounts = new HashMap<>();
+    private final Map<ByteBuffer, long[]> treeTotals = new HashMap<>();
+
+    /**
+     * @param excluded names of files and directories to leave out
+     * @param included file names to count
+     * @param classifier produces the raw counts of a blob's content
+     */
+    GitHistory(GitObjectStore store, NameMatcher excluded, NameMatcher included,
+               Function<byte[], CodeCounterCore.FileStat> classifier) {
+        this.store = store;
+        this.excluded = excluded;
+        this.included = included;
+        this.classifier = classifier;
+    }
+
+    /**
+     * @return code, comment, blank and TODO lines and the file count of a commit's tree
+     *         (indexed by {@link #CODE} ... {@link #FILES}); the array must not be modified
+     */
+    long[] totalsOf(byte[] commit) throws IOException {
+        return treeTotals(store.treeOf(commit));
+    }
+
+    /** @return number of distinct blobs classified so far */
+    int getClassifiedBlobs() {
+        return blobCounts.size();
+    }
+
+    private long[] treeTotals(byte[] tree) throws IOException {
+        ByteBuffer key = ByteBuffer.wrap(tree);
+        long[] totals = treeTotals.get(key);
+        if (totals != null) return totals;
+
+        totals = new long[5];
+        for (GitObjectStore.TreeEntry entry : store.readTree(tree)) {
+            if (excluded.matches(entry.name)) continue;
+            if (entry.isTree()) {
+                add(totals, treeTotals(entry.id));
+            } else if (entry.isFile() && included.matches(entry.name)) {
+                add(totals, blobCounts(entry.id));
+            }
+        }
+        treeTotals.put(key, totals);
+        return totals;
+    }
+
+    private long[] blobCounts(byte[] blob) throws IOException {
+        ByteBuffer key = ByteBuffer.wrap(blob);
+        long[] counts = blobCounts.get(key);
+        if (counts == null) {
+            CodeCounterCore.FileStat stat = classifier.apply(store.read(blob).data);
+            counts = new long[] {stat.codeLines, stat.commentLines, stat.blankLines, stat.todoLines, 1};
+            blobCounts.put(key, counts);
+        }
+        return counts;
+    }
+
+    private static void add(long[] totals, long[] counts) {
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] += counts[i];
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * File source that enumerates the tracked files of a git work tree by parsing
+ * {@code .git/index} directly (index format versions 2 to 4), without a git binary and without
+ * listing any directory.
+ *
+ * Only regular files at stage 0 (or the first stage of a conflicted path) are reported; symbolic
+ * links, submodules and sparse directory entries are skipped, and so are files missing from the
+ * work tree. Each file is still stat'ed once, and its attributes are handed on as
+ * {@link TrackedFileAttributes}: when they match the stat data cached in the index, the file is
+ * clean and its content is the blob recorded there, so its object id can serve as a content key
+ * without reading the file.
+ *
+ * Split indexes ({@code link} extension) are not supported; for those, and when the index cannot
+ * be parsed, the source falls back to walking the directory tree.
+ */
+final class GitIndexSource implements FileSource {
+
+    private static final int SIGNATURE = 0x44495243; // "DIRC"
+    private static final int SPLIT_INDEX_EXTENSION = 0x6C696E6B; // "link"
+    private static final int MODE_TYPE_MASK = 0170000;
+    private static final int MODE_REGULAR_FILE = 0100000;
+    private static final int FLAG_EXTENDED = 0x4000;
+    private static final int NAME_LENGTH_MASK = 0xFFF;
+
+    /**
+     * Attributes of a tracked file together with what the git index knows about it.
+     */
+    static final class TrackedFileAttributes implements BasicFileAttributes {
+        private final BasicFileAttributes attrs;
+        private final byte[] objectId;
+        private final boolean clean;
+
+        TrackedFileAttributes(BasicFileAttributes attrs, byte[] objectId, boolean clean) {
+            this.attrs = attrs;
+            this.objectId = objectId;
+            this.clean = clean;
+        }
+
+        /** Object id of the blob staged for this path */
+        byte[] getObjectId() {
+            return objectId;
+        }
+
+        /** True if the file's stat data matches the index, i.e. its content is the staged blob */
+        boolean isClean() {
+            return clean;
+        }
+
+        @Override public FileTime lastModifiedTime() { return attrs.lastModifiedTime(); }
+        @Override public FileTime lastAccessTime() { return attrs.lastAccessTime(); }
+        @Override public FileTime creationTime() { return attrs.creationTime(); }
+        @Override public boolean isRegularFile() { return attrs.isRegularFile(); }
+        @Override public boolean isDirectory() { return attrs.isDirectory(); }
+        @Override public boolean isSymbolicLink() { return attrs.isSymbolicLink(); }
+        @Override public boolean isOther() { return attrs.isOther(); }
+        @Override public long size() { return attrs.size(); }
+        @Override public Object fileKey() { return attrs.fileKey(); }
+    }
+
+    /** One parsed index entry */
+    private static final class IndexEntry {
+        final String path;
+        final long mtimeSeconds;
+        final int mtimeNanos;
+        final long size;
+        final byte[] objectId;
+
+        IndexEntry(String path, long mtimeSeconds, int mtimeNanos, long size, byte[] objectId) {
+            this.path = path;
+            this.mtimeSeconds = mtimeSeconds;
+            this.mtimeNanos = mtimeNanos;
+            this.size = size;
+            this.objectId = objectId;
+        }
+    }
+
+    private final Path root;
+    private final Path workTree;
+    private final Path indexFile;
+    private final int objectIdLength;
+    private final Predicate<String> excludedName;
+    private final boolean ignoreFiles;
+    private final ForkJoinPool walkerPool;
+    private volatile FileSource fallback;
+    private volatile boolean cancelled;
+
+    private GitIndexSource(Path root, Path workTree, Path indexFile, int objectIdLength,
+                           Predicate<String> excludedName, boolean ignoreFiles, ForkJoinPool walkerPool) {
+        this.root = root;
+        this.workTree = workTree;
+        this.indexFile = indexFile;
+        this.objectIdLength = objectIdLength;
+        this.excludedName = excludedName;
+        this.ignoreFiles = ignoreFiles;
+        this.walkerPool = walkerPool;
+    }
+
+    /**
+     * Creates a source for the git work tree containing {@code root}.
+     *
+     * @param excludedName tests file and directory names below the root; matching entries are skipped
+     * @param ignoreFiles whether the fallback walk honours {@code .gitignore} and {@code .ignore} files
+     * @param walkerPool pool the fallback walk runs on (owned by the caller)
+     * @return the source, or null if {@code root} is not inside a git work tree with an index
+     */
+    static GitIndexSource forRoot(Path root, Predicate<String> excludedName, boolean ignoreFiles,
+                                  ForkJoinPool walkerPool) {
+        Path absolute = root.toAbsolutePath().normalize();
+        for (Path dir = absolute; dir != null; dir = dir.getParent()) {
+            Path dotGit = dir.resolve(".git");
+            Path gitDir = resolveGitDir(dotGit);
+            if (gitDir == null) continue;
+            Path index = gitDir.resolve("index");
+            if (!Files.isRegularFile(index)) return null;
+            return new GitIndexSource(root, dir, index, objectIdLength(gitDir), excludedName, ignoreFiles, walkerPool);
+        }
+        return null;
+    }
+
+    /**
+     * @return the git directory a {@code .git} entry stands for (a directory, or a file with a
+     *         {@code gitdir:} line as used by worktrees and submodules), or null
+     */
+    static Path resolveGitDir(Path dotGit) {
+        if (Files.isDirectory(dotGit)) return dotGit;
+        if (!Files.isRegularFile(dotGit)) return null;
+        try {
+            for (String line : Files.readAllLines(dotGit, StandardCharsets.UTF_8)) {
+                if (line.startsWith("gitdir:")) {
+                    Path gitDir = dotGit.getParent().resolve(line.substring("gitdir:".length()).trim()).normalize();
+                    return Files.isDirectory(gitDir) ? gitDir : null;
+                }
+            }
+        } catch (IOException ignored) {}
+        return null;
+    }
+
+    /** SHA-256 repositories declare {@code objectformat = sha256} in their config */
+    private static int objectIdLength(Path gitDir) {
+        Path config = gitDir.resolve("config");
+        Path commonDir = gitDir.resolve("commondir");
+        try {
+            if (!Files.isRegularFile(config) && Files.isRegularFile(commonDir)) {
+                config = gitDir.resolve(Files.readString(commonDir).trim()).resolve("config");
+            }
+            if (Files.isRegularFile(config)) {
+                String text = Files.readString(config).toLowerCase(Locale.ROOT).replace(" ", "").replace("\t", "");
+                if (text.contains("objectformat=sha256")) return 32;
+            }
+        } catch (IOException ignored) {}
+        return 20;
+    }
+
+    @Override
+    public void enumerate(FileVisitor visitor) throws IOException {
+        List<IndexEntry> entries;
+        long indexModifiedNanos;
+        try {
+            indexModifiedNanos = Files.getLastModifiedTime(indexFile).to(TimeUnit.NANOSECONDS);
+            entries = readIndex();
+        } catch (IOException | RuntimeException e) {
+            entries = null;
+            indexModifiedNanos = 0;
+        }
+        if (entries == null) {
+            FileSource walker = ParallelFileWalker.forTree(root, excludedName, ignoreFiles, walkerPool);
+            fallback = walker;
+            walker.enumerate(visitor);
+            return;
+        }
+
+        String prefix = relativeRoot();
+        if (prefix == null) return;
+        String excludedDir = null;   // last directory found excluded (entries are sorted by path)
+        String checkedDir = null;    // last directory found not excluded
+        for (IndexEntry entry : entries) {
+            if (cancelled) return;
+            if (!entry.path.startsWith(prefix)) continue;
+            String relative = entry.path.substring(prefix.length());
+            int slash = relative.lastIndexOf('/');
+            String dir = slash < 0 ? "" : relative.substring(0, slash);
+            if (excludedDir != null && (dir.equals(excludedDir) || dir.startsWith(excludedDir + "/"))) continue;
+            if (!dir.equals(checkedDir)) {
+                String excluded = excludedPrefix(dir);
+                if (excluded != null) {
+                    excludedDir = excluded;
+                    continue;
+                }
+                checkedDir = dir;
+            }
+            if (excludedName.test(relative.substring(slash + 1))) continue;
+
+            Path file = workTree.resolve(entry.path);
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                continue; // deleted in the work tree or hidden by a sparse checkout
+            }
+            if (!attrs.isRegularFile()) continue;
+            visitor.visitFile(file, new TrackedFileAttributes(attrs, entry.objectId,
+                    isClean(entry, attrs, indexModifiedNanos)));
+        }
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        FileSource walker = fallback;
+        if (walker != null) walker.cancel();
+    }
+
+    /**
+     * @return the scan root relative to the work tree with a trailing '/', "" for the work tree
+     *         itself, or null if the root lies outside it
+     */
+    private String relativeRoot() {
+        Path absolute = root.toAbsolutePath().normalize();
+        if (!absolute.startsWith(workTree)) return null;
+        String relative = workTree.relativize(absolute).toString().replace('\\', '/');
+        return relative.isEmpty() ? "" : relative + "/";
+    }
+
+    /**
+     * @return the shortest prefix of {@code dir} whose last segment is excluded, or null
+     */
+    private String excludedPrefix(String dir) {
+        if (dir.isEmpty()) return null;
+        int start = 0;
+        while (start <= dir.length()) {
+            int end = dir.indexOf('/', start);
+            if (end < 0) end = dir.length();
+            if (excludedName.test(dir.substring(start, end))) return dir.substring(0, end);
+            start = end + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Same test as git's: size and modification time must match the cached stat data, and the
+     * file must be older than the index itself (otherwise it may have changed within the same
+     * timestamp granule after being staged, the "racy clean" case).
+     */
+    private static boolean isClean(IndexEntry entry, BasicFileAttributes attrs, long indexModifiedNanos) {
+        long modified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        long seconds = Math.floorDiv(modified, 1_000_000_000L);
+        int nanos = (int) Math.floorMod(modified, 1_000_000_000L);
+        return entry.size == (attrs.size() & 0xFFFFFFFFL)
+                && entry.mtimeSeconds == (seconds & 0xFFFFFFFFL)
+                && (entry.mtimeNanos == nanos || entry.mtimeNanos == 0)
+                && modified < indexModifiedNanos;
+    }
+
+    /**
+     * Parses the index entries.
+     *
+     * @return the entries sorted by path, or null if the index uses an unsupported feature
+     */
+    private List<IndexEntry> readIndex() throws IOException {
+        // Read rather than mapped: on Windows a live mapping stops git from replacing the index
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(indexFile));
+        if (buf.getInt(0) != SIGNATURE) return null;
+        int version = buf.getInt(4);
+        if (version < 2 || version > 4) return null;
+        int count = buf.getInt(8);
+
+        List<IndexEntry> entries = new ArrayList<>(count);
+        byte[] previousPath = new byte[0];
+        int previousLength = 0;
+        String previous = null;
+        int pos = 12;
+        for (int i = 0; i < count; i++) {
+            int start = pos;
+            long mtimeSeconds = buf.getInt(pos + 8) & 0xFFFFFFFFL;
+            int mtimeNanos = buf.getInt(pos + 12);
+            int mode = buf.getInt(pos + 24);
+            long size = buf.getInt(pos + 36) & 0xFFFFFFFFL;
+            byte[] objectId = new byte[objectIdLength];
+            buf.get(pos + 40, objectId);
+            pos += 40 + objectIdLength;
+            int flags = buf.getShort(pos) & 0xFFFF;
+            pos += 2;
+            if (version >= 3 && (flags & FLAG_EXTENDED) != 0) pos += 2;
+
+            byte[] path;
+            if (version == 4) {
+                // Prefix compression: drop N bytes from the previous path, append the NUL-terminated suffix
+                int b = buf.get(pos++) & 0xFF;
+                int strip = b & 0x7F;
+                while ((b & 0x80) != 0) {
+                    b = buf.get(pos++) & 0xFF;
+                    strip = ((strip + 1) << 7) | (b & 0x7F);
+                }
+                int end = pos;
+                while (buf.get(end) != 0) end++;
+                int keep = previousLength - strip;
+                path = new byte[keep + end - pos];
+                System.arraycopy(previousPath, 0, path, 0, keep);
+                buf.get(pos, path, keep, end - pos);
+                pos = end + 1;
+            } else {
+                int length = flags & NAME_LENGTH_MASK;
+                if (length == NAME_LENGTH_MASK) {
+                    length = 0;
+                    while (buf.get(pos + length) != 0) length++;
+                }
+                path = new byte[length];
+                buf.get(pos, path);
+                // Entries are NUL-padded to a multiple of eight bytes
+                pos = start + ((pos - start + length + 8) & ~7);
+            }
+            previousPath = path;
+            previousLength = path.length;
+
+            if ((mode & MODE_TYPE_MASK) != MODE_REGULAR_FILE) continue;
+            String name = new String(path, StandardCharsets.UTF_8);
+            if (name.equals(previous)) continue; // further stages of a conflicted path
+            previous = name;
+            entries.add(new IndexEntry(name, mtimeSeconds, mtimeNanos, size, objectId));
+        }
+
+        // Extensions follow the entries; a split index keeps most entries in a shared file
+        int end = buf.limit() - objectIdLength;
+        while (pos + 8 <= end) {
+            int signature = buf.getInt(pos);
+            if (signature == SPLIT_INDEX_EXTENSION) return null;
+            pos += 8 + buf.getInt(pos + 4);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,816 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only access to the objects of a local git repository: loose objects and pack files
+ * (index version 2, offset and reference deltas), including alternate object directories.
+ * Nothing is fetched and no git binary is run.
+ *
+ * Pack indexes and packs are opened when first needed and read with positioned reads, so packs
+ * of any size work and nothing stays mapped after {@link #close()}. An object is found by a
+ * binary search in the fan-out range of its first byte, so reading one object costs a few small
+ * reads however large the repository is. Inflated delta bases are kept in a small LRU cache, because
+ * neighbouring trees and blobs usually share them. Instances are not thread-safe.
+ *
+ * Only SHA-1 repositories are supported.
+ */
+final class GitObjectStore implements Closeable {
+
+    static final int OBJ_COMMIT = 1;
+    static final int OBJ_TREE = 2;
+    static final int OBJ_BLOB = 3;
+    static final int OBJ_TAG = 4;
+    private static final int OBJ_OFS_DELTA = 6;
+    private static final int OBJ_REF_DELTA = 7;
+
+    static final int ID_LENGTH = 20;
+
+    private static final int IDX_MAGIC = 0xFF744F63; // "\377tOc"
+    private static final int DELTA_BASE_CACHE_SIZE = 256;
+    private static final int PACK_WINDOW_SIZE = 16 * 1024;
+    // Longest object header: type and size, then an offset or a base id
+    private static final int PACK_HEADER_MAX = 64;
+
+    /**
+     * A decompressed object.
+     */
+    static final class RawObject {
+        final int type;
+        final byte[] data;
+
+        RawObject(int type, byte[] data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    /**
+     * One pack file with its index, opened lazily. Both are read with positioned reads rather
+     * than mapped: a mapping of a pack over 2 GiB is not possible, and a mapping outlives
+     * {@link #close()} until it is garbage collected, which keeps the files locked on Windows.
+     */
+    private static final class Pack implements Closeable {
+        final Path idxFile;
+        final Path packFile;
+        FileChannel idx;
+        FileChannel pack;
+        // Cumulative object counts by first id byte; the last is the number of objects
+        final int[] fanout = new int[256];
+        int count;
+
+        private final ByteBuffer scratch = ByteBuffer.allocate(ID_LENGTH);
+        // Recently read pack bytes: object headers and their neighbours cost a single read
+        private final byte[] window = new byte[PACK_WINDOW_SIZE];
+        private long windowStart = -1;
+        private int windowLength;
+
+        Pack(Path idxFile) {
+            this.idxFile = idxFile;
+            String name = idxFile.getFileName().toString();
+            this.packFile = idxFile.resolveSibling(name.substring(0, name.length() - 4) + ".pack");
+        }
+
+        void open() throws IOException {
+            if (idx != null) return;
+            FileChannel channel = FileChannel.open(idxFile, StandardOpenOption.READ);
+            try {
+                ByteBuffer header = ByteBuffer.allocate(8 + 256 * 4);
+                readFully(channel, header, 0);
+                if (header.getInt(0) != IDX_MAGIC || header.getInt(4) != 2) {
+                    throw new IOException("Unsupported pack index: " + idxFile);
+                }
+                for (int i = 0; i < 256; i++) fanout[i] = header.getInt(8 + i * 4);
+                count = fanout[255];
+                pack = FileChannel.open(packFile, StandardOpenOption.READ);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            idx = channel;
+        }
+
+        @Override
+        public void close() throws IOException {
+            FileChannel i = idx;
+            FileChannel p = pack;
+            idx = null;
+            pack = null;
+            windowStart = -1;
+            try {
+                if (i != null) i.close();
+            } finally {
+                if (p != null) p.close();
+            }
+        }
+
+        /** @return the fan-out lower bound for ids starting with byte {@code first} */
+        int fanoutStart(int first) {
+            return first == 0 ? 0 : fanout[first - 1];
+        }
+
+        int fanoutEnd(int first) {
+            return fanout[first];
+        }
+
+        /** Compares the id at index position {@code i} with {@code id} over {@code length} bytes */
+        int compare(int i, byte[] id, int length) throws IOException {
+            ByteBuffer stored = readIdx(8 + 256 * 4 + (long) i * ID_LENGTH, ID_LENGTH);
+            for (int k = 0; k < length; k++) {
+                int c = Integer.compare(stored.get(k) & 0xFF, id[k] & 0xFF);
+                if (c != 0) return c;
+            }
+            return 0;
+        }
+
+        byte[] idAt(int i) throws IOException {
+            byte[] id = new byte[ID_LENGTH];
+            readIdx(8 + 256 * 4 + (long) i * ID_LENGTH, ID_LENGTH).get(0, id);
+            return id;
+        }
+
+        long offsetAt(int i) throws IOException {
+            long offsetTable = 8 + 256 * 4 + (long) count * (ID_LENGTH + 4);
+            int offset = readIdx(offsetTable + (long) i * 4, 4).getInt(0);
+            if (offset >= 0) return offset;
+            long large = offsetTable + (long) count * 4 + (long) (offset & 0x7FFFFFFF) * 8;
+            return readIdx(large, 8).getLong(0);
+        }
+
+        /** @return the index position of the first id not below {@code id} (prefix of {@code length}) */
+        int lowerBound(byte[] id, int length) throws IOException {
+            int first = id[0] & 0xFF;
+            int lo = fanoutStart(first);
+            int hi = fanoutEnd(first);
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(mid, id, length) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /** @return the pack offset of the object, or -1 */
+        long find(byte[] id) throws IOException {
+            int i = lowerBound(id, ID_LENGTH);
+            return i < fanoutEnd(id[0] & 0xFF) && compare(i, id, ID_LENGTH) == 0 ? offsetAt(i) : -1;
+        }
+
+        private ByteBuffer readIdx(long position, int length) throws IOException {
+            scratch.clear().limit(length);
+            readFully(idx, scratch, position);
+            return scratch;
+        }
+
+        /**
+         * Makes the pack bytes from {@code position} on available in {@link #window}, with at
+         * least {@link #PACK_HEADER_MAX} of them unless the pack ends first.
+         *
+         * @return the index of {@code position} in the window
+         */
+        int fill(long position) throws IOException {
+            if (windowStart >= 0 && position >= windowStart
+                    && position + PACK_HEADER_MAX <= windowStart + windowLength) {
+                return (int) (position - windowStart);
+            }
+            ByteBuffer dst = ByteBuffer.wrap(window);
+            while (dst.hasRemaining()) {
+                if (pack.read(dst, position + dst.position()) < 0) break;
+            }
+            windowStart = position;
+            windowLength = dst.position();
+            return 0;
+        }
+
+        /** @return the number of window bytes from index {@code at} on */
+        int available(int at) {
+            return windowLength - at;
+        }
+    }
+
+    private final Path gitDir;
+    private final Path commonDir;
+    private final List<Path> objectDirs = new ArrayList<>();
+    private final List<Pack> packs = new ArrayList<>();
+    private final Inflater inflater = new Inflater();
+    private final Map<String, RawObject> deltaBases = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RawObject> eldest) {
+            return size() > DELTA_BASE_CACHE_SIZE;
+        }
+    };
+
+    private GitObjectStore(Path gitDir, Path commonDir) throws IOException {
+        this.gitDir = gitDir;
+        this.commonDir = commonDir;
+        addObjectDir(commonDir.resolve("objects"), new HashSet<>());
+    }
+
+    /**
+     * Opens the repository whose work tree contains {@code path} (or which is a git directory itself).
+     *
+     * @throws IOException if there is no repository there or it uses SHA-256 object ids
+     */
+    static GitObjectStore open(Path path) throws IOException {
+        Path gitDir = null;
+        Path absolute = path.toAbsolutePath().normalize();
+        if (Files.isDirectory(absolute.resolve("objects")) && Files.isRegularFile(absolute.resolve("HEAD"))) {
+            gitDir = absolute; // bare repository or .git itself
+        }
+        for (Path dir = absolute; gitDir == null && dir != null; dir = dir.getParent()) {
+            gitDir = GitIndexSource.resolveGitDir(dir.resolve(".git"));
+        }
+        if (gitDir == null) throw new IOException("Not a git repository: " + path);
+
+        Path commonDir = gitDir;
+        Path commonDirFile = gitDir.resolve("commondir");
+        if (Files.isRegularFile(commonDirFile)) {
+            commonDir = gitDir.resolve(Files.readString(commonDirFile).trim()).normalize();
+        }
+        Path config = commonDir.resolve("config");
+        if (Files.isRegularFile(config)) {
+            String text = Files.readString(config).toLowerCase(Locale.ROOT).replace(" ", "").replace("\t", "");
+            if (text.contains("objectformat=sha256")) throw new IOException("SHA-256 repositories are not supported");
+        }
+        return new GitObjectStore(gitDir, commonDir);
+    }
+
+    private void addObjectDir(Path dir, Set<Path> seen) throws IOException {
+        Path normalized = dir.toAbsolutePath().normalize();
+        if (!seen.add(normalized) || !Files.isDirectory(normalized)) return;
+        objectDirs.add(normalized);
+        Path packDir = normalized.resolve("pack");
+        if (Files.isDirectory(packDir)) {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(packDir, "*.idx")) {
+                for (Path idx : entries) {
+                    packs.add(new Pack(idx));
+                }
+            }
+        }
+        Path alternates = normalized.resolve("info").resolve("alternates");
+        if (Files.isRegularFile(alternates)) {
+            for (String line : Files.readAllLines(alternates, StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) addObjectDir(normalized.resolve(line), seen);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        inflater.end();
+        for (Pack pack : packs) {
+            try {
+                pack.close();
+            } catch (IOException ignored) {
+                // read-only: nothing is lost
+            }
+        }
+        packs.clear();
+        deltaBases.clear();
+    }
+
+    // ==================== Revisions ====================
+
+    /**
+     * Resolves a revision to a commit id: a full or abbreviated hex id, {@code HEAD}, a branch,
+     * tag or remote name, or a full ref name, optionally followed by {@code ~n} and {@code ^n}
+     * suffixes. Annotated tags are peeled.
+     *
+     * @throws IOException if the revision does not name a commit
+     */
+    byte[] resolveCommit(String revision) throws IOException {
+        String rev = revision.trim();
+        // Ref names cannot contain '~' or '^', so the first one starts the suffixes
+        int end = rev.length();
+        for (int i = 0; i < rev.length(); i++) {
+            if (rev.charAt(i) == '~' || rev.charAt(i) == '^') {
+                end = i;
+                break;
+            }
+        }
+        byte[] id = peel(resolveName(rev.substring(0, end), revision));
+
+        int i = end;
+        while (i < rev.length()) {
+            char op = rev.charAt(i++);
+            if (op != '~' && op != '^') throw new IOException("Unknown revision: " + revision);
+            int start = i;
+            while (i < rev.length() && Character.isDigit(rev.charAt(i))) i++;
+            int n = start == i ? 1 : Integer.parseInt(rev.substring(start, i));
+            if (op == '~') {
+                for (int k = 0; k < n; k++) {
+                    id = parent(id, 1, revision);
+                }
+            } else if (n > 0) {
+                id = parent(id, n, revision); // "^0" is the commit itself
+            }
+        }
+        return id;
+    }
+
+    private byte[] resolveName(String name, String revision) throws IOException {
+        if (name.isEmpty()) throw new IOException("Unknown revision: " + revision);
+        if (name.length() == ID_LENGTH * 2 && isHex(name)) return fromHex(name);
+        String[] candidates = name.equals("HEAD") || name.startsWith("refs/")
+                ? new String[] {name}
+                : new String[] {name, "refs/" + name, "refs/tags/" + name, "refs/heads/" + name,
+                                "refs/remotes/" + name, "refs/remotes/" + name + "/HEAD"};
+        for (String ref : candidates) {
+            byte[] id = readRef(ref, 0);
+            if (id != null) return id;
+        }
+        if (name.length() >= 4 && isHex(name)) {
+            byte[] id = findByPrefix(name.toLowerCase(Locale.ROOT));
+            if (id != null) return id;
+        }
+        throw new IOException("Unknown revision: " + revision);
+    }
+
+    /** @return the id a ref points to (following symbolic refs), or null if it does not exist */
+    private byte[] readRef(String ref, int depth) throws IOException {
+        if (depth > 10) return null;
+        Path file = (ref.equals("HEAD") || !ref.startsWith("refs/") ? gitDir : commonDir).resolve(ref);
+        if (Files.isRegularFile(file)) {
+            String value = Files.readString(file, StandardCharsets.UTF_8).trim();
+            if (value.startsWith("ref:")) return readRef(value.substring(4).trim(), depth + 1);
+            if (value.length() >= ID_LENGTH * 2 && isHex(value.substring(0, ID_LENGTH * 2))) {
+                return fromHex(value.substring(0, ID_LENGTH * 2));
+            }
+            return null;
+        }
+        Path packedRefs = commonDir.resolve("packed-refs");
+        if (!ref.startsWith("refs/") || !Files.isRegularFile(packedRefs)) return null;
+        for (String line : Files.readAllLines(packedRefs, StandardCharsets.UTF_8)) {
+            if (line.startsWith("#") || line.startsWith("^") || line.length() < ID_LENGTH * 2 + 2) continue;
+            if (line.substring(ID_LENGTH * 2 + 1).equals(ref)) return fromHex(line.substring(0, ID_LENGTH * 2));
+        }
+        return null;
+    }
+
+    /** @return the unique object whose hex id starts with {@code prefix}, or null */
+    private byte[] findByPrefix(String prefix) throws IOException {
+        Set<String> found = new HashSet<>();
+        for (Path dir : objectDirs) {
+            Path fanout = dir.resolve(prefix.substring(0, 2));
+            if (!Files.isDirectory(fanout)) continue;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(fanout, prefix.substring(2) + "*")) {
+                for (Path entry : entries) {
+                    found.add(prefix.substring(0, 2) + entry.getFileName());
+                }
+            }
+        }
+        byte[] key = fromHex((prefix.length() % 2 == 0 ? prefix : prefix.substring(0, prefix.length() - 1)));
+        for (Pack pack : packs) {
+            pack.open();
+            for (int i = pack.lowerBound(key, key.length); i < pack.count; i++) {
+                String hex = toHex(pack.idAt(i));
+                if (!hex.startsWith(prefix)) {
+                    if (pack.compare(i, key, key.length) > 0) break;
+                    continue;
+                }
+                found.add(hex);
+            }
+        }
+        if (found.size() > 1) throw new IOException("Ambiguous revision: " + prefix);
+        return found.isEmpty() ? null : fromHex(found.iterator().next());
+    }
+
+    private byte[] peel(byte[] id) throws IOException {
+        for (int depth = 0; depth < 10; depth++) {
+            RawObject object = read(id);
+            if (object.type == OBJ_COMMIT) return id;
+            if (object.type != OBJ_TAG) throw new IOException("Not a commit: " + toHex(id));
+            id = headerId(object.data, "object ");
+        }
+        throw new IOException("Tag chain too long: " + toHex(id));
+    }
+
+    private byte[] parent(byte[] commit, int n, String revision) throws IOException {
+        List<byte[]> parents = readCommit(commit).parents;
+        if (n > parents.size()) throw new IOException("Unknown revision: " + revision);
+        return parents.get(n - 1);
+    }
+
+    /**
+     * @return the root tree of a commit
+     */
+    byte[] treeOf(byte[] commit) throws IOException {
+        return readCommit(commit).tree;
+    }
+
+    /**
+     * @throws IOException if the object is not a commit
+     */
+    Commit readCommit(byte[] id) throws IOException {
+        RawObject object = read(id);
+        if (object.type != OBJ_COMMIT) throw new IOException("Not a commit: " + toHex(id));
+        byte[] data = object.data;
+        byte[] tree = null;
+        List<byte[]> parents = new ArrayList<>(1);
+        long time = 0;
+        for (int pos = 0; pos < data.length; ) {
+            int eol = indexOf(data, (byte) '\n', pos);
+            if (eol == pos) break; // end of headers
+            if (startsWith(data, pos, "tree ")) {
+                tree = fromHex(new String(data, pos + 5, ID_LENGTH * 2, StandardCharsets.US_ASCII));
+            } else if (startsWith(data, pos, "parent ")) {
+                parents.add(fromHex(new String(data, pos + 7, ID_LENGTH * 2, StandardCharsets.US_ASCII)));
+            } else if (startsWith(data, pos, "committer ")) {
+                // "committer Name <email> <epoch seconds> <zone>"
+                String[] parts = new String(data, pos, eol - pos, StandardCharsets.UTF_8).split(" ");
+                if (parts.length >= 2) time = Long.parseLong(parts[parts.length - 2]) * 1000;
+            }
+            pos = eol + 1;
+        }
+        if (tree == null) throw new IOException("Missing 'tree' header in " + toHex(id));
+        return new Commit(tree, parents, time);
+    }
+
+    /**
+     * The headers of a commit this reader uses.
+     */
+    static final class Commit {
+        final byte[] tree;
+        final List<byte[]> parents;
+        /** Committer time in milliseconds since the epoch */
+        final long time;
+
+        Commit(byte[] tree, List<byte[]> parents, long time) {
+            this.tree = tree;
+            this.parents = parents;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Parses a tree object: entries of {@code <octal mode> <name>\0<binary id>}, in tree order.
+     *
+     * @throws IOException if the object is not a tree or an entry is truncated
+     */
+    List<TreeEntry> readTree(byte[] id) throws IOException {
+        RawObject object = read(id);
+        if (object.type != OBJ_TREE) throw new IOException("Not a tree: " + toHex(id));
+        byte[] data = object.data;
+        List<TreeEntry> entries = new ArrayList<>();
+        int pos = 0;
+        while (pos < data.length) {
+            int mode = 0;
+            while (pos < data.length && data[pos] != ' ') {
+                mode = (mode << 3) | (data[pos++] - '0');
+            }
+            int nameStart = ++pos;
+            int nul = indexOf(data, (byte) 0, pos);
+            pos = nul + 1 + ID_LENGTH;
+            if (pos > data.length) throw new IOException("Truncated tree entry in " + toHex(id));
+            String name = new String(data, nameStart, nul - nameStart, StandardCharsets.UTF_8);
+            entries.add(new TreeEntry(name, mode, Arrays.copyOfRange(data, nul + 1, pos)));
+        }
+        return entries;
+    }
+
+    /**
+     * One entry of a tree.
+     */
+    static final class TreeEntry {
+        final String name;
+        final int mode;
+        final byte[] id;
+
+        TreeEntry(String name, int mode, byte[] id) {
+            this.name = name;
+            this.mode = mode;
+            this.id = id;
+        }
+
+        /** @return whether the entry is a subtree */
+        boolean isTree() {
+            return (mode & 0170000) == 0040000;
+        }
+
+        /** @return whether the entry is a regular file (not a symbolic link or submodule) */
+        boolean isFile() {
+            return (mode & 0170000) == 0100000;
+        }
+    }
+
+    /**
+     * @return the tags pointing (possibly through annotated tags) to commits, by name
+     */
+    Map<String, byte[]> listTags() throws IOException {
+        Map<String, byte[]> refs = new LinkedHashMap<>();
+        Path packedRefs = commonDir.resolve("packed-refs");
+        if (Files.isRegularFile(packedRefs)) {
+            for (String line : Files.readAllLines(packedRefs, StandardCharsets.UTF_8)) {
+                if (line.startsWith("#") || line.startsWith("^") || line.length() < ID_LENGTH * 2 + 2) continue;
+                String ref = line.substring(ID_LENGTH * 2 + 1);
+                if (ref.startsWith("refs/tags/")) refs.put(ref, fromHex(line.substring(0, ID_LENGTH * 2)));
+            }
+        }
+        Path tagDir = commonDir.resolve("refs").resolve("tags");
+        if (Files.isDirectory(tagDir)) {
+            try (java.util.stream.Stream<Path> files = Files.walk(tagDir)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    String ref = "refs/tags/" + tagDir.relativize(file).toString().replace('\\', '/');
+                    byte[] id = readRef(ref, 0);
+                    if (id != null) refs.put(ref, id); // loose refs override packed ones
+                }
+            }
+        }
+        Map<String, byte[]> tags = new LinkedHashMap<>();
+        for (Map.Entry<String, byte[]> e : refs.entrySet()) {
+            try {
+                tags.put(e.getKey().substring("refs/tags/".length()), peel(e.getValue()));
+            } catch (IOException ignored) {
+                // tag of a tree or blob: not part of any history
+            }
+        }
+        return tags;
+    }
+
+    private static byte[] headerId(byte[] data, String header) throws IOException {
+        for (int pos = 0; pos < data.length; ) {
+            int eol = indexOf(data, (byte) '\n', pos);
+            if (eol == pos) break;
+            if (startsWith(data, pos, header)) {
+                return fromHex(new String(data, pos + header.length(), ID_LENGTH * 2, StandardCharsets.US_ASCII));
+            }
+            pos = eol + 1;
+        }
+        throw new IOException("Missing '" + header.trim() + "' header");
+    }
+
+    // ==================== Objects ====================
+
+    /**
+     * @throws IOException if the object does not exist or cannot be decoded
+     */
+    RawObject read(byte[] id) throws IOException {
+        for (Pack pack : packs) {
+            pack.open();
+            long offset = pack.find(id);
+            if (offset >= 0) return readPacked(pack, offset);
+        }
+        String hex = toHex(id);
+        for (Path dir : objectDirs) {
+            Path file = dir.resolve(hex.substring(0, 2)).resolve(hex.substring(2));
+            if (Files.isRegularFile(file)) return readLoose(file);
+        }
+        throw new IOException("Missing object " + hex);
+    }
+
+    private RawObject readLoose(Path file) throws IOException {
+        byte[] compressed = Files.readAllBytes(file);
+        inflater.reset();
+        inflater.setInput(compressed);
+        // The header "<type> <size>\0" comes first; read it, then inflate the body in one go
+        byte[] header = new byte[64];
+        int headerLength = 0;
+        int nul = -1;
+        try {
+            while (nul < 0 && headerLength < header.length) {
+                int n = inflater.inflate(header, headerLength, 1);
+                if (n == 0) throw new IOException("Truncated object " + file);
+                if (header[headerLength] == 0) nul = headerLength;
+                headerLength++;
+            }
+            if (nul < 0) throw new IOException("Corrupt object " + file);
+            String[] parts = new String(header, 0, nul, StandardCharsets.US_ASCII).split(" ");
+            int type = typeOf(parts[0]);
+            byte[] data = new byte[Integer.parseInt(parts[1])];
+            inflateFully(data, file);
+            return new RawObject(type, data);
+        } catch (DataFormatException | RuntimeException e) {
+            throw new IOException("Corrupt object " + file, e);
+        }
+    }
+
+    private RawObject readPacked(Pack pack, long offset) throws IOException {
+        // Follow the delta chain down to its base, then apply the deltas back up
+        List<byte[]> deltas = new ArrayList<>();
+        List<String> deltaKeys = new ArrayList<>();
+        RawObject base = null;
+        long pos = offset;
+        while (base == null) {
+            String key = pack.packFile + "@" + pos;
+            base = deltaBases.get(key);
+            if (base != null) break;
+            byte[] buf = pack.window;
+            int start = pack.fill(pos);
+            int p = start;
+            if (pack.available(start) < 2) throw new IOException("Truncated pack " + pack.packFile);
+            try {
+                int b = buf[p++] & 0xFF;
+                int type = (b >> 4) & 7;
+                long size = b & 0x0F;
+                for (int shift = 4; (b & 0x80) != 0; shift += 7) {
+                    b = buf[p++] & 0xFF;
+                    size |= (long) (b & 0x7F) << shift;
+                }
+                if (type == OBJ_OFS_DELTA) {
+                    b = buf[p++] & 0xFF;
+                    long distance = b & 0x7F;
+                    while ((b & 0x80) != 0) {
+                        b = buf[p++] & 0xFF;
+                        distance = ((distance + 1) << 7) | (b & 0x7F);
+                    }
+                    deltaKeys.add(key);
+                    deltas.add(inflatePacked(pack, pos + (p - start), size));
+                    pos -= distance;
+                } else if (type == OBJ_REF_DELTA) {
+                    byte[] baseId = Arrays.copyOfRange(buf, p, p + ID_LENGTH);
+                    deltaKeys.add(key);
+                    deltas.add(inflatePacked(pack, pos + (p - start) + ID_LENGTH, size));
+                    pos = pack.find(baseId);
+                    if (pos < 0) base = read(baseId); // base stored outside this pack
+                } else if (type >= OBJ_COMMIT && type <= OBJ_TAG) {
+                    base = new RawObject(type, inflatePacked(pack, pos + (p - start), size));
+                    if (!deltas.isEmpty()) deltaBases.put(key, base);
+                } else {
+                    throw new IOException("Bad object type " + type + " in " + pack.packFile);
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Truncated pack " + pack.packFile, e); // header ran past the end
+            }
+        }
+        for (int i = deltas.size() - 1; i >= 0; i--) {
+            base = new RawObject(base.type, applyDelta(base.data, deltas.get(i)));
+            if (i > 0) deltaBases.put(deltaKeys.get(i), base); // intermediate results are bases too
+        }
+        return base;
+    }
+
+    /**
+     * Inflates the object data starting at a pack offset, feeding the inflater window by window.
+     */
+    private byte[] inflatePacked(Pack pack, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE - 8) throw new IOException("Object too large");
+        byte[] out = new byte[(int) size];
+        inflater.reset();
+        int done = 0;
+        try {
+            while (done < out.length) {
+                if (inflater.needsInput()) {
+                    int at = pack.fill(position);
+                    int length = pack.available(at);
+                    if (length <= 0) throw new IOException("Truncated object in " + pack.packFile);
+                    inflater.setInput(pack.window, at, length);
+                    position += length;
+                }
+                int n = inflater.inflate(out, done, out.length - done);
+                if (n == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated object in " + pack.packFile);
+                }
+                done += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt pack data", e);
+        }
+        return out;
+    }
+
+    private void inflateFully(byte[] out, Path file) throws DataFormatException, IOException {
+        int done = 0;
+        while (done < out.length) {
+            int n = inflater.inflate(out, done, out.length - done);
+            if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                throw new IOException("Truncated object" + (file == null ? "" : " " + file));
+            }
+            done += n;
+        }
+    }
+
+    /**
+     * Rebuilds an object from its delta base: the delta starts with the base and result sizes,
+     * followed by copy (from the base) and insert (literal bytes) instructions.
+     */
+    static byte[] applyDelta(byte[] base, byte[] delta) throws IOException {
+        int[] pos = {0};
+        long baseSize = readDeltaSize(delta, pos);
+        long resultSize = readDeltaSize(delta, pos);
+        if (baseSize != base.length || resultSize > Integer.MAX_VALUE) throw new IOException("Bad delta");
+        byte[] out = new byte[(int) resultSize];
+        int o = 0;
+        int p = pos[0];
+        try {
+            while (p < delta.length) {
+                int cmd = delta[p++] & 0xFF;
+                if ((cmd & 0x80) != 0) {
+                    long copyOffset = 0;
+                    int copySize = 0;
+                    for (int bit = 0; bit < 4; bit++) {
+                        if ((cmd & (1 << bit)) != 0) copyOffset |= (long) (delta[p++] & 0xFF) << (8 * bit);
+                    }
+                    for (int bit = 0; bit < 3; bit++) {
+                        if ((cmd & (0x10 << bit)) != 0) copySize |= (delta[p++] & 0xFF) << (8 * bit);
+                    }
+                    if (copySize == 0) copySize = 0x10000;
+                    System.arraycopy(base, (int) copyOffset, out, o, copySize);
+                    o += copySize;
+                } else if (cmd != 0) {
+                    System.arraycopy(delta, p, out, o, cmd);
+                    p += cmd;
+                    o += cmd;
+                } else {
+                    throw new IOException("Bad delta instruction");
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Bad delta", e);
+        }
+        if (o != out.length) throw new IOException("Bad delta");
+        return out;
+    }
+
+    private static long readDeltaSize(byte[] delta, int[] pos) {
+        long size = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = delta[pos[0]++] & 0xFF;
+            size |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return size;
+    }
+
+    // ==================== Helpers ====================
+
+    private static void readFully(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, position);
+            if (n < 0) throw new IOException("Unexpected end of file");
+            position += n;
+        }
+    }
+
+    private static int typeOf(String name) throws IOException {
+        switch (name) {
+            case "commit": return OBJ_COMMIT;
+            case "tree": return OBJ_TREE;
+            case "blob": return OBJ_BLOB;
+            case "tag": return OBJ_TAG;
+            default: throw new IOException("Unknown object type " + name);
+        }
+    }
+
+    static int indexOf(byte[] data, byte value, int from) {
+        for (int i = from; i < data.length; i++) {
+            if (data[i] == value) return i;
+        }
+        return data.length;
+    }
+
+    private static boolean startsWith(byte[] data, int pos, String prefix) {
+        if (pos + prefix.length() > data.length) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (data[pos + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isHex(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.digit(s.charAt(i), 16) < 0) return false;
+        }
+        return true;
+    }
+
+    static byte[] fromHex(String hex) throws IOException {
+        if (hex.length() % 2 != 0 || !isHex(hex)) throw new IOException("Bad object id " + hex);
+        byte[] id = new byte[hex.length() / 2];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+        }
+        return id;
+    }
+
+    static String toHex(byte[] id) {
+        StringBuilder sb = new StringBuilder(id.length * 2);
+        for (byte b : id) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the trees of two commits and reports the blobs that differ.
+ *
+ * Subtrees with the same object id on both sides are skipped without being read, so the work is
+ * proportional to the size of the change (plus the depth of the changed paths), not to the size
+ * of the repository. Submodules and symbolic links are ignored.
+ */
+final class GitTreeDiff {
+
+    /**
+     * A file whose content differs between the two trees.
+     */
+    static final class Change {
+        /** Path relative to the repository root, '/' separated */
+        final String path;
+        /** Blob on the old side, null if the file was added */
+        final byte[] oldId;
+        /** Blob on the new side, null if the file was deleted */
+        final byte[] newId;
+
+        Change(String path, byte[] oldId, byte[] newId) {
+            this.path = path;
+            this.oldId = oldId;
+            this.newId = newId;
+        }
+    }
+
+    private final GitObjectStore store;
+    private final NameMatcher excluded;
+    private final NameMatcher included;
+
+    /**
+     * @param excluded names of files and directories to leave out (directories are not descended)
+     * @param included file names to report
+     */
+    GitTreeDiff(GitObjectStore store, NameMatcher excluded, NameMatcher included) {
+        this.store = store;
+        this.excluded = excluded;
+        this.included = included;
+    }
+
+    /**
+     * @param oldTree root tree of the old commit
+     * @param newTree root tree of the new commit
+     * @return the changed files
+     */
+    List<Change> diff(byte[] oldTree, byte[] newTree) throws IOException {
+        List<Change> changes = new ArrayList<>();
+        diff("", oldTree, newTree, changes);
+        return changes;
+    }
+
+    private void diff(String prefix, byte[] oldTree, byte[] newTree, List<Change> out) throws IOException {
+        if (oldTree != null && newTree != null && Arrays.equals(oldTree, newTree)) return;
+        Map<String, GitObjectStore.TreeEntry> oldEntries = oldTree == null ? Map.of() : readTree(oldTree);
+        Map<String, GitObjectStore.TreeEntry> newEntries = newTree == null ? Map.of() : readTree(newTree);
+
+        for (Map.Entry<String, GitObjectStore.TreeEntry> e : oldEntries.entrySet()) {
+            String name = e.getKey();
+            if (excluded.matches(name)) continue;
+            GitObjectStore.TreeEntry before = e.getValue();
+            GitObjectStore.TreeEntry after = newEntries.get(name);
+            if (before.isTree()) {
+                diff(prefix + name + "/", before.id, after != null && after.isTree() ? after.id : null, out);
+            } else if (before.isFile() && included.matches(name)) {
+                byte[] newId = after != null && after.isFile() ? after.id : null;
+                if (newId == null || !Arrays.equals(before.id, newId)) out.add(new Change(prefix + name, before.id, newId));
+            }
+        }
+        for (Map.Entry<String, GitObjectStore.TreeEntry> e : newEntries.entrySet()) {
+            String name = e.getKey();
+            if (excluded.matches(name)) continue;
+            GitObjectStore.TreeEntry after = e.getValue();
+            GitObjectStore.TreeEntry before = oldEntries.get(name);
+            if (after.isTree() && (before == null || !before.isTree())) {
+                diff(prefix + name + "/", null, after.id, out);
+            } else if (after.isFile() && (before == null || !before.isFile()) && included.matches(name)) {
+                out.add(new Change(prefix + name, null, after.id));
+            }
+        }
+    }
+
+    /**
+     * @return the entries of a tree by name
+     */
+    private Map<String, GitObjectStore.TreeEntry> readTree(byte[] id) throws IOException {
+        Map<String, GitObjectStore.TreeEntry> entries = new LinkedHashMap<>();
+        for (GitObjectStore.TreeEntry entry : store.readTree(id)) {
+            entries.put(entry.name, entry);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,300 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Hierarchical {@code .gitignore} / {@code .ignore} matcher, one immutable instance per directory.
+ *
+ * The rule files of a directory are compiled once when the walk enters it and chained to the
+ * rules inherited from its parents; a directory without rule files shares its parent's chain.
+ * Matching follows git: the last matching pattern of a file wins, deeper files take precedence
+ * over shallower ones, {@code !} re-includes, a trailing {@code /} matches directories only,
+ * a pattern containing a {@code /} is anchored to its file's directory while one without matches
+ * the name at any depth, and {@code **} spans directories. As in git, nothing below an ignored
+ * directory can be re-included, because the walk never enters that directory.
+ *
+ * When the scan root lies inside a git work tree, the rule files of the directories between the
+ * work tree and the root and {@code .git/info/exclude} apply too. Matching is case-sensitive.
+ */
+final class IgnoreRules {
+
+    /** Rule file names read in each directory, lowest precedence first */
+    private static final String[] RULE_FILES = {".gitignore", ".ignore"};
+
+    /** Rules that ignore nothing */
+    static final IgnoreRules NONE = new IgnoreRules(null, "");
+
+    /**
+     * The compiled rules of one directory, linked to the nearest ancestor directory with rules.
+     */
+    private static final class RuleSet {
+        final Rule[] rules;
+        final int baseLength;   // length of the rule directory's relative path prefix
+        final RuleSet parent;
+
+        RuleSet(Rule[] rules, int baseLength, RuleSet parent) {
+            this.rules = rules;
+            this.baseLength = baseLength;
+            this.parent = parent;
+        }
+    }
+
+    private final RuleSet rules;
+    private final String path;   // this directory relative to the top of the chain, "" or ending in '/'
+
+    private IgnoreRules(RuleSet rules, String path) {
+        this.rules = rules;
+        this.path = path;
+    }
+
+    /**
+     * Loads the rules that apply inside {@code root}: those of the enclosing git work tree's
+     * directories down to the root and {@code .git/info/exclude}, or only the root's own rule
+     * files outside a work tree.
+     */
+    static IgnoreRules forRoot(Path root) {
+        Path absolute = root.toAbsolutePath().normalize();
+        Path top = absolute;
+        Path gitDir = null;
+        for (Path dir = absolute; dir != null; dir = dir.getParent()) {
+            gitDir = GitIndexSource.resolveGitDir(dir.resolve(".git"));
+            if (gitDir != null) {
+                top = dir;
+                break;
+            }
+        }
+
+        List<Rule> topRules = new ArrayList<>();
+        if (gitDir != null) parse(gitDir.resolve("info").resolve("exclude"), topRules);
+        for (String file : RULE_FILES) {
+            parse(top.resolve(file), topRules);
+        }
+        IgnoreRules rules = new IgnoreRules(
+                topRules.isEmpty() ? null : new RuleSet(topRules.toArray(new Rule[0]), 0, null), "");
+        for (Path name : top.relativize(absolute)) {
+            if (name.toString().isEmpty()) continue;
+            rules = rules.enter(top.resolve(rules.path).resolve(name), name.toString());
+        }
+        return rules;
+    }
+
+    /**
+     * @param dir a directory inside the one these rules belong to, not ignored by them
+     * @param name the directory's name
+     * @return the rules applying inside {@code dir}
+     */
+    IgnoreRules enter(Path dir, String name) {
+        String childPath = path + name + "/";
+        List<Rule> own = new ArrayList<>();
+        for (String file : RULE_FILES) {
+            parse(dir.resolve(file), own);
+        }
+        return new IgnoreRules(own.isEmpty() ? rules : new RuleSet(own.toArray(new Rule[0]), childPath.length(), rules),
+                childPath);
+    }
+
+    /**
+     * @param name name of an entry of the directory these rules belong to
+     * @param directory whether the entry is a directory
+     * @return true if the entry is ignored
+     */
+    boolean isIgnored(String name, boolean directory) {
+        if (rules == null) return false;
+        String relative = path + name;
+        for (RuleSet set = rules; set != null; set = set.parent) {
+            String local = relative.substring(set.baseLength);
+            Rule[] list = set.rules;
+            for (int i = list.length - 1; i >= 0; i--) {
+                if (list[i].matches(local, name, directory)) return !list[i].negated;
+            }
+        }
+        return false;
+    }
+
+    private static void parse(Path file, List<Rule> out) {
+        if (!Files.isRegularFile(file)) return;
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return; // unreadable or not UTF-8: the directory simply has no rules
+        }
+        for (String line : lines) {
+            Rule rule = Rule.compile(line);
+            if (rule != null) out.add(rule);
+        }
+    }
+
+    /**
+     * One compiled pattern line.
+     */
+    static final class Rule {
+        private static final int LITERAL = 0;  // whole name equals the text
+        private static final int SUFFIX = 1;   // name ends with the text ("*.log")
+        private static final int GLOB = 2;
+
+        /** The POSIX classes git wildmatch accepts in brackets, with their regex property names */
+        private static final Map<String, String> POSIX_CLASSES = Map.ofEntries(
+                Map.entry("alnum", "Alnum"), Map.entry("alpha", "Alpha"), Map.entry("blank", "Blank"),
+                Map.entry("cntrl", "Cntrl"), Map.entry("digit", "Digit"), Map.entry("graph", "Graph"),
+                Map.entry("lower", "Lower"), Map.entry("print", "Print"), Map.entry("punct", "Punct"),
+                Map.entry("space", "Space"), Map.entry("upper", "Upper"), Map.entry("xdigit", "XDigit"));
+
+        final boolean negated;
+        private final boolean directoryOnly;
+        private final boolean pathPattern;     // contains a '/': matched against the relative path
+        private final int kind;
+        private final String text;
+        private final Pattern glob;
+
+        private Rule(boolean negated, boolean directoryOnly, boolean pathPattern, int kind, String text, Pattern glob) {
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+            this.pathPattern = pathPattern;
+            this.kind = kind;
+            this.text = text;
+            this.glob = glob;
+        }
+
+        /**
+         * @return the rule of a {@code .gitignore} line, or null for blank lines and comments
+         */
+        static Rule compile(String line) {
+            if (line.endsWith("\r")) line = line.substring(0, line.length() - 1);
+            // Trailing spaces are dropped unless escaped
+            int end = line.length();
+            while (end > 0 && line.charAt(end - 1) == ' ' && (end < 2 || line.charAt(end - 2) != '\\')) end--;
+            line = line.substring(0, end);
+            if (line.isEmpty() || line.startsWith("#")) return null;
+
+            boolean negated = line.startsWith("!");
+            if (negated) line = line.substring(1);
+            boolean directoryOnly = line.endsWith("/") && !line.endsWith("\\/");
+            if (directoryOnly) line = line.substring(0, line.length() - 1);
+            boolean pathPattern = line.indexOf('/') >= 0;
+            if (line.startsWith("/")) line = line.substring(1);
+            if (line.isEmpty()) return null;
+
+            if (!pathPattern && !hasWildcard(line, 0)) {
+                return new Rule(negated, directoryOnly, false, LITERAL, line, null);
+            }
+            if (!pathPattern && line.startsWith("*") && !hasWildcard(line, 1)) {
+                return new Rule(negated, directoryOnly, false, SUFFIX, line.substring(1), null);
+            }
+            return new Rule(negated, directoryOnly, pathPattern, GLOB, line, Pattern.compile(toRegex(line)));
+        }
+
+        boolean matches(String relative, String name, boolean directory) {
+            if (directoryOnly && !directory) return false;
+            switch (kind) {
+                case LITERAL: return name.equals(text);
+                case SUFFIX: return name.endsWith(text);
+                default: return glob.matcher(pathPattern ? relative : name).matches();
+            }
+        }
+
+        private static boolean hasWildcard(String s, int from) {
+            for (int i = from; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '*' || c == '?' || c == '[' || c == '\\') return true;
+            }
+            return false;
+        }
+
+        /**
+         * Translates a git wildmatch pattern: {@code *} and {@code ?} stay within one path segment,
+         * {@code **} between slashes spans any number of segments, {@code [...]} is a character
+         * class (see {@link #bracket}) and a backslash escapes the next character.
+         */
+        static String toRegex(String pattern) {
+            StringBuilder re = new StringBuilder();
+            int n = pattern.length();
+            for (int i = 0; i < n; i++) {
+                char c = pattern.charAt(i);
+                if (c == '*' && i + 1 < n && pattern.charAt(i + 1) == '*'
+                        && (i == 0 || pattern.charAt(i - 1) == '/')
+                        && (i + 2 == n || pattern.charAt(i + 2) == '/')) {
+                    if (i + 2 == n) {
+                        re.append(".*");               // "a/**": everything inside a
+                    } else {
+                        re.append("(?:.*/)?");         // "**/b", "a/**/b": zero or more directories
+                        i++;                           // the slash is part of the group
+                    }
+                    i++;
+                } else if (c == '*') {
+                    re.append("[^/]*");
+                } else if (c == '?') {
+                    re.append("[^/]");
+                } else if (c == '[') {
+                    int close = bracket(pattern, i, re);
+                    if (close < 0) {
+                        re.append("\\[");
+                        continue;
+                    }
+                    i = close;
+                } else if (c == '\\' && i + 1 < n) {
+                    re.append(Pattern.quote(String.valueOf(pattern.charAt(++i))));
+                } else {
+                    re.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return re.toString();
+        }
+
+        /**
+         * Translates the character class opening at {@code open}: {@code !} or {@code ^} negates
+         * it, a {@code ]} right after the opening (or escaped by a backslash) is a member, ranges
+         * are kept and POSIX classes such as {@code [:digit:]} become their {@code \\p{...}} form.
+         *
+         * @return the index of the closing {@code ]}, or -1 (and nothing appended) if it is unclosed
+         */
+        private static int bracket(String pattern, int open, StringBuilder re) {
+            StringBuilder cls = new StringBuilder("[");
+            int n = pattern.length();
+            int i = open + 1;
+            if (i < n && (pattern.charAt(i) == '!' || pattern.charAt(i) == '^')) {
+                cls.append('^');
+                i++;
+            }
+            for (int first = i; i < n; i++) {
+                char c = pattern.charAt(i);
+                if (c == ']' && i > first) {
+                    re.append(cls).append(']');
+                    return i;
+                }
+                if (c == '[' && i + 1 < n && pattern.charAt(i + 1) == ':') {
+                    int end = pattern.indexOf(":]", i + 2);
+                    String posix = end < 0 ? null : POSIX_CLASSES.get(pattern.substring(i + 2, end));
+                    if (posix != null) {
+                        cls.append("\\p{").append(posix).append('}');
+                        i = end + 1;
+                        continue;
+                    }
+                }
+                if (c == '\\' && i + 1 < n) c = pattern.charAt(++i);
+                classMember(cls, c);
+                // A range a-z, unless the dash is the last member
+                if (i + 2 < n && pattern.charAt(i + 1) == '-' && pattern.charAt(i + 2) != ']') {
+                    i += 2;
+                    char to = pattern.charAt(i);
+                    if (to == '\\' && i + 1 < n) to = pattern.charAt(++i);
+                    cls.append('-');
+                    classMember(cls, to);
+                }
+            }
+            return -1;
+        }
+
+        private static void classMember(StringBuilder cls, char c) {
+            if ("\\[]&^-".indexOf(c) >= 0) cls.append('\\');
+            cls.append(c);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocation-free line classifier working directly on raw bytes.
+ *
+ * Produces exactly the same code/comment/blank/TODO counts as the original
+ * {@code readLine()/trim()/toLowerCase()} implementation for ASCII-compatible text:
+ * <ul>
+ *   <li>lines end at {@code \n}, {@code \r} or {@code \r\n}; a trailing line without terminator counts</li>
+ *   <li>"trimmed" means bytes {@code <= 0x20} removed from both ends</li>
+ *   <li>a line is a comment if its trimmed text starts with {@code //}, {@code /*} or {@code <!--},
+ *       or if it lies inside a block comment; a block ends on a line whose trimmed text ends with
+ *       {@code *}{@code /} or {@code -->}</li>
+ *   <li>TODO is matched case-insensitively anywhere in the line</li>
+ * </ul>
+ *
+ * Instead of materialising a line, the scanner keeps a few packed ints per line: the first four
+ * bytes after leading whitespace (for the prefix checks), the last three bytes up to the last
+ * non-whitespace byte (for the suffix checks) and a TODO match state. Input can be fed in chunks
+ * of any size; call {@link #finish()} after the last chunk. Instances are reusable via {@link #reset()}.
+ *
+ * When the jar was built with the {@code vector} profile and the {@code jdk.incubator.vector}
+ * module is enabled, long runs that cannot change the classification (leading whitespace, and the
+ * rest of a line once its prefix is known) are skipped with SIMD searches from
+ * {@code VectorByteScanner}. Otherwise, or with {@code -Dcodecounter.vector=false}, every byte
+ * goes through the scalar state machine, which is the default.
+ */
+final class LineClassifier {
+
+    /** SIMD scanner shared by all instances, or null when the Vector API is not available */
+    static final ByteScanner ACCELERATED = loadVectorScanner();
+
+    private static final int PREFIX_LINE_COMMENT = ('/' << 24) | ('/' << 16);
+    private static final int PREFIX_BLOCK_COMMENT = ('/' << 24) | ('*' << 16);
+    private static final int PREFIX_XML_COMMENT = ('<' << 24) | ('!' << 16) | ('-' << 8) | '-';
+    private static final int SUFFIX_BLOCK_END = ('*' << 8) | '/';
+    private static final int SUFFIX_XML_END = ('-' << 16) | ('-' << 8) | '>';
+
+    /** Bytes sampled per chunk to estimate the average line length */
+    private static final int BULK_SAMPLE_SIZE = 4096;
+    /** Average line length, in vectors, from which the bulk path is used */
+    private static final int BULK_MIN_LINE_VECTORS = 4;
+
+    // File totals
+    private long code, comment, blank, todo;
+    private boolean inBlockComment;
+    private boolean skipLineFeed;
+
+    // Current line
+    private boolean lineHasBytes;
+    private boolean lineStarted;     // seen a non-whitespace byte
+    private int head;                // first 4 bytes from the first non-whitespace byte, left-aligned
+    private int headLength;
+    private int window;              // last 3 bytes of the line so far
+    private int tail;                // window as of the last non-whitespace byte
+    private int todoState;           // number of "todo" characters matched so far
+    private boolean lineHasTodo;
+
+    private final ByteScanner scanner;
+
+    /**
+     * Creates a classifier that uses the SIMD scanner when it is available.
+     */
+    LineClassifier() {
+        this(ACCELERATED);
+    }
+
+    /**
+     * @param scanner bulk scanner for long runs, or null for the pure scalar path
+     */
+    LineClassifier(ByteScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    private static ByteScanner loadVectorScanner() {
+        if (!Boolean.parseBoolean(System.getProperty("codecounter.vector", "true"))) return null;
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        try {
+            ByteScanner candidate = (ByteScanner) Class.forName(
+                    "com.github.dev.tool.plugins.counter.VectorByteScanner")
+                    .getDeclaredConstructor().newInstance();
+            // Probe once so an incompatible Vector API fails here rather than mid-scan
+            candidate.findLineEnd(ByteBuffer.allocate(candidate.minRun() * 2), 0, candidate.minRun() * 2);
+            return candidate;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Scans {@code buf} from its position to its limit. The position is not modified.
+     */
+    void feed(ByteBuffer buf) {
+        int i = buf.position();
+        int limit = buf.limit();
+        ByteScanner bulk = scanner;
+        if (bulk == null || !hasLongLines(buf, i, limit, bulk)) {
+            for (; i < limit; i++) {
+                accept(buf.get(i) & 0xFF);
+            }
+            return;
+        }
+
+        int minRun = bulk.minRun();
+        while (i < limit) {
+            if (limit - i >= minRun && !skipLineFeed) {
+                if (!lineStarted) {
+                    int next = bulk.skipBlanks(buf, i, limit);
+                    if (next > i) {
+                        skipBlankRun(buf, i, next);
+                        i = next;
+                        continue;
+                    }
+                } else if (headLength == 4 && (todoState == 0 || lineHasTodo)) {
+                    int end = bulk.findLineEnd(buf, i, limit);
+                    if (end > i) {
+                        skipBodyRun(buf, i, end, bulk);
+                        i = end;
+                        continue;
+                    }
+                }
+            }
+            accept(buf.get(i++) & 0xFF);
+        }
+    }
+
+    /**
+     * Samples the start of a chunk to decide whether the bulk path pays off. On ordinary source
+     * code (short lines) the per-line search overhead outweighs the SIMD gain, so only chunks
+     * whose sampled lines average several vectors in length take the bulk path.
+     */
+    private static boolean hasLongLines(ByteBuffer buf, int from, int to, ByteScanner bulk) {
+        int sample = Math.min(to - from, BULK_SAMPLE_SIZE);
+        if (sample < bulk.minRun() * BULK_MIN_LINE_VECTORS) return false;
+        int lineEnds = bulk.countLineEnds(buf, from, from + sample);
+        return lineEnds == 0 || sample / lineEnds >= bulk.minRun() * BULK_MIN_LINE_VECTORS;
+    }
+
+    /**
+     * Applies a run of whitespace (no terminators) before the first non-whitespace byte of a line.
+     */
+    private void skipBlankRun(ByteBuffer buf, int from, int to) {
+        lineHasBytes = true;
+        for (int k = Math.max(from, to - 3); k < to; k++) {
+            window = ((window << 8) | (buf.get(k) & 0xFF)) & 0xFFFFFF;
+        }
+        todoState = 0;
+    }
+
+    /**
+     * Applies a run of a started line whose prefix is complete: only the suffix window and the
+     * TODO flag can still change. Requires {@code todoState == 0} or a TODO already found.
+     */
+    private void skipBodyRun(ByteBuffer buf, int from, int to, ByteScanner bulk) {
+        if (!lineHasTodo && bulk.containsTodo(buf, from, to)) lineHasTodo = true;
+
+        int last = bulk.lastNonBlank(buf, from, to);
+        if (last >= 0) {
+            int w = window;
+            for (int k = Math.max(from, last - 2); k <= last; k++) {
+                w = ((w << 8) | (buf.get(k) & 0xFF)) & 0xFFFFFF;
+            }
+            tail = w;
+        }
+
+        int start = Math.max(from, to - 3);
+        int state = 0;
+        for (int k = start; k < to; k++) {
+            int b = buf.get(k) & 0xFF;
+            window = ((window << 8) | b) & 0xFFFFFF;
+            state = nextTodoState(state, b);
+        }
+        // Complete matches were found by containsTodo; only a partial match at the end carries over
+        if (!lineHasTodo) todoState = state;
+    }
+
+    /**
+     * Processes one input unit: an unsigned byte, or a decoded char mapped into the byte range
+     * by {@link #acceptChar(char)}.
+     */
+    void accept(int b) {
+        if (skipLineFeed) {
+            skipLineFeed = false;
+            if (b == '\n') return;
+        }
+        if (b == '\n' || b == '\r') {
+            endLine();
+            skipLineFeed = b == '\r';
+            return;
+        }
+
+        lineHasBytes = true;
+        window = ((window << 8) | b) & 0xFFFFFF;
+        boolean whitespace = b <= ' ';
+        if (!whitespace) {
+            lineStarted = true;
+            tail = window;
+        }
+        if (lineStarted && headLength < 4) {
+            head |= b << (24 - 8 * headLength);
+            headLength++;
+        }
+
+        if (!lineHasTodo) {
+            todoState = nextTodoState(todoState, b);
+            if (todoState == 4) lineHasTodo = true;
+        }
+    }
+
+    /**
+     * Processes a decoded character. Characters outside Latin-1 can never be whitespace or one of
+     * the ASCII markers, so they are folded onto a neutral byte value.
+     */
+    void acceptChar(char c) {
+        accept(c <= 0xFF ? c : 0xFF);
+    }
+
+    /**
+     * Advances the case-insensitive "todo" matcher. No proper prefix of "todo" is also a suffix of
+     * a longer partial match, so a mismatch restarts at 1 if the byte itself is a 't', else at 0.
+     */
+    static int nextTodoState(int state, int b) {
+        int lower = b | 0x20; // folds only A-Z onto a-z for the letters we compare
+        switch (state) {
+            case 0: return lower == 't' ? 1 : 0;
+            case 1: return lower == 'o' ? 2 : (lower == 't' ? 1 : 0);
+            case 2: return lower == 'd' ? 3 : (lower == 't' ? 1 : 0);
+            case 3: return lower == 'o' ? 4 : (lower == 't' ? 1 : 0);
+            default: return state;
+        }
+    }
+
+    private void endLine() {
+        if (!lineStarted) {
+            blank++;
+        } else {
+            if (lineHasTodo) todo++;
+            boolean endsBlock = (tail & 0xFFFF) == SUFFIX_BLOCK_END || tail == SUFFIX_XML_END;
+            if (inBlockComment) {
+                comment++;
+                if (endsBlock) inBlockComment = false;
+            } else if ((head & 0xFFFF0000) == PREFIX_BLOCK_COMMENT || head == PREFIX_XML_COMMENT) {
+                comment++;
+                if (!endsBlock) inBlockComment = true;
+            } else if ((head & 0xFFFF0000) == PREFIX_LINE_COMMENT) {
+                comment++;
+            } else {
+                code++;
+            }
+        }
+        lineHasBytes = false;
+        lineStarted = false;
+        head = 0;
+        headLength = 0;
+        window = 0;
+        tail = 0;
+        todoState = 0;
+        lineHasTodo = false;
+    }
+
+    /**
+     * Completes the last line if the input did not end with a line terminator.
+     */
+    void finish() {
+        if (lineHasBytes) endLine();
+        skipLineFeed = false;
+    }
+
+    /**
+     * Clears all counts and state so the instance can classify another file.
+     */
+    void reset() {
+        code = comment = blank = todo = 0;
+        inBlockComment = false;
+        skipLineFeed = false;
+        lineHasBytes = false;
+        lineStarted = false;
+        head = headLength = window = tail = todoState = 0;
+        lineHasTodo = false;
+    }
+
+    long getCodeLines() {
+        return code;
+    }
+
+    long getCommentLines() {
+        return comment;
+    }
+
+    long getBlankLines() {
+        return blank;
+    }
+
+    long getTodoLines() {
+        return todo;
+    }
+}
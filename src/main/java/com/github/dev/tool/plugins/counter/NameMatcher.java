@@ -0,0 +1,295 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, case-insensitive matcher for file and directory names, compiled once per scan.
+ *
+ * Literal entries go into a hash table keyed by a hash computed from the end of the name, so an
+ * extension list is checked with one lookup per '.' in the name and a name list with a single
+ * lookup. Entries containing {@code *} (any run of characters) or {@code ?} (one character) are
+ * combined into a single DFA that reads each name once. Neither cost grows with the number of
+ * configured entries.
+ */
+public final class NameMatcher {
+
+    private static final int HASH_MULTIPLIER = 31;
+
+    // Literal entries: open-addressing table of lower-cased strings
+    private final String[] literals;
+    private final int[] literalHashes;
+    private final int literalMask;
+    private final int maxLiteralLength;
+    private final boolean suffixLiterals;
+
+    private final GlobAutomaton globs;
+
+    private NameMatcher(Collection<String> literalEntries, boolean suffixLiterals, List<String> globEntries) {
+        int capacity = Integer.highestOneBit(Math.max(4, literalEntries.size() * 2 - 1)) << 1;
+        this.literals = new String[capacity];
+        this.literalHashes = new int[capacity];
+        this.literalMask = capacity - 1;
+        this.suffixLiterals = suffixLiterals;
+        int maxLength = 0;
+        for (String entry : literalEntries) {
+            String lower = toLowerCase(entry);
+            int hash = reverseHash(lower, 0);
+            int slot = hash & literalMask;
+            while (literals[slot] != null && !literals[slot].equals(lower)) {
+                slot = (slot + 1) & literalMask;
+            }
+            literals[slot] = lower;
+            literalHashes[slot] = hash;
+            maxLength = Math.max(maxLength, lower.length());
+        }
+        this.maxLiteralLength = maxLength;
+        this.globs = globEntries.isEmpty() ? null : new GlobAutomaton(globEntries);
+    }
+
+    /**
+     * Compiles a list of file extensions as entered in the UI ({@code .java}, {@code *.java},
+     * {@code java}); see {@link #normalizeExtension}. An extension matches any name ending with it,
+     * so multi-part entries such as {@code .min.js} work too. Entries that still contain wildcards
+     * after normalization (e.g. {@code *.test.*}) are matched as globs against the whole name.
+     */
+    public static NameMatcher forExtensions(Collection<String> extensions) {
+        List<String> literal = new ArrayList<>();
+        List<String> glob = new ArrayList<>();
+        if (extensions != null) {
+            for (String ext : extensions) {
+                String normalized = normalizeExtension(ext);
+                if (normalized == null) continue;
+                if (isGlob(normalized)) {
+                    glob.add("*" + normalized);
+                } else {
+                    literal.add(normalized);
+                }
+            }
+        }
+        return new NameMatcher(literal, true, glob);
+    }
+
+    /**
+     * Compiles a list of whole names ({@code target}, {@code .git}) and name globs
+     * ({@code *.iml}, {@code *.egg-info}). Blank entries are ignored.
+     */
+    public static NameMatcher forNames(Collection<String> names) {
+        List<String> literal = new ArrayList<>();
+        List<String> glob = new ArrayList<>();
+        if (names != null) {
+            for (String name : names) {
+                String trimmed = name == null ? "" : name.trim();
+                if (trimmed.isEmpty()) continue;
+                (isGlob(trimmed) ? glob : literal).add(trimmed);
+            }
+        }
+        return new NameMatcher(literal, false, glob);
+    }
+
+    /**
+     * Normalizes a user-entered extension: {@code *.java} and {@code *java} become {@code .java},
+     * a missing leading dot is added, and surrounding whitespace is removed.
+     *
+     * @return the normalized extension, or null for blank input
+     */
+    public static String normalizeExtension(String ext) {
+        if (ext == null) return null;
+        String normalized = ext.trim();
+        if (normalized.startsWith("*.")) {
+            normalized = normalized.substring(1);
+        } else if (normalized.startsWith("*")) {
+            normalized = normalized.substring(1);
+        }
+        if (normalized.isEmpty()) return null;
+        if (!normalized.startsWith(".")) {
+            normalized = "." + normalized;
+        }
+        return normalized;
+    }
+
+    private static boolean isGlob(String pattern) {
+        return pattern.indexOf('*') >= 0 || pattern.indexOf('?') >= 0;
+    }
+
+    /**
+     * @return true if the name (a single path element, not a path) matches an entry
+     */
+    public boolean matches(String name) {
+        return matchesLiteral(name) || (globs != null && globs.matches(name));
+    }
+
+    private boolean matchesLiteral(String name) {
+        if (maxLiteralLength == 0) return false;
+        int length = name.length();
+        if (!suffixLiterals) {
+            return length <= maxLiteralLength && lookup(name, 0, reverseHash(name, 0));
+        }
+        // Hash the name backwards and probe the table at every '.' within reach
+        int hash = 0;
+        int stop = Math.max(0, length - maxLiteralLength);
+        for (int i = length - 1; i >= stop; i--) {
+            char c = name.charAt(i);
+            hash = hash * HASH_MULTIPLIER + Character.toLowerCase(c);
+            if (c == '.' && lookup(name, i, hash)) return true;
+        }
+        return false;
+    }
+
+    private boolean lookup(String name, int from, int hash) {
+        int length = name.length() - from;
+        for (int slot = hash & literalMask; literals[slot] != null; slot = (slot + 1) & literalMask) {
+            String entry = literals[slot];
+            if (literalHashes[slot] == hash && entry.length() == length
+                    && name.regionMatches(true, from, entry, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Lower-cases char by char, consistent with the per-char folding used when matching */
+    private static String toLowerCase(String s) {
+        char[] chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /** Hash of {@code s[from..]} read from the last character backwards, lower-cased */
+    private static int reverseHash(String s, int from) {
+        int hash = 0;
+        for (int i = s.length() - 1; i >= from; i--) {
+            hash = hash * HASH_MULTIPLIER + Character.toLowerCase(s.charAt(i));
+        }
+        return hash;
+    }
+
+    /**
+     * DFA for a set of {@code *}/{@code ?} globs matched against whole names, built eagerly by
+     * subset construction. Characters are mapped to classes: one per distinct literal in the
+     * globs plus one for every other character.
+     */
+    private static final class GlobAutomaton {
+        private static final int DEAD = -1;
+
+        private final int[] asciiClass = new int[128];
+        private final Map<Character, Integer> otherClasses = new HashMap<>();
+        private final int classCount;
+        private final int[] transitions;     // [state * classCount + class] -> state or DEAD
+        private final boolean[] accepting;
+
+        GlobAutomaton(List<String> patterns) {
+            // NFA positions: pattern p, index i means p[0..i) has been matched
+            List<char[]> globs = new ArrayList<>();
+            int[] offsets = new int[patterns.size() + 1];
+            for (int p = 0; p < patterns.size(); p++) {
+                char[] glob = toLowerCase(patterns.get(p)).toCharArray();
+                globs.add(glob);
+                offsets[p + 1] = offsets[p] + glob.length + 1;
+            }
+            int positions = offsets[patterns.size()];
+
+            // Character classes: class 0 is "any other character"
+            List<Character> classChars = new ArrayList<>();
+            classChars.add(null);
+            for (char[] glob : globs) {
+                for (char c : glob) {
+                    if (c == '*' || c == '?' || classOf(c) != 0) continue;
+                    classChars.add(c);
+                    if (c < 128) {
+                        asciiClass[c] = classChars.size() - 1;
+                    } else {
+                        otherClasses.put(c, classChars.size() - 1);
+                    }
+                }
+            }
+            classCount = classChars.size();
+
+            // Subset construction
+            Map<BitSet, Integer> stateIds = new LinkedHashMap<>();
+            List<BitSet> states = new ArrayList<>();
+            List<int[]> rows = new ArrayList<>();
+            BitSet start = new BitSet(positions);
+            for (int p = 0; p < globs.size(); p++) {
+                start.set(offsets[p]);
+            }
+            closure(start, globs, offsets);
+            stateIds.put(start, 0);
+            states.add(start);
+            for (int s = 0; s < states.size(); s++) {
+                BitSet state = states.get(s);
+                int[] row = new int[classCount];
+                for (int cls = 0; cls < classCount; cls++) {
+                    Character c = classChars.get(cls);
+                    BitSet next = new BitSet(positions);
+                    for (int p = 0; p < globs.size(); p++) {
+                        char[] glob = globs.get(p);
+                        for (int i = 0; i < glob.length; i++) {
+                            if (!state.get(offsets[p] + i)) continue;
+                            char g = glob[i];
+                            if (g == '*') {
+                                next.set(offsets[p] + i);
+                            } else if (g == '?' || (c != null && g == c)) {
+                                next.set(offsets[p] + i + 1);
+                            }
+                        }
+                    }
+                    if (next.isEmpty()) {
+                        row[cls] = DEAD;
+                        continue;
+                    }
+                    closure(next, globs, offsets);
+                    Integer id = stateIds.get(next);
+                    if (id == null) {
+                        id = states.size();
+                        stateIds.put(next, id);
+                        states.add(next);
+                    }
+                    row[cls] = id;
+                }
+                rows.add(row);
+            }
+
+            transitions = new int[states.size() * classCount];
+            accepting = new boolean[states.size()];
+            for (int s = 0; s < states.size(); s++) {
+                System.arraycopy(rows.get(s), 0, transitions, s * classCount, classCount);
+                for (int p = 0; p < globs.size(); p++) {
+                    if (states.get(s).get(offsets[p] + globs.get(p).length)) accepting[s] = true;
+                }
+            }
+        }
+
+        /** Adds the positions reachable by letting a {@code *} match the empty string */
+        private static void closure(BitSet state, List<char[]> globs, int[] offsets) {
+            for (int p = 0; p < globs.size(); p++) {
+                char[] glob = globs.get(p);
+                for (int i = 0; i < glob.length; i++) {
+                    if (glob[i] == '*' && state.get(offsets[p] + i)) state.set(offsets[p] + i + 1);
+                }
+            }
+        }
+
+        private int classOf(char c) {
+            if (c < 128) return asciiClass[c];
+            Integer cls = otherClasses.get(c);
+            return cls == null ? 0 : cls;
+        }
+
+        boolean matches(String name) {
+            int state = 0;
+            for (int i = 0, n = name.length(); i < n; i++) {
+                state = transitions[state * classCount + classOf(Character.toLowerCase(name.charAt(i)))];
+                if (state == DEAD) return false;
+            }
+            return accepting[state];
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * Fork-join directory walker.
+ *
+ * Every directory is listed by its own task, so sibling subtrees are walked in parallel and
+ * idle workers steal pending directories from busy ones. Entry names are checked against the
+ * exclude predicate before anything else, so an excluded directory is never opened and its
+ * contents are never listed. The attributes read while walking are handed to the visitor,
+ * so callers do not need another stat call per file. With {@link IgnoreRules}, entries ignored
+ * by {@code .gitignore} or {@code .ignore} files are pruned the same way.
+ */
+final class ParallelFileWalker {
+
+    private final ForkJoinPool pool;
+    private final Predicate<String> excludedName;
+    private final boolean ignoreFiles;
+    private volatile boolean cancelled;
+
+    /**
+     * @param pool the pool running the directory tasks
+     * @param excludedName tests a single file or directory name; matching entries are skipped
+     * @param ignoreFiles whether {@code .gitignore} and {@code .ignore} files are honoured
+     */
+    ParallelFileWalker(ForkJoinPool pool, Predicate<String> excludedName, boolean ignoreFiles) {
+        this.pool = pool;
+        this.excludedName = excludedName;
+        this.ignoreFiles = ignoreFiles;
+    }
+
+    /**
+     * Walks the tree below {@code root} and blocks until every directory has been listed.
+     * Symbolic links to files are followed, symbolic links to directories are not (same as
+     * {@link Files#walk(Path, java.nio.file.FileVisitOption...)} without options).
+     * Unreadable subdirectories are skipped.
+     *
+     * @param root the directory (or single file) to walk
+     * @param visitor receives each regular file with its attributes
+     * @throws IOException if the root itself cannot be read
+     */
+    void walk(Path root, FileSource.FileVisitor visitor) throws IOException {
+        BasicFileAttributes rootAttrs = Files.readAttributes(root, BasicFileAttributes.class);
+        if (!rootAttrs.isDirectory()) {
+            if (rootAttrs.isRegularFile()) visitor.visitFile(root, rootAttrs);
+            return;
+        }
+        IgnoreRules rules = ignoreFiles ? IgnoreRules.forRoot(root) : IgnoreRules.NONE;
+        pool.invoke(new DirectoryTask(root, rules, false, visitor));
+    }
+
+    /**
+     * Creates a single-use source that walks {@code root} on the given fork-join pool, which
+     * belongs to the caller.
+     *
+     * @param excludedName tests a single file or directory name; matching entries are skipped
+     * @param ignoreFiles whether {@code .gitignore} and {@code .ignore} files are honoured
+     */
+    static FileSource forTree(Path root, Predicate<String> excludedName, boolean ignoreFiles, ForkJoinPool pool) {
+        ParallelFileWalker walker = new ParallelFileWalker(pool, excludedName, ignoreFiles);
+        return new FileSource() {
+            @Override
+            public void enumerate(FileVisitor visitor) throws IOException {
+                walker.walk(root, visitor);
+            }
+
+            @Override
+            public void cancel() {
+                walker.cancel();
+            }
+        };
+    }
+
+    /**
+     * Stops the walk: directories not yet listed are skipped and running listings end early.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path dir;
+        private final transient IgnoreRules inherited;
+        private final boolean loadRules;
+        private final transient FileSource.FileVisitor visitor;
+
+        /**
+         * @param inherited the ignore rules applying in the parent directory (or in {@code dir} for the root)
+         * @param loadRules whether the rule files of {@code dir} still have to be read
+         */
+        DirectoryTask(Path dir, IgnoreRules inherited, boolean loadRules, FileSource.FileVisitor visitor) {
+            this.dir = dir;
+            this.inherited = inherited;
+            this.loadRules = loadRules;
+            this.visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) return;
+            IgnoreRules rules = loadRules ? inherited.enter(dir, dir.getFileName().toString()) : inherited;
+            List<DirectoryTask> subtasks = null;
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+                for (Path entry : entries) {
+                    if (cancelled) break;
+                    Path name = entry.getFileName();
+                    // Pre-visit: excluded names are dropped before they are stat'ed or listed
+                    if (name == null || excludedName.test(name.toString())) continue;
+
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        if (attrs.isSymbolicLink()) {
+                            attrs = Files.readAttributes(entry, BasicFileAttributes.class);
+                            if (attrs.isDirectory()) continue; // do not follow directory links
+                        }
+                    } catch (IOException e) {
+                        continue; // dangling link or vanished entry
+                    }
+
+                    if (rules.isIgnored(name.toString(), attrs.isDirectory())) continue;
+
+                    if (attrs.isDirectory()) {
+                        DirectoryTask task = new DirectoryTask(entry, rules, ignoreFiles, visitor);
+                        task.fork();
+                        if (subtasks == null) subtasks = new ArrayList<>();
+                        subtasks.add(task);
+                    } else if (attrs.isRegularFile()) {
+                        visitor.visitFile(entry, attrs);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException ignored) {
+                // Unreadable directory: skip it, keep walking its siblings
+            }
+
+            if (subtasks != null) {
+                for (int i = subtasks.size() - 1; i >= 0; i--) {
+                    subtasks.get(i).join();
+                }
+            }
+        }
+    }
+}
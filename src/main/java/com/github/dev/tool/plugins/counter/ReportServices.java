@@ -0,0 +1,54 @@
+package com.github.dev.tool.plugins.counter;
+
+/**
+ * Lazily initialized access to the chart and export implementations.
+ *
+ * XChart, POI and PDFBox are only referenced from {@link XChartService} and
+ * {@link OfficeExportService}. Each is created by a holder class on its first use, so opening the
+ * window loads none of those libraries, and most sessions, which never export, never load them.
+ * {@link #warmUpInBackground()} can load them ahead of time on a low-priority thread.
+ */
+final class ReportServices {
+
+    /** Set to {@code false} to skip the background warm-up */
+    static final String WARM_UP_PROPERTY = "codecounter.warmUpReports";
+
+    private ReportServices() {
+    }
+
+    private static final class Charts {
+        static final ChartService INSTANCE = new XChartService();
+    }
+
+    private static final class Exports {
+        static final ExportService INSTANCE = new OfficeExportService();
+    }
+
+    static ChartService charts() {
+        return Charts.INSTANCE;
+    }
+
+    static ExportService exports() {
+        return Exports.INSTANCE;
+    }
+
+    /**
+     * Loads and initializes the chart and export libraries on a daemon thread of minimum priority,
+     * so the first chart or export does not pay for class loading. Does nothing when the
+     * {@value #WARM_UP_PROPERTY} system property is {@code false}.
+     */
+    static void warmUpInBackground() {
+        if (!Boolean.parseBoolean(System.getProperty(WARM_UP_PROPERTY, "true"))) return;
+        Thread thread = new Thread(() -> {
+            try {
+                charts().warmUp();
+                exports().warmUp();
+            } catch (Throwable e) {
+                // Only a head start; the real use reports its own errors
+            }
+        }, "report-warm-up");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+}
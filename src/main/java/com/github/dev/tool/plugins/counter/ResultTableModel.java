@@ -0,0 +1,335 @@
+package com.github.dev.tool.plugins.counter;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Table model over a {@link ScanResult}.
+ *
+ * A JTable only asks for the cells it paints, so a count is boxed when its row scrolls into
+ * view and no object is kept per row. Sorting computes a permutation of the row numbers instead
+ * of moving rows; rows appended while sorted are merged into it. Result rows keep the order in
+ * which they arrived: the index column shows it and the exports use it. The rows can be limited
+ * to one directory of the results, and an optional window shows one page of the (sorted,
+ * filtered) rows at a time.
+ */
+final class ResultTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    static final int COL_INDEX = 0, COL_PATH = 1, COL_TYPE = 2, COL_CODE = 3, COL_COMMENT = 4,
+            COL_BLANK = 5, COL_TODO = 6, COL_ROOT = 7;
+
+    // Ranges up to this size are sorted by insertion instead of merging
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private String[] columnNames = new String[COL_ROOT + 1];
+
+    private final ScanResult results;
+
+    // View row -> result row while sorted, null in arrival order
+    private int[] order;
+    private int sortColumn = -1;
+    private boolean ascending = true;
+
+    // Directory node whose files are shown, -1 for all; the matching rows in view order
+    private int directory = -1;
+    private int[] filtered;
+
+    // Visible view rows when paging; a length of 0 shows all rows
+    private int windowStart, windowLength;
+
+    ResultTableModel(ScanResult results) {
+        this.results = results;
+    }
+
+    ScanResult getResults() {
+        return results;
+    }
+
+    // ==================== Contents ====================
+
+    /**
+     * @return the number of results, whether or not they are all in the visible window
+     */
+    int size() {
+        return results.size();
+    }
+
+    /**
+     * @return the number of rows in the selected directory, whether or not they are all in the
+     *         visible window
+     */
+    int viewSize() {
+        return filtered != null ? filtered.length : results.size();
+    }
+
+    /**
+     * Removes all results. The sort column is kept; the directory filter is not, since the
+     * directory nodes go with the results.
+     */
+    void clear() {
+        results.clear();
+        order = null;
+        directory = -1;
+        filtered = null;
+        fireTableDataChanged();
+    }
+
+    /**
+     * Appends a batch of results and notifies the table.
+     */
+    void addAll(List<? extends CodeCounterCore.FileStat> stats) {
+        if (stats.isEmpty()) return;
+        int first = results.size();
+        for (CodeCounterCore.FileStat fs : stats) {
+            results.add(fs);
+        }
+        if (sortColumn >= 0) {
+            mergeIntoOrder(first);
+        }
+        filter();
+        if (sortColumn < 0 && windowLength <= 0 && directory < 0) {
+            fireTableRowsInserted(first, results.size() - 1);
+        } else {
+            fireTableDataChanged();
+        }
+    }
+
+    /**
+     * Appends a result without notifying; see {@link #rowsChanged()}.
+     */
+    void add(CodeCounterCore.FileStat fs) {
+        results.add(fs);
+    }
+
+    /**
+     * Replaces a result without notifying; see {@link #rowsChanged()}.
+     */
+    void set(int row, CodeCounterCore.FileStat fs) {
+        results.set(row, fs);
+    }
+
+    /**
+     * Drops the flagged result rows without notifying; see {@link #rowsChanged()}.
+     */
+    void removeRows(boolean[] removed) {
+        results.removeRows(removed);
+    }
+
+    /**
+     * Re-sorts after {@link #add}, {@link #set} or {@link #removeRows} and notifies the table.
+     */
+    void rowsChanged() {
+        sort();
+        filter();
+        fireTableDataChanged();
+    }
+
+    // ==================== Directory ====================
+
+    /**
+     * Shows only the files in a directory node of the results and below it, or all files if
+     * {@code dir} is -1.
+     */
+    void setDirectory(int dir) {
+        directory = dir;
+        filter();
+        fireTableDataChanged();
+    }
+
+    /**
+     * @return the directory node whose files are shown, or -1 for all
+     */
+    int getDirectory() {
+        return directory;
+    }
+
+    private void filter() {
+        if (directory < 0) {
+            filtered = null;
+            return;
+        }
+        boolean[] under = results.dirsUnder(directory);
+        int size = results.size(), count = 0;
+        int[] rows = new int[size];
+        for (int viewRow = 0; viewRow < size; viewRow++) {
+            int row = order == null ? viewRow : order[viewRow];
+            if (under[results.getDir(row)]) rows[count++] = row;
+        }
+        filtered = Arrays.copyOf(rows, count);
+    }
+
+    // ==================== Window ====================
+
+    /**
+     * Shows {@code length} view rows from {@code start} on, or all rows if {@code length} is 0.
+     */
+    void setWindow(int start, int length) {
+        windowStart = length <= 0 ? 0 : Math.max(0, start);
+        windowLength = Math.max(0, length);
+        fireTableDataChanged();
+    }
+
+    // ==================== Sorting ====================
+
+    /**
+     * Sorts by a column, reversing the direction if it is already the sort column. The index
+     * column restores the arrival order.
+     */
+    void toggleSort(int column) {
+        if (column == COL_INDEX) {
+            sortColumn = -1;
+        } else if (column == sortColumn) {
+            ascending = !ascending;
+        } else {
+            sortColumn = column;
+            ascending = true;
+        }
+        sort();
+        filter();
+        fireTableDataChanged();
+    }
+
+    /**
+     * @return the sort column, or -1 in arrival order
+     */
+    int getSortColumn() {
+        return sortColumn;
+    }
+
+    boolean isAscending() {
+        return ascending;
+    }
+
+    private void sort() {
+        int size = results.size();
+        if (sortColumn < 0) {
+            order = null;
+            return;
+        }
+        if (order == null || order.length < size) order = new int[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        if (size > 1) mergeSort(order, new int[size], 0, size);
+    }
+
+    /**
+     * Sorts the rows appended since {@code first} and merges them into the permutation from
+     * the back, so a batch costs its own sort plus one pass instead of a full re-sort.
+     */
+    private void mergeIntoOrder(int first) {
+        int size = results.size();
+        if (order == null) order = new int[Math.max(size, 1024)];
+        if (order.length < size) order = Arrays.copyOf(order, Math.max(size, order.length * 2));
+        int count = size - first;
+        int[] added = new int[count];
+        for (int i = 0; i < count; i++) added[i] = first + i;
+        if (count > 1) mergeSort(added, new int[count], 0, count);
+        int i = first - 1, j = count - 1, write = size - 1;
+        while (j >= 0) {
+            if (i >= 0 && compareRows(order[i], added[j]) > 0) {
+                order[write--] = order[i--];
+            } else {
+                order[write--] = added[j--];
+            }
+        }
+    }
+
+    private void mergeSort(int[] rows, int[] buffer, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int row = rows[i];
+                int j = i - 1;
+                while (j >= from && compareRows(rows[j], row) > 0) {
+                    rows[j + 1] = rows[j];
+                    j--;
+                }
+                rows[j + 1] = row;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(rows, buffer, from, mid);
+        mergeSort(rows, buffer, mid, to);
+        if (compareRows(rows[mid - 1], rows[mid]) <= 0) return; // already in order
+        System.arraycopy(rows, from, buffer, from, to - from);
+        int i = from, j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && compareRows(buffer[i], buffer[j]) <= 0)) {
+                rows[k] = buffer[i++];
+            } else {
+                rows[k] = buffer[j++];
+            }
+        }
+    }
+
+    /**
+     * Compares two model rows by the sort column; equal values keep arrival order.
+     */
+    private int compareRows(int a, int b) {
+        int c;
+        switch (sortColumn) {
+            case COL_PATH: c = results.comparePaths(a, b); break;
+            case COL_TYPE: c = results.getType(a).compareTo(results.getType(b)); break;
+            case COL_ROOT: c = results.getRoot(a).compareTo(results.getRoot(b)); break;
+            case COL_CODE: c = Integer.compare(results.getCode(a), results.getCode(b)); break;
+            case COL_COMMENT: c = Integer.compare(results.getComment(a), results.getComment(b)); break;
+            case COL_BLANK: c = Integer.compare(results.getBlank(a), results.getBlank(b)); break;
+            case COL_TODO: c = Integer.compare(results.getTodo(a), results.getTodo(b)); break;
+            default: c = 0;
+        }
+        if (c != 0) return ascending ? c : -c;
+        return Integer.compare(a, b);
+    }
+
+    // ==================== TableModel ====================
+
+    /**
+     * Sets the localized column labels and rebuilds the table's columns.
+     */
+    void setColumnNames(String... names) {
+        columnNames = names.clone();
+        fireTableStructureChanged();
+    }
+
+    /**
+     * @return the result row shown in a table row
+     */
+    int toModelRow(int row) {
+        int viewRow = windowStart + row;
+        if (filtered != null) return filtered[viewRow];
+        return order == null ? viewRow : order[viewRow];
+    }
+
+    @Override
+    public int getRowCount() {
+        if (windowLength <= 0) return viewSize();
+        return Math.max(0, Math.min(windowLength, viewSize() - windowStart));
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        int row = toModelRow(rowIndex);
+        switch (columnIndex) {
+            case COL_INDEX: return row + 1;
+            case COL_PATH: return results.getPath(row);
+            case COL_TYPE: return results.getType(row);
+            case COL_CODE: return results.getCode(row);
+            case COL_COMMENT: return results.getComment(row);
+            case COL_BLANK: return results.getBlank(row);
+            case COL_TODO: return results.getTodo(row);
+            case COL_ROOT: return results.getRoot(row);
+            default: return null;
+        }
+    }
+}
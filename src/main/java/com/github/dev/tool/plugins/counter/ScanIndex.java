@@ -0,0 +1,233 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent index of raw per-file counts, so a rescan only reads files whose size, modification
+ * time or file key changed since they were last counted.
+ *
+ * Entries are keyed by absolute path and shared by all scan roots; the index keeps at most
+ * {@code maxEntries} of them and evicts the least recently used. It is loaded lazily on first use
+ * and written back (to a temporary file, then atomically moved) by {@link #save()}, which does
+ * nothing unless entries were added or evicted. Instances are thread-safe.
+ *
+ * Files modified within {@link #RACY_WINDOW_MILLIS} of being counted are not stored: a later
+ * change in the same timestamp granule would otherwise go unnoticed.
+ */
+public class ScanIndex {
+
+    /** Default cap on indexed files */
+    public static final int DEFAULT_MAX_ENTRIES = 500_000;
+
+    /** Default file name, used inside the application data directory */
+    public static final String DEFAULT_FILE_NAME = "scan-index.bin";
+
+    private static final int MAGIC = 0x43434958; // "CCIX"
+
+    /** Bump whenever the line classification changes, so stale counts are discarded */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Modification times closer than this to "now" are too fresh to trust */
+    static final long RACY_WINDOW_MILLIS = 2000;
+
+    /**
+     * Raw counts of one file together with the attributes they were computed from.
+     */
+    static final class Entry {
+        final long size;
+        final long modifiedNanos;
+        final String fileKey;
+        final long codeLines, commentLines, blankLines, todoLines;
+        final String charset;
+
+        Entry(long size, long modifiedNanos, String fileKey,
+              long codeLines, long commentLines, long blankLines, long todoLines, String charset) {
+            this.size = size;
+            this.modifiedNanos = modifiedNanos;
+            this.fileKey = fileKey;
+            this.codeLines = codeLines;
+            this.commentLines = commentLines;
+            this.blankLines = blankLines;
+            this.todoLines = todoLines;
+            this.charset = charset;
+        }
+
+        boolean matches(BasicFileAttributes attrs) {
+            return size == attrs.size()
+                    && modifiedNanos == attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS)
+                    && Objects.equals(fileKey, fileKeyOf(attrs));
+        }
+    }
+
+    private final Path file;
+    private final int maxEntries;
+    private String configKey = "";
+    private LinkedHashMap<String, Entry> entries;
+    private boolean dirty;
+
+    /**
+     * @param file where the index is stored; created on the first {@link #save()}
+     * @param maxEntries cap on indexed files, least recently used ones are evicted beyond it
+     */
+    public ScanIndex(Path file, int maxEntries) {
+        this.file = file;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * @return the default index location: a {@code .codecounter} directory in the user's home
+     */
+    public static Path defaultFile() {
+        return Path.of(System.getProperty("user.home"), ".codecounter", DEFAULT_FILE_NAME);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Sets the scan configuration the stored counts depend on (e.g. the fallback charsets).
+     * A different key than the one the index was saved with discards all entries.
+     */
+    synchronized void setConfigKey(String configKey) {
+        String key = configKey == null ? "" : configKey;
+        if (entries != null && !key.equals(this.configKey)) {
+            entries.clear();
+            dirty = true;
+        }
+        this.configKey = key;
+    }
+
+    /**
+     * @return the stored counts of the file if its attributes are unchanged, else null
+     */
+    synchronized Entry lookup(Path path, BasicFileAttributes attrs) {
+        Entry entry = entries().get(key(path));
+        return entry != null && entry.matches(attrs) ? entry : null;
+    }
+
+    /**
+     * Records freshly computed counts, unless the file was modified too recently to be trusted.
+     */
+    synchronized void store(Path path, BasicFileAttributes attrs, CodeCounterCore.FileStat stat) {
+        long modified = attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        if (TimeUnit.NANOSECONDS.toMillis(modified) > System.currentTimeMillis() - RACY_WINDOW_MILLIS) {
+            entries().remove(key(path));
+            return;
+        }
+        entries().put(key(path), new Entry(attrs.size(), modified, fileKeyOf(attrs),
+                stat.codeLines, stat.commentLines, stat.blankLines, stat.todoLines, stat.charset));
+        dirty = true;
+    }
+
+    /**
+     * @return number of indexed files
+     */
+    public synchronized int size() {
+        return entries().size();
+    }
+
+    /**
+     * Removes all entries (the file is rewritten on the next {@link #save()}).
+     */
+    public synchronized void clear() {
+        entries().clear();
+        dirty = true;
+    }
+
+    /**
+     * Writes the index if it changed since it was loaded or last saved.
+     */
+    public synchronized void save() throws IOException {
+        if (!dirty || entries == null) return;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(configKey);
+            out.writeInt(entries.size());
+            // Least recently used first, so loading restores the eviction order
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.modifiedNanos);
+                out.writeUTF(entry.fileKey == null ? "" : entry.fileKey);
+                out.writeLong(entry.codeLines);
+                out.writeLong(entry.commentLines);
+                out.writeLong(entry.blankLines);
+                out.writeLong(entry.todoLines);
+                out.writeUTF(entry.charset == null ? "" : entry.charset);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    private LinkedHashMap<String, Entry> entries() {
+        if (entries == null) {
+            entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (size() <= maxEntries) return false;
+                    dirty = true;
+                    return true;
+                }
+            };
+            load();
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the index file; a missing, outdated or corrupt file simply yields an empty index.
+     */
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return;
+            String savedKey = in.readUTF();
+            if (!savedKey.equals(configKey)) return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long modified = in.readLong();
+                String fileKey = in.readUTF();
+                long code = in.readLong();
+                long comment = in.readLong();
+                long blank = in.readLong();
+                long todo = in.readLong();
+                String charset = in.readUTF();
+                entries.put(path, new Entry(size, modified, fileKey.isEmpty() ? null : fileKey,
+                        code, comment, blank, todo, charset.isEmpty() ? null : charset));
+            }
+        } catch (NoSuchFileException ignored) {
+        } catch (IOException | RuntimeException e) {
+            entries.clear();
+        }
+        dirty = false;
+    }
+
+    private static String key(Path path) {
+        return path.toAbsolutePath().normalize().toString();
+    }
+
+    private static String fileKeyOf(BasicFileAttributes attrs) {
+        Object fileKey = attrs.fileKey();
+        return fileKey == null ? null : fileKey.toString();
+    }
+}
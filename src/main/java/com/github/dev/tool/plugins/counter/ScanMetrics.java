@@ -0,0 +1,107 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput counters of a single scan.
+ * Updated concurrently by the analyzer tasks; readable at any time, also while the scan runs.
+ */
+public class ScanMetrics {
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder indexHits = new LongAdder();
+    private final LongAdder contentLookups = new LongAdder();
+    private final LongAdder contentHits = new LongAdder();
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    void start() {
+        startNanos = System.nanoTime();
+        endNanos = 0;
+    }
+
+    void finish() {
+        endNanos = System.nanoTime();
+    }
+
+    void fileAnalyzed(long size) {
+        files.increment();
+        bytes.add(size);
+    }
+
+    void fileFromIndex() {
+        indexHits.increment();
+    }
+
+    void contentLookup(boolean hit) {
+        contentLookups.increment();
+        if (hit) contentHits.increment();
+    }
+
+    /** Number of files analyzed so far. */
+    public long getFiles() {
+        return files.sum();
+    }
+
+    /** Number of file bytes analyzed so far. */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /** Number of unchanged files taken from the scan index without being read. */
+    public long getIndexHits() {
+        return indexHits.sum();
+    }
+
+    /** Number of files looked up in the content cache. */
+    public long getContentCacheLookups() {
+        return contentLookups.sum();
+    }
+
+    /** Number of files whose content had already been classified (not classified again). */
+    public long getContentCacheHits() {
+        return contentHits.sum();
+    }
+
+    /** Share of content cache lookups that hit, between 0 and 1. */
+    public double getContentCacheHitRate() {
+        long lookups = getContentCacheLookups();
+        return lookups == 0 ? 0 : (double) getContentCacheHits() / lookups;
+    }
+
+    /** True once the scan has completed, failed or been cancelled. */
+    public boolean isFinished() {
+        return endNanos != 0;
+    }
+
+    /** Elapsed time of the scan in milliseconds (up to now if it is still running). */
+    public long getElapsedMillis() {
+        if (startNanos == 0) return 0;
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        return (end - startNanos) / 1_000_000;
+    }
+
+    /** Analyzed files per second. */
+    public double getFilesPerSecond() {
+        return perSecond(getFiles());
+    }
+
+    /** Analyzed bytes per second. */
+    public double getBytesPerSecond() {
+        return perSecond(getBytes());
+    }
+
+    private double perSecond(long amount) {
+        long millis = Math.max(1, getElapsedMillis());
+        return amount * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d files, %.1f MB in %d ms (%.0f files/s, %.1f MB/s), %d from index, %d/%d content cache hits",
+                getFiles(), getBytes() / 1048576.0, getElapsedMillis(),
+                getFilesPerSecond(), getBytesPerSecond() / 1048576.0, getIndexHits(),
+                getContentCacheHits(), getContentCacheLookups());
+    }
+}
@@ -0,0 +1,478 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Staged scan: a walker stage feeds a dispatcher through a bounded queue, and the dispatcher
+ * hands each file to an analyzer task that publishes the finished {@link CodeCounterCore.FileStat}
+ * as soon as it is ready.
+ *
+ * Several roots can be scanned in one run. They share the analyzers (one thread per core, or the
+ * open-file permits) and one fork-join pool for walking, on which each root's walk is a task, so
+ * the thread count does not grow with the number of roots. Each root has its own path queue and
+ * the dispatcher takes from them in turn, so a large root gets no more analyzer slots than a small
+ * one while both have files waiting. A walker that finds its root's queue full first starts the
+ * walk of a root nobody walks yet, so every root soon has paths queued; only then does it wait,
+ * as a managed blocker, so the pool can start a spare worker (never more spares than cores).
+ * The roots must not overlap (see {@link CodeCounterCore#distinctRoots}). Every result carries the
+ * root it was found under.
+ *
+ * Every hand-off is bounded (the path queue, the number of files in flight and the subscriber
+ * buffer of the {@link SubmissionPublisher}), so a slow subscriber stalls the analyzers and busy
+ * analyzers stall the walker. Memory use therefore does not grow with the size of the tree.
+ *
+ * Archives (when the analyzer treats them as containers) are expanded by a single analyzer task
+ * that publishes one result per entry.
+ *
+ * The publisher is cold: every {@link #subscribe} starts a new scan, and cancelling the
+ * subscription stops the walker and the analyzers.
+ */
+final class ScanPipeline implements Flow.Publisher<CodeCounterCore.FileStat> {
+
+    /** Paths waiting for an analyzer; small enough to stay flat, large enough to absorb bursts */
+    private static final int PATH_QUEUE_CAPACITY = 1024;
+
+    /** Smallest per-root queue when the capacity is split between many roots */
+    private static final int MIN_ROOT_QUEUE_CAPACITY = 64;
+
+    /** Marker telling the dispatcher that the walker of a root is done */
+    private static final WalkedFile END_OF_WALK = new WalkedFile(null, null);
+
+    /** Idle time after which a spare walker thread ends */
+    private static final long SPARE_WALKER_KEEP_ALIVE_SECONDS = 10;
+
+    /**
+     * Creates the file source of one root for one run.
+     */
+    interface SourceFactory {
+        /**
+         * @param walkerPool pool for the directory walk, shared by all roots of the run; owned by
+         *                   the pipeline, sources must not shut it down
+         */
+        FileSource create(Path root, ForkJoinPool walkerPool);
+    }
+
+    /**
+     * Reads and classifies one walked file.
+     */
+    interface FileAnalyzer {
+        CodeCounterCore.FileStat analyze(Path file, BasicFileAttributes attrs);
+
+        /**
+         * Returns the statistics of a file if they are known without reading it (e.g. from an
+         * index). Called on the dispatcher thread, so it must be cheap.
+         *
+         * @return the statistics, or null if the file has to be analyzed
+         */
+        default CodeCounterCore.FileStat lookup(Path file, BasicFileAttributes attrs) {
+            return null;
+        }
+
+        /**
+         * @return true if the file is a container (an archive) whose entries are reported by
+         *         {@link #analyzeEntries} instead of {@link #analyze}
+         */
+        default boolean isContainer(Path file) {
+            return false;
+        }
+
+        /**
+         * Analyzes the entries of a container, handing each result to the sink as soon as it is
+         * ready.
+         *
+         * @param sink publishes one result; returns false once the run is cancelled
+         */
+        default void analyzeEntries(Path file, BasicFileAttributes attrs,
+                                    Predicate<CodeCounterCore.FileStat> sink) {
+        }
+
+        /**
+         * Called once after the last file of a run, whether it completed, failed or was cancelled.
+         */
+        default void finished() {
+        }
+    }
+
+    private static final class WalkedFile {
+        final Path path;
+        final BasicFileAttributes attrs;
+        String root;
+
+        WalkedFile(Path path, BasicFileAttributes attrs) {
+            this.path = path;
+            this.attrs = attrs;
+        }
+    }
+
+    private final List<Path> roots;
+    private final SourceFactory sources;
+    private final Predicate<Path> accepted;
+    private final FileAnalyzer analyzer;
+    private final CodeCounterCore.ExecutionMode mode;
+    private final int maxOpenFiles;
+    private final ScanMetrics metrics;
+
+    /**
+     * @param roots the roots to scan, each with its own source
+     * @param sources creates the file source of each root and run (e.g. a directory walker that applies the excludes)
+     * @param accepted tests whether a walked file should be analyzed (e.g. extension match)
+     * @param analyzer reads and classifies one file
+     * @param mode how analyzer tasks are run
+     * @param maxOpenFiles cap on files being analyzed at once in {@code VIRTUAL_THREADS} mode
+     * @param metrics receives throughput counters of the scan
+     */
+    ScanPipeline(List<Path> roots, SourceFactory sources, Predicate<Path> accepted,
+                 FileAnalyzer analyzer, CodeCounterCore.ExecutionMode mode, int maxOpenFiles,
+                 ScanMetrics metrics) {
+        this.roots = List.copyOf(roots);
+        this.sources = sources;
+        this.accepted = accepted;
+        this.analyzer = analyzer;
+        this.mode = mode;
+        this.maxOpenFiles = Math.max(1, maxOpenFiles);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CodeCounterCore.FileStat> subscriber) {
+        new Run().start(subscriber);
+    }
+
+    /**
+     * Creates an executor that starts one virtual thread per task, or returns null when the
+     * running JDK has no (non-preview) virtual threads. Looked up reflectively because the
+     * project still targets Java 17.
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true if {@code VIRTUAL_THREADS} mode really runs on virtual threads in this JVM
+     */
+    static boolean virtualThreadsAvailable() {
+        ExecutorService probe = newVirtualThreadExecutor();
+        if (probe == null) return false;
+        probe.shutdown();
+        return true;
+    }
+
+    /**
+     * State of a single scan started by one subscription.
+     */
+    private final class Run {
+        private final SubmissionPublisher<CodeCounterCore.FileStat> publisher = new SubmissionPublisher<>();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final ForkJoinPool walkerPool;
+        private final List<FileSource> rootSources = new ArrayList<>();
+        private final List<BlockingQueue<WalkedFile>> queues = new ArrayList<>();
+        /** Roots whose walk has not started yet */
+        private final Queue<Integer> unwalked = new ConcurrentLinkedQueue<>();
+        /** One permit per queued path or end marker, across all queues */
+        private final Semaphore queued = new Semaphore(0);
+        private final ExecutorService executor;
+        private final int permits;
+        private final Semaphore inFlight;
+        private volatile Throwable failure;
+
+        Run() {
+            if (mode == CodeCounterCore.ExecutionMode.VIRTUAL_THREADS) {
+                ExecutorService virtual = newVirtualThreadExecutor();
+                // Without virtual threads, fall back to one platform thread per open file
+                executor = virtual != null ? virtual : Executors.newCachedThreadPool(daemonThreads("code-counter-io-"));
+                permits = maxOpenFiles;
+            } else {
+                int cores = Runtime.getRuntime().availableProcessors();
+                executor = new ForkJoinPool(cores);
+                permits = cores;
+            }
+            inFlight = new Semaphore(permits);
+            int shares = Math.max(1, roots.size());
+            int capacity = Math.max(MIN_ROOT_QUEUE_CAPACITY, PATH_QUEUE_CAPACITY / shares);
+            int walkers = Runtime.getRuntime().availableProcessors();
+            // Spare workers only stand in for walkers blocked on a full queue; past the cap a
+            // blocked walker just waits, since the dispatcher keeps draining every queue
+            walkerPool = new ForkJoinPool(walkers, pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("code-counter-walker-" + t.getPoolIndex());
+                t.setDaemon(true);
+                return t;
+            }, null, false, 0, walkers + Math.min(shares, walkers), 1, pool -> true,
+                    SPARE_WALKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+            for (Path root : roots) {
+                rootSources.add(sources.create(root, walkerPool));
+                queues.add(new ArrayBlockingQueue<>(capacity));
+            }
+        }
+
+        void start(Flow.Subscriber<? super CodeCounterCore.FileStat> subscriber) {
+            publisher.subscribe(new CancellableSubscriber(subscriber));
+            metrics.start();
+
+            for (int i = 0; i < roots.size(); i++) {
+                unwalked.add(i);
+            }
+            for (int i = Math.min(roots.size(), walkerPool.getParallelism()); i > 0; i--) {
+                walkerPool.execute(this::walkUnwalked);
+            }
+
+            Thread dispatchThread = new Thread(this::dispatch, "code-counter-dispatcher");
+            dispatchThread.setDaemon(true);
+            dispatchThread.start();
+        }
+
+        private void walkUnwalked() {
+            for (Integer root; (root = unwalked.poll()) != null; ) {
+                walk(root);
+            }
+        }
+
+        private void walk(int root) {
+            String rootName = roots.get(root).toString();
+            BlockingQueue<WalkedFile> queue = queues.get(root);
+            try {
+                rootSources.get(root).enumerate((file, attrs) -> {
+                    if (!accepted.test(file)) return;
+                    WalkedFile walked = new WalkedFile(file, attrs);
+                    walked.root = rootName;
+                    enqueue(queue, walked);
+                });
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            } finally {
+                enqueue(queue, END_OF_WALK);
+            }
+        }
+
+        private void enqueue(BlockingQueue<WalkedFile> queue, WalkedFile file) {
+            Put put = new Put(queue, file);
+            try {
+                while (!put.isReleasable()) {
+                    Integer other = unwalked.poll();
+                    if (other == null) {
+                        ForkJoinPool.managedBlock(put);
+                        break;
+                    }
+                    walk(other);
+                }
+                if (put.done) queued.release();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+            }
+        }
+
+        /** Waits for room in a root's queue; dropped when the run is cancelled, except end markers */
+        private final class Put implements ForkJoinPool.ManagedBlocker {
+            private final BlockingQueue<WalkedFile> queue;
+            private final WalkedFile file;
+            boolean done;
+
+            Put(BlockingQueue<WalkedFile> queue, WalkedFile file) {
+                this.queue = queue;
+                this.file = file;
+            }
+
+            @Override
+            public boolean block() throws InterruptedException {
+                while (!done) {
+                    done = queue.offer(file, 50, TimeUnit.MILLISECONDS);
+                    if (!done && cancelled.get() && file != END_OF_WALK) return true;
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                return done || (done = queue.offer(file));
+            }
+        }
+
+        /**
+         * Takes the next path round-robin: starting after the root served last, the first queue
+         * with something in it wins.
+         *
+         * @return the path or an end marker, or null if the queues were cleared by a cancel
+         */
+        private WalkedFile next(int[] cursor) throws InterruptedException {
+            queued.acquire();
+            for (int i = 0; i < queues.size(); i++) {
+                int root = (cursor[0] + i) % queues.size();
+                WalkedFile file = queues.get(root).poll();
+                if (file != null) {
+                    cursor[0] = root + 1;
+                    return file;
+                }
+            }
+            return null;
+        }
+
+        private void dispatch() {
+            try {
+                int[] cursor = {0};
+                int walking = queues.size();
+                while (walking > 0) {
+                    WalkedFile file = next(cursor);
+                    if (file == END_OF_WALK) {
+                        walking--;
+                        continue;
+                    }
+                    if (file == null || cancelled.get()) continue; // drain until every end marker arrives
+                    // Unchanged files are published straight from the index, without a task
+                    CodeCounterCore.FileStat known = analyzer.isContainer(file.path)
+                            ? null : analyzer.lookup(file.path, file.attrs);
+                    if (known != null) {
+                        metrics.fileFromIndex();
+                        known.root = file.root;
+                        publisher.submit(known);
+                        continue;
+                    }
+                    inFlight.acquire();
+                    try {
+                        executor.execute(() -> analyze(file));
+                    } catch (RejectedExecutionException e) {
+                        inFlight.release();
+                        throw e;
+                    }
+                }
+                // Wait for the analyses still running before completing the publisher
+                inFlight.acquire(permits);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+            } catch (IllegalStateException e) {
+                // Publisher already closed by a cancelled run
+                cancel();
+            } catch (RuntimeException e) {
+                failure = e;
+                cancel();
+            } finally {
+                executor.shutdown();
+                walkerPool.shutdown();
+                analyzer.finished();
+                metrics.finish();
+                Throwable error = failure;
+                if (error != null && !cancelled.get()) {
+                    publisher.closeExceptionally(error);
+                } else {
+                    publisher.close();
+                }
+            }
+        }
+
+        private void analyze(WalkedFile file) {
+            try {
+                if (cancelled.get()) return;
+                if (analyzer.isContainer(file.path)) {
+                    analyzer.analyzeEntries(file.path, file.attrs, stat -> {
+                        if (cancelled.get()) return false;
+                        stat.root = file.root;
+                        publisher.submit(stat);
+                        return true;
+                    });
+                    metrics.fileAnalyzed(file.attrs.size());
+                    return;
+                }
+                CodeCounterCore.FileStat stat = analyzer.analyze(file.path, file.attrs);
+                stat.root = file.root;
+                metrics.fileAnalyzed(file.attrs.size());
+                if (!cancelled.get()) publisher.submit(stat);
+            } catch (IllegalStateException e) {
+                // Publisher already closed by a cancelled or failed run
+            } catch (RuntimeException e) {
+                failure = e;
+                cancel();
+            } finally {
+                inFlight.release();
+            }
+        }
+
+        private void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                for (FileSource source : rootSources) {
+                    source.cancel();
+                }
+                for (BlockingQueue<WalkedFile> queue : queues) {
+                    queue.removeIf(file -> file != END_OF_WALK); // the dispatcher still needs the markers
+                }
+            }
+        }
+
+        /**
+         * Forwards everything to the real subscriber, but turns a cancelled subscription into a
+         * stop signal for the walker and analyzers.
+         */
+        private final class CancellableSubscriber implements Flow.Subscriber<CodeCounterCore.FileStat> {
+            private final Flow.Subscriber<? super CodeCounterCore.FileStat> delegate;
+
+            CancellableSubscriber(Flow.Subscriber<? super CodeCounterCore.FileStat> delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                delegate.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                        subscription.request(n);
+                    }
+
+                    @Override
+                    public void cancel() {
+                        subscription.cancel();
+                        Run.this.cancel();
+                    }
+                });
+            }
+
+            @Override
+            public void onNext(CodeCounterCore.FileStat item) {
+                delegate.onNext(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                delegate.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                delegate.onComplete();
+            }
+        }
+    }
+
+    private static java.util.concurrent.ThreadFactory daemonThreads(String prefix) {
+        java.util.concurrent.atomic.AtomicInteger counter = new java.util.concurrent.atomic.AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
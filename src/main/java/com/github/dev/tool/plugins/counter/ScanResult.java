@@ -0,0 +1,554 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The results of a scan, stored column by column instead of as one object per file.
+ *
+ * The counts live in parallel {@code int} arrays, and the file type and root are codes into
+ * small dictionaries, since a scan sees only a handful of distinct extensions and roots. The
+ * columns grow in fixed-size chunks, so adding rows never copies the rows already stored and
+ * never needs twice the memory. Rows are numbered in the order they were added.
+ *
+ * Paths are split into a directory and a file name. The directories form a trie below the scan
+ * root, so the long prefixes shared by thousands of files are stored once; a row keeps only its
+ * directory node and its name. The names of a chunk are packed into one UTF-8 byte array, each
+ * behind its length, rather than kept as a String apiece. Full paths are put together when they
+ * are asked for, i.e. when a row is painted or exported. The trie also lets the panel navigate
+ * the results by directory.
+ *
+ * Not thread-safe; the panel only touches it on the EDT.
+ */
+final class ScanResult {
+
+    private static final int CHUNK_SHIFT = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // 16384 rows
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private int size;
+    // Per chunk: the packed file names, how much of that array is used, and each row's offset in it
+    private byte[][] names = new byte[0][];
+    private int[] namesUsed = new int[0];
+    private int[][] nameOffsets = new int[0][];
+    private int[][] dirs = new int[0][], types = new int[0][], roots = new int[0][];
+    private int[][] code = new int[0][], comment = new int[0][], blank = new int[0][], todo = new int[0][];
+
+    // Interned file types and roots; a row stores the index
+    private final List<String> typeNames = new ArrayList<>();
+    private final Map<String, Integer> typeCodes = new HashMap<>();
+    private final List<String> rootNames = new ArrayList<>();
+    private final Map<String, Integer> rootCodes = new HashMap<>();
+
+    // Directory trie. A node's name ends with its separator, so a path is the names from the top
+    // node down plus the file name. A top node is named after the scan root (or is empty if a
+    // path does not lie below its root); a parent always has a lower number than its children.
+    private int dirCount;
+    private int[] dirParents = new int[64];
+    private String[] dirNames = new String[64];
+    // Full path of each directory, built the first time a path below it is needed
+    private String[] dirPaths = new String[64];
+    private final List<Map<String, Integer>> dirChildren = new ArrayList<>();
+    private final Map<String, Integer> topDirs = new HashMap<>();
+    // Files usually arrive directory by directory; remembers the last one resolved
+    private String lastDirPath, lastDirRoot;
+    private int lastDir = -1;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes all rows and releases their chunks. The dictionaries are cleared as well.
+     */
+    void clear() {
+        size = 0;
+        names = new byte[0][];
+        namesUsed = new int[0];
+        nameOffsets = new int[0][];
+        dirs = new int[0][];
+        types = new int[0][];
+        roots = new int[0][];
+        code = new int[0][];
+        comment = new int[0][];
+        blank = new int[0][];
+        todo = new int[0][];
+        typeNames.clear();
+        typeCodes.clear();
+        rootNames.clear();
+        rootCodes.clear();
+        dirCount = 0;
+        dirParents = new int[64];
+        dirNames = new String[64];
+        dirPaths = new String[64];
+        dirChildren.clear();
+        topDirs.clear();
+        lastDirPath = lastDirRoot = null;
+        lastDir = -1;
+    }
+
+    /**
+     * Appends a file's counts.
+     *
+     * @return the new row
+     */
+    int add(CodeCounterCore.FileStat fs) {
+        int chunk = size >>> CHUNK_SHIFT;
+        if (chunk == names.length) addChunk();
+        set(size, fs);
+        return size++;
+    }
+
+    /**
+     * Replaces the counts in an existing row. The name is only stored again if it changed.
+     */
+    void set(int row, CodeCounterCore.FileStat fs) {
+        int chunk = row >>> CHUNK_SHIFT, i = row & CHUNK_MASK;
+        int nameStart = lastSeparator(fs.path) + 1;
+        dirs[chunk][i] = findDir(fs.path, nameStart, fs.root, true);
+        if (row >= size || !getName(row).equals(fs.path.substring(nameStart))) {
+            nameOffsets[chunk][i] = appendName(names, namesUsed, chunk, fs.path, nameStart);
+        }
+        types[chunk][i] = intern(fs.type == null ? "" : fs.type, typeNames, typeCodes);
+        roots[chunk][i] = intern(fs.root == null ? "" : fs.root, rootNames, rootCodes);
+        code[chunk][i] = toInt(fs.codeLines);
+        comment[chunk][i] = toInt(fs.commentLines);
+        blank[chunk][i] = toInt(fs.blankLines);
+        todo[chunk][i] = toInt(fs.todoLines);
+    }
+
+    /**
+     * Drops the flagged rows, moving the later rows up. Rows at or beyond the flags' length are
+     * kept. Chunks no longer needed are released.
+     */
+    void removeRows(boolean[] removed) {
+        // The kept names are packed again, so removed names do not stay behind in the chunks
+        byte[][] keptNames = new byte[names.length][];
+        int[] keptUsed = new int[names.length];
+        int kept = 0;
+        for (int row = 0; row < size; row++) {
+            if (row < removed.length && removed[row]) continue;
+            byte[] packed = names[row >>> CHUNK_SHIFT];
+            int offset = nameOffsets[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+            int length = nameLength(packed, offset);
+            nameOffsets[kept >>> CHUNK_SHIFT][kept & CHUNK_MASK] = reserve(keptNames, keptUsed,
+                kept >>> CHUNK_SHIFT, lengthSize(length) + length);
+            System.arraycopy(packed, offset, keptNames[kept >>> CHUNK_SHIFT],
+                nameOffsets[kept >>> CHUNK_SHIFT][kept & CHUNK_MASK], lengthSize(length) + length);
+            if (kept != row) move(row, kept);
+            kept++;
+        }
+        for (int chunk = 0; chunk + 1 < keptNames.length && keptNames[chunk + 1] != null; chunk++) {
+            keptNames[chunk] = Arrays.copyOf(keptNames[chunk], keptUsed[chunk]);
+        }
+        names = keptNames;
+        namesUsed = keptUsed;
+        size = kept;
+        int chunks = (size + CHUNK_MASK) >>> CHUNK_SHIFT;
+        if (chunks < names.length) {
+            names = Arrays.copyOf(names, chunks);
+            namesUsed = Arrays.copyOf(namesUsed, chunks);
+            nameOffsets = Arrays.copyOf(nameOffsets, chunks);
+            dirs = Arrays.copyOf(dirs, chunks);
+            types = Arrays.copyOf(types, chunks);
+            roots = Arrays.copyOf(roots, chunks);
+            code = Arrays.copyOf(code, chunks);
+            comment = Arrays.copyOf(comment, chunks);
+            blank = Arrays.copyOf(blank, chunks);
+            todo = Arrays.copyOf(todo, chunks);
+        }
+    }
+
+    /**
+     * @return the full path of a row, put together on each call
+     */
+    String getPath(int row) {
+        return dirPath(getDir(row)).concat(getName(row));
+    }
+
+    /**
+     * @return the file name of a row, without its directory
+     */
+    String getName(int row) {
+        int chunk = row >>> CHUNK_SHIFT;
+        byte[] packed = names[chunk];
+        int offset = nameOffsets[chunk][row & CHUNK_MASK];
+        int length = nameLength(packed, offset);
+        return new String(packed, offset + lengthSize(length), length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the directory node of a row, below {@link #dirCount()}
+     */
+    int getDir(int row) {
+        return dirs[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    /**
+     * Compares the full paths of two rows as {@link String#compareTo} would, without building them.
+     */
+    int comparePaths(int a, int b) {
+        int dirA = getDir(a), dirB = getDir(b);
+        if (dirA == dirB) return compareNames(a, b);
+        String pathA = dirPath(dirA), pathB = dirPath(dirB);
+        int common = Math.min(pathA.length(), pathB.length());
+        for (int k = 0; k < common; k++) {
+            char ca = pathA.charAt(k), cb = pathB.charAt(k);
+            if (ca != cb) return ca - cb;
+        }
+        if (pathA.length() == pathB.length()) return compareNames(a, b);
+        // One directory contains the other: compare the rest character by character
+        String nameA = getName(a), nameB = getName(b);
+        int lengthA = pathA.length() + nameA.length(), lengthB = pathB.length() + nameB.length();
+        for (int k = common, n = Math.min(lengthA, lengthB); k < n; k++) {
+            char ca = k < pathA.length() ? pathA.charAt(k) : nameA.charAt(k - pathA.length());
+            char cb = k < pathB.length() ? pathB.charAt(k) : nameB.charAt(k - pathB.length());
+            if (ca != cb) return ca - cb;
+        }
+        return lengthA - lengthB;
+    }
+
+    /**
+     * Compares the names of two rows as {@link String#compareTo} would. Names usually differ in
+     * an ASCII character, where the UTF-8 bytes order like the characters; otherwise they are
+     * decoded.
+     */
+    private int compareNames(int a, int b) {
+        byte[] packedA = names[a >>> CHUNK_SHIFT], packedB = names[b >>> CHUNK_SHIFT];
+        int offsetA = nameOffsets[a >>> CHUNK_SHIFT][a & CHUNK_MASK];
+        int offsetB = nameOffsets[b >>> CHUNK_SHIFT][b & CHUNK_MASK];
+        int lengthA = nameLength(packedA, offsetA), lengthB = nameLength(packedB, offsetB);
+        offsetA += lengthSize(lengthA);
+        offsetB += lengthSize(lengthB);
+        for (int k = 0, n = Math.min(lengthA, lengthB); k < n; k++) {
+            byte ba = packedA[offsetA + k], bb = packedB[offsetB + k];
+            if (ba == bb) continue;
+            if (ba >= 0 && bb >= 0) return ba - bb;
+            return getName(a).compareTo(getName(b));
+        }
+        return lengthA - lengthB;
+    }
+
+    /**
+     * Looks up the rows of full paths in one pass over the rows, without building their paths.
+     *
+     * @param root the scan root the paths were counted under
+     * @return the row of each path, or -1 if it is not stored
+     */
+    int[] indexOf(List<String> paths, String root) {
+        int[] found = new int[paths.size()];
+        Arrays.fill(found, -1);
+        Map<Integer, Map<String, Integer>> wanted = new HashMap<>();
+        for (int q = 0; q < paths.size(); q++) {
+            String path = paths.get(q);
+            int nameStart = lastSeparator(path) + 1;
+            int dir = findDir(path, nameStart, root, false);
+            if (dir >= 0) wanted.computeIfAbsent(dir, d -> new HashMap<>()).put(path.substring(nameStart), q);
+        }
+        if (wanted.isEmpty()) return found;
+        for (int row = 0; row < size; row++) {
+            Map<String, Integer> byName = wanted.get(getDir(row));
+            if (byName == null) continue;
+            Integer q = byName.get(getName(row));
+            if (q != null && found[q] < 0) found[q] = row;
+        }
+        return found;
+    }
+
+    // ==================== Directories ====================
+
+    int dirCount() {
+        return dirCount;
+    }
+
+    /**
+     * @return the parent of a directory node, or -1 for a top node
+     */
+    int dirParent(int dir) {
+        return dirParents[dir];
+    }
+
+    /**
+     * @return a directory's own name with its trailing separator; for a top node, the root path
+     */
+    String dirName(int dir) {
+        return dirNames[dir];
+    }
+
+    /**
+     * @return the full path of a directory, ending with its separator
+     */
+    String dirPath(int dir) {
+        String path = dirPaths[dir];
+        if (path == null) {
+            int parent = dirParents[dir];
+            path = parent < 0 ? dirNames[dir] : dirPath(parent).concat(dirNames[dir]);
+            dirPaths[dir] = path;
+        }
+        return path;
+    }
+
+    /**
+     * @return the top nodes, one per scan root
+     */
+    int[] topDirs() {
+        return topDirs.values().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * @return the direct subdirectories of a node
+     */
+    int[] childDirs(int dir) {
+        Map<String, Integer> children = dirChildren.get(dir);
+        return children == null ? new int[0] : children.values().stream().mapToInt(Integer::intValue).sorted().toArray();
+    }
+
+    /**
+     * @return for each directory node, whether it is {@code dir} or lies below it
+     */
+    boolean[] dirsUnder(int dir) {
+        boolean[] under = new boolean[dirCount];
+        under[dir] = true;
+        for (int d = dir + 1; d < dirCount; d++) {
+            int parent = dirParents[d];
+            under[d] = parent >= 0 && under[parent];
+        }
+        return under;
+    }
+
+    /**
+     * @return the file type's dictionary code, below {@link #typeCount()}
+     */
+    int getTypeCode(int row) {
+        return types[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    String getType(int row) {
+        return typeNames.get(getTypeCode(row));
+    }
+
+    int typeCount() {
+        return typeNames.size();
+    }
+
+    String typeName(int typeCode) {
+        return typeNames.get(typeCode);
+    }
+
+    String getRoot(int row) {
+        return rootNames.get(roots[row >>> CHUNK_SHIFT][row & CHUNK_MASK]);
+    }
+
+    int getCode(int row) {
+        return code[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    int getComment(int row) {
+        return comment[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    int getBlank(int row) {
+        return blank[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    int getTodo(int row) {
+        return todo[row >>> CHUNK_SHIFT][row & CHUNK_MASK];
+    }
+
+    /**
+     * Resolves the directory of a path, i.e. its first {@code nameStart} characters, in the trie.
+     *
+     * @param create whether missing nodes are added
+     * @return the node, or -1 if it is missing and not created
+     */
+    private int findDir(String path, int nameStart, String root, boolean create) {
+        if (lastDir >= 0 && lastDirPath.length() == nameStart && path.startsWith(lastDirPath)
+                && Objects.equals(root, lastDirRoot)) {
+            return lastDir;
+        }
+
+        int start = rootLength(path, nameStart, root);
+        String top = path.substring(0, start);
+        Integer dir = topDirs.get(top);
+        if (dir == null) {
+            if (!create) return -1;
+            dir = newDir(-1, top);
+            topDirs.put(top, dir);
+        }
+        for (int i = start; i < nameStart; ) {
+            int end = i;
+            while (!isSeparator(path.charAt(end))) end++;
+            String name = path.substring(i, end + 1);
+            Map<String, Integer> children = dirChildren.get(dir);
+            Integer child = children == null ? null : children.get(name);
+            if (child == null) {
+                if (!create) return -1;
+                child = newDir(dir, name);
+                if (children == null) dirChildren.set(dir, children = new HashMap<>());
+                children.put(name, child);
+            }
+            dir = child;
+            i = end + 1;
+        }
+        lastDirPath = path.substring(0, nameStart);
+        lastDirRoot = root;
+        lastDir = dir;
+        return dir;
+    }
+
+    /**
+     * @return the length of the root and its separator at the start of the path, or 0 if the
+     *         path does not lie below the root
+     */
+    private static int rootLength(String path, int nameStart, String root) {
+        if (root == null || root.isEmpty() || !path.startsWith(root)) return 0;
+        if (isSeparator(root.charAt(root.length() - 1))) return root.length();
+        return root.length() < nameStart && isSeparator(path.charAt(root.length())) ? root.length() + 1 : 0;
+    }
+
+    private int newDir(int parent, String name) {
+        if (dirCount == dirNames.length) {
+            int capacity = dirCount * 2;
+            dirParents = Arrays.copyOf(dirParents, capacity);
+            dirNames = Arrays.copyOf(dirNames, capacity);
+            dirPaths = Arrays.copyOf(dirPaths, capacity);
+        }
+        dirParents[dirCount] = parent;
+        dirNames[dirCount] = name;
+        dirChildren.add(null);
+        return dirCount++;
+    }
+
+    /**
+     * Appends {@code text} from {@code from} on to a chunk's packed names.
+     *
+     * @return its offset in the chunk's array
+     */
+    private static int appendName(byte[][] packed, int[] used, int chunk, String text, int from) {
+        int chars = text.length() - from;
+        boolean ascii = true;
+        for (int k = from; k < text.length() && ascii; k++) ascii = text.charAt(k) < 0x80;
+        byte[] utf8 = ascii ? null : text.substring(from).getBytes(StandardCharsets.UTF_8);
+        int length = ascii ? chars : utf8.length;
+
+        int offset = reserve(packed, used, chunk, lengthSize(length) + length);
+        byte[] bytes = packed[chunk];
+        int at = offset;
+        for (int v = length; ; v >>>= 7) {
+            if (v < 0x80) {
+                bytes[at++] = (byte) v;
+                break;
+            }
+            bytes[at++] = (byte) (v | 0x80);
+        }
+        if (ascii) {
+            for (int k = from; k < text.length(); k++) bytes[at++] = (byte) text.charAt(k);
+        } else {
+            System.arraycopy(utf8, 0, bytes, at, length);
+        }
+        return offset;
+    }
+
+    /**
+     * Makes room for {@code count} more bytes in a chunk's packed names.
+     *
+     * @return the offset of the room
+     */
+    private static int reserve(byte[][] packed, int[] used, int chunk, int count) {
+        int offset = used[chunk];
+        int end = offset + count;
+        byte[] bytes = packed[chunk];
+        if (bytes == null || end > bytes.length) {
+            int capacity = Math.max(end, bytes == null ? 4096 : bytes.length * 2);
+            packed[chunk] = bytes == null ? new byte[capacity] : Arrays.copyOf(bytes, capacity);
+        }
+        used[chunk] = end;
+        return offset;
+    }
+
+    // A name's byte length is stored in front of it, seven bits per byte
+    private static int nameLength(byte[] packed, int offset) {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = packed[offset++];
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) return length;
+        }
+    }
+
+    private static int lengthSize(int length) {
+        int size = 1;
+        while (length >= 0x80) {
+            length >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int lastSeparator(String path) {
+        return Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '/' || c == '\\';
+    }
+
+    private void addChunk() {
+        int chunks = names.length + 1;
+        if (chunks > 1) {
+            // The previous chunk is full: drop the spare room of its names
+            int previous = chunks - 2;
+            names[previous] = Arrays.copyOf(names[previous], namesUsed[previous]);
+        }
+        names = Arrays.copyOf(names, chunks);
+        namesUsed = Arrays.copyOf(namesUsed, chunks);
+        nameOffsets = Arrays.copyOf(nameOffsets, chunks);
+        dirs = Arrays.copyOf(dirs, chunks);
+        types = Arrays.copyOf(types, chunks);
+        roots = Arrays.copyOf(roots, chunks);
+        code = Arrays.copyOf(code, chunks);
+        comment = Arrays.copyOf(comment, chunks);
+        blank = Arrays.copyOf(blank, chunks);
+        todo = Arrays.copyOf(todo, chunks);
+        int last = chunks - 1;
+        nameOffsets[last] = new int[CHUNK_SIZE];
+        dirs[last] = new int[CHUNK_SIZE];
+        types[last] = new int[CHUNK_SIZE];
+        roots[last] = new int[CHUNK_SIZE];
+        code[last] = new int[CHUNK_SIZE];
+        comment[last] = new int[CHUNK_SIZE];
+        blank[last] = new int[CHUNK_SIZE];
+        todo[last] = new int[CHUNK_SIZE];
+    }
+
+    private void move(int from, int to) {
+        int fc = from >>> CHUNK_SHIFT, fi = from & CHUNK_MASK;
+        int tc = to >>> CHUNK_SHIFT, ti = to & CHUNK_MASK;
+        dirs[tc][ti] = dirs[fc][fi];
+        types[tc][ti] = types[fc][fi];
+        roots[tc][ti] = roots[fc][fi];
+        code[tc][ti] = code[fc][fi];
+        comment[tc][ti] = comment[fc][fi];
+        blank[tc][ti] = blank[fc][fi];
+        todo[tc][ti] = todo[fc][fi];
+    }
+
+    private static int intern(String name, List<String> names, Map<String, Integer> codes) {
+        Integer known = codes.get(name);
+        if (known != null) return known;
+        int created = names.size();
+        names.add(name);
+        codes.put(name, created);
+        return created;
+    }
+
+    // A single file with more than 2^31 lines of one kind is not a source file; saturate
+    private static int toInt(long count) {
+        return count > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) count;
+    }
+}
@@ -0,0 +1,373 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the results of a finished scan current by watching the scanned tree with a
+ * {@link WatchService}.
+ *
+ * Every non-excluded directory is registered for create, modify and delete events. Events are
+ * collected until the tree has been quiet for the debounce interval (or the maximum delay has
+ * passed), then only the affected files are re-analyzed and one {@link Change} is delivered to
+ * the listener. New directories are registered and their files picked up; deleted directories
+ * remove every known file below them. An {@code OVERFLOW} event, which means events were lost,
+ * triggers a rescan of the directory it was reported for, comparing against the known files.
+ * Entries ignored by {@code .gitignore} or {@code .ignore} files are skipped when the scan did so;
+ * rule files are read when their directory is first watched.
+ *
+ * When the scan expanded archives, an archive that is created or changed is read again through
+ * {@link ArchiveReader}: its new entries are reported as updated and the known entries it no
+ * longer holds as removed. Deleting an archive removes all of its entries. A rescan keeps the
+ * {@code archive!/entry} paths of every archive that is still present.
+ *
+ * The listener runs on the watcher thread; UI code has to hand the change over to its own thread.
+ */
+public class TreeWatcher implements Closeable {
+
+    /** Default quiet period before a batch of events is processed */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 300;
+
+    /** Upper bound on how long events are held back while the tree keeps changing */
+    private static final long MAX_DELAY_MILLIS = 3000;
+
+    /**
+     * A batch of updates to apply to the scan results.
+     */
+    public static final class Change {
+        /** New or modified files with fresh counts (their .lines value respects the include flags) */
+        public final List<CodeCounterCore.FileStat> updated;
+        /** Paths of files that disappeared or no longer match */
+        public final List<String> removed;
+        /** Number of directories rescanned because events were lost */
+        public final int rescannedDirectories;
+
+        Change(List<CodeCounterCore.FileStat> updated, List<String> removed, int rescannedDirectories) {
+            this.updated = Collections.unmodifiableList(updated);
+            this.removed = Collections.unmodifiableList(removed);
+            this.rescannedDirectories = rescannedDirectories;
+        }
+
+        public boolean isEmpty() {
+            return updated.isEmpty() && removed.isEmpty();
+        }
+    }
+
+    private final CodeCounterCore core;
+    private final Path root;
+    private final NameMatcher excluded;
+    private final NameMatcher included;
+    private final boolean includeBlank;
+    private final boolean includeHeader;
+    private final boolean ignoreFiles;
+    private final boolean archives;
+    private final ArchiveReader archiveReader;
+    private final Consumer<Change> listener;
+    private final long debounceMillis;
+
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Set<Path> watchedDirectories = new HashSet<>();
+    private final Map<Path, IgnoreRules> ignoreRules = new HashMap<>();
+    private final Set<Path> knownFiles = new HashSet<>();
+    /** Known {@code archive!/entry} paths by the archive file holding them */
+    private final Map<Path, Set<String>> knownEntries = new HashMap<>();
+    private final Thread thread;
+    private volatile boolean closed;
+
+    TreeWatcher(CodeCounterCore core, Path root, NameMatcher excluded, NameMatcher included,
+                boolean includeBlank, boolean includeHeader, boolean ignoreFiles, boolean archives,
+                Collection<String> knownPaths, Consumer<Change> listener, long debounceMillis) throws IOException {
+        this.core = core;
+        this.root = root;
+        this.excluded = excluded;
+        this.included = included;
+        this.includeBlank = includeBlank;
+        this.includeHeader = includeHeader;
+        this.ignoreFiles = ignoreFiles;
+        this.archives = archives;
+        this.archiveReader = new ArchiveReader(excluded, included, (path, in) -> {
+            CodeCounterCore.FileStat stat = core.analyzeEntry(path, in, null, null);
+            stat.setEffectiveLines(includeBlank, includeHeader);
+            return stat;
+        });
+        this.listener = listener;
+        this.debounceMillis = Math.max(0, debounceMillis);
+        for (String path : knownPaths) {
+            // The archive is what lies on disk; the entry part may not even be a valid file name
+            int entry = path.indexOf("!/");
+            if (entry < 0) {
+                knownFiles.add(Path.of(path));
+            } else {
+                knownEntries.computeIfAbsent(Path.of(path.substring(0, entry)), a -> new HashSet<>()).add(path);
+            }
+        }
+
+        this.watchService = this.root.getFileSystem().newWatchService();
+        registerTree(this.root, null);
+        thread = new Thread(this::run, "code-counter-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return number of directories currently watched
+     */
+    public synchronized int getWatchedDirectoryCount() {
+        return directories.size();
+    }
+
+    /**
+     * Stops watching. Pending events are dropped.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            watchService.close();
+        } catch (IOException ignored) {}
+        thread.interrupt();
+    }
+
+    /**
+     * Registers a directory and all non-excluded directories below it. When {@code found} is not
+     * null, matching files in newly registered directories are added to it.
+     */
+    private void registerTree(Path dir, Set<Path> found) {
+        List<Path> pending = new ArrayList<>();
+        pending.add(dir);
+        while (!pending.isEmpty()) {
+            Path current = pending.remove(pending.size() - 1);
+            IgnoreRules rules = rulesFor(current);
+            try {
+                WatchKey key = current.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                synchronized (this) {
+                    directories.put(key, current);
+                    watchedDirectories.add(current);
+                }
+            } catch (IOException | RuntimeException e) {
+                continue; // vanished, unreadable or over the OS watch limit: left unwatched
+            }
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(current)) {
+                for (Path entry : entries) {
+                    Path name = entry.getFileName();
+                    if (name == null || excluded.matches(name.toString())) continue;
+                    boolean directory = Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS);
+                    if (rules.isIgnored(name.toString(), directory)) continue;
+                    if (directory) {
+                        pending.add(entry);
+                    } else if (found != null && (included.matches(name.toString()) || isArchive(entry))) {
+                        found.add(entry);
+                    }
+                }
+            } catch (IOException | RuntimeException ignored) {}
+        }
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                Set<Path> dirty = new LinkedHashSet<>();
+                Set<Path> overflowed = new LinkedHashSet<>();
+                WatchKey key = watchService.take();
+                long deadline = System.currentTimeMillis() + MAX_DELAY_MILLIS;
+                // Debounce: keep collecting until the tree is quiet or the maximum delay is reached
+                while (key != null) {
+                    collect(key, dirty, overflowed);
+                    long wait = Math.min(debounceMillis, deadline - System.currentTimeMillis());
+                    key = wait > 0 ? watchService.poll(wait, TimeUnit.MILLISECONDS) : null;
+                }
+                Change change = process(dirty, overflowed);
+                if (!change.isEmpty() && !closed) listener.accept(change);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> dirty, Set<Path> overflowed) {
+        Path dir;
+        synchronized (this) {
+            dir = directories.get(key);
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (dir == null) continue;
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflowed.add(dir);
+                continue;
+            }
+            Path name = (Path) event.context();
+            if (name == null || excluded.matches(name.toString())) continue;
+            dirty.add(dir.resolve(name));
+        }
+        if (!key.reset()) {
+            synchronized (this) {
+                directories.remove(key);
+            }
+        }
+    }
+
+    private Change process(Set<Path> dirty, Set<Path> overflowed) {
+        List<CodeCounterCore.FileStat> updated = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        Set<Path> toAnalyze = new LinkedHashSet<>();
+
+        for (Path dir : overflowed) {
+            // Events were lost: compare the directory's subtree with what is known
+            Set<Path> present = new HashSet<>();
+            if (Files.isDirectory(dir)) registerTree(dir, present);
+            for (Path known : new ArrayList<>(knownFiles)) {
+                if (known.startsWith(dir) && !present.contains(known)) forget(known, removed);
+            }
+            // Entries only go with their archive; archives still present are read again below
+            for (Path archive : new ArrayList<>(knownEntries.keySet())) {
+                if (archive.startsWith(dir) && !present.contains(archive)) forgetArchive(archive, removed);
+            }
+            toAnalyze.addAll(present);
+        }
+
+        for (Path path : dirty) {
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                attrs = null;
+            }
+            if (attrs == null) {
+                // Deleted: a file, or a watched directory with known files below it
+                if (!knownFiles.contains(path) && !knownEntries.containsKey(path) && unwatch(path)) {
+                    for (Path known : new ArrayList<>(knownFiles)) {
+                        if (known.startsWith(path)) forget(known, removed);
+                    }
+                    for (Path archive : new ArrayList<>(knownEntries.keySet())) {
+                        if (archive.startsWith(path)) forgetArchive(archive, removed);
+                    }
+                }
+                forget(path, removed);
+                forgetArchive(path, removed);
+            } else if (attrs.isDirectory()) {
+                if (!isWatched(path) && !isIgnored(path, true)) registerTree(path, toAnalyze);
+            } else if (attrs.isRegularFile() && (included.matches(path.getFileName().toString()) || isArchive(path))
+                    && !isIgnored(path, false)) {
+                toAnalyze.add(path);
+            }
+        }
+
+        for (Path file : toAnalyze) {
+            if (closed) break;
+            if (!Files.isRegularFile(file)) continue;
+            if (isArchive(file)) {
+                readArchive(file, updated, removed);
+                continue;
+            }
+            CodeCounterCore.FileStat stat = core.analyzeFile(file);
+            stat.setEffectiveLines(includeBlank, includeHeader);
+            knownFiles.add(file);
+            updated.add(stat);
+        }
+        return new Change(updated, removed, overflowed.size());
+    }
+
+    /**
+     * @return whether the scan expanded {@code file} into its entries
+     */
+    private boolean isArchive(Path file) {
+        Path name = file.getFileName();
+        return archives && name != null && ArchiveReader.isArchive(name.toString());
+    }
+
+    /**
+     * Reads a new or changed archive again: its entries are updated, and the known ones it no
+     * longer holds are removed. A damaged archive keeps the entries read before the damage.
+     */
+    private void readArchive(Path archive, List<CodeCounterCore.FileStat> updated, List<String> removed) {
+        List<CodeCounterCore.FileStat> entries = new ArrayList<>();
+        try {
+            archiveReader.read(archive, stat -> {
+                entries.add(stat);
+                return !closed;
+            });
+        } catch (IOException ignored) {}
+        Set<String> paths = new HashSet<>();
+        for (CodeCounterCore.FileStat stat : entries) paths.add(stat.path);
+        Set<String> known = knownEntries.remove(archive);
+        if (known != null) {
+            for (String path : known) {
+                if (!paths.contains(path)) removed.add(path);
+            }
+        }
+        if (!paths.isEmpty()) knownEntries.put(archive, paths);
+        updated.addAll(entries);
+    }
+
+    /**
+     * @return the ignore rules applying inside {@code dir}, loading those of new directories
+     */
+    private IgnoreRules rulesFor(Path dir) {
+        if (!ignoreFiles) return IgnoreRules.NONE;
+        synchronized (this) {
+            IgnoreRules rules = ignoreRules.get(dir);
+            if (rules != null) return rules;
+        }
+        IgnoreRules rules = dir.equals(root) || dir.getParent() == null || !dir.startsWith(root)
+                ? IgnoreRules.forRoot(dir)
+                : rulesFor(dir.getParent()).enter(dir, dir.getFileName().toString());
+        synchronized (this) {
+            ignoreRules.put(dir, rules);
+        }
+        return rules;
+    }
+
+    private boolean isIgnored(Path path, boolean directory) {
+        Path parent = path.getParent();
+        return parent != null && rulesFor(parent).isIgnored(path.getFileName().toString(), directory);
+    }
+
+    private synchronized boolean isWatched(Path dir) {
+        return watchedDirectories.contains(dir);
+    }
+
+    /**
+     * Forgets a deleted directory and every watched directory below it.
+     *
+     * @return true if the directory was watched
+     */
+    private synchronized boolean unwatch(Path dir) {
+        if (!watchedDirectories.remove(dir)) return false;
+        watchedDirectories.removeIf(d -> d.startsWith(dir));
+        directories.values().removeIf(d -> d.startsWith(dir));
+        ignoreRules.keySet().removeIf(d -> d.startsWith(dir));
+        return true;
+    }
+
+    private void forget(Path file, List<String> removed) {
+        if (knownFiles.remove(file)) removed.add(file.toString());
+    }
+
+    private void forgetArchive(Path archive, List<String> removed) {
+        Set<String> entries = knownEntries.remove(archive);
+        if (entries != null) removed.addAll(entries);
+    }
+}
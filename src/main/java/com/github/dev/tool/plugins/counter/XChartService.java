@@ -0,0 +1,90 @@
+package com.github.dev.tool.plugins.counter;
+
+import org.knowm.xchart.CategoryChart;
+import org.knowm.xchart.CategoryChartBuilder;
+import org.knowm.xchart.PieChart;
+import org.knowm.xchart.PieChartBuilder;
+import org.knowm.xchart.XChartPanel;
+import org.knowm.xchart.XYChart;
+import org.knowm.xchart.XYChartBuilder;
+import org.knowm.xchart.style.Styler.LegendPosition;
+
+import javax.swing.JPanel;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ChartService} drawn with XChart.
+ */
+final class XChartService implements ChartService {
+
+    @Override
+    public JPanel barChart(String title, String xAxisTitle, String yAxisTitle, boolean rotateLabels,
+                           List<String> categories, Map<String, List<Number>> series) {
+        return new XChartPanel<>(buildBarChart(title, xAxisTitle, yAxisTitle, rotateLabels, categories, series));
+    }
+
+    private static CategoryChart buildBarChart(String title, String xAxisTitle, String yAxisTitle, boolean rotateLabels,
+                                               List<String> categories, Map<String, List<Number>> series) {
+        CategoryChart chart = new CategoryChartBuilder()
+                .width(800).height(500)
+                .title(title)
+                .xAxisTitle(xAxisTitle)
+                .yAxisTitle(yAxisTitle)
+                .build();
+
+        chart.getStyler().setLegendPosition(LegendPosition.InsideNE);
+        if (rotateLabels) chart.getStyler().setXAxisLabelRotation(45);
+        chart.getStyler().setPlotGridLinesVisible(true);
+        chart.getStyler().setToolTipsEnabled(true);
+
+        for (Map.Entry<String, List<Number>> s : series.entrySet()) {
+            chart.addSeries(s.getKey(), categories, s.getValue());
+        }
+        return chart;
+    }
+
+    @Override
+    public JPanel pieChart(String title, Map<String, Number> slices) {
+        PieChart chart = new PieChartBuilder()
+                .width(500).height(400)
+                .title(title)
+                .build();
+
+        chart.getStyler().setLegendPosition(LegendPosition.OutsideS);
+        chart.getStyler().setToolTipsEnabled(true);
+        chart.getStyler().setPlotContentSize(0.8);
+
+        for (Map.Entry<String, Number> slice : slices.entrySet()) {
+            chart.addSeries(slice.getKey(), slice.getValue());
+        }
+        return new XChartPanel<>(chart);
+    }
+
+    @Override
+    public JPanel timeChart(String title, String xAxisTitle, String yAxisTitle,
+                            List<Date> times, Map<String, List<Number>> series) {
+        XYChart chart = new XYChartBuilder()
+                .width(800).height(500)
+                .title(title)
+                .xAxisTitle(xAxisTitle)
+                .yAxisTitle(yAxisTitle)
+                .build();
+
+        chart.getStyler().setLegendPosition(LegendPosition.InsideNW);
+        chart.getStyler().setPlotGridLinesVisible(true);
+        chart.getStyler().setToolTipsEnabled(true);
+        chart.getStyler().setDatePattern("yyyy-MM-dd");
+
+        for (Map.Entry<String, List<Number>> s : series.entrySet()) {
+            chart.addSeries(s.getKey(), times, s.getValue());
+        }
+        return new XChartPanel<>(chart);
+    }
+
+    @Override
+    public void warmUp() {
+        buildBarChart("", "", "", true, List.of("a"), Map.of("s", List.of(1)));
+    }
+}
@@ -0,0 +1,23 @@
+#!/bin/sh
+# Starts CodeCounter on Linux/macOS. Runs from the install directory so the class path matches the
+# one the class-data-sharing archive (CodeCounter.jsa) was trained with; a missing or stale archive
+# is ignored by the JVM.
+cd "$(dirname "$0")" || exit 1
+if [ -x jre/bin/java ]; then
+    JAVA=jre/bin/java
+elif [ -n "$JAVA_HOME" ]; then
+    JAVA="$JAVA_HOME/bin/java"
+else
+    JAVA=java
+fi
+CDS=
+if [ -f CodeCounter.jsa ]; then
+    CDS="-XX:SharedArchiveFile=CodeCounter.jsa -Xshare:auto -Xlog:cds=off -Xlog:cds+dynamic=off"
+fi
+# CODECOUNTER_VECTOR=1 enables the SIMD line scanner of a jar built with -Pvector; the JVM then
+# prints a warning about the incubating module on every start
+VECTOR=
+if [ "$CODECOUNTER_VECTOR" = 1 ]; then
+    VECTOR=--add-modules=jdk.incubator.vector
+fi
+exec "$JAVA" $CDS $VECTOR -jar CodeCounter.jar "$@"
@@ -0,0 +1,36 @@
+package com.github.dev.tool.plugin.impl;
+
+import org.junit.jupiter.api.Test;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DefaultLocalizationManagerTest {
+
+    @Test
+    public void testLookupsFollowLocaleSwitch() {
+        Locale saved = Locale.getDefault();
+        try {
+            Locale.setDefault(Locale.ENGLISH);
+            DefaultLocalizationManager manager = new DefaultLocalizationManager();
+            assertEquals("Start Count", manager.getString("button.count"));
+            assertTrue(manager.hasKey("button.count"));
+            assertFalse(manager.hasKey("no.such.key"));
+            assertEquals("no.such.key", manager.getString("no.such.key"));
+
+            // Listeners must already see the new language
+            AtomicReference<String> seen = new AtomicReference<>();
+            manager.addLocaleChangeListener(locale -> seen.set(manager.getString("button.count")));
+            manager.setLocale(Locale.GERMAN);
+            assertEquals("Zählung starten", seen.get());
+            assertEquals("Zählung starten", manager.getString("button.count"));
+
+            manager.setLocale(Locale.TRADITIONAL_CHINESE);
+            assertEquals("開始統計", manager.getString("button.count"));
+            manager.setLocale(Locale.ENGLISH);
+            assertEquals("Start Count", manager.getString("button.count"));
+        } finally {
+            Locale.setDefault(saved);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Manual benchmark of the scalar and SIMD line classifiers on a synthetic in-memory corpus,
+ * not run by the test suite.
+ *
+ * Usage, after {@code mvn -Pvector test-compile}: {@code java --add-modules jdk.incubator.vector
+ * -cp target/classes:target/test-classes com.github.dev.tool.plugins.counter.ClassifierBenchmark
+ * [megabytes] [rounds]}
+ *
+ * Two corpora are measured: ordinary source code (short, indented lines) and a minified
+ * JavaScript bundle (few, very long lines), which is where the SIMD path gains the most.
+ */
+public class ClassifierBenchmark {
+
+    public static void main(String[] args) {
+        int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        System.out.println("SIMD scanner: " + (LineClassifier.ACCELERATED != null
+                ? LineClassifier.ACCELERATED.minRun() + " bytes per vector"
+                : "unavailable (build with -Pvector, run with --add-modules jdk.incubator.vector)"));
+
+        run("source", sourceCorpus(megabytes << 20), rounds);
+        run("minified", minifiedCorpus(megabytes << 20), rounds);
+    }
+
+    private static void run(String name, ByteBuffer corpus, int rounds) {
+        double scalar = measure(corpus, null, rounds);
+        System.out.printf("%-8s scalar: %8.1f MB/s%n", name, scalar);
+        if (LineClassifier.ACCELERATED != null) {
+            double simd = measure(corpus, LineClassifier.ACCELERATED, rounds);
+            System.out.printf("%-8s simd:   %8.1f MB/s (%.2fx)%n", name, simd, simd / scalar);
+        }
+    }
+
+    private static double measure(ByteBuffer corpus, ByteScanner scanner, int rounds) {
+        double best = 0;
+        long checksum = 0;
+        for (int round = 0; round < rounds + 2; round++) { // first two rounds warm up the JIT
+            long start = System.nanoTime();
+            // Feed in pooled-buffer sized chunks, like the file reader does
+            LineClassifier classifier = new LineClassifier(scanner);
+            for (int off = 0; off < corpus.capacity(); off += BufferPool.BUFFER_SIZE) {
+                ByteBuffer chunk = corpus.duplicate();
+                chunk.position(off).limit(Math.min(corpus.capacity(), off + BufferPool.BUFFER_SIZE));
+                classifier.feed(chunk);
+            }
+            classifier.finish();
+            long nanos = System.nanoTime() - start;
+            checksum += classifier.getCodeLines() + classifier.getTodoLines();
+            if (round >= 2) best = Math.max(best, corpus.capacity() / 1048576.0 / (nanos / 1e9));
+        }
+        if (checksum == 42) System.out.print(""); // keep the result alive
+        return best;
+    }
+
+    private static ByteBuffer sourceCorpus(int size) {
+        String[] lines = {
+            "package com.example.service;",
+            "",
+            "import java.util.List;",
+            "/**",
+            " * Handles incoming orders. TODO: split validation",
+            " */",
+            "public class OrderService {",
+            "    private final OrderRepository repository;",
+            "        // keep the cache warm",
+            "        for (Order order : repository.findAll(customerId, PageRequest.of(0, 100))) {",
+            "            result.add(mapper.toDto(order));",
+            "        }",
+            "    }",
+            "}",
+        };
+        return fill(size, new Random(1), lines);
+    }
+
+    private static ByteBuffer minifiedCorpus(int size) {
+        StringBuilder line = new StringBuilder();
+        Random random = new Random(2);
+        while (line.length() < 200_000) {
+            line.append("function a").append(random.nextInt(1000))
+                    .append("(e,t){return e&&t?this.render(e.props,t):void 0};var n=")
+                    .append(random.nextInt()).append(';');
+        }
+        return fill(size, random, new String[] {line.toString()});
+    }
+
+    private static ByteBuffer fill(int size, Random random, String[] lines) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(size);
+        while (buf.hasRemaining()) {
+            byte[] bytes = (lines[random.nextInt(lines.length)] + "\n").getBytes(StandardCharsets.UTF_8);
+            buf.put(bytes, 0, Math.min(bytes.length, buf.remaining()));
+        }
+        buf.clear();
+        return buf;
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.dev.tool.plugins.counter;
+
+import org.junit.jupiter.api.Test;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodeCounterCliTest {
+
+    @Test
+    public void testCsvUsesTemplateAndDefaultExcludes() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-cli-");
+        try {
+            Files.createDirectories(tmp.resolve("src"));
+            Files.writeString(tmp.resolve("src").resolve("A.java"), "class A {\n\n// TODO\n}\n");
+            Files.writeString(tmp.resolve("src").resolve("a.py"), "x = 1\n");
+            // Excluded by the Java Backend template (target) and the VCS defaults (.git)
+            Files.createDirectories(tmp.resolve("target"));
+            Files.writeString(tmp.resolve("target").resolve("B.java"), "class B {}\n");
+            Files.createDirectories(tmp.resolve(".git"));
+            Files.writeString(tmp.resolve(".git").resolve("C.java"), "class C {}\n");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int exit = CodeCounterCli.run(new String[] {"--template", "java backend", "-f", "csv", tmp.toString()},
+                    out, new PrintStream(new ByteArrayOutputStream()));
+            assertEquals(CodeCounterCli.EXIT_OK, exit);
+
+            String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+            assertEquals(2, lines.length, "Expected the header and A.java only");
+            assertTrue(lines[1].contains("A.java"));
+            // lines = code + comment (blank left out by default), then code, comment, blank, todo
+            assertTrue(lines[1].contains(",3,2,1,1,1,"), lines[1]);
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testJsonWithExtensionsAndFlags() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-cli-");
+        try {
+            Files.writeString(tmp.resolve("a \"q\".js"), "x = 1;\n\n// note\n");
+            Files.writeString(tmp.resolve("A.java"), "class A {}\n");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int exit = CodeCounterCli.run(new String[] {"--ext=js", "--include-blank", "--no-include-header",
+                    "--format=json", tmp.toString()}, out, new PrintStream(new ByteArrayOutputStream()));
+            assertEquals(CodeCounterCli.EXIT_OK, exit);
+
+            String json = out.toString(StandardCharsets.UTF_8);
+            assertTrue(json.contains("a \\\"q\\\".js"), json);
+            assertFalse(json.contains("A.java"), json);
+            assertTrue(json.contains("\"total\": {\"files\": 1, \"lines\": 2, \"code\": 1, \"comment\": 1, \"blank\": 1"), json);
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testUsageErrors() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream errStream = new PrintStream(err);
+        assertEquals(CodeCounterCli.EXIT_USAGE,
+                CodeCounterCli.run(new String[] {"--bogus"}, new ByteArrayOutputStream(), errStream));
+        assertEquals(CodeCounterCli.EXIT_USAGE,
+                CodeCounterCli.run(new String[] {"--format", "xml"}, new ByteArrayOutputStream(), errStream));
+        assertEquals(CodeCounterCli.EXIT_USAGE,
+                CodeCounterCli.run(new String[] {"-t", "Cobol"}, new ByteArrayOutputStream(), errStream));
+        assertEquals(CodeCounterCli.EXIT_USAGE,
+                CodeCounterCli.run(new String[] {"--ext"}, new ByteArrayOutputStream(), errStream));
+        assertTrue(err.toString().contains("unknown option '--bogus'"));
+    }
+}
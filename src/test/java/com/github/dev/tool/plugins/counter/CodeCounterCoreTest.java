@@ -1,10 +1,26 @@
 package com.github.dev.tool.plugins.counter;
 
 import org.junit.jupiter.api.Test;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class CodeCounterCoreTest {
@@ -38,5 +54,765 @@ public class CodeCounterCoreTest {
             try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
         }
     }
-}
 
+    @Test
+    public void testLargeFileIsCountedWhole() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-test-");
+        try {
+            // Above the mapping threshold: mapped where MAP_LARGE_FILES allows it, else read in pooled chunks
+            StringBuilder text = new StringBuilder();
+            int classes = 0;
+            while (text.length() <= CodeCounterCore.MAP_THRESHOLD) {
+                text.append("// class ").append(classes).append("\nclass C").append(classes).append(" {}\n\n");
+                classes++;
+            }
+            Files.writeString(tmp.resolve("Big.java"), text);
+
+            List<CodeCounterCore.FileStat> list = new CodeCounterCore().countLinesWithDetail(tmp,
+                    Arrays.asList(".java"), true, true, Arrays.asList());
+            assertEquals(1, list.size());
+            assertEquals(classes, list.get(0).codeLines);
+            assertEquals(classes, list.get(0).commentLines);
+            assertEquals(classes, list.get(0).blankLines);
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testExcludesOnlyApplyBelowRoot() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-test-");
+        try {
+            // The scan root itself lives inside a directory named like an exclude entry
+            Path root = tmp.resolve("build").resolve("project");
+            Files.createDirectories(root.resolve("src"));
+            Files.writeString(root.resolve("src").resolve("A.java"), "class A {}\n");
+            Files.createDirectories(root.resolve("node_modules").resolve("lib"));
+            Files.writeString(root.resolve("node_modules").resolve("lib").resolve("B.java"), "class B {}\n");
+
+            CodeCounterCore core = new CodeCounterCore();
+            List<CodeCounterCore.FileStat> list = core.countLinesWithDetail(root,
+                    Arrays.asList(".java"), true, true, Arrays.asList("build", "node_modules"));
+
+            assertEquals(1, list.size());
+            assertTrue(list.get(0).path.endsWith("A.java"));
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testScanPublishesWithBackpressure() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-test-");
+        try {
+            for (int i = 0; i < 40; i++) {
+                Path dir = Files.createDirectories(tmp.resolve("pkg" + (i % 4)));
+                Files.writeString(dir.resolve("C" + i + ".java"), "// header\nclass C" + i + " {\n\n}\n");
+            }
+
+            CodeCounterCore core = new CodeCounterCore();
+            List<CodeCounterCore.FileStat> received = new java.util.concurrent.CopyOnWriteArrayList<>();
+            java.util.concurrent.CountDownLatch done = new java.util.concurrent.CountDownLatch(1);
+            core.scan(tmp, Arrays.asList(".java"), false, true, Arrays.asList(".git"))
+                    .subscribe(new java.util.concurrent.Flow.Subscriber<CodeCounterCore.FileStat>() {
+                        private java.util.concurrent.Flow.Subscription subscription;
+
+                        @Override
+                        public void onSubscribe(java.util.concurrent.Flow.Subscription s) {
+                            subscription = s;
+                            s.request(1);
+                        }
+
+                        @Override
+                        public void onNext(CodeCounterCore.FileStat item) {
+                            received.add(item);
+                            subscription.request(1); // pull one file at a time
+                        }
+
+                        @Override
+                        public void onError(Throwable throwable) {
+                            done.countDown();
+                        }
+
+                        @Override
+                        public void onComplete() {
+                            done.countDown();
+                        }
+                    });
+
+            assertTrue(done.await(30, java.util.concurrent.TimeUnit.SECONDS), "scan did not complete");
+            assertEquals(40, received.size());
+            for (CodeCounterCore.FileStat fs : received) {
+                assertEquals(2, fs.codeLines);
+                assertEquals(1, fs.commentLines);
+                assertEquals(1, fs.blankLines);
+                assertEquals(3, fs.lines);
+            }
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testExecutionModesAgree() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-test-");
+        try {
+            for (int i = 0; i < 20; i++) {
+                Files.writeString(tmp.resolve("F" + i + ".java"),
+                        "/*\n * doc\n */\nclass F" + i + " {\n    // todo\n\n}\n");
+            }
+            CodeCounterCore core = new CodeCounterCore();
+            core.setMaxOpenFiles(3);
+            long[] totals = new long[2];
+            for (CodeCounterCore.ExecutionMode mode : CodeCounterCore.ExecutionMode.values()) {
+                core.setExecutionMode(mode);
+                List<CodeCounterCore.FileStat> list = core.countLinesWithDetail(tmp,
+                        Arrays.asList(".java"), true, true, Arrays.asList(".git"));
+                assertEquals(20, list.size());
+                assertEquals(20, core.getLastScanMetrics().getFiles());
+                totals[mode.ordinal()] = list.stream().mapToLong(f -> f.lines).sum();
+            }
+            assertEquals(totals[0], totals[1]);
+            assertEquals(20 * 7, totals[0]);
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testCharsetDetection() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-test-");
+        try {
+            String text = "// \u6ce8\u91ca todo\n/* \u5757\n */\nint x = 1;\n\n";
+            Files.write(tmp.resolve("Ascii.java"), "// todo\n/*\n */\nint x;\n\n".getBytes(StandardCharsets.US_ASCII));
+            Files.write(tmp.resolve("Utf8.java"), text.getBytes(StandardCharsets.UTF_8));
+            byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+            Files.write(tmp.resolve("Utf8Bom.java"), concat(bom, text.getBytes(StandardCharsets.UTF_8)));
+            byte[] utf16Bom = {(byte) 0xFF, (byte) 0xFE};
+            Files.write(tmp.resolve("Utf16.java"), concat(utf16Bom, text.getBytes(StandardCharsets.UTF_16LE)));
+            Files.write(tmp.resolve("Gbk.java"), text.getBytes(Charset.forName("GBK")));
+            Files.write(tmp.resolve("Latin1.java"), "// caf\u00e9 todo\n/*\n */\nint x;\n\n".getBytes(StandardCharsets.ISO_8859_1));
+
+            CodeCounterCore core = new CodeCounterCore();
+            core.setFallbackCharsets(CodeCounterCore.parseCharsets("GBK, no-such-charset"));
+            List<CodeCounterCore.FileStat> list = core.countLinesWithDetail(tmp,
+                    Arrays.asList(".java"), true, true, Arrays.asList(".git"));
+            assertEquals(6, list.size());
+
+            java.util.Map<String, String> expectedCharsets = java.util.Map.of(
+                    "Ascii.java", "US-ASCII", "Utf8.java", "UTF-8", "Utf8Bom.java", "UTF-8",
+                    "Utf16.java", "UTF-16LE", "Gbk.java", "GBK", "Latin1.java", "ISO-8859-1");
+            for (CodeCounterCore.FileStat stat : list) {
+                String name = Path.of(stat.path).getFileName().toString();
+                assertEquals(expectedCharsets.get(name), stat.charset, name);
+                assertEquals(1, stat.codeLines, name);
+                assertEquals(3, stat.commentLines, name);
+                assertEquals(1, stat.blankLines, name);
+                assertEquals(1, stat.todoLines, name);
+            }
+
+            // Without fallbacks, undecodable bytes are read as ISO-8859-1 rather than dropped
+            core.setFallbackCharsets(null);
+            list = core.countLinesWithDetail(tmp, Arrays.asList(".java"), true, true, Arrays.asList(".git"));
+            CodeCounterCore.FileStat gbk = list.stream().filter(f -> f.path.endsWith("Gbk.java")).findFirst().get();
+            assertEquals("ISO-8859-1", gbk.charset);
+            assertEquals(5, gbk.lines);
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testUtf8Validator() {
+        String[][] cases = {
+            {"", "ascii"}, {"plain ascii text, longer than one word", "ascii"},
+            {"caf\u00e9 \u4e2d\u6587 \ud83d\ude00", "utf8"},
+        };
+        for (String[] c : cases) {
+            CharsetDetector.Utf8Validator v = new CharsetDetector.Utf8Validator();
+            v.update(java.nio.ByteBuffer.wrap(c[0].getBytes(StandardCharsets.UTF_8)));
+            assertTrue(v.isValidAtEnd(), c[0]);
+            assertEquals(c[1].equals("ascii"), v.isAscii(), c[0]);
+        }
+        int[][] invalid = {
+            {0xC0, 0xAF},             // overlong '/'
+            {0xE0, 0x80, 0xAF},       // overlong
+            {0xED, 0xA0, 0x80},       // surrogate
+            {0xF4, 0x90, 0x80, 0x80}, // above U+10FFFF
+            {0x80},                   // stray continuation
+            {'a', 0xE4, 0xB8},        // truncated at end
+        };
+        for (int[] bytes : invalid) {
+            byte[] b = new byte[bytes.length];
+            for (int i = 0; i < b.length; i++) b[i] = (byte) bytes[i];
+            CharsetDetector.Utf8Validator v = new CharsetDetector.Utf8Validator();
+            v.update(java.nio.ByteBuffer.wrap(b));
+            assertFalse(v.isValidAtEnd(), Arrays.toString(bytes));
+        }
+    }
+
+    @Test
+    public void testGlobExcludes() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-test-");
+        try {
+            Files.writeString(tmp.resolve("A.java"), "class A {}\n");
+            Files.createDirectories(tmp.resolve("mypkg.egg-info"));
+            Files.writeString(tmp.resolve("mypkg.egg-info").resolve("B.java"), "class B {}\n");
+            Files.writeString(tmp.resolve("module.iml"), "<module/>\n");
+
+            CodeCounterCore core = new CodeCounterCore();
+            List<CodeCounterCore.FileStat> list = core.countLinesWithDetail(tmp,
+                    Arrays.asList(".java", "*.iml"), true, true, Arrays.asList("*.egg-info", "*.IML"));
+
+            assertEquals(1, list.size());
+            assertTrue(list.get(0).path.endsWith("A.java"));
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testIncrementalIndex() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-test-");
+        try {
+            Path src = Files.createDirectories(tmp.resolve("src"));
+            java.nio.file.attribute.FileTime past = java.nio.file.attribute.FileTime.fromMillis(
+                    System.currentTimeMillis() - 60_000);
+            for (int i = 0; i < 3; i++) {
+                Path file = src.resolve("C" + i + ".java");
+                Files.writeString(file, "// c" + i + "\nclass C" + i + " {}\n");
+                Files.setLastModifiedTime(file, past);
+            }
+            Path indexFile = tmp.resolve("index").resolve("scan-index.bin");
+
+            CodeCounterCore core = new CodeCounterCore();
+            core.setScanIndex(new ScanIndex(indexFile, 100));
+            List<CodeCounterCore.FileStat> first = core.countLinesWithDetail(src, Arrays.asList(".java"), true, true);
+            assertEquals(0, core.getLastScanMetrics().getIndexHits());
+            assertTrue(Files.exists(indexFile));
+
+            // A fresh index instance reloads the file; nothing is read again
+            core.setScanIndex(new ScanIndex(indexFile, 100));
+            List<CodeCounterCore.FileStat> second = core.countLinesWithDetail(src, Arrays.asList(".java"), true, true);
+            assertEquals(3, core.getLastScanMetrics().getIndexHits());
+            assertEquals(0, core.getLastScanMetrics().getFiles());
+            assertEquals(first.stream().mapToLong(f -> f.lines).sum(), second.stream().mapToLong(f -> f.lines).sum());
+
+            // A changed file is read again
+            Path changed = src.resolve("C0.java");
+            Files.writeString(changed, "// c0\nclass C0 {\n  int x;\n}\n");
+            Files.setLastModifiedTime(changed, java.nio.file.attribute.FileTime.fromMillis(past.toMillis() + 1000));
+            List<CodeCounterCore.FileStat> third = core.countLinesWithDetail(src, Arrays.asList(".java"), true, true);
+            assertEquals(2, core.getLastScanMetrics().getIndexHits());
+            assertEquals(1, core.getLastScanMetrics().getFiles());
+            assertEquals(3, third.stream().filter(f -> f.path.endsWith("C0.java")).findFirst().get().codeLines);
+
+            // Files modified just now are not trusted, and the LRU cap holds
+            Files.writeString(src.resolve("Fresh.java"), "class Fresh {}\n");
+            ScanIndex small = new ScanIndex(tmp.resolve("small.bin"), 2);
+            core.setScanIndex(small);
+            core.countLinesWithDetail(src, Arrays.asList(".java"), true, true);
+            assertEquals(2, small.size());
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testContentCacheDeduplicates() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-test-");
+        try {
+            for (String copy : new String[] {"a", "b", "c"}) {
+                Path dir = Files.createDirectories(tmp.resolve(copy));
+                Files.writeString(dir.resolve("Same.java"), "// same\nclass Same {}\n\n");
+            }
+            Files.writeString(tmp.resolve("a").resolve("Other.java"), "class Other {}\n");
+
+            CodeCounterCore core = new CodeCounterCore();
+            ContentCache cache = new ContentCache();
+            core.setContentCache(cache);
+            core.setExecutionMode(CodeCounterCore.ExecutionMode.VIRTUAL_THREADS);
+            core.setMaxOpenFiles(1); // one file at a time, so the hit count is deterministic
+            List<CodeCounterCore.FileStat> list = core.countLinesWithDetail(tmp, Arrays.asList(".java"), true, true);
+
+            assertEquals(4, list.size());
+            assertEquals(3, list.stream().filter(f -> f.path.endsWith("Same.java")).map(f -> f.path).distinct().count());
+            for (CodeCounterCore.FileStat stat : list) {
+                if (!stat.path.endsWith("Same.java")) continue;
+                assertEquals(1, stat.codeLines);
+                assertEquals(1, stat.commentLines);
+                assertEquals(1, stat.blankLines);
+                assertEquals(".java", stat.type);
+            }
+            assertEquals(4, core.getLastScanMetrics().getContentCacheLookups());
+            assertEquals(2, core.getLastScanMetrics().getContentCacheHits());
+
+            // The cache is kept across scans
+            core.countLinesWithDetail(tmp, Arrays.asList(".java"), true, true);
+            assertEquals(4, core.getLastScanMetrics().getContentCacheHits());
+            assertEquals(2, cache.size());
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testContentHashIgnoresChunking() {
+        byte[] data = new byte[1000];
+        new java.util.Random(3).nextBytes(data);
+        ContentCache.Hasher whole = new ContentCache.Hasher();
+        whole.update(java.nio.ByteBuffer.wrap(data));
+        ContentCache.Key expected = whole.finish();
+        for (int chunk : new int[] {1, 3, 7, 8, 13, 64}) {
+            ContentCache.Hasher pieces = new ContentCache.Hasher();
+            for (int off = 0; off < data.length; off += chunk) {
+                java.nio.ByteBuffer buf = java.nio.ByteBuffer.wrap(data, off, Math.min(chunk, data.length - off));
+                if (chunk == 13) buf.order(java.nio.ByteOrder.LITTLE_ENDIAN);
+                pieces.update(buf);
+            }
+            assertEquals(expected, pieces.finish(), "chunk=" + chunk);
+        }
+        data[500] ^= 1;
+        ContentCache.Hasher changed = new ContentCache.Hasher();
+        changed.update(java.nio.ByteBuffer.wrap(data));
+        assertNotEquals(expected, changed.finish());
+    }
+
+    /**
+     * Blob-id keys only match blob ids: a content key with the same size and hash neither finds
+     * nor evicts counts cached under a blob id.
+     */
+    @Test
+    public void testBlobKeysKeptApart() {
+        byte[] id = new byte[20];
+        for (int i = 0; i < id.length; i++) id[i] = (byte) (i + 1);
+        ContentCache.Key blob = ContentCache.Key.forObjectId(12, id);
+        ContentCache.Key content = new ContentCache.Key(12, blob.hash);
+        assertNotEquals(blob, content);
+
+        ContentCache cache = new ContentCache(1);
+        cache.put(blob, new CodeCounterCore.FileStat("A.java", ".java", 3, 0, 0, 0));
+        assertNull(cache.get(content));
+        cache.put(content, new CodeCounterCore.FileStat("B.java", ".java", 5, 0, 0, 0));
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.get(ContentCache.Key.forObjectId(12, id.clone())).codeLines);
+        assertEquals(5, cache.get(content).codeLines);
+    }
+
+    @Test
+    public void testWatchReportsChanges() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-test-");
+        try {
+            Path src = Files.createDirectories(tmp.resolve("src"));
+            Files.writeString(src.resolve("A.java"), "class A {}\n");
+            Files.writeString(src.resolve("B.java"), "class B {}\n");
+
+            CodeCounterCore core = new CodeCounterCore();
+            List<CodeCounterCore.FileStat> scanned = core.countLinesWithDetail(tmp, Arrays.asList(".java"), true, true);
+            java.util.Map<String, Long> code = new java.util.concurrent.ConcurrentHashMap<>();
+            scanned.forEach(f -> code.put(f.path, f.codeLines));
+
+            java.util.concurrent.BlockingQueue<TreeWatcher.Change> changes = new java.util.concurrent.LinkedBlockingQueue<>();
+            try (TreeWatcher watcher = core.watch(tmp, Arrays.asList(".java"), true, true, Arrays.asList("target"),
+                    code.keySet(), changes::add)) {
+                Files.writeString(src.resolve("A.java"), "class A {\n  int x;\n}\n");
+                Files.delete(src.resolve("B.java"));
+                Path pkg = Files.createDirectories(src.resolve("pkg"));
+                Files.writeString(pkg.resolve("C.java"), "class C {}\n");
+                Files.createDirectories(tmp.resolve("target"));
+                Files.writeString(tmp.resolve("target").resolve("D.java"), "class D {}\n");
+                Files.writeString(src.resolve("notes.txt"), "ignored\n");
+
+                long deadline = System.currentTimeMillis() + 20_000;
+                String a = src.resolve("A.java").toString();
+                String c = pkg.resolve("C.java").toString();
+                while (System.currentTimeMillis() < deadline
+                        && !(code.getOrDefault(a, 0L) == 3 && code.containsKey(c) && code.size() == 2)) {
+                    TreeWatcher.Change change = changes.poll(500, java.util.concurrent.TimeUnit.MILLISECONDS);
+                    if (change == null) continue;
+                    change.removed.forEach(code::remove);
+                    change.updated.forEach(f -> code.put(f.path, f.codeLines));
+                }
+                assertEquals(3L, code.get(a));
+                assertTrue(code.containsKey(c), "new file in a new directory is picked up");
+                assertFalse(code.containsKey(src.resolve("B.java").toString()), "deleted file is removed");
+                assertEquals(2, code.size(), "excluded and non-matching files are ignored: " + code);
+            }
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testWatchArchives() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-test-");
+        try {
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(tmp.resolve("a.zip")))) {
+                zipEntry(zip, "A.java", "class A {}\n");
+                zipEntry(zip, "B.java", "class B {}\n");
+            }
+            Path lib = Files.createDirectories(tmp.resolve("lib"));
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(lib.resolve("b.jar")))) {
+                zipEntry(zip, "C.java", "class C {}\n");
+            }
+
+            CodeCounterCore core = new CodeCounterCore();
+            core.setScanArchives(true);
+            java.util.Map<String, Long> code = new java.util.concurrent.ConcurrentHashMap<>();
+            core.countLinesWithDetail(tmp, Arrays.asList(".java"), true, true).forEach(f -> code.put(f.path, f.codeLines));
+            assertEquals(3, code.size());
+
+            java.util.concurrent.BlockingQueue<TreeWatcher.Change> changes = new java.util.concurrent.LinkedBlockingQueue<>();
+            try (TreeWatcher watcher = core.watch(tmp, Arrays.asList(".java"), true, true, Arrays.asList("target"),
+                    code.keySet(), changes::add)) {
+                try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(tmp.resolve("a.zip")))) {
+                    zipEntry(zip, "A.java", "class A {\n  int x;\n}\n");
+                }
+                Files.delete(lib.resolve("b.jar"));
+                try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(tmp.resolve("c.zip")))) {
+                    zipEntry(zip, "D.java", "class D {}\n");
+                }
+
+                long deadline = System.currentTimeMillis() + 20_000;
+                String a = tmp.resolve("a.zip") + "!/A.java";
+                String d = tmp.resolve("c.zip") + "!/D.java";
+                while (System.currentTimeMillis() < deadline
+                        && !(code.getOrDefault(a, 0L) == 3 && code.containsKey(d) && code.size() == 2)) {
+                    TreeWatcher.Change change = changes.poll(500, java.util.concurrent.TimeUnit.MILLISECONDS);
+                    if (change == null) continue;
+                    change.removed.forEach(code::remove);
+                    change.updated.forEach(f -> code.put(f.path, f.codeLines));
+                }
+                assertEquals(3L, code.get(a), "a changed archive is read again");
+                assertTrue(code.containsKey(d), "a new archive is expanded");
+                assertEquals(2, code.size(), "entries gone from a changed archive or in a deleted one are removed: " + code);
+            }
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testIgnoreFiles() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-test-");
+        try {
+            Files.writeString(tmp.resolve(".gitignore"), "coverage/\n*.gen.java\n!Keep.gen.java\n");
+            Files.writeString(tmp.resolve("A.java"), "class A {}\n");
+            Files.writeString(tmp.resolve("B.gen.java"), "class B {}\n");
+            Files.writeString(tmp.resolve("Keep.gen.java"), "class Keep {}\n");
+            Path coverage = Files.createDirectories(tmp.resolve("coverage").resolve("deep"));
+            Files.writeString(coverage.resolve("C.java"), "class C {}\n");
+            Path sub = Files.createDirectories(tmp.resolve("sub"));
+            Files.writeString(sub.resolve(".ignore"), "Local.java\n");
+            Files.writeString(sub.resolve("Local.java"), "class Local {}\n");
+            Files.writeString(sub.resolve("D.java"), "class D {}\n");
+
+            CodeCounterCore core = new CodeCounterCore();
+            assertEquals(6, core.countLinesWithDetail(tmp, Arrays.asList(".java"), true, true).size());
+            core.setUseIgnoreFiles(true);
+            List<CodeCounterCore.FileStat> list = core.countLinesWithDetail(tmp, Arrays.asList(".java"), true, true);
+            assertEquals(Arrays.asList("A.java", "D.java", "Keep.gen.java"), list.stream()
+                    .map(f -> Path.of(f.path).getFileName().toString()).sorted().collect(java.util.stream.Collectors.toList()));
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testGitIndexSource() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-test-");
+        try {
+            long modified = (System.currentTimeMillis() / 1000 - 3600) * 1000;
+            Files.writeString(tmp.resolve("A.java"), "class A {}\n");
+            Files.writeString(tmp.resolve("Untracked.java"), "class U {}\n");
+            Files.createDirectories(tmp.resolve("sub"));
+            Files.writeString(tmp.resolve("sub").resolve("D.java"), "// d\nclass D {}\n");
+            Files.createDirectories(tmp.resolve("target"));
+            Files.writeString(tmp.resolve("target").resolve("T.java"), "class T {}\n");
+            Path gitDir = Files.createDirectories(tmp.resolve(".git"));
+            writeGitIndex(gitDir.resolve("index"), tmp, modified,
+                    "A.java", "Link.java", "Missing.java", "sub/D.java", "target/T.java");
+
+            CodeCounterCore core = new CodeCounterCore();
+            core.setUseGitIndex(true);
+            ContentCache cache = new ContentCache();
+            core.setContentCache(cache);
+            List<CodeCounterCore.FileStat> list = core.countLinesWithDetail(tmp, Arrays.asList(".java"), true, true, Arrays.asList("target"));
+            assertEquals(Arrays.asList("A.java", "D.java"), list.stream()
+                    .map(f -> Path.of(f.path).getFileName().toString()).sorted().collect(java.util.stream.Collectors.toList()));
+            assertEquals(2, core.getLastScanMetrics().getContentCacheLookups());
+            assertEquals(0, core.getLastScanMetrics().getContentCacheHits());
+            // A watcher would add untracked files to the tracked-only results
+            assertThrows(IllegalStateException.class, () -> core.watch(tmp, Arrays.asList(".java"), true, true,
+                    Arrays.asList("target"), Arrays.asList(), change -> {}));
+
+            // Clean files are served by blob id without being read: same size and mtime, new bytes
+            Files.writeString(tmp.resolve("A.java"), "// ABCDEFG\n");
+            Files.setLastModifiedTime(tmp.resolve("A.java"), java.nio.file.attribute.FileTime.fromMillis(modified));
+            list = core.countLinesWithDetail(tmp, Arrays.asList(".java"), true, true, Arrays.asList("target"));
+            assertEquals(2, core.getLastScanMetrics().getContentCacheHits());
+            CodeCounterCore.FileStat a = list.stream().filter(f -> f.path.endsWith("A.java")).findFirst().orElseThrow();
+            assertEquals(1, a.codeLines);
+            assertEquals(0, a.commentLines);
+
+            // A root below the work tree only gets its own files
+            list = core.countLinesWithDetail(tmp.resolve("sub"), Arrays.asList(".java"), true, true);
+            assertEquals(1, list.size());
+            assertTrue(list.get(0).path.endsWith("D.java"));
+
+            // Without the option every file on disk is counted
+            core.setUseGitIndex(false);
+            assertEquals(4, core.countLinesWithDetail(tmp, Arrays.asList(".java"), true, true).size());
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    /**
+     * Writes a version 2 index listing the given paths (sorted); "Link.java" is staged as a
+     * symbolic link. Files present on disk get their size and the given mtime, which is also
+     * applied to them.
+     */
+    @Test
+    public void testArchives() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-archive-");
+        try {
+            ByteArrayOutputStream inner = new ByteArrayOutputStream();
+            try (ZipOutputStream jar = new ZipOutputStream(inner)) {
+                zipEntry(jar, "b/B.java", "// B\nclass B {}\n");
+            }
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(tmp.resolve("dist.zip")))) {
+                zipEntry(zip, "src/A.java", "class A {\n\n}\n");
+                zipEntry(zip, "target/Gen.java", "class Gen {}\n");
+                zipEntry(zip, "README.md", "readme\n");
+                zip.putNextEntry(new ZipEntry("lib/inner-sources.jar"));
+                zip.write(inner.toByteArray());
+                zip.closeEntry();
+            }
+            String longName = "very/".repeat(25) + "Deep.java";
+            ByteArrayOutputStream tar = new ByteArrayOutputStream();
+            tarEntry(tar, "././@LongLink", 'L', (longName + "\0").getBytes(StandardCharsets.UTF_8));
+            tarEntry(tar, longName.substring(0, 100), '0', "class Deep {}\n".getBytes(StandardCharsets.UTF_8));
+            tarEntry(tar, "./pkg/", '5', new byte[0]);
+            tarEntry(tar, "./pkg/C.java", '0', "class C {\n  int x; // TODO\n}\n".getBytes(StandardCharsets.UTF_8));
+            tar.write(new byte[1024]);
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp.resolve("src.tar.gz")))) {
+                out.write(tar.toByteArray());
+            }
+            Files.writeString(tmp.resolve("broken.jar"), "not a zip");
+
+            CodeCounterCore core = new CodeCounterCore();
+            List<String> java = Arrays.asList(".java");
+            List<String> excludes = Arrays.asList("target");
+            // Off by default: archives are not read
+            assertTrue(core.countLinesWithDetail(tmp, java, true, true, excludes).isEmpty());
+
+            core.setScanArchives(true);
+            Map<String, CodeCounterCore.FileStat> byPath = new HashMap<>();
+            for (CodeCounterCore.FileStat stat : core.countLinesWithDetail(tmp, java, true, true, excludes)) {
+                byPath.put(tmp.relativize(Paths.get(stat.path.substring(0, stat.path.indexOf('!')))) +
+                        stat.path.substring(stat.path.indexOf('!')), stat);
+            }
+            assertEquals(Set.of("dist.zip!/src/A.java", "dist.zip!/lib/inner-sources.jar!/b/B.java",
+                    "src.tar.gz!/" + longName, "src.tar.gz!/pkg/C.java"), byPath.keySet());
+            CodeCounterCore.FileStat a = byPath.get("dist.zip!/src/A.java");
+            assertEquals(".java", a.type);
+            assertEquals(2, a.codeLines);
+            assertEquals(1, a.blankLines);
+            assertEquals(1, byPath.get("dist.zip!/lib/inner-sources.jar!/b/B.java").commentLines);
+            assertEquals(1, byPath.get("src.tar.gz!/pkg/C.java").todoLines);
+
+            // An archive can be the root itself, whatever the setting
+            core.setScanArchives(false);
+            List<CodeCounterCore.FileStat> root = core.countLinesWithDetail(tmp.resolve("dist.zip"), java, true, true, excludes);
+            assertEquals(2, root.size());
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    /**
+     * Archive entry and git tree paths get their type from the string, so names the file system
+     * would reject cannot fail the scan.
+     */
+    @Test
+    public void testExtensionOfEntryPaths() throws Exception {
+        assertEquals(".java", CodeCounterCore.getExtension("C:\\src\\a.zip!/dir.d/a:b?<*>|.java"));
+        assertEquals("", CodeCounterCore.getExtension("a.zip!/dir.d/README"));
+        assertEquals(".gitignore", CodeCounterCore.getExtension(".gitignore"));
+        CodeCounterCore core = new CodeCounterCore();
+        assertEquals(".java", core.analyzeBytes("bad\0name.java", "class A {}\n".getBytes(StandardCharsets.UTF_8)).type);
+        assertEquals(".java", core.analyzeEntry("a.zip!/bad\0name.java",
+                new ByteArrayInputStream("class A {}\n".getBytes(StandardCharsets.UTF_8)), null, null).type);
+    }
+
+    /**
+     * Archive entries of every size class are counted the same way, also when several analyzers
+     * buffer large entries at once, and the shared buffer budget is whole again afterwards.
+     */
+    @Test
+    public void testArchiveEntryBudget() throws Exception {
+        CodeCounterCore core = new CodeCounterCore();
+        String unit = "// c\nint x;\n\n";
+        int[] sizes = {CodeCounterCore.SMALL_ENTRY / 2, 4 * CodeCounterCore.SMALL_ENTRY,
+                CodeCounterCore.MAX_BUFFERED_ENTRY + CodeCounterCore.SMALL_ENTRY};
+        for (int size : sizes) {
+            int units = size / unit.length();
+            byte[] data = unit.repeat(units).getBytes(StandardCharsets.UTF_8);
+            CodeCounterCore.FileStat stat = core.analyzeEntry("a.zip!/A.java", new ByteArrayInputStream(data), null, null);
+            assertEquals(units, stat.codeLines);
+            assertEquals(units, stat.commentLines);
+            assertEquals(units, stat.blankLines);
+        }
+
+        byte[] medium = unit.repeat(2 * CodeCounterCore.MAX_BUFFERED_ENTRY / 3 / unit.length())
+                .getBytes(StandardCharsets.UTF_8);
+        ExecutorService pool = Executors.newFixedThreadPool(12);
+        try {
+            List<Future<CodeCounterCore.FileStat>> futures = new ArrayList<>();
+            for (int i = 0; i < 24; i++) {
+                futures.add(pool.submit(() -> core.analyzeEntry("a.zip!/M.java", new ByteArrayInputStream(medium), null, null)));
+            }
+            for (Future<CodeCounterCore.FileStat> f : futures) {
+                assertEquals(medium.length / unit.length(), f.get().codeLines);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(CodeCounterCore.ENTRY_BUFFER_BUDGET, CodeCounterCore.ENTRY_BUFFERS.availablePermits());
+    }
+
+    @Test
+    public void testMultipleRoots() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-roots-");
+        try {
+            Path big = Files.createDirectories(tmp.resolve("big"));
+            for (int d = 0; d < 20; d++) {
+                Path dir = Files.createDirectories(big.resolve("pkg" + d));
+                for (int i = 0; i < 100; i++) {
+                    Files.writeString(dir.resolve("F" + i + ".java"), "class F {}\n");
+                }
+            }
+            Path small = Files.createDirectories(tmp.resolve("small"));
+            Files.writeString(small.resolve("A.java"), "// A\nclass A {}\n");
+            Files.writeString(small.resolve("B.java"), "class B {\n\n}\n");
+            Path tiny = Files.createDirectories(tmp.resolve("tiny"));
+            Files.writeString(tiny.resolve("C.java"), "class C {}\n");
+
+            CodeCounterCore core = new CodeCounterCore();
+            List<CodeCounterCore.FileStat> stats = core.countLinesWithDetail(Arrays.asList(big, small, tiny),
+                    Arrays.asList(".java"), true, true, Arrays.asList());
+            assertEquals(2003, stats.size());
+            for (CodeCounterCore.FileStat stat : stats) {
+                assertTrue(stat.path.startsWith(stat.root), stat.path);
+            }
+            // The small roots take turns with the big one instead of waiting behind it
+            int lastSmall = 0;
+            for (int i = 0; i < stats.size(); i++) {
+                if (!stats.get(i).root.equals(big.toString())) lastSmall = i;
+            }
+            assertTrue(lastSmall < 1000, "last small-root file published at " + lastSmall);
+
+            Map<String, CodeCounterCore.FileStat> totals = CodeCounterCore.totalsByRoot(stats);
+            assertEquals(3, totals.size());
+            assertEquals(2000, totals.get(big.toString()).codeLines);
+            CodeCounterCore.FileStat smallTotal = totals.get(small.toString());
+            assertEquals(3, smallTotal.codeLines);
+            assertEquals(1, smallTotal.commentLines);
+            assertEquals(1, smallTotal.blankLines);
+            assertEquals(5, smallTotal.lines);
+            assertEquals(1, totals.get(tiny.toString()).lines);
+
+            // Repeated and nested roots are walked once, as part of the outer root
+            List<Path> nested = Arrays.asList(small, tmp, big.resolve("pkg1"), tiny.resolve("..").resolve("tiny"));
+            assertEquals(List.of(tmp), CodeCounterCore.distinctRoots(nested));
+            List<CodeCounterCore.FileStat> once = core.countLinesWithDetail(nested, Arrays.asList(".java"), true, true, Arrays.asList());
+            assertEquals(2003, once.size());
+            assertEquals(Set.of(tmp.toString()), CodeCounterCore.totalsByRoot(once).keySet());
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testTarHeaderFields() {
+        byte[] header = new byte[512];
+        System.arraycopy("0000644 ".getBytes(StandardCharsets.US_ASCII), 0, header, 124, 8);
+        assertEquals(0644, ArchiveReader.parseNumber(header, 124, 12));
+        header[124] = (byte) 0x80;
+        Arrays.fill(header, 125, 136, (byte) 0);
+        header[131] = 1; // 2^32 in base-256
+        assertEquals(1L << 32, ArchiveReader.parseNumber(header, 124, 12));
+
+        byte[] pax = "20 mtime=1700000000\n14 path=a/b.c\n".getBytes(StandardCharsets.UTF_8);
+        assertEquals("a/b.c", ArchiveReader.paxPath(pax));
+        assertNull(ArchiveReader.paxPath("20 mtime=1700000000\n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void zipEntry(ZipOutputStream zip, String name, String content) throws Exception {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    /** Writes a ustar header block and the padded data */
+    private static void tarEntry(ByteArrayOutputStream out, String name, char type, byte[] data) throws Exception {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, Math.min(100, nameBytes.length));
+        System.arraycopy(String.format("%07o\0", 0644).getBytes(StandardCharsets.US_ASCII), 0, header, 100, 8);
+        System.arraycopy(String.format("%011o\0", data.length).getBytes(StandardCharsets.US_ASCII), 0, header, 124, 12);
+        header[156] = (byte) type;
+        System.arraycopy("ustar\0".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 6);
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        int sum = 0;
+        for (byte b : header) sum += b & 0xFF;
+        System.arraycopy(String.format("%06o\0 ", sum).getBytes(StandardCharsets.US_ASCII), 0, header, 148, 8);
+        out.write(header);
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+
+    private static void writeGitIndex(Path index, Path workTree, long modifiedMillis, String... paths) throws Exception {
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        java.io.DataOutputStream out = new java.io.DataOutputStream(bytes);
+        out.writeInt(0x44495243);
+        out.writeInt(2);
+        out.writeInt(paths.length);
+        for (int i = 0; i < paths.length; i++) {
+            Path file = workTree.resolve(paths[i]);
+            long size = 0;
+            if (Files.exists(file)) {
+                Files.setLastModifiedTime(file, java.nio.file.attribute.FileTime.fromMillis(modifiedMillis));
+                size = Files.size(file);
+            }
+            byte[] name = paths[i].getBytes(StandardCharsets.UTF_8);
+            out.writeInt((int) (modifiedMillis / 1000)); // ctime
+            out.writeInt(0);
+            out.writeInt((int) (modifiedMillis / 1000)); // mtime
+            out.writeInt(0);
+            out.writeInt(0); // dev
+            out.writeInt(0); // ino
+            out.writeInt(paths[i].equals("Link.java") ? 0120000 : 0100644);
+            out.writeInt(0); // uid
+            out.writeInt(0); // gid
+            out.writeInt((int) size);
+            byte[] id = new byte[20];
+            Arrays.fill(id, (byte) (i + 1));
+            out.write(id);
+            out.writeShort(name.length);
+            out.write(name);
+            int padding = 8 - (62 + name.length) % 8;
+            out.write(new byte[padding]);
+        }
+        out.write(new byte[20]); // checksum, not verified by the reader
+        out.flush();
+        Files.write(index, bytes.toByteArray());
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.dev.tool.plugins.counter;
+
+import org.junit.jupiter.api.Test;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.CompletableFuture;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CountDaemonTest {
+
+    @Test
+    public void testCountCoalescingAndMetrics() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-daemon-");
+        CountDaemon daemon = new CountDaemon(0, null);
+        try {
+            Path sub = tmp.resolve("sub");
+            Files.createDirectories(sub);
+            for (int i = 0; i < 500; i++) {
+                Files.writeString((i % 2 == 0 ? tmp : sub).resolve("F" + i + ".java"), "class F {\n// c\n}\n");
+            }
+            daemon.start();
+            HttpClient client = HttpClient.newHttpClient();
+            String base = "http://127.0.0.1:" + daemon.getPort();
+            String query = "?template=Java+Backend&format=csv&root=";
+
+            // The second request names a directory inside the first one's root, which is still being scanned
+            CompletableFuture<HttpResponse<String>> whole = client.sendAsync(
+                    request(daemon, URI.create(base + "/count" + query + encode(tmp))).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            HttpResponse<String> part = client.send(
+                    request(daemon, URI.create(base + "/count" + query + encode(sub))).build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+            assertEquals(200, whole.get().statusCode());
+            assertEquals(200, part.statusCode());
+            assertEquals(501, whole.get().body().split("\n").length, "Expected the header and 500 files");
+            assertEquals(251, part.body().split("\n").length, "Expected the header and the 250 files in sub");
+            assertTrue(part.body().contains("\"" + sub + "\""), "Shared results must carry the requested root");
+
+            HttpResponse<String> metrics = client.send(
+                    request(daemon, URI.create(base + "/metrics")).build(), HttpResponse.BodyHandlers.ofString());
+            assertTrue(metrics.body().contains("\"requests\": 2"), metrics.body());
+            assertTrue(metrics.body().contains("\"latencySamples\": 2"), metrics.body());
+
+            HttpResponse<String> bad = client.send(
+                    request(daemon, URI.create(base + "/count?format=xml&root=" + encode(tmp))).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(400, bad.statusCode());
+            // A flag given a value is refused rather than read as the bare flag
+            for (String flag : new String[] {"include-blank=false", "archives=0"}) {
+                HttpResponse<String> valued = client.send(
+                        request(daemon, URI.create(base + "/count?" + flag + "&root=" + encode(tmp))).build(),
+                        HttpResponse.BodyHandlers.ofString());
+                assertEquals(400, valued.statusCode(), flag);
+                assertTrue(valued.body().contains("takes no value"), valued.body());
+            }
+
+            HttpResponse<String> anonymous = client.send(
+                    HttpRequest.newBuilder(URI.create(base + "/shutdown")).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(401, anonymous.statusCode());
+            HttpResponse<String> guessed = client.send(
+                    HttpRequest.newBuilder(URI.create(base + "/metrics")).header(CountDaemon.TOKEN_HEADER, "guess").build(),
+                    HttpResponse.BodyHandlers.ofString());
+            assertEquals(401, guessed.statusCode());
+        } finally {
+            daemon.stop();
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testQueryToArgsAndHostCheck() {
+        assertArrayEquals(new String[] {"--ext=.java,.xml", "--include-blank", "--", "/a b", "/c"},
+                CountDaemon.toArgs("ext=.java%2C.xml&include-blank&root=%2Fa+b&root=/c"));
+        assertTrue(CountDaemon.isLoopbackHost("localhost:7391"));
+        assertTrue(CountDaemon.isLoopbackHost("127.0.0.1"));
+        assertTrue(CountDaemon.isLoopbackHost("[::1]:80"));
+        assertFalse(CountDaemon.isLoopbackHost("attacker.example:7391"));
+    }
+
+    @Test
+    public void testTokenFile() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-daemon-");
+        CountDaemon daemon = new CountDaemon(0, null);
+        try {
+            Path file = tmp.resolve("sub").resolve(CountDaemon.DEFAULT_TOKEN_FILE_NAME);
+            daemon.writeToken(file);
+            assertEquals(daemon.getToken(), Files.readString(file).trim());
+            assertTrue(daemon.getToken().length() >= 40);
+            assertNotEquals(daemon.getToken(), new CountDaemon(0, null).getToken());
+            if (Files.getFileStore(file).supportsFileAttributeView("posix")) {
+                assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(file)));
+            }
+            daemon.stop();
+            assertFalse(Files.exists(file), "The token file is removed on stop");
+        } finally {
+            daemon.stop();
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    private static HttpRequest.Builder request(CountDaemon daemon, URI uri) {
+        return HttpRequest.newBuilder(uri).header(CountDaemon.TOKEN_HEADER, daemon.getToken());
+    }
+
+    private static String encode(Path path) {
+        return URLEncoder.encode(path.toString(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,189 @@
+package com.github.dev.tool.plugins.counter;
+
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GitObjectStoreTest {
+
+    @Test
+    public void testApplyDelta() throws Exception {
+        byte[] base = "hello, world\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] delta = {
+            13,                       // base size
+            17,                       // result size
+            (byte) 0x91, 0, 7,        // copy 7 bytes from offset 0: "hello, "
+            4, 'g', 'i', 't', ' ',    // insert "git "
+            (byte) 0x91, 7, 6         // copy "world\n"
+        };
+        assertEquals("hello, git world\n", new String(GitObjectStore.applyDelta(base, delta), StandardCharsets.US_ASCII));
+        assertThrows(java.io.IOException.class, () -> GitObjectStore.applyDelta(new byte[3], delta));
+    }
+
+    @Test
+    public void testCountDeltaBetweenCommits() throws Exception {
+        Assumptions.assumeTrue(gitAvailable(), "git binary needed to build the test repository");
+        Path tmp = Files.createTempDirectory("cc-git-");
+        try {
+            git(tmp, "init", "-q");
+            Files.writeString(tmp.resolve("A.java"), "class A {}\n");
+            Files.writeString(tmp.resolve("Gone.java"), "// gone\nclass Gone {}\n");
+            Files.createDirectories(tmp.resolve("lib"));
+            Files.writeString(tmp.resolve("lib").resolve("Same.java"), "class Same {}\n");
+            Files.createDirectories(tmp.resolve("target"));
+            Files.writeString(tmp.resolve("target").resolve("Out.java"), "class Out {}\n");
+            commit(tmp, "first");
+            git(tmp, "tag", "v1");
+
+            Files.writeString(tmp.resolve("A.java"), "// A\nclass A {\n\n  int x;\n}\n");
+            Files.delete(tmp.resolve("Gone.java"));
+            Files.createDirectories(tmp.resolve("src"));
+            Files.writeString(tmp.resolve("src").resolve("New.java"), "class New {} // TODO\n");
+            Files.writeString(tmp.resolve("target").resolve("Out.java"), "class Out { int y; }\n");
+            commit(tmp, "second");
+
+            CodeCounterCore core = new CodeCounterCore();
+            List<String> java = Arrays.asList(".java");
+            List<String> excludes = Arrays.asList("target");
+            assertLooseAndPacked(core, tmp, java, excludes);
+
+            // Same answers once everything is packed and delta-compressed
+            git(tmp, "gc", "-q", "--aggressive");
+            assertLooseAndPacked(core, tmp, java, excludes);
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testPackedObjectsLargerThanReadWindow() throws Exception {
+        Assumptions.assumeTrue(gitAvailable(), "git binary needed to build the test repository");
+        Path tmp = Files.createTempDirectory("cc-git-");
+        try {
+            git(tmp, "init", "-q");
+            // Poorly compressible lines, so the packed data spans several read windows
+            java.util.Random random = new java.util.Random(42);
+            StringBuilder big = new StringBuilder("class Big {\n");
+            for (int i = 0; i < 4000; i++) big.append("  long f").append(i).append(" = ").append(random.nextLong()).append(";\n");
+            big.append("}\n");
+            Files.writeString(tmp.resolve("Big.java"), big);
+            commit(tmp, "first");
+            git(tmp, "tag", "v1");
+
+            Files.writeString(tmp.resolve("Big.java"), big.insert(big.length() - 2, "  int extra;\n// note\n"));
+            commit(tmp, "second");
+            git(tmp, "gc", "-q", "--aggressive");
+
+            List<CodeCounterCore.FileDelta> deltas = new CodeCounterCore().countDelta(tmp, "v1", "HEAD",
+                    Arrays.asList(".java"), true, true, Arrays.asList("target"));
+            assertEquals(1, deltas.size());
+            assertEquals(CodeCounterCore.FileDelta.Status.MODIFIED, deltas.get(0).status);
+            assertEquals(1, deltas.get(0).codeLines);
+            assertEquals(1, deltas.get(0).commentLines);
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    @Test
+    public void testCountHistory() throws Exception {
+        Assumptions.assumeTrue(gitAvailable(), "git binary needed to build the test repository");
+        Path tmp = Files.createTempDirectory("cc-git-");
+        try {
+            git(tmp, "init", "-q");
+            Files.writeString(tmp.resolve("A.java"), "class A {}\n");
+            Files.writeString(tmp.resolve("B.java"), "// B\nclass B {}\n");
+            Files.createDirectories(tmp.resolve("target"));
+            Files.writeString(tmp.resolve("target").resolve("Out.java"), "class Out {}\n");
+            commit(tmp, "first");
+            git(tmp, "tag", "v1");
+
+            Files.writeString(tmp.resolve("A.java"), "class A {\n\n  int x; // TODO\n}\n");
+            commit(tmp, "second");
+
+            CodeCounterCore core = new CodeCounterCore();
+            List<String> java = Arrays.asList(".java");
+            List<String> excludes = Arrays.asList("target");
+            List<CodeCounterCore.HistoryPoint> points = core.countHistory(tmp, "HEAD", 10, false, java, excludes);
+            assertEquals(2, points.size());
+            CodeCounterCore.HistoryPoint first = points.get(0);
+            assertEquals(2, first.codeLines);
+            assertEquals(1, first.commentLines);
+            assertEquals(2, first.files);
+            CodeCounterCore.HistoryPoint second = points.get(1);
+            assertEquals(git(tmp, "rev-parse", "HEAD").trim(), second.commitId);
+            assertEquals(4, second.codeLines);
+            assertEquals(1, second.blankLines);
+            assertEquals(1, second.todoLines);
+            assertTrue(first.time <= second.time);
+
+            assertEquals(1, core.countHistory(tmp, "HEAD", 1, false, java, excludes).size());
+            List<CodeCounterCore.HistoryPoint> tags = core.countHistory(tmp, "HEAD", 10, true, java, excludes);
+            assertEquals(1, tags.size());
+            assertEquals("v1", tags.get(0).label);
+            assertEquals(2, tags.get(0).codeLines);
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+
+    private static void assertLooseAndPacked(CodeCounterCore core, Path repo, List<String> extensions,
+                                             List<String> excludes) throws Exception {
+        List<CodeCounterCore.FileDelta> deltas = core.countDelta(repo, "v1", "HEAD", extensions, true, true, excludes);
+        assertEquals(3, deltas.size());
+
+        CodeCounterCore.FileDelta a = deltas.get(0);
+        assertEquals("A.java", a.path);
+        assertEquals(CodeCounterCore.FileDelta.Status.MODIFIED, a.status);
+        assertEquals(2, a.codeLines);
+        assertEquals(1, a.commentLines);
+        assertEquals(1, a.blankLines);
+
+        CodeCounterCore.FileDelta gone = deltas.get(1);
+        assertEquals("Gone.java", gone.path);
+        assertEquals(CodeCounterCore.FileDelta.Status.DELETED, gone.status);
+        assertEquals(-1, gone.codeLines);
+        assertEquals(-1, gone.commentLines);
+        assertEquals(-2, gone.lines);
+
+        CodeCounterCore.FileDelta added = deltas.get(2);
+        assertEquals("src/New.java", added.path);
+        assertEquals(CodeCounterCore.FileDelta.Status.ADDED, added.status);
+        assertEquals(1, added.todoLines);
+
+        // Revision suffixes and abbreviated ids
+        assertEquals(3, core.countDelta(repo, "HEAD~1", "HEAD", extensions, true, true, excludes).size());
+        String head = git(repo, "rev-parse", "HEAD").trim();
+        assertEquals(0, core.countDelta(repo, head.substring(0, 8), "HEAD", extensions, true, true, excludes).size());
+        assertThrows(java.io.IOException.class,
+                () -> core.countDelta(repo, "no-such-branch", "HEAD", extensions, true, true, excludes));
+    }
+
+    private static void commit(Path repo, String message) throws Exception {
+        git(repo, "add", "-A");
+        git(repo, "-c", "user.name=Test", "-c", "user.email=test@example.com", "commit", "-q", "-m", message);
+    }
+
+    private static boolean gitAvailable() {
+        try {
+            return new ProcessBuilder("git", "--version").redirectErrorStream(true).start().waitFor() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String git(Path dir, String... args) throws Exception {
+        String[] command = new String[args.length + 1];
+        command[0] = "git";
+        System.arraycopy(args, 0, command, 1, args.length);
+        Process process = new ProcessBuilder(command).directory(dir.toFile()).redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(0, process.waitFor(), output);
+        return output;
+    }
+}
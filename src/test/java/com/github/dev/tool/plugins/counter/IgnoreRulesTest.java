@@ -0,0 +1,107 @@
+package com.github.dev.tool.plugins.counter;
+
+import org.junit.jupiter.api.Test;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IgnoreRulesTest {
+
+    @Test
+    public void testPatterns() {
+        assertNull(IgnoreRules.Rule.compile(""));
+        assertNull(IgnoreRules.Rule.compile("   "));
+        assertNull(IgnoreRules.Rule.compile("# comment"));
+
+        IgnoreRules.Rule log = IgnoreRules.Rule.compile("*.log  ");
+        assertTrue(log.matches("a/b/x.log", "x.log", false));
+        assertFalse(log.matches("x.logs", "x.logs", false));
+
+        IgnoreRules.Rule dirOnly = IgnoreRules.Rule.compile("build/");
+        assertTrue(dirOnly.matches("sub/build", "build", true));
+        assertFalse(dirOnly.matches("sub/build", "build", false));
+
+        IgnoreRules.Rule anchored = IgnoreRules.Rule.compile("/out");
+        assertTrue(anchored.matches("out", "out", true));
+        assertFalse(anchored.matches("sub/out", "out", true));
+
+        IgnoreRules.Rule nested = IgnoreRules.Rule.compile("docs/*.html");
+        assertTrue(nested.matches("docs/index.html", "index.html", false));
+        assertFalse(nested.matches("docs/api/index.html", "index.html", false));
+        assertFalse(nested.matches("x/docs/index.html", "index.html", false));
+
+        IgnoreRules.Rule anyDepth = IgnoreRules.Rule.compile("**/cache");
+        assertTrue(anyDepth.matches("cache", "cache", true));
+        assertTrue(anyDepth.matches("a/b/cache", "cache", true));
+
+        IgnoreRules.Rule middle = IgnoreRules.Rule.compile("a/**/b");
+        assertTrue(middle.matches("a/b", "b", false));
+        assertTrue(middle.matches("a/x/y/b", "b", false));
+        assertFalse(middle.matches("a/xb", "xb", false));
+
+        IgnoreRules.Rule inside = IgnoreRules.Rule.compile("gen/**");
+        assertTrue(inside.matches("gen/x/y.java", "y.java", false));
+        assertFalse(inside.matches("gen", "gen", true));
+
+        IgnoreRules.Rule classes = IgnoreRules.Rule.compile("file[0-9].t?t");
+        assertTrue(classes.matches("file1.txt", "file1.txt", false));
+        assertFalse(classes.matches("filex.txt", "filex.txt", false));
+        assertTrue(IgnoreRules.Rule.compile("x[!a]").matches("xb", "xb", false));
+        assertFalse(IgnoreRules.Rule.compile("x[!a]").matches("xa", "xa", false));
+
+        IgnoreRules.Rule posix = IgnoreRules.Rule.compile("file[[:digit:]].log");
+        assertTrue(posix.matches("file1.log", "file1.log", false));
+        assertFalse(posix.matches("filex.log", "filex.log", false));
+        assertFalse(posix.matches("file].log", "file].log", false));
+        IgnoreRules.Rule mixed = IgnoreRules.Rule.compile("v[[:upper:]_[:xdigit:]]");
+        assertTrue(mixed.matches("vQ", "vQ", false));
+        assertTrue(mixed.matches("v_", "v_", false));
+        assertTrue(mixed.matches("vf", "vf", false));
+        assertFalse(mixed.matches("vg", "vg", false));
+        assertFalse(IgnoreRules.Rule.compile("x[![:alpha:]]").matches("xa", "xa", false));
+
+        IgnoreRules.Rule escaped = IgnoreRules.Rule.compile("x[a\\]b]");
+        assertTrue(escaped.matches("x]", "x]", false));
+        assertTrue(escaped.matches("xb", "xb", false));
+        assertFalse(escaped.matches("x\\", "x\\", false));
+        assertTrue(IgnoreRules.Rule.compile("x[]a]").matches("x]", "x]", false));
+        assertTrue(IgnoreRules.Rule.compile("x[a-]").matches("x-", "x-", false));
+        assertTrue(IgnoreRules.Rule.compile("[").matches("[", "[", false));
+
+        assertTrue(IgnoreRules.Rule.compile("\\#literal").matches("#literal", "#literal", false));
+        assertTrue(IgnoreRules.Rule.compile("!keep.log").negated);
+        assertTrue(IgnoreRules.Rule.compile("\\!bang").matches("!bang", "!bang", false));
+    }
+
+    @Test
+    public void testHierarchy() throws Exception {
+        Path tmp = Files.createTempDirectory("cc-ignore-");
+        try {
+            Files.writeString(tmp.resolve(".gitignore"), "*.log\n/coverage/\nsub/local.txt\n");
+            Path sub = Files.createDirectories(tmp.resolve("sub"));
+            Files.writeString(sub.resolve(".ignore"), "!keep.log\ntmp\n");
+
+            IgnoreRules root = IgnoreRules.forRoot(tmp);
+            assertTrue(root.isIgnored("debug.log", false));
+            assertTrue(root.isIgnored("coverage", true));
+            assertFalse(root.isIgnored("coverage", false));
+            assertFalse(root.isIgnored("sub", true));
+
+            IgnoreRules inSub = root.enter(sub, "sub");
+            assertTrue(inSub.isIgnored("debug.log", false));
+            assertFalse(inSub.isIgnored("keep.log", false));   // deeper file wins
+            assertTrue(inSub.isIgnored("local.txt", false));   // anchored in the parent's file
+            assertTrue(inSub.isIgnored("tmp", true));
+            assertFalse(inSub.isIgnored("coverage", true));    // anchored to the top only
+            assertFalse(root.isIgnored("tmp", true));          // sub's rules do not leak upwards
+
+            // Starting the walk in sub still applies the rules above it
+            Files.createDirectories(tmp.resolve(".git"));
+            IgnoreRules fromSub = IgnoreRules.forRoot(sub);
+            assertTrue(fromSub.isIgnored("local.txt", false));
+            assertFalse(fromSub.isIgnored("keep.log", false));
+        } finally {
+            try { Files.walk(tmp).sorted((a,b)->b.compareTo(a)).forEach(p->p.toFile().delete()); } catch (Throwable ignored) {}
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.dev.tool.plugins.counter;
+
+import org.junit.jupiter.api.Test;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LineClassifierTest {
+
+    /**
+     * The original String-based classification, kept as the reference the byte classifier must match.
+     */
+    private static long[] reference(String text) throws IOException {
+        long code = 0, comment = 0, blank = 0, todo = 0;
+        boolean inBlockComment = false;
+        BufferedReader br = new BufferedReader(new StringReader(text));
+        String line;
+        while ((line = br.readLine()) != null) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                blank++;
+                continue;
+            }
+            if (trimmed.toLowerCase().contains("todo")) todo++;
+            if (inBlockComment) {
+                comment++;
+                if (trimmed.endsWith("*/") || trimmed.endsWith("-->")) inBlockComment = false;
+                continue;
+            }
+            if (trimmed.startsWith("/*") || trimmed.startsWith("/**") || trimmed.startsWith("<!--")) {
+                comment++;
+                if (!(trimmed.endsWith("*/") || trimmed.endsWith("-->"))) inBlockComment = true;
+                continue;
+            }
+            if (trimmed.startsWith("//")) {
+                comment++;
+                continue;
+            }
+            code++;
+        }
+        return new long[] {code, comment, blank, todo};
+    }
+
+    private static long[] classify(byte[] bytes, int chunk, ByteScanner scanner) {
+        LineClassifier classifier = new LineClassifier(scanner);
+        for (int off = 0; off < bytes.length; off += chunk) {
+            classifier.feed(ByteBuffer.wrap(bytes, off, Math.min(chunk, bytes.length - off)));
+        }
+        classifier.finish();
+        return new long[] {classifier.getCodeLines(), classifier.getCommentLines(),
+                classifier.getBlankLines(), classifier.getTodoLines()};
+    }
+
+    private static void assertMatchesReference(String text) throws IOException {
+        long[] expected = reference(text);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int chunk : new int[] {1, 2, 3, 7, 64, Math.max(1, bytes.length)}) {
+            assertArrayEquals(expected, classify(bytes, chunk, null),
+                    "scalar chunk=" + chunk + " text=" + text.replace("\n", "\\n").replace("\r", "\\r"));
+            assertArrayEquals(expected, classify(bytes, chunk, LineClassifier.ACCELERATED),
+                    "accelerated chunk=" + chunk + " text=" + text.replace("\n", "\\n").replace("\r", "\\r"));
+        }
+    }
+
+    @Test
+    public void testEdgeCases() throws IOException {
+        String[] samples = {
+            "",
+            "\n",
+            "   ",
+            "a",
+            "a\nb",
+            "a\r\nb\r\n",
+            "a\rb\r\r\n\n",
+            "/* one */\ncode();\n",
+            "/*\n * multi\n */\nint x;\n",
+            "/*/\nx\n",
+            "  <!-- open\n still -->\n<p>\n",
+            "// line\n  //indented\n/ / not\n",
+            "x = 1; // TODO later\n\tToDo: upper\nt o d o\ntodtodo\n",
+            "/**\n * TODO doc\n * end **/   \nafter\n",
+            "* /\n/* a\n* /\n*/\n",
+            "\u00e9t\u00e9 // caf\u00e9\n/* \u4e2d\u6587 */\n\u65e5\u672c\u8a9e\n",
+            "\u0000\u0001code\u001f\n",
+            "-->\n<!---->\n<!-- x --\n>\n",
+        };
+        for (String sample : samples) {
+            assertMatchesReference(sample);
+        }
+    }
+
+    @Test
+    public void testRandomInputMatchesReference() throws IOException {
+        String[] atoms = {"/", "*", "<", "!", "-", ">", "t", "O", "d", "o", "x", " ", "\t", "\n", "\r", "\r\n",
+                "//", "/*", "*/", "<!--", "-->", "todo", "TODO", "\u00e9", "\u4e2d"};
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            StringBuilder sb = new StringBuilder();
+            int len = random.nextInt(40);
+            for (int i = 0; i < len; i++) {
+                sb.append(atoms[random.nextInt(atoms.length)]);
+            }
+            assertMatchesReference(sb.toString());
+        }
+    }
+
+    @Test
+    public void testLongLinesMatchReference() throws IOException {
+        // Long lines and long indentation exercise the bulk (SIMD) skipping paths
+        String[] atoms = {"x", " ", "\t", "t", "todo", "ToDo", "tod", "*/", "-->", "/*", "<!--", "//", "\u00e9"};
+        String[] terminators = {"\n", "\r", "\r\n"};
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            StringBuilder sb = new StringBuilder();
+            int lines = 1 + random.nextInt(6);
+            for (int l = 0; l < lines; l++) {
+                int indent = random.nextInt(3) == 0 ? random.nextInt(150) : 0;
+                for (int i = 0; i < indent; i++) sb.append(' ');
+                int len = random.nextInt(200);
+                for (int i = 0; i < len; i++) {
+                    sb.append(atoms[random.nextInt(atoms.length)]);
+                }
+                sb.append(terminators[random.nextInt(terminators.length)]);
+            }
+            assertMatchesReference(sb.toString());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.dev.tool.plugins.counter;
+
+import org.junit.jupiter.api.Test;
+import java.util.Arrays;
+import java.util.Collections;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class NameMatcherTest {
+
+    @Test
+    public void testNormalizeExtension() {
+        assertEquals(".java", NameMatcher.normalizeExtension("*.java"));
+        assertEquals(".java", NameMatcher.normalizeExtension("*java"));
+        assertEquals(".java", NameMatcher.normalizeExtension(" java "));
+        assertEquals(".java", NameMatcher.normalizeExtension(".java"));
+        assertNull(NameMatcher.normalizeExtension("  "));
+        assertNull(NameMatcher.normalizeExtension("*"));
+    }
+
+    @Test
+    public void testExtensions() {
+        NameMatcher m = NameMatcher.forExtensions(Arrays.asList(".java", "*.JS", "xml", "*.min.css", "*.test.*"));
+        assertTrue(m.matches("A.java"));
+        assertTrue(m.matches("A.JAVA"));
+        assertTrue(m.matches(".java"));
+        assertTrue(m.matches("app.bundle.js"));
+        assertTrue(m.matches("pom.xml"));
+        assertTrue(m.matches("site.min.css"));
+        assertTrue(m.matches("util.test.ts"));
+        assertFalse(m.matches("site.css"));
+        assertFalse(m.matches("java"));
+        assertFalse(m.matches("A.javax"));
+        assertFalse(m.matches("Ajava"));
+        assertFalse(m.matches("util.ts"));
+        assertFalse(NameMatcher.forExtensions(Collections.emptyList()).matches("A.java"));
+    }
+
+    @Test
+    public void testNamesAndGlobs() {
+        NameMatcher m = NameMatcher.forNames(Arrays.asList(".git", "Target", "*.iml", "*.egg-info", "cmake-build-?", "a*b*c"));
+        assertTrue(m.matches(".GIT"));
+        assertTrue(m.matches("target"));
+        assertTrue(m.matches("project.iml"));
+        assertTrue(m.matches(".IML"));
+        assertTrue(m.matches("mypkg.egg-info"));
+        assertTrue(m.matches("cmake-build-x"));
+        assertTrue(m.matches("abc"));
+        assertTrue(m.matches("aXbYbZc"));
+        assertFalse(m.matches("git"));
+        assertFalse(m.matches("targets"));
+        assertFalse(m.matches("project.iml.bak"));
+        assertFalse(m.matches("cmake-build-debug"));
+        assertFalse(m.matches("acb"));
+        assertFalse(m.matches("src"));
+    }
+
+    @Test
+    public void testManyEntries() {
+        String[] names = new String[500];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "dir" + i;
+        }
+        NameMatcher m = NameMatcher.forNames(Arrays.asList(names));
+        for (String name : names) {
+            assertTrue(m.matches(name.toUpperCase()), name);
+        }
+        assertFalse(m.matches("dir500"));
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.dev.tool.plugins.counter;
+
+import org.junit.jupiter.api.Test;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResultTableModelTest {
+
+    private static CodeCounterCore.FileStat stat(String path, long code) {
+        CodeCounterCore.FileStat fs = new CodeCounterCore.FileStat(path, "java", code, 1, 2, 0);
+        fs.root = "/r";
+        return fs;
+    }
+
+    @Test
+    public void testSortPermutesWithoutMovingRows() {
+        ResultTableModel model = new ResultTableModel(new ScanResult());
+        model.addAll(Arrays.asList(stat("b", 5), stat("a", 9), stat("c", 5)));
+        assertEquals(3, model.getRowCount());
+        assertEquals(1, model.getValueAt(0, ResultTableModel.COL_INDEX));
+        assertEquals("b", model.getValueAt(0, ResultTableModel.COL_PATH));
+        assertEquals(9, model.getValueAt(1, ResultTableModel.COL_CODE));
+        assertEquals("/r", model.getValueAt(2, ResultTableModel.COL_ROOT));
+
+        model.toggleSort(ResultTableModel.COL_CODE);
+        // Equal counts keep arrival order; the index column still shows it
+        assertEquals("b", model.getValueAt(0, ResultTableModel.COL_PATH));
+        assertEquals("c", model.getValueAt(1, ResultTableModel.COL_PATH));
+        assertEquals("a", model.getValueAt(2, ResultTableModel.COL_PATH));
+        assertEquals(2, model.getValueAt(2, ResultTableModel.COL_INDEX));
+
+        model.toggleSort(ResultTableModel.COL_CODE);
+        assertFalse(model.isAscending());
+        assertEquals("a", model.getValueAt(0, ResultTableModel.COL_PATH));
+        assertEquals("b", model.getValueAt(1, ResultTableModel.COL_PATH));
+        assertEquals("b", model.getResults().getPath(0), "Result rows are not reordered");
+
+        model.toggleSort(ResultTableModel.COL_INDEX);
+        assertEquals(-1, model.getSortColumn());
+        assertEquals("b", model.getValueAt(0, ResultTableModel.COL_PATH));
+    }
+
+    @Test
+    public void testBatchesMergedWhileSortedMatchFullSort() {
+        Random random = new Random(42);
+        ResultTableModel merged = new ResultTableModel(new ScanResult());
+        merged.toggleSort(ResultTableModel.COL_CODE);
+        List<CodeCounterCore.FileStat> all = new ArrayList<>();
+        for (int batch = 0; batch < 50; batch++) {
+            List<CodeCounterCore.FileStat> stats = new ArrayList<>();
+            for (int i = random.nextInt(100); i >= 0; i--) {
+                stats.add(stat("f" + all.size() + stats.size(), random.nextInt(50)));
+            }
+            merged.addAll(stats);
+            all.addAll(stats);
+        }
+        ResultTableModel full = new ResultTableModel(new ScanResult());
+        full.addAll(all);
+        full.toggleSort(ResultTableModel.COL_CODE);
+
+        assertEquals(all.size(), merged.getRowCount());
+        for (int row = 0; row < all.size(); row++) {
+            assertEquals(full.toModelRow(row), merged.toModelRow(row), "row " + row);
+        }
+    }
+
+    @Test
+    public void testWindowAndRemoval() {
+        ResultTableModel model = new ResultTableModel(new ScanResult());
+        List<CodeCounterCore.FileStat> stats = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) stats.add(stat("f" + i, i));
+        model.addAll(stats);
+
+        model.setWindow(2000, 1000);
+        assertEquals(500, model.getRowCount());
+        assertEquals("f2000", model.getValueAt(0, ResultTableModel.COL_PATH));
+
+        boolean[] removed = new boolean[model.size()];
+        removed[0] = removed[2499] = true;
+        model.removeRows(removed);
+        model.add(stat("new", 1));
+        model.setWindow(0, 0);
+        model.rowsChanged();
+        assertEquals(2499, model.getRowCount());
+        assertEquals("f1", model.getValueAt(0, ResultTableModel.COL_PATH));
+        assertEquals("new", model.getValueAt(2498, ResultTableModel.COL_PATH));
+        assertEquals(2499, model.getValueAt(2498, ResultTableModel.COL_INDEX));
+
+        model.clear();
+        assertEquals(0, model.getRowCount());
+    }
+
+    @Test
+    public void testDirectoryFilter() {
+        ResultTableModel model = new ResultTableModel(new ScanResult());
+        model.addAll(Arrays.asList(stat("/r/b/one", 3), stat("/r/a/two", 2), stat("/r/a/sub/three", 1), stat("/r/four", 4)));
+        ScanResult results = model.getResults();
+        int a = results.getDir(1);
+
+        model.toggleSort(ResultTableModel.COL_CODE);
+        model.setDirectory(a);
+        assertEquals(2, model.getRowCount());
+        assertEquals(4, model.size());
+        assertEquals("/r/a/sub/three", model.getValueAt(0, ResultTableModel.COL_PATH));
+        assertEquals("/r/a/two", model.getValueAt(1, ResultTableModel.COL_PATH));
+
+        // Rows arriving later are filtered as well
+        model.addAll(Arrays.asList(stat("/r/a/five", 0), stat("/r/six", 0)));
+        assertEquals(3, model.viewSize());
+        assertEquals("/r/a/five", model.getValueAt(0, ResultTableModel.COL_PATH));
+
+        model.setDirectory(-1);
+        assertEquals(6, model.getRowCount());
+        model.clear();
+        assertEquals(-1, model.getDirectory());
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.dev.tool.plugins.counter;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Manual throughput benchmark, not run by the test suite.
+ *
+ * Usage: {@code java -cp target/classes:target/test-classes
+ * com.github.dev.tool.plugins.counter.ScanBenchmark <root> [rounds] [maxOpenFiles]}
+ *
+ * Scans the same tree in every execution mode and prints files/s and MB/s per mode, so the
+ * fork-join and virtual-thread modes can be compared on local disks and network mounts.
+ */
+public class ScanBenchmark {
+
+    private static final List<String> EXTENSIONS = Arrays.asList(
+            ".java", ".js", ".ts", ".xml", ".html", ".css", ".c", ".h", ".cpp", ".py", ".php");
+    private static final List<String> EXCLUDES = Arrays.asList(".git", ".svn", "node_modules", "target", "build");
+
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("Usage: ScanBenchmark <root> [rounds] [maxOpenFiles]");
+            System.exit(1);
+        }
+        Path root = Paths.get(args[0]);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int maxOpenFiles = args.length > 2 ? Integer.parseInt(args[2]) : CodeCounterCore.DEFAULT_MAX_OPEN_FILES;
+
+        System.out.println("Virtual threads available: " + CodeCounterCore.isVirtualThreadsSupported());
+        double baseline = 0;
+        for (CodeCounterCore.ExecutionMode mode : CodeCounterCore.ExecutionMode.values()) {
+            CodeCounterCore core = new CodeCounterCore();
+            core.setExecutionMode(mode);
+            core.setMaxOpenFiles(maxOpenFiles);
+            core.countLinesWithDetail(root, EXTENSIONS, true, true, EXCLUDES); // warm-up
+
+            double best = 0;
+            for (int i = 0; i < rounds; i++) {
+                core.countLinesWithDetail(root, EXTENSIONS, true, true, EXCLUDES);
+                ScanMetrics metrics = core.getLastScanMetrics();
+                best = Math.max(best, metrics.getBytesPerSecond());
+                System.out.println(mode + " round " + (i + 1) + ": " + metrics);
+            }
+            if (mode == CodeCounterCore.ExecutionMode.FORK_JOIN) {
+                baseline = best;
+            } else if (baseline > 0) {
+                System.out.printf("%s vs FORK_JOIN: %.2fx%n", mode, best / baseline);
+            }
+        }
+    }
+}
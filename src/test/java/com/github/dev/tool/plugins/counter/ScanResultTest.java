@@ -0,0 +1,119 @@
+package com.github.dev.tool.plugins.counter;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScanResultTest {
+
+    private static CodeCounterCore.FileStat stat(int i) {
+        CodeCounterCore.FileStat fs = new CodeCounterCore.FileStat("f" + i, i % 3 == 0 ? "java" : "xml",
+            i, i % 7, i % 5, i % 2);
+        fs.root = i % 2 == 0 ? "/a" : "/b";
+        return fs;
+    }
+
+    @Test
+    public void testTypesAndRootsAreInterned() {
+        ScanResult results = new ScanResult();
+        for (int i = 0; i < 10; i++) results.add(stat(i));
+        assertEquals(2, results.typeCount());
+        assertEquals("java", results.typeName(results.getTypeCode(0)));
+        assertEquals("xml", results.getType(1));
+        assertSame(results.getRoot(0), results.getRoot(2));
+        assertEquals("/b", results.getRoot(3));
+
+        CodeCounterCore.FileStat huge = new CodeCounterCore.FileStat("huge", null, 1L << 40, 0, 0, 0);
+        results.set(4, huge);
+        assertEquals(Integer.MAX_VALUE, results.getCode(4));
+        assertEquals("", results.getType(4));
+        assertEquals(3, results.typeCount());
+    }
+
+    @Test
+    public void testRemoveRowsAcrossChunks() {
+        ScanResult results = new ScanResult();
+        int count = 40_000; // more than two chunks
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, results.add(stat(i)));
+        }
+        boolean[] removed = new boolean[count];
+        for (int i = 0; i < count; i++) removed[i] = i % 2 == 0 || i >= 30_000;
+        results.removeRows(removed);
+
+        assertEquals(15_000, results.size());
+        for (int row = 0; row < results.size(); row++) {
+            int i = 2 * row + 1;
+            assertEquals("f" + i, results.getPath(row));
+            assertEquals(i, results.getCode(row));
+            assertEquals(i % 7, results.getComment(row));
+            assertEquals(i % 5, results.getBlank(row));
+            assertEquals(i % 2, results.getTodo(row));
+            assertEquals("/b", results.getRoot(row));
+        }
+
+        // Appending after a removal reuses the partly filled chunk
+        assertEquals(15_000, results.add(stat(7)));
+        assertEquals("f7", results.getPath(15_000));
+
+        results.clear();
+        assertEquals(0, results.size());
+        assertEquals(0, results.typeCount());
+    }
+
+    private static CodeCounterCore.FileStat file(String path, String root) {
+        CodeCounterCore.FileStat fs = new CodeCounterCore.FileStat(path, "java", 1, 0, 0, 0);
+        fs.root = root;
+        return fs;
+    }
+
+    @Test
+    public void testPathsSharePrefixesInTheDirectoryTrie() {
+        ScanResult results = new ScanResult();
+        String[][] files = {
+            {"/repo/src/main/A.java", "/repo"},
+            {"/repo/src/main/B.java", "/repo"},
+            {"/repo/src/test/C.java", "/repo"},
+            {"/repo/D.java", "/repo"},
+            {"C:\\work\\x\\E.java", "C:\\work"},
+            {"/elsewhere/F.java", "/repo"},
+            {"G.java", null},
+        };
+        for (String[] f : files) results.add(file(f[0], f[1]));
+        for (int row = 0; row < files.length; row++) {
+            assertEquals(files[row][0], results.getPath(row));
+        }
+
+        assertEquals(results.getDir(0), results.getDir(1));
+        assertEquals("A.java", results.getName(0));
+        int main = results.getDir(0);
+        assertEquals("main/", results.dirName(main));
+        int top = results.dirParent(results.dirParent(main));
+        assertEquals("/repo/", results.dirName(top));
+        assertEquals(-1, results.dirParent(top));
+        assertEquals(top, results.getDir(3));
+        assertEquals("C:\\work\\", results.dirName(results.dirParent(results.getDir(4))));
+
+        boolean[] underSrc = results.dirsUnder(results.dirParent(main));
+        assertTrue(underSrc[main]);
+        assertTrue(underSrc[results.getDir(2)]);
+        assertFalse(underSrc[top]);
+        assertFalse(underSrc[results.getDir(5)]);
+    }
+
+    @Test
+    public void testComparePathsAndIndexOf() {
+        ScanResult results = new ScanResult();
+        String[] paths = {"/r/b/x.java", "/r/a/y.java", "/r/a.java", "/r/a/b/z.java", "/r/ab.java", "/r/a/y.javax",
+            "/r/a/\u00E9t\u00E9.java", "/r/a/\uD83D\uDE00.java", "/r/a/\uFFFD.java", "/r/a\u00E9/x.java"};
+        for (String path : paths) results.add(file(path, "/r"));
+        for (int a = 0; a < paths.length; a++) {
+            for (int b = 0; b < paths.length; b++) {
+                assertEquals(Integer.signum(paths[a].compareTo(paths[b])),
+                    Integer.signum(results.comparePaths(a, b)), paths[a] + " vs " + paths[b]);
+            }
+        }
+
+        int[] rows = results.indexOf(java.util.Arrays.asList("/r/a/b/z.java", "/r/a/missing.java", "/r/c/x.java", "/r/a.java"), "/r");
+        assertArrayEquals(new int[] {3, -1, -1, 2}, rows);
+    }
+}